@@ -31,6 +31,10 @@
 
 package org.hsqldb;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.dbinfo.DatabaseInformation;
 import org.hsqldb.error.Error;
@@ -126,6 +130,10 @@ public class Database {
     public HsqlDatabaseProperties databaseProperties;
     private final boolean         shutdownOnNoConnection;
     int                           resultMaxMemoryRows;
+    int                           parallelDegree         = 1;
+
+    // threads of the workers of parallel queries, created when first used
+    private ExecutorService parallelExecutor;
 
     // schema invariant objects
     public UserManager     userManager;
@@ -138,6 +146,8 @@ public class Database {
     public int defaultIsolationLevel = SessionInterface.TX_READ_COMMITTED;
     public boolean            txConflictRollback  = true;
     public boolean            txInterruptRollback = false;
+    public boolean            txRowLocks          = false;
+    public boolean            optimisticRead      = false;
 
     // schema objects
     public SchemaManager schemaManager;
@@ -279,6 +289,8 @@ public class Database {
             timeoutRunner.stop();
         }
 
+        closeParallelExecutor();
+
         lobManager       = null;
         granteeManager   = null;
         userManager      = null;
@@ -480,6 +492,47 @@ public class Database {
         resultMaxMemoryRows = size;
     }
 
+    public int getParallelDegree() {
+        return parallelDegree;
+    }
+
+    public void setParallelDegree(int degree) {
+        parallelDegree = degree;
+    }
+
+    /**
+     * Returns the pool of threads that run the workers of parallel queries.
+     * Idle threads end after a minute.
+     */
+    synchronized ExecutorService getParallelExecutor() {
+
+        if (parallelExecutor == null) {
+            parallelExecutor =
+                Executors.newCachedThreadPool(new ThreadFactory() {
+
+                public Thread newThread(Runnable r) {
+
+                    Thread thread = new Thread(r, "HSQLDB Parallel Scan");
+
+                    thread.setDaemon(true);
+
+                    return thread;
+                }
+            });
+        }
+
+        return parallelExecutor;
+    }
+
+    private synchronized void closeParallelExecutor() {
+
+        if (parallelExecutor != null) {
+            parallelExecutor.shutdown();
+
+            parallelExecutor = null;
+        }
+    }
+
     public void setRestrictExec(boolean mode) {
         sqlRestrictExec = mode;
     }
@@ -843,6 +896,9 @@ public class Database {
             Session sysSession = sessionManager.newSysSession();
 
             try {
+
+                // fuzzy checkpoint writes changed rows before the locks
+                logger.prepareCheckpoint();
                 sysSession.executeCompiledStatement(checkpoint,
                                                     ValuePool.emptyObjectArray,
                                                     0);
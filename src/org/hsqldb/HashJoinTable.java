@@ -0,0 +1,443 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexHash;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HashMappedList;
+import org.hsqldb.map.ValuePool;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.CharacterType;
+import org.hsqldb.types.Type;
+
+/**
+ * Hash table of the rows of the inner range of a hash join.<p>
+ *
+ * Rows are added with the values of the inner join expressions and are
+ * found with the values of the outer join expressions. The table returns
+ * all the rows that have the same hash code as the searched values. The
+ * join conditions are always checked again on the returned rows.<p>
+ *
+ * The rows are held in a chained hash table in memory. When the count of
+ * rows reaches the result memory row limit of the session, the rows are
+ * moved to a statement scoped table, indexed on the hash code, which is
+ * stored on disk.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class HashJoinTable {
+
+    static final int initialCapacity = 64;
+
+    //
+    final Session session;
+    final Table   rangeTable;
+    final int[]   hashKinds;
+    final Type[]  innerTypes;
+    final Type[]  outerTypes;
+    final int     maxMemoryRows;
+
+    //
+    int[] buckets;
+    int[] links;
+    int[] hashCodes;
+    Row[] rows;
+    int   size;
+
+    //
+    TableDerived    table;
+    PersistentStore store;
+    Index           index;
+    int             rowIdColumn;
+    int             hashColumn;
+
+    HashJoinTable(Session session, Table rangeTable, Type[] innerTypes,
+                  Type[] outerTypes) {
+
+        this.session       = session;
+        this.rangeTable    = rangeTable;
+        this.innerTypes    = innerTypes;
+        this.outerTypes    = outerTypes;
+        this.maxMemoryRows = session.getResultMemoryRowCount();
+        hashKinds          = new int[innerTypes.length];
+
+        for (int i = 0; i < hashKinds.length; i++) {
+            hashKinds[i] = getHashKind(innerTypes[i], outerTypes[i]);
+        }
+
+        buckets   = new int[initialCapacity];
+        links     = new int[initialCapacity];
+        hashCodes = new int[initialCapacity];
+        rows      = new Row[initialCapacity];
+
+        ArrayUtil.fillArray(buckets, -1);
+    }
+
+    /**
+     * Returns the kind of hash code used for a join of two values of the
+     * given types, or IndexHash.HASH_NONE if equal values of the two types
+     * may have different hash codes.
+     */
+    static int getHashKind(Type innerType, Type outerType) {
+
+        int kind      = IndexHash.getHashKind(innerType);
+        int otherKind = IndexHash.getHashKind(outerType);
+
+        if (kind == IndexHash.HASH_NONE || otherKind == IndexHash.HASH_NONE) {
+            return IndexHash.HASH_NONE;
+        }
+
+        switch (kind) {
+
+            case IndexHash.HASH_EXACT :
+            case IndexHash.HASH_APPROX :
+
+                // all numeric classes are hashed consistently as exact
+                if (otherKind == IndexHash.HASH_EXACT
+                        || otherKind == IndexHash.HASH_APPROX) {
+                    return IndexHash.HASH_EXACT;
+                }
+                break;
+
+            case IndexHash.HASH_CHAR :
+                if (otherKind == IndexHash.HASH_CHAR
+                        && IndexHash.isHashable(innerType)
+                        && IndexHash.isHashable(outerType)
+                        && ((CharacterType) innerType).getCollation()
+                            .isUnicodeSimple() == ((CharacterType) outerType)
+                            .getCollation().isUnicodeSimple()) {
+                    return kind;
+                }
+                break;
+
+            case IndexHash.HASH_DATETIME :
+                if (otherKind == IndexHash.HASH_DATETIME
+                        && innerType.isTimeType() == outerType.isTimeType()
+                        && innerType.isDateTimeTypeWithZone()
+                           == outerType.isDateTimeTypeWithZone()) {
+                    return kind;
+                }
+                break;
+
+            case IndexHash.HASH_OBJECT :
+                if (innerType.typeCode == outerType.typeCode) {
+                    return kind;
+                }
+                break;
+        }
+
+        return IndexHash.HASH_NONE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a row of the inner range. Rows with a null join value are not
+     * added as they cannot match.
+     */
+    void add(Row row, Object[] values) {
+
+        if (hasNull(values)) {
+            return;
+        }
+
+        int hash = getHashCode(innerTypes, values);
+
+        if (table != null) {
+            addToTable(row, hash);
+
+            return;
+        }
+
+        if (maxMemoryRows > 0 && size >= maxMemoryRows) {
+            createTable();
+            addToTable(row, hash);
+
+            return;
+        }
+
+        if (size == rows.length) {
+            resize();
+        }
+
+        int bucket = hash & (buckets.length - 1);
+
+        hashCodes[size] = hash;
+        rows[size]      = row;
+        links[size]     = buckets[bucket];
+        buckets[bucket] = size;
+
+        size++;
+    }
+
+    /**
+     * Returns an iterator on the rows that may match the values of the
+     * outer range.
+     */
+    RowIterator getRows(Object[] values) {
+
+        if (size == 0 || hasNull(values)) {
+            return null;
+        }
+
+        int hash = getHashCode(outerTypes, values);
+
+        if (table == null) {
+            return new MemoryIterator(hash);
+        }
+
+        RowIterator it = index.findFirstRow(session, store,
+                                            new Object[]{
+                                                ValuePool.getInt(hash) }, 1,
+                                                    0, OpTypes.EQUAL, false,
+                                                    null);
+
+        return new TableIterator(it, hash);
+    }
+
+    private static boolean hasNull(Object[] values) {
+
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int getHashCode(Type[] types, Object[] values) {
+
+        int hash = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            hash = 31 * hash
+                   + IndexHash.getHashCode(hashKinds[i], types[i], values[i]);
+        }
+
+        // spread the high bits to the bucket index
+        return hash ^ (hash >>> 16);
+    }
+
+    private void resize() {
+
+        int newCapacity = rows.length * 2;
+
+        links     = (int[]) ArrayUtil.resizeArray(links, newCapacity);
+        hashCodes = (int[]) ArrayUtil.resizeArray(hashCodes, newCapacity);
+        rows      = (Row[]) ArrayUtil.resizeArray(rows, newCapacity);
+        buckets   = new int[newCapacity];
+
+        ArrayUtil.fillArray(buckets, -1);
+
+        for (int i = 0; i < size; i++) {
+            int bucket = hashCodes[i] & (newCapacity - 1);
+
+            links[i]        = buckets[bucket];
+            buckets[bucket] = i;
+        }
+    }
+
+    /**
+     * Creates the table with the columns of the range table, the row id
+     * and the hash code, then moves the rows from memory to the table.
+     */
+    private void createTable() {
+
+        Type[] rangeTypes  = rangeTable.getColumnTypes();
+        int    columnCount = rangeTable.getColumnCount();
+        Type[] columnTypes = new Type[columnCount + 2];
+
+        ArrayUtil.copyArray(rangeTypes, columnTypes, columnCount);
+
+        rowIdColumn              = columnCount;
+        hashColumn               = columnCount + 1;
+        columnTypes[rowIdColumn] = Type.SQL_BIGINT;
+        columnTypes[hashColumn]  = Type.SQL_INTEGER;
+
+        HsqlName tableName =
+            session.database.nameManager.getSubqueryTableName();
+        HashMappedList columnList = new HashMappedList();
+
+        for (int i = 0; i < columnTypes.length; i++) {
+            HsqlName name = HsqlNameManager.getAutoColumnName(i + 1);
+            ColumnSchema column = new ColumnSchema(name, columnTypes[i], true,
+                                                   false, null);
+
+            columnList.add(name.name, column);
+        }
+
+        table = new TableDerived(session.database, tableName,
+                                 TableBase.SYSTEM_SUBQUERY, columnTypes,
+                                 columnList, ValuePool.emptyIntArray);
+        index = table.createAndAddIndexStructure(session, null,
+                new int[]{ hashColumn }, null, null, false, false, false);
+        store = session.sessionData.persistentStoreCollection.getStore(table);
+
+        int count = size;
+
+        size = 0;
+
+        for (int i = 0; i < count; i++) {
+            addToTable(rows[i], hashCodes[i]);
+        }
+
+        buckets   = null;
+        links     = null;
+        hashCodes = null;
+        rows      = null;
+    }
+
+    private void addToTable(Row row, int hash) {
+
+        Object[] rowData     = row.getData();
+        Object[] data        = new Object[hashColumn + 1];
+        int      columnCount = rangeTable.getColumnCount();
+
+        ArrayUtil.copyArray(rowData, data, columnCount);
+
+        data[rowIdColumn] = ValuePool.getLong(row.getPos());
+        data[hashColumn]  = ValuePool.getInt(hash);
+
+        Row newRow = (Row) store.getNewCachedObject(session, data, false);
+
+        store.indexRow(session, newRow);
+
+        size++;
+    }
+
+    private class MemoryIterator implements RowIterator {
+
+        final int hash;
+        int       current = -1;
+        int       next;
+
+        MemoryIterator(int hash) {
+            this.hash = hash;
+            next      = buckets[hash & (buckets.length - 1)];
+        }
+
+        public boolean next() {
+
+            while (next >= 0) {
+                current = next;
+                next    = links[current];
+
+                if (hashCodes[current] == hash) {
+                    return true;
+                }
+            }
+
+            current = -1;
+
+            return false;
+        }
+
+        public Object getField(int col) {
+            return rows[current].getField(col);
+        }
+
+        public Row getCurrentRow() {
+            return rows[current];
+        }
+
+        public Object[] getCurrent() {
+            return rows[current].getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {}
+
+        public long getRowId() {
+            return rows[current].getPos();
+        }
+    }
+
+    private class TableIterator implements RowIterator {
+
+        final RowIterator it;
+        final int         hash;
+
+        TableIterator(RowIterator it, int hash) {
+            this.it   = it;
+            this.hash = hash;
+        }
+
+        public boolean next() {
+
+            if (!it.next()) {
+                return false;
+            }
+
+            Object[] data = it.getCurrent();
+
+            if (((Integer) data[hashColumn]).intValue() != hash) {
+                it.release();
+
+                return false;
+            }
+
+            return true;
+        }
+
+        public Object getField(int col) {
+            return it.getField(col);
+        }
+
+        public Row getCurrentRow() {
+            return it.getCurrentRow();
+        }
+
+        public Object[] getCurrent() {
+            return it.getCurrent();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {
+            it.release();
+        }
+
+        public long getRowId() {
+            return ((Long) it.getCurrent()[rowIdColumn]).longValue();
+        }
+    }
+}
@@ -175,6 +175,40 @@ public interface OpTypes {
         OpTypes.ROWNUM,
         OpTypes.SEQUENCE
     };
+
+    int[] parallelOpTypes = new int[] {
+        OpTypes.VALUE,
+        OpTypes.COLUMN,
+        OpTypes.DYNAMIC_PARAM,
+        OpTypes.ASTERISK,
+        OpTypes.NEGATE,
+        OpTypes.ADD,
+        OpTypes.SUBTRACT,
+        OpTypes.MULTIPLY,
+        OpTypes.DIVIDE,
+        OpTypes.CONCAT,
+        OpTypes.IS_NOT_NULL,
+        OpTypes.EQUAL,
+        OpTypes.GREATER_EQUAL,
+        OpTypes.GREATER_EQUAL_PRE,
+        OpTypes.GREATER,
+        OpTypes.SMALLER,
+        OpTypes.SMALLER_EQUAL,
+        OpTypes.NOT_EQUAL,
+        OpTypes.IS_NULL,
+        OpTypes.NOT,
+        OpTypes.AND,
+        OpTypes.OR,
+        OpTypes.COUNT,
+        OpTypes.SUM,
+        OpTypes.MIN,
+        OpTypes.MAX,
+        OpTypes.AVG,
+        OpTypes.CAST,
+        OpTypes.CASEWHEN,
+        OpTypes.ALTERNATIVE,
+        OpTypes.ORDER_BY
+    };
     //J+
     OrderedIntHashSet emptyExpressionSet   = new OrderedIntHashSet();
     OrderedIntHashSet aggregateFunctionSet = new OrderedIntHashSet(aggOpTypes);
@@ -188,4 +222,6 @@ public interface OpTypes {
         new OrderedIntHashSet(functionOpTypes);
     OrderedIntHashSet sequenceExpressionSet =
         new OrderedIntHashSet(sequenceOpTypes);
+    OrderedIntHashSet parallelExpressionSet =
+        new OrderedIntHashSet(parallelOpTypes);
 }
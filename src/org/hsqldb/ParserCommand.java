@@ -34,11 +34,13 @@ package org.hsqldb;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexStats;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.HsqlList;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.map.ValuePool;
+import org.hsqldb.persist.CachePolicy;
 import org.hsqldb.persist.HsqlDatabaseProperties;
 import org.hsqldb.persist.RowInsertInterface;
 import org.hsqldb.result.Result;
@@ -296,6 +298,10 @@ public class ParserCommand extends ParserDDL {
                 cs = compileCheckpoint();
                 break;
 
+            case Tokens.ANALYZE :
+                cs = compileAnalyze();
+                break;
+
             case Tokens.EXPLAIN : {
                 int position = getPosition();
 
@@ -344,6 +350,33 @@ public class ParserCommand extends ParserDDL {
         return cs;
     }
 
+    /**
+     * ANALYZE TABLE <name>
+     */
+    private Statement compileAnalyze() {
+
+        read();
+        readThis(Tokens.TABLE);
+
+        Table table = readTableName();
+
+        switch (table.getTableType()) {
+
+            case TableBase.MEMORY_TABLE :
+            case TableBase.CACHED_TABLE :
+            case TableBase.TEXT_TABLE :
+                break;
+
+            default :
+                throw unexpectedToken();
+        }
+
+        Object[] args = new Object[]{ table.getName() };
+
+        return new StatementCommand(StatementTypes.ANALYZE_TABLE, args,
+                                    new HsqlName[]{ table.getName() }, null);
+    }
+
     private Statement compileDeclare() {
 
         Statement      cs;
@@ -536,6 +569,16 @@ public class ParserCommand extends ParserDDL {
                 return new StatementCommand(
                     StatementTypes.SET_DATABASE_RESULT_MEMORY_ROWS, args);
             }
+            case Tokens.PARALLEL : {
+                read();
+                readThis(Tokens.DEGREE);
+
+                Integer  degree = readIntegerObject();
+                Object[] args   = new Object[]{ degree };
+
+                return new StatementCommand(
+                    StatementTypes.SET_DATABASE_PARALLEL_DEGREE, args);
+            }
             case Tokens.TABLE : {
                 read();
                 readThis(Tokens.TYPE);
@@ -974,6 +1017,47 @@ public class ParserCommand extends ParserDDL {
         }
     }
 
+    /**
+     * SET TABLE <name> INDEX { <index name> | <ordinal position> }
+     * STATISTICS <string>
+     */
+    private StatementCommand compileSetTableStatistics(Table table,
+            Object[] args) {
+
+        Index index;
+
+        if (token.tokenType == Tokens.X_VALUE) {
+            int position = readInteger();
+
+            if (position < 1 || position > table.getIndexCount()) {
+                throw Error.error(ErrorCode.X_42501,
+                                  String.valueOf(position));
+            }
+
+            index = table.getIndex(position - 1);
+        } else {
+            checkIsSimpleName();
+
+            index = table.getIndex(token.tokenString);
+
+            if (index == null) {
+                throw Error.error(ErrorCode.X_42501, token.tokenString);
+            }
+
+            read();
+        }
+        readThis(Tokens.STATISTICS);
+        checkIsQuotedString();
+
+        args[1] = index.getName();
+        args[2] = token.tokenString;
+
+        read();
+
+        return new StatementCommand(StatementTypes.SET_TABLE_STATISTICS, args,
+                                    null, new HsqlName[]{ table.getName() });
+    }
+
     StatementCommand compileSetTable() {
 
         read();
@@ -1029,6 +1113,12 @@ public class ParserCommand extends ParserDDL {
                 String value;
 
                 read();
+
+                if (token.tokenType != Tokens.X_VALUE
+                        || !token.dataType.isCharacterType()) {
+                    return compileSetTableStatistics(table, args);
+                }
+
                 checkIsValue();
 
                 value = token.tokenString;
@@ -1511,6 +1601,17 @@ public class ParserCommand extends ParserDDL {
                     }
                 }
 
+                if (readIfThis(Tokens.ROW)) {
+                    readThis(Tokens.LOCKS);
+
+                    Boolean mode = processTrueOrFalseObject();
+                    StatementCommand cs = new StatementCommand(
+                        StatementTypes.SET_DATABASE_TRANSACTION_ROW_LOCKS,
+                        new Object[]{ mode }, null, null);
+
+                    return cs;
+                }
+
                 readThis(Tokens.CONTROL);
 
                 int mode = TransactionManager.LOCKS;
@@ -1620,6 +1721,30 @@ public class ParserCommand extends ParserDDL {
                 if (readIfThis(Tokens.SIZE)) {
                     value = readIntegerObject();
                     type  = StatementTypes.SET_DATABASE_FILES_CACHE_SIZE;
+                } else if (readIfThis(Tokens.SEGMENTS)) {
+                    value = readIntegerObject();
+                    type  = StatementTypes.SET_DATABASE_FILES_CACHE_SEGMENTS;
+                } else if (readIfThis(Tokens.POLICY)) {
+                    if (readIfThis(Tokens.SLRU)) {
+                        value = ValuePool.getInt(CachePolicy.SLRU);
+                    } else {
+                        readThis(Tokens.LRU);
+
+                        value = ValuePool.getInt(CachePolicy.LRU);
+                    }
+
+                    type = StatementTypes.SET_DATABASE_FILES_CACHE_POLICY;
+                } else if (readIfThis(Tokens.FLUSH)) {
+                    value = readIntegerObject();
+                    type  = StatementTypes.SET_DATABASE_FILES_CACHE_FLUSH;
+                } else if (readIfThis(Tokens.READ)) {
+                    readThis(Tokens.AHEAD);
+
+                    value = readIntegerObject();
+                    type  = StatementTypes.SET_DATABASE_FILES_CACHE_READ_AHEAD;
+                } else if (readIfThis(Tokens.OFFHEAP)) {
+                    value = readIntegerObject();
+                    type  = StatementTypes.SET_DATABASE_FILES_CACHE_OFFHEAP;
                 } else {
                     readThis(Tokens.ROWS);
 
@@ -1713,12 +1838,31 @@ public class ParserCommand extends ParserDDL {
 
                 break;
             }
+            case Tokens.CHECKPOINT : {
+                read();
+                readThis(Tokens.FUZZY);
+
+                type = StatementTypes.SET_DATABASE_FILES_CHECKPOINT_FUZZY;
+                flag = processTrueOrFalseObject();
+
+                break;
+            }
             case Tokens.LOG : {
                 read();
 
                 if (readIfThis(Tokens.SIZE)) {
                     type  = StatementTypes.SET_DATABASE_FILES_LOG_SIZE;
                     value = readIntegerObject();
+                } else if (readIfThis(Tokens.FORMAT)) {
+                    if (readIfThis(Tokens.TEXT)) {
+                        value = Integer.valueOf(0);
+                    } else {
+                        readThis(Tokens.BINARY);
+
+                        value = Integer.valueOf(1);
+                    }
+
+                    type = StatementTypes.SET_DATABASE_FILES_LOG_FORMAT;
                 } else {
                     type = StatementTypes.SET_DATABASE_FILES_LOG;
                     flag = processTrueOrFalseObject();
@@ -2155,6 +2299,16 @@ public class ParserCommand extends ParserDDL {
                 return new StatementSession(
                     StatementTypes.SET_SESSION_RESULT_MEMORY_ROWS, args);
             }
+            case Tokens.PARALLEL : {
+                read();
+                readThis(Tokens.DEGREE);
+
+                Integer  degree = readIntegerObject();
+                Object[] args   = new Object[]{ degree };
+
+                return new StatementSession(
+                    StatementTypes.SET_SESSION_PARALLEL_DEGREE, args);
+            }
             case Tokens.FEATURE : {
                 read();
 
@@ -37,6 +37,7 @@ import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexHash;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.HsqlList;
@@ -1356,6 +1357,7 @@ public class ParserDDL extends ParserRoutine {
 
         Table    table;
         HsqlName indexHsqlName;
+        int      structure = Index.STRUCTURE_AVL;
 
         read();
 
@@ -1365,9 +1367,7 @@ public class ParserDDL extends ParserRoutine {
 
         if (database.sqlSyntaxMys) {
             if (readIfThis(Tokens.USING)) {
-                if (!readIfThis("HASH")) {
-                    readThis("BTREE");
-                }
+                structure = readIndexStructure();
             }
         }
 
@@ -1389,13 +1389,41 @@ public class ParserDDL extends ParserRoutine {
 
         int[] indexColumns = readColumnList(table, true);
 
-        if (database.sqlSyntaxMys) {
-            if (readIfThis(Tokens.USING)) {
-                if (!readIfThis("HASH")) {
-                    readThis("BTREE");
+        if (readIfThis(Tokens.USING)) {
+            structure = readIndexStructure();
+        }
+
+        if (structure == Index.STRUCTURE_BTREE) {
+            if (unique || !table.isCached()) {
+
+                // MySQL index types are only hints
+                if (!database.sqlSyntaxMys) {
+                    throw Error.error(ErrorCode.X_0A501, Tokens.T_BTREE);
+                }
+
+                structure = Index.STRUCTURE_AVL;
+            }
+        } else if (structure == Index.STRUCTURE_HASH) {
+            Type[]  colTypes = table.getColumnTypes();
+            boolean hashable = false;
+
+            for (int i = 0; i < indexColumns.length; i++) {
+                if (IndexHash.isHashable(colTypes[indexColumns[i]])) {
+                    hashable = true;
+                }
+            }
+
+            if (!hashable
+                    || table.getTableType() != TableBase.MEMORY_TABLE) {
+                if (!database.sqlSyntaxMys) {
+                    throw Error.error(ErrorCode.X_0A501, Tokens.T_HASH);
                 }
+
+                structure = Index.STRUCTURE_AVL;
             }
+        }
 
+        if (database.sqlSyntaxMys) {
             if (readIfThis(Tokens.COMMENT)) {
                 String comment = readQuotedString();
 
@@ -1406,7 +1434,7 @@ public class ParserDDL extends ParserRoutine {
         String   sql  = getLastPart();
         Object[] args = new Object[] {
             table, indexColumns, indexHsqlName, Boolean.valueOf(unique), null,
-            ifNotExists
+            ifNotExists, Integer.valueOf(structure)
         };
 
         return new StatementSchema(sql, StatementTypes.CREATE_INDEX, args,
@@ -1415,6 +1443,20 @@ public class ParserDDL extends ParserRoutine {
         });
     }
 
+    /**
+     * Reads the index type after USING.
+     */
+    private int readIndexStructure() {
+
+        if (readIfThis(Tokens.BTREE)) {
+            return Index.STRUCTURE_BTREE;
+        }
+
+        readThis(Tokens.HASH);
+
+        return Index.STRUCTURE_HASH;
+    }
+
     StatementSchema compileCreateSchema() {
 
         HsqlName schemaName       = null;
@@ -31,6 +31,11 @@
 
 package org.hsqldb;
 
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.HsqlNameManager.SimpleName;
 import org.hsqldb.ParserDQL.CompileContext;
@@ -39,6 +44,7 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.lib.ArrayListIdentity;
+import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMappedList;
 import org.hsqldb.lib.HashSet;
@@ -51,6 +57,7 @@ import org.hsqldb.lib.OrderedIntHashSet;
 import org.hsqldb.lib.Set;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.navigator.RangeIterator;
+import org.hsqldb.navigator.RowIterator;
 import org.hsqldb.navigator.RowSetNavigatorData;
 import org.hsqldb.navigator.RowSetNavigatorDataTable;
 import org.hsqldb.persist.PersistentStore;
@@ -70,6 +77,9 @@ import org.hsqldb.types.Types;
  */
 public class QuerySpecification extends QueryExpression {
 
+    // minimum row count of a table for a parallel aggregate
+    static final int parallelScanMinRows = 65536;
+
     //
     public int            resultRangePosition;
     public boolean        isDistinctSelect;
@@ -101,6 +111,7 @@ public class QuerySpecification extends QueryExpression {
     private boolean       hasRowID;
     private boolean       isSimpleCount;
     private boolean       isSingleMemoryTable;
+    private boolean       isParallelAggregate;
 
     //
     public boolean isUniqueResultRows;
@@ -539,6 +550,7 @@ public class QuerySpecification extends QueryExpression {
             rangeVariables[i].resolveRangeTableTypes(session, rangeVariables);
         }
 
+        setParallelAggregateConditions();
         setResultNullability();
 
         rangeVariableList = null;
@@ -1296,6 +1308,108 @@ public class QuerySpecification extends QueryExpression {
         //
     }
 
+    /**
+     * An aggregated query over a full scan of a single MEMORY table can be
+     * aggregated in parallel when the conditions and the columns computed
+     * for each row use only simple operations on the columns of the table
+     * and the aggregates are COUNT, SUM, AVG, MIN or MAX.
+     */
+    private void setParallelAggregateConditions() {
+
+        if (!isAggregated || isGroupingSets || isSimpleDistinct
+                || isSimpleCount || sortAndSlice.isGenerated
+                || rangeVariables.length != 1) {
+            return;
+        }
+
+        RangeVariable range = rangeVariables[0];
+
+        if (range.rangeType != RangeVariable.TABLE_RANGE
+                || range.rangeTable.getTableType() != TableBase.MEMORY_TABLE
+                || range.isLeftJoin || range.isRightJoin
+                || range.periodCondition != null
+                || range.indexDistinctCount != 0
+                || range.joinConditions.length != 1
+                || range.whereConditions.length != 1) {
+            return;
+        }
+
+        RangeVariable.RangeVariableConditions join  = range.joinConditions[0];
+        RangeVariable.RangeVariableConditions where = range.whereConditions[0];
+
+        if (join.hasIndexCondition() || where.hasIndexCondition()
+                || join.hashInner != null || join.isFalse || where.isFalse
+                || join.terminalCondition != null
+                || join.indexEndCondition != null) {
+            return;
+        }
+
+        if (!isParallelExpression(range.filterCondition)
+                || !isParallelExpression(join.nonIndexCondition)
+                || !isParallelExpression(join.excludeConditions)
+                || !isParallelExpression(where.nonIndexCondition)) {
+            return;
+        }
+
+        for (int i = 0; i < indexLimitExpressions; i++) {
+            if (i < indexStartAggregates) {
+                if (aggregateCheck[i]) {
+                    continue;
+                }
+
+                if (havingColumnCount > 0 && i == indexStartHaving) {
+                    continue;
+                }
+            }
+
+            if (!isParallelExpression(exprColumns[i])) {
+                return;
+            }
+        }
+
+        isParallelAggregate = true;
+    }
+
+    private boolean isParallelExpression(Expression e) {
+
+        if (e == null) {
+            return true;
+        }
+
+        if (!OpTypes.parallelExpressionSet.contains(e.opType)) {
+            return false;
+        }
+
+        switch (e.opType) {
+
+            case OpTypes.COLUMN :
+                if (e.getRangeVariable() != rangeVariables[0]) {
+                    return false;
+                }
+                break;
+
+            case OpTypes.COUNT :
+            case OpTypes.SUM :
+            case OpTypes.MIN :
+            case OpTypes.MAX :
+            case OpTypes.AVG :
+                if (e.isDistinctAggregate) {
+                    return false;
+                }
+                break;
+
+            default :
+        }
+
+        for (int i = 0; i < e.nodes.length; i++) {
+            if (!isParallelExpression(e.nodes[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     void checkLobUsage() {}
 
     private void resolveGroups() {
@@ -1664,6 +1778,227 @@ public class QuerySpecification extends QueryExpression {
             return result;
         }
 
+        int topRowCount = getTopRowCount(session, limits);
+
+        if (topRowCount > 0) {
+            navigator.setTopRowCount(topRowCount);
+        }
+
+        if (isParallelAggregate && skipCount == 0
+                && session.parallelDegree > 1
+                && rangeVariables[0].getTable().getRowStore(session)
+                    .elementCount() >= parallelScanMinRows) {
+            buildParallelAggregate(session, navigator);
+        } else {
+            navigator = buildRows(session, result, navigator, skipCount,
+                                  limitCount);
+        }
+
+        navigator.reset();
+
+        if (!isGroupingSets && !isAggregated && havingColumnCount == 0) {
+            return result;
+        }
+
+        session.sessionContext.setRangeIterator(navigator);
+
+        if (isGroupingSets) {
+            session.sessionContext.setGroupSet(groupSet);
+
+            Iterator   groupsIterator           = groupSet.getIterator();
+            Object[][] baseResult     = navigator.getDataTable();
+            int        baseResultSize = navigator.getSize();
+
+            navigator.clear();
+
+            if (groupSet.nullSets != 0) {
+                Object[] data = new Object[indexLimitData];
+
+                for (int i = 0; i < indexStartAggregates; i++) {
+                    data[i] = exprColumns[i].getValue(session);
+                }
+
+                navigator.add(data);
+                navigator.next();
+
+                if (isAggregated) {
+                    for (int i = 0; i < baseResultSize; i++) {
+                        Object[] row = baseResult[i];
+
+                        for (int j = indexStartAggregates;
+                                j < indexLimitExpressions; j++) {
+                            data[j] =
+                                exprColumns[j].updateAggregatingValue(session,
+                                    (SetFunction) data[j],
+                                    (SetFunction) row[j]);
+                        }
+                    }
+
+                    for (int i = indexStartAggregates;
+                            i < indexLimitExpressions; i++) {
+                        data[i] = exprColumns[i].getAggregatedValue(session,
+                                (SetFunction) data[i]);
+                    }
+
+                    for (int i = 0; i < indexStartAggregates; i++) {
+                        if (aggregateCheck[i]) {
+                            data[i] = exprColumns[i].getValue(session);
+                        }
+                    }
+                }
+
+                for (int i = 1; i < groupSet.nullSets; i++) {
+                    navigator.add(data);
+                    navigator.next();
+                }
+            }
+
+            while (groupsIterator.hasNext()) {
+                navigator.resetRowMap();
+
+                HsqlList set = (HsqlList) groupsIterator.next();
+
+                session.sessionContext.setGroup(set);
+
+                for (int i = 0; i < baseResultSize; i++) {
+                    Object[] row  = baseResult[i];
+                    Object[] data = new Object[indexLimitData];
+
+                    for (int j = indexLimitVisible; j < indexStartHaving;
+                            j++) {
+                        if (set.contains(j)) {
+                            data[j] = row[j];
+                        }
+                    }
+
+                    Object[] groupData =
+                        navigator.getGroupDataAndPosition(data);
+
+                    if (groupData == null) {
+                        navigator.add(data);    // must populate before positioning
+                        navigator.absolute(navigator.getSize() - 1);
+                    } else {
+                        data = groupData;
+                    }
+
+                    for (int j = indexStartAggregates;
+                            j < indexLimitExpressions; j++) {
+                        data[j] =
+                            exprColumns[j].updateAggregatingValue(session,
+                                (SetFunction) data[j], (SetFunction) row[j]);
+                    }
+
+                    for (int j = 0; j < indexLimitVisible; j++) {
+                        data[j] = exprColumns[j].getValue(session);
+                    }
+
+                    navigator.update(groupData, data);
+                }
+            }
+        }
+
+        navigator.reset();
+
+        if (isAggregated) {
+            if (!resultGrouped && navigator.getSize() == 0) {
+                Object[] data = new Object[exprColumns.length];
+
+                for (int i = 0; i < indexStartAggregates; i++) {
+                    if (!aggregateCheck[i]) {
+                        data[i] = exprColumns[i].getValue(session);
+                    }
+                }
+
+                navigator.add(data);
+            }
+
+            if (isGroupingSets) {
+                for (int i = 0; i < groupSet.nullSets; i++) {
+                    navigator.next();
+                }
+            }
+
+            while (navigator.next()) {
+                Object[] data = navigator.getCurrent();
+
+                for (int i = indexStartAggregates; i < indexLimitExpressions;
+                        i++) {
+                    data[i] = exprColumns[i].getAggregatedValue(session,
+                            (SetFunction) data[i]);
+                }
+
+                for (int i = 0; i < indexStartAggregates; i++) {
+                    if (aggregateCheck[i]) {
+                        data[i] = exprColumns[i].getValue(session);
+                    }
+                }
+            }
+        }
+
+        navigator.reset();
+
+        if (havingColumnCount != 0) {
+            while (navigator.next()) {
+                Object[] data = navigator.getCurrent();
+                boolean test =
+                    exprColumns[indexStartHaving].testCondition(session);
+
+                if (!test) {
+                    navigator.removeCurrent();
+                }
+            }
+
+            navigator.reset();
+        }
+
+        session.sessionContext.unsetRangeIterator(navigator);
+
+        return result;
+    }
+
+    /**
+     * Returns the number of rows that are kept while the result of a query
+     * with ORDER BY and LIMIT is built, or 0 when all the rows are kept. Only
+     * the rows up to the end of the limit can be returned after the sort.
+     */
+    private int getTopRowCount(Session session, int[] limits) {
+
+        if (limits == SortAndSlice.defaultLimits
+                || sortAndSlice.skipFullResult || !sortAndSlice.hasOrder()
+                || orderIndex == null) {
+            return 0;
+        }
+
+        if (isAggregated || isGrouped || isDistinctSelect || isGroupingSets
+                || isUpdatable) {
+            return 0;
+        }
+
+        long count = (long) limits[0] + limits[1];
+
+        if (limits[1] == Integer.MAX_VALUE || count == 0
+                || count > Integer.MAX_VALUE) {
+            return 0;
+        }
+
+        // the result is stored on disk above the memory row count
+        if (session.resultMaxMemoryRows != 0
+                && count >= session.resultMaxMemoryRows) {
+            return 0;
+        }
+
+        return (int) count;
+    }
+
+    /**
+     * Reads the rows of the ranges and adds them to the navigator, or
+     * aggregates them into the groups of the navigator.
+     */
+    private RowSetNavigatorData buildRows(Session session, Result result,
+            RowSetNavigatorData navigator, int skipCount, int limitCount) {
+
+        boolean resultGrouped = isGrouped && !isSimpleDistinct;
+
         int fullJoinIndex = 0;
         RangeIterator[] rangeIterators =
             new RangeIterator[rangeVariables.length];
@@ -1807,170 +2142,345 @@ public class QuerySpecification extends QueryExpression {
             }
         }
 
-        navigator.reset();
-
         for (int i = 0; i < rangeVariables.length; i++) {
             rangeIterators[i].reset();
         }
 
-        if (!isGroupingSets && !isAggregated && havingColumnCount == 0) {
-            return result;
+        return navigator;
+    }
+
+    /**
+     * Aggregates the rows of the table in worker threads. The index of the
+     * scan is split into consecutive ranges and each worker reads the rows
+     * of one range, tests the range conditions and aggregates the rows into
+     * its own groups. The groups of the workers are then merged into the
+     * navigator in the order of the first row of each group in the scan, so
+     * the groups and their non-aggregated values are the same as with a
+     * single thread.
+     */
+    private void buildParallelAggregate(Session session,
+                                        RowSetNavigatorData navigator) {
+
+        ParallelAggregate aggregate = new ParallelAggregate(session);
+
+        try {
+            aggregate.execute();
+            mergeParallelAggregate(session, navigator, aggregate);
+        } finally {
+            aggregate.release();
         }
+    }
 
-        session.sessionContext.setRangeIterator(navigator);
+    /**
+     * Adds the groups of the workers to the navigator, in the order of the
+     * first row of each group in the scan.
+     */
+    private void mergeParallelAggregate(Session session,
+                                        RowSetNavigatorData navigator,
+                                        ParallelAggregate aggregate) {
 
-        if (isGroupingSets) {
-            session.sessionContext.setGroupSet(groupSet);
+        int count = 0;
 
-            Iterator   groupsIterator           = groupSet.getIterator();
-            Object[][] baseResult     = navigator.getDataTable();
-            int        baseResultSize = navigator.getSize();
+        for (int i = 0; i < aggregate.workers.length; i++) {
+            count += aggregate.workers[i].navigator.getSize();
+        }
 
-            navigator.clear();
+        Object[] rows = new Object[count];
 
-            if (groupSet.nullSets != 0) {
-                Object[] data = new Object[indexLimitData];
+        count = 0;
 
-                for (int i = 0; i < indexStartAggregates; i++) {
-                    data[i] = exprColumns[i].getValue(session);
+        for (int i = 0; i < aggregate.workers.length; i++) {
+            RowSetNavigatorData workerNavigator =
+                aggregate.workers[i].navigator;
+
+            System.arraycopy(workerNavigator.getDataTable(), 0, rows, count,
+                             workerNavigator.getSize());
+
+            count += workerNavigator.getSize();
+        }
+
+        ArraySort.sort(rows, count, new Comparator<Object>() {
+
+            public int compare(Object a, Object b) {
+
+                long positionA =
+                    ((Long) ((Object[]) a)[indexLimitData]).longValue();
+                long positionB =
+                    ((Long) ((Object[]) b)[indexLimitData]).longValue();
+
+                return positionA < positionB ? -1
+                                             : positionA == positionB ? 0
+                                                                      : 1;
+            }
+        });
+
+        for (int i = 0; i < count; i++) {
+            Object[] row  = (Object[]) rows[i];
+            Object[] data = (Object[]) ArrayUtil.resizeArray(row,
+                indexLimitData);
+            Object[] groupData = navigator.getGroupData(data);
+
+            if (groupData == null) {
+                for (int j = indexStartAggregates; j < indexLimitExpressions;
+                        j++) {
+                    data[j] = row[j] == null ? null
+                                             : exprColumns[j]
+                                             .updateAggregatingValue(session,
+                                                 null, (SetFunction) row[j]);
                 }
 
                 navigator.add(data);
-                navigator.next();
+            } else {
+                for (int j = indexStartAggregates; j < indexLimitExpressions;
+                        j++) {
+                    if (row[j] != null) {
+                        groupData[j] =
+                            exprColumns[j].updateAggregatingValue(session,
+                                (SetFunction) groupData[j],
+                                (SetFunction) row[j]);
+                    }
+                }
+            }
+        }
+    }
 
-                if (isAggregated) {
-                    for (int i = 0; i < baseResultSize; i++) {
-                        Object[] row = baseResult[i];
+    /**
+     * Shared state of a parallel aggregate. The workers run in the thread
+     * pool of the database with pooled worker sessions, one for each range
+     * of the index. The first error stops the workers and is thrown after
+     * all the workers have ended.
+     */
+    private class ParallelAggregate {
 
-                        for (int j = indexStartAggregates;
-                                j < indexLimitExpressions; j++) {
-                            data[j] =
-                                exprColumns[j].updateAggregatingValue(session,
-                                    (SetFunction) data[j],
-                                    (SetFunction) row[j]);
-                        }
-                    }
+        static final int batchSize = 1024;
 
-                    for (int i = indexStartAggregates;
-                            i < indexLimitExpressions; i++) {
-                        data[i] = exprColumns[i].getAggregatedValue(session,
-                                (SetFunction) data[i]);
-                    }
+        //
+        final Session           session;
+        final RowIterator[]     ranges;
+        final AggregateWorker[] workers;
+        final CountDownLatch    done;
+        volatile HsqlException  error;
 
-                    for (int i = 0; i < indexStartAggregates; i++) {
-                        if (aggregateCheck[i]) {
-                            data[i] = exprColumns[i].getValue(session);
-                        }
-                    }
+        ParallelAggregate(Session session) {
+
+            RangeVariable   range = rangeVariables[0];
+            PersistentStore store = range.rangeTable.getRowStore(session);
+
+            this.session = session;
+            ranges = range.joinConditions[0].rangeIndex.firstRows(session,
+                    store, session.parallelDegree);
+            workers = new AggregateWorker[ranges.length];
+            done    = new CountDownLatch(ranges.length);
+        }
+
+        void execute() {
+
+            ExecutorService executor = session.database.getParallelExecutor();
+            int             started  = 0;
+
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new AggregateWorker(this, ranges[i], i);
+            }
+
+            try {
+                for (; started < workers.length; started++) {
+                    executor.execute(workers[started]);
+                }
+            } catch (RejectedExecutionException e) {
+                setError(e);
+            } finally {
+                for (int i = started; i < workers.length; i++) {
+                    ranges[i].release();
+                    done.countDown();
                 }
 
-                for (int i = 1; i < groupSet.nullSets; i++) {
-                    navigator.add(data);
-                    navigator.next();
+                await();
+            }
+
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Returns the sessions of the workers to the pool.
+         */
+        void release() {
+
+            for (int i = 0; i < workers.length; i++) {
+                if (workers[i] != null) {
+                    session.database.sessionManager.releaseWorkerSession(
+                        workers[i].session);
+
+                    workers[i] = null;
                 }
             }
+        }
 
-            while (groupsIterator.hasNext()) {
-                navigator.resetRowMap();
+        synchronized void setError(Throwable t) {
 
-                HsqlList set = (HsqlList) groupsIterator.next();
+            if (error == null) {
+                error = t instanceof HsqlException ? (HsqlException) t
+                                                   : Error.error(
+                                                   ErrorCode.GENERAL_ERROR,
+                                                   t);
+            }
+        }
 
-                session.sessionContext.setGroup(set);
+        /**
+         * Returns true when the workers should stop. Throws if the
+         * statement of the session has been aborted.
+         */
+        boolean isStopped() {
 
-                for (int i = 0; i < baseResultSize; i++) {
-                    Object[] row  = baseResult[i];
-                    Object[] data = new Object[indexLimitData];
+            if (session.abortTransaction) {
+                throw Error.error(ErrorCode.X_40000);
+            }
 
-                    for (int j = indexLimitVisible; j < indexStartHaving;
-                            j++) {
-                        if (set.contains(j)) {
-                            data[j] = row[j];
-                        }
-                    }
+            if (session.abortAction) {
+                throw Error.error(ErrorCode.X_40502);
+            }
 
-                    Object[] groupData =
-                        navigator.getGroupDataAndPosition(data);
+            return error != null;
+        }
 
-                    if (groupData == null) {
-                        navigator.add(data);    // must populate before positioning
-                        navigator.absolute(navigator.getSize() - 1);
-                    } else {
-                        data = groupData;
-                    }
+        private void await() {
 
-                    for (int j = indexStartAggregates;
-                            j < indexLimitExpressions; j++) {
-                        data[j] =
-                            exprColumns[j].updateAggregatingValue(session,
-                                (SetFunction) data[j], (SetFunction) row[j]);
-                    }
+            boolean interrupted = false;
 
-                    for (int j = 0; j < indexLimitVisible; j++) {
-                        data[j] = exprColumns[j].getValue(session);
-                    }
+            while (true) {
+                try {
+                    done.await();
 
-                    navigator.update(groupData, data);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
                 }
             }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
+    }
 
-        navigator.reset();
+    /**
+     * Reads the rows of one range of the index in batches and aggregates
+     * them with a worker session, its own range iterator and navigator. The
+     * rows are read with the visibility of the session that executes the
+     * statement, which waits for the workers. The values of the dynamic
+     * parameters and the time zone are also those of that session. The
+     * position in the scan of the first row of each group is kept after the
+     * data of the group. The number of the range is in the high bits of the
+     * position.
+     */
+    private class AggregateWorker implements Runnable {
 
-        if (isAggregated) {
-            if (!resultGrouped && navigator.getSize() == 0) {
-                Object[] data = new Object[exprColumns.length];
+        final ParallelAggregate                aggregate;
+        final RowIterator                      rows;
+        final long                             startPosition;
+        final Session                          session;
+        final RangeVariable.RangeIteratorBatch iterator;
+        final RowSetNavigatorData              navigator;
 
-                for (int i = 0; i < indexStartAggregates; i++) {
-                    if (!aggregateCheck[i]) {
-                        data[i] = exprColumns[i].getValue(session);
-                    }
+        AggregateWorker(ParallelAggregate aggregate, RowIterator rows,
+                        int range) {
+
+            Session parent = aggregate.session;
+
+            this.aggregate     = aggregate;
+            this.rows          = rows;
+            this.startPosition = (long) range << 40;
+            session = parent.database.sessionManager.getWorkerSession(parent);
+            iterator = new RangeVariable.RangeIteratorBatch(session,
+                    rangeVariables[0]);
+            navigator = new RowSetNavigatorData(session,
+                                                QuerySpecification.this);
+
+            session.sessionContext.setRangeIterator(iterator);
+        }
+
+        public void run() {
+
+            try {
+                try {
+                    scan();
+                } catch (Throwable t) {
+                    aggregate.setError(t);
+                } finally {
+                    rows.release();
                 }
 
-                navigator.add(data);
+                iterator.reset();
+                session.sessionContext.unsetRangeIterator(iterator);
+            } finally {
+                aggregate.done.countDown();
             }
+        }
 
-            if (isGroupingSets) {
-                for (int i = 0; i < groupSet.nullSets; i++) {
-                    navigator.next();
+        private void scan() {
+
+            Row[] batch    = new Row[ParallelAggregate.batchSize];
+            long  position = startPosition;
+
+            while (true) {
+                int count = 0;
+
+                while (count < batch.length && rows.next()) {
+                    batch[count++] = rows.getCurrentRow();
+                }
+
+                if (count == 0 || aggregate.isStopped()) {
+                    break;
                 }
+
+                aggregateRows(batch, count, position);
+
+                position += count;
             }
+        }
 
-            while (navigator.next()) {
-                Object[] data = navigator.getCurrent();
+        private void aggregateRows(Row[] batch, int count, long position) {
 
-                for (int i = indexStartAggregates; i < indexLimitExpressions;
-                        i++) {
-                    data[i] = exprColumns[i].getAggregatedValue(session,
-                            (SetFunction) data[i]);
-                }
+            iterator.setRows(batch, count);
+
+            while (iterator.next()) {
+                session.sessionData.startRowProcessing();
+
+                Object[] data = new Object[indexLimitData + 1];
 
                 for (int i = 0; i < indexStartAggregates; i++) {
                     if (aggregateCheck[i]) {
-                        data[i] = exprColumns[i].getValue(session);
+                        continue;
+                    }
+
+                    if (havingColumnCount > 0 && i == indexStartHaving) {
+                        continue;
                     }
+
+                    data[i] = exprColumns[i].getValue(session);
                 }
-            }
-        }
 
-        navigator.reset();
+                Object[] groupData = navigator.getGroupData(data);
 
-        if (havingColumnCount != 0) {
-            while (navigator.next()) {
-                Object[] data = navigator.getCurrent();
-                boolean test =
-                    exprColumns[indexStartHaving].testCondition(session);
+                if (groupData == null) {
+                    data[indexLimitData] =
+                        Long.valueOf(position + iterator.getRowIndex());
+                } else {
+                    data = groupData;
+                }
 
-                if (!test) {
-                    navigator.removeCurrent();
+                for (int i = indexStartAggregates; i < indexLimitExpressions;
+                        i++) {
+                    data[i] = exprColumns[i].updateAggregatingValue(session,
+                            (SetFunction) data[i]);
                 }
-            }
 
-            navigator.reset();
+                if (groupData == null) {
+                    navigator.add(data);
+                }
+            }
         }
-
-        session.sessionContext.unsetRangeIterator(navigator);
-
-        return result;
     }
 
     void setReferenceableColumns() {
@@ -37,6 +37,7 @@ import org.hsqldb.RangeGroup.RangeGroupSimple;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVL;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMap;
 import org.hsqldb.lib.HashMappedList;
@@ -1071,7 +1072,14 @@ public class RangeVariable {
         sb.append(b).append("cardinality=");
         sb.append(rangeTable.getRowStore(session).elementCount()).append("\n");
 
-        boolean fullScan = !conditions[0].hasIndexCondition();
+        String access = conditions[0].hasIndexCondition() ? "INDEX PRED"
+                                                          : "FULL SCAN";
+
+        if (conditions[0].hashInner != null) {
+            access = "HASH JOIN";
+        } else if (conditions[0].isMergeJoin) {
+            access = "MERGE JOIN";
+        }
 
         sb.append(b);
 
@@ -1085,8 +1093,7 @@ public class RangeVariable {
             }
         }
 
-        sb.append("access=").append(fullScan ? "FULL SCAN"
-                                             : "INDEX PRED").append("\n");
+        sb.append("access=").append(access).append("\n");
 
         for (int i = 0; i < conditions.length; i++) {
             if (i > 0) {
@@ -1253,6 +1260,12 @@ public class RangeVariable {
         //
         Object[] currentJoinData = null;
 
+        //
+        HashJoinTable hashTable;
+
+        //
+        IndexAVL.MergeJoinCursor mergeCursor;
+
         RangeIteratorMain() {
             super();
         }
@@ -1351,7 +1364,9 @@ public class RangeVariable {
 
             rangeVar.rangeTable.materialiseCorrelated(session);
 
-            if (conditions[condIndex].indexCond == null) {
+            if (conditions[condIndex].hashInner != null) {
+                getHashRows();
+            } else if (conditions[condIndex].indexCond == null) {
                 if (conditions[condIndex].reversed) {
                     it = conditions[condIndex].rangeIndex.lastRow(session,
                             store, rangeVar.indexDistinctCount, null);
@@ -1368,6 +1383,62 @@ public class RangeVariable {
             }
         }
 
+        /**
+         * Builds the hash table from all the rows of the range on first
+         * use, then sets the iterator to the rows that match the current
+         * values of the outer ranges.
+         */
+        private void getHashRows() {
+
+            RangeVariableConditions current = conditions[condIndex];
+
+            if (hashTable == null) {
+                buildHashTable(current);
+            }
+
+            Object[] values = new Object[current.hashOuter.length];
+
+            for (int i = 0; i < values.length; i++) {
+                values[i] = current.hashOuter[i].getValue(session);
+            }
+
+            RowIterator rows = hashTable.getRows(values);
+
+            it = rows == null ? current.rangeIndex.emptyIterator()
+                              : rows;
+        }
+
+        private void buildHashTable(RangeVariableConditions current) {
+
+            int      count      = current.hashInner.length;
+            Type[]   innerTypes = new Type[count];
+            Type[]   outerTypes = new Type[count];
+            Object[] values     = new Object[count];
+
+            for (int i = 0; i < count; i++) {
+                innerTypes[i] = current.hashInner[i].getDataType();
+                outerTypes[i] = current.hashOuter[i].getDataType();
+            }
+
+            hashTable = new HashJoinTable(session, rangeVar.rangeTable,
+                                          innerTypes, outerTypes);
+
+            // the inner expressions are evaluated on the current row of it
+            it = current.rangeIndex.firstRow(session, store, null, 0, null);
+
+            while (it.next()) {
+                for (int i = 0; i < count; i++) {
+                    values[i] = current.hashInner[i].getValue(session);
+                }
+
+                hashTable.add(it.getCurrentRow(), values);
+            }
+
+            it.release();
+
+            it = emptyIterator;
+        }
+
         private void getFirstRow() {
 
             if (currentJoinData == null
@@ -1468,6 +1539,22 @@ public class RangeVariable {
                 currentJoinData[i] = value;
             }
 
+            if (conditions[condIndex].isMergeJoin) {
+                if (mergeCursor == null) {
+                    mergeCursor =
+                        ((IndexAVL) conditions[condIndex].rangeIndex)
+                            .getMergeJoinCursor(
+                                conditions[condIndex].indexedColumnCount);
+                }
+
+                if (mergeCursor != null) {
+                    it = mergeCursor.findFirstRow(session, store,
+                                                  currentJoinData);
+
+                    return;
+                }
+            }
+
             it = conditions[condIndex].rangeIndex.findFirstRow(session, store,
                     currentJoinData, conditions[condIndex].indexedColumnCount,
                     rangeVar.indexDistinctCount, opType,
@@ -1479,7 +1566,7 @@ public class RangeVariable {
          *
          * @return true if a next value is available upon exit
          */
-        private boolean findNext() {
+        boolean findNext() {
 
             boolean result = false;
 
@@ -1681,6 +1768,74 @@ public class RangeVariable {
         }
     }
 
+    /**
+     * Iterator over batches of rows read from a full scan of the range by
+     * another session. The range conditions are tested on each row. Used
+     * by the worker sessions of a parallel aggregate scan.
+     */
+    public static class RangeIteratorBatch extends RangeIteratorMain {
+
+        final RowArrayIterator rowIterator = new RowArrayIterator();
+
+        RangeIteratorBatch(Session session, RangeVariable rangeVar) {
+            super(session, rangeVar);
+        }
+
+        public void setRows(Row[] rows, int count) {
+
+            rowIterator.rows    = rows;
+            rowIterator.count   = count;
+            rowIterator.current = -1;
+            it                  = rowIterator;
+            isBeforeFirst       = false;
+        }
+
+        public boolean next() {
+            return findNext();
+        }
+
+        public int getRowIndex() {
+            return rowIterator.current;
+        }
+
+        public void reset() {
+
+            it            = emptyIterator;
+            isBeforeFirst = true;
+        }
+    }
+
+    static final class RowArrayIterator implements RowIterator {
+
+        Row[] rows;
+        int   count;
+        int   current;
+
+        public Object getField(int col) {
+            return rows[current].getField(col);
+        }
+
+        public boolean next() {
+            return ++current < count;
+        }
+
+        public Row getCurrentRow() {
+            return rows[current];
+        }
+
+        public Object[] getCurrent() {
+            return rows[current].getData();
+        }
+
+        public void removeCurrent() {}
+
+        public void release() {}
+
+        public long getRowId() {
+            return rows[current].getPos();
+        }
+    }
+
     public static class RangeIteratorJoined extends RangeIteratorBase {
 
         RangeIteratorMain[] rangeIterators;
@@ -1881,6 +2036,13 @@ public class RangeVariable {
         boolean             reversed;
         boolean             hasIndex;
 
+        // hash join equality conditions, inner and outer sides
+        Expression[] hashInner;
+        Expression[] hashOuter;
+
+        // merge join with the rows of the previous range in index order
+        boolean isMergeJoin;
+
         RangeVariableConditions(RangeVariable rangeVar, boolean isJoin) {
             this.rangeVar = rangeVar;
             this.isJoin   = isJoin;
@@ -2185,6 +2347,17 @@ public class RangeVariable {
 
             sb.append("index=").append(rangeIndex.getName().name).append("\n");
 
+            if (hashInner != null) {
+                sb.append(b).append("hash conditions=[");
+
+                for (int j = 0; j < hashInner.length; j++) {
+                    sb.append(hashInner[j].describe(session, blanks));
+                    sb.append(hashOuter[j].describe(session, blanks));
+                }
+
+                sb.append("]\n");
+            }
+
             if (hasIndexCondition()) {
                 if (indexedColumnCount > 0) {
                     sb.append(b).append("start conditions=[");
@@ -2264,6 +2437,15 @@ public class RangeVariable {
                     terminalCondition.replaceColumnReferences(session, range,
                         list);
             }
+
+            if (hashInner != null) {
+                for (int i = 0; i < hashInner.length; i++) {
+                    hashInner[i] = hashInner[i].replaceColumnReferences(session,
+                            range, list);
+                    hashOuter[i] = hashOuter[i].replaceColumnReferences(session,
+                            range, list);
+                }
+            }
         }
 
         private void replaceExpressions(OrderedHashSet expressions,
@@ -2310,6 +2492,15 @@ public class RangeVariable {
                     terminalCondition.replaceExpressions(expressions,
                         resultRangePosition);
             }
+
+            if (hashInner != null) {
+                for (int i = 0; i < hashInner.length; i++) {
+                    hashInner[i] = hashInner[i].replaceExpressions(expressions,
+                            resultRangePosition);
+                    hashOuter[i] = hashOuter[i].replaceExpressions(expressions,
+                            resultRangePosition);
+                }
+            }
         }
     }
 }
@@ -37,6 +37,8 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.Index.IndexUse;
+import org.hsqldb.index.IndexHash;
+import org.hsqldb.index.IndexStatistics;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMap;
 import org.hsqldb.lib.HsqlArrayList;
@@ -47,6 +49,7 @@ import org.hsqldb.lib.MultiValueHashMap;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.lib.OrderedIntHashSet;
 import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
 
 /**
  * Determines how JOIN and WHERE expressions are used in query
@@ -268,6 +271,9 @@ public class RangeVariableResolver {
         if (expandInExpression && inExpressionCount != 0) {
             setInConditionsAsTables();
         }
+
+        setHashJoinConditions();
+        setMergeJoinConditions();
     }
 
     /**
@@ -1311,6 +1317,20 @@ public class RangeVariableResolver {
                         store.searchCost(session, indexes[i].index,
                                          indexes[i].columnCount,
                                          OpTypes.EQUAL);
+                    double estimate = estimateRows(conditions, exprList,
+                                                   indexes[i].index, true);
+
+                    // use the estimate for the value of the first column
+                    if (estimate >= 0) {
+                        IndexStatistics statistics =
+                            indexes[i].index.getStatistics();
+                        long rowCount = store.elementCount();
+
+                        currentCost = estimate
+                                      * statistics.getRowsPerKey(
+                                          indexes[i].columnCount, rowCount)
+                                      / statistics.getRowsPerKey(1, rowCount);
+                    }
 
                     if (currentCost < cost) {
                         cost  = currentCost;
@@ -1399,6 +1419,31 @@ public class RangeVariableResolver {
             index = sortAndSlice.primaryTableIndex;
         }
 
+        if (index == null) {
+            double cost = Double.MAX_VALUE;
+
+            it = colIndexSetOther.keySet().iterator();
+
+            while (it.hasNext()) {
+                int colIndex = it.nextInt();
+                Index currentIndex =
+                    conditions.rangeVar.rangeTable.getIndexForColumn(session,
+                        colIndex);
+
+                if (currentIndex == null) {
+                    continue;
+                }
+
+                double estimate = estimateRows(conditions, exprList,
+                                               currentIndex, false);
+
+                if (estimate >= 0 && estimate < cost) {
+                    index = currentIndex;
+                    cost  = estimate;
+                }
+            }
+        }
+
         if (index == null) {
             it = colIndexSetOther.keySet().iterator();
 
@@ -1554,6 +1599,339 @@ public class RangeVariableResolver {
         }
     }
 
+    /**
+     * Uses a hash join for each inner range of a query that has no index
+     * condition but has equality conditions with earlier ranges in its
+     * join condition. The equality conditions remain in the join condition
+     * and are checked on each row found in the hash table.
+     */
+    void setHashJoinConditions() {
+
+        if (select == null) {
+            return;
+        }
+
+        HsqlArrayList list  = new HsqlArrayList();
+        HsqlArrayList inner = new HsqlArrayList();
+        HsqlArrayList outer = new HsqlArrayList();
+
+        for (int i = 1; i < rangeVariables.length; i++) {
+            RangeVariable range = rangeVariables[i];
+
+            if (range.isRightJoin || range.isLateral
+                    || range.joinConditions.length != 1
+                    || range.whereConditions.length != 1) {
+                continue;
+            }
+
+            RangeVariableConditions conditions = range.joinConditions[0];
+
+            if (conditions.hasIndexCondition()
+                    || range.whereConditions[0].hasIndexCondition()
+                    || conditions.isFalse
+                    || conditions.nonIndexCondition == null) {
+                continue;
+            }
+
+            list.clear();
+            inner.clear();
+            outer.clear();
+            collectAndConditions(conditions.nonIndexCondition, list);
+
+            for (int j = 0; j < list.size(); j++) {
+                Expression e = (Expression) list.get(j);
+
+                if (e.getType() != OpTypes.EQUAL
+                        || e.getSubType() == OpTypes.ANY_QUANTIFIED
+                        || e.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                    continue;
+                }
+
+                Expression left  = e.getLeftNode();
+                Expression right = e.getRightNode();
+
+                if (isHashJoinKey(left, right, i)) {
+                    inner.add(left);
+                    outer.add(right);
+                } else if (isHashJoinKey(right, left, i)) {
+                    inner.add(right);
+                    outer.add(left);
+                }
+            }
+
+            if (inner.isEmpty()) {
+                continue;
+            }
+
+            conditions.hashInner = new Expression[inner.size()];
+            conditions.hashOuter = new Expression[outer.size()];
+
+            inner.toArray(conditions.hashInner);
+            outer.toArray(conditions.hashOuter);
+        }
+    }
+
+    /**
+     * Uses a merge join for each inner range of a query with equality index
+     * conditions on the columns of the previous range, when the previous
+     * range is read in the order of an index on the same columns. For each
+     * outer row, the inner index is then searched forward from the rows of
+     * the previous outer row. This is used when the outer rows are dense
+     * enough for the search to pass fewer index nodes than a lookup from the
+     * root of the tree.
+     */
+    void setMergeJoinConditions() {
+
+        if (select == null) {
+            return;
+        }
+
+        for (int i = 1; i < rangeVariables.length; i++) {
+            RangeVariable range = rangeVariables[i];
+            RangeVariable outer = rangeVariables[i - 1];
+
+            if (range.isRightJoin || range.isLateral
+                    || range.joinConditions.length != 1
+                    || range.whereConditions.length != 1
+                    || outer.joinConditions.length != 1
+                    || outer.whereConditions.length != 1) {
+                continue;
+            }
+
+            switch (range.rangeTable.getTableType()) {
+
+                case TableBase.MEMORY_TABLE :
+                case TableBase.CACHED_TABLE :
+                case TableBase.TEXT_TABLE :
+                    break;
+
+                default :
+                    continue;
+            }
+
+            RangeVariableConditions conditions = range.joinConditions[0];
+
+            if (range.whereConditions[0].hasIndexCondition()) {
+                conditions = range.whereConditions[0];
+            }
+
+            RangeVariableConditions outerConditions = outer.joinConditions[0];
+
+            if (outer.whereConditions[0].hasIndexCondition()) {
+                outerConditions = outer.whereConditions[0];
+            }
+
+            if (!conditions.hasIndexCondition() || conditions.reversed
+                    || conditions.isFalse || conditions.hashInner != null
+                    || range.indexDistinctCount != 0
+                    || conditions.rangeIndex.getStructure()
+                       != Index.STRUCTURE_AVL) {
+                continue;
+            }
+
+            if (outerConditions.reversed || outerConditions.hashInner != null
+                    || outerConditions.rangeIndex == null) {
+                continue;
+            }
+
+            int[] outerColumns = outerConditions.rangeIndex.getColumns();
+            int   count        = conditions.indexedColumnCount;
+
+            if (outerColumns.length < count) {
+                continue;
+            }
+
+            boolean isOrdered = true;
+
+            for (int j = 0; j < count; j++) {
+                Expression e = conditions.indexCond[j];
+
+                if (conditions.opTypes[j] != OpTypes.EQUAL || e == null
+                        || e.getRightNode().getType() != OpTypes.COLUMN
+                        || e.getRightNode().getRangeVariable() != outer
+                        || e.getRightNode().getColumnIndex()
+                           != outerColumns[j]) {
+                    isOrdered = false;
+
+                    break;
+                }
+            }
+
+            if (!isOrdered) {
+                continue;
+            }
+
+            long innerCount =
+                range.rangeTable.getRowStore(session).elementCount();
+            long outerCount =
+                outer.rangeTable.getRowStore(session).elementCount();
+            int depth = 64 - Long.numberOfLeadingZeros(innerCount);
+
+            if (innerCount > outerCount * depth) {
+                continue;
+            }
+
+            conditions.isMergeJoin = true;
+        }
+    }
+
+    /**
+     * Returns true if the inner expression references only the range at the
+     * position, the outer expression references only earlier ranges, and
+     * equal values of the two expressions have the same hash code.
+     */
+    private boolean isHashJoinKey(Expression inner, Expression outer,
+                                  int position) {
+
+        tempSet.clear();
+        inner.collectRangeVariables(rangeVariables, tempSet);
+
+        if (tempSet.size() != 1 || tempSet.get(0) != rangeVariables[position]) {
+            return false;
+        }
+
+        tempSet.clear();
+        outer.collectRangeVariables(rangeVariables, tempSet);
+
+        for (int i = 0; i < tempSet.size(); i++) {
+            if (ArrayUtil.find(rangeVariables, tempSet.get(i)) >= position) {
+                return false;
+            }
+        }
+
+        if (inner.getDataType() == null || outer.getDataType() == null) {
+            return false;
+        }
+
+        return HashJoinTable.getHashKind(inner.getDataType(),
+                                         outer.getDataType())
+               != IndexHash.HASH_NONE;
+    }
+
+    private static void collectAndConditions(Expression e, HsqlList list) {
+
+        if (e.getType() == OpTypes.AND) {
+            collectAndConditions(e.getLeftNode(), list);
+            collectAndConditions(e.getRightNode(), list);
+        } else {
+            list.add(e);
+        }
+    }
+
+    /**
+     * Returns the row count estimated from the statistics of the index for
+     * the conditions with constant values on the first column of the index,
+     * or -1 if there is no estimate. The EQUAL or IS NULL condition is used
+     * if equal is true, otherwise the range conditions are used.
+     */
+    private double estimateRows(RangeVariableConditions conditions,
+                                HsqlList exprList, Index index,
+                                boolean equal) {
+
+        IndexStatistics statistics = index.getStatistics();
+
+        if (statistics == null) {
+            return -1;
+        }
+
+        int      colIndex = index.getColumns()[0];
+        Type     colType  = index.getColumnTypes()[0];
+        int[]    opTypes  = new int[exprList.size()];
+        Object[] values   = new Object[exprList.size()];
+        int      count    = 0;
+
+        for (int j = 0; j < exprList.size(); j++) {
+            Expression e = (Expression) exprList.get(j);
+
+            if (e == null) {
+                continue;
+            }
+
+            int        opType = e.getType();
+            Expression left   = e.getLeftNode();
+            Expression right  = e.getRightNode();
+            Object     value  = null;
+
+            switch (opType) {
+
+                case OpTypes.IS_NULL :
+                    if (!equal) {
+                        continue;
+                    }
+                    break;
+
+                case OpTypes.NOT :
+                    if (equal || left.getType() != OpTypes.IS_NULL) {
+                        continue;
+                    }
+
+                    left = left.getLeftNode();
+                    break;
+
+                case OpTypes.EQUAL :
+                    if (!equal || e.getSubType() == OpTypes.ANY_QUANTIFIED
+                            || e.getSubType() == OpTypes.ALL_QUANTIFIED) {
+                        continue;
+                    }
+                    break;
+
+                case OpTypes.SMALLER :
+                case OpTypes.SMALLER_EQUAL :
+                case OpTypes.GREATER :
+                case OpTypes.GREATER_EQUAL :
+                case OpTypes.GREATER_EQUAL_PRE :
+                    if (equal) {
+                        continue;
+                    }
+                    break;
+
+                default :
+                    continue;
+            }
+
+            if (left.getType() != OpTypes.COLUMN
+                    || left.getRangeVariable() != conditions.rangeVar
+                    || left.getColumnIndex() != colIndex) {
+                continue;
+            }
+
+            if (opType != OpTypes.IS_NULL && opType != OpTypes.NOT) {
+                if (right == null || right.getType() != OpTypes.VALUE) {
+                    continue;
+                }
+
+                try {
+                    value = colType.convertToType(session,
+                                                  right.getValue(session),
+                                                  right.getDataType());
+                } catch (HsqlException ex) {
+                    continue;
+                }
+            }
+
+            opTypes[count] = opType;
+            values[count]  = value;
+
+            count++;
+
+            if (equal) {
+                break;
+            }
+        }
+
+        if (count == 0) {
+            return -1;
+        }
+
+        opTypes = (int[]) ArrayUtil.resizeArray(opTypes, count);
+        values  = (Object[]) ArrayUtil.resizeArray(values, count);
+
+        long rowCount =
+            conditions.rangeVar.rangeTable.getRowStore(session).elementCount();
+
+        return statistics.estimateRows(session, opTypes, values, rowCount);
+    }
+
     private double searchCost(Session session, Table table, Index index,
                               int count, int opType) {
 
@@ -74,6 +74,7 @@ import java.io.IOException;
 
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.index.NodeAVLDisk;
 import org.hsqldb.lib.LongLookup;
@@ -150,15 +151,22 @@ public class RowAVLDisk extends RowAVL {
         position    = in.getFilePosition();
         storageSize = in.getSize();
 
-        int indexcount = store.getAccessorKeys().length;
+        Index[] keys = store.getAccessorKeys();
 
         nPrimaryNode = new NodeAVLDisk(this, in, 0);
 
         NodeAVL n = nPrimaryNode;
 
-        for (int i = 1; i < indexcount; i++) {
-            n.nNext = new NodeAVLDisk(this, in, i);
-            n       = n.nNext;
+        for (int i = 1; i < keys.length; i++) {
+
+            // B+tree indexes have no node in the row
+            if (keys[i].getStructure() == Index.STRUCTURE_BTREE) {
+                n.nNext = new NodeAVL(this);
+            } else {
+                n.nNext = new NodeAVLDisk(this, in, i);
+            }
+
+            n = n.nNext;
         }
 
         rowData    = in.readData(table.getColumnTypes());
@@ -288,15 +296,20 @@ public class RowAVLDisk extends RowAVL {
 
     public void setNewNodes(PersistentStore store) {
 
-        int indexcount = store.getAccessorKeys().length;
+        Index[] keys = store.getAccessorKeys();
 
         nPrimaryNode = new NodeAVLDisk(this, 0);
 
         NodeAVL n = nPrimaryNode;
 
-        for (int i = 1; i < indexcount; i++) {
-            n.nNext = new NodeAVLDisk(this, i);
-            n       = n.nNext;
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i].getStructure() == Index.STRUCTURE_BTREE) {
+                n.nNext = new NodeAVL(this);
+            } else {
+                n.nNext = new NodeAVLDisk(this, i);
+            }
+
+            n = n.nNext;
         }
     }
 
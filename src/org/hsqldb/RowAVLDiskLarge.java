@@ -33,6 +33,7 @@ package org.hsqldb;
 
 import java.io.IOException;
 
+import org.hsqldb.index.Index;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.index.NodeAVLDiskLarge;
 import org.hsqldb.persist.PersistentStore;
@@ -72,15 +73,22 @@ public class RowAVLDiskLarge extends RowAVLDisk {
         position    = in.getFilePosition();
         storageSize = in.getSize();
 
-        int indexcount = store.getAccessorKeys().length;
+        Index[] keys = store.getAccessorKeys();
 
         nPrimaryNode = new NodeAVLDiskLarge(this, in, 0);
 
         NodeAVL n = nPrimaryNode;
 
-        for (int i = 1; i < indexcount; i++) {
-            n.nNext = new NodeAVLDiskLarge(this, in, i);
-            n       = n.nNext;
+        for (int i = 1; i < keys.length; i++) {
+
+            // B+tree indexes have no node in the row
+            if (keys[i].getStructure() == Index.STRUCTURE_BTREE) {
+                n.nNext = new NodeAVL(this);
+            } else {
+                n.nNext = new NodeAVLDiskLarge(this, in, i);
+            }
+
+            n = n.nNext;
         }
 
         rowData = in.readData(table.getColumnTypes());
@@ -88,15 +96,20 @@ public class RowAVLDiskLarge extends RowAVLDisk {
 
     public void setNewNodes(PersistentStore store) {
 
-        int indexcount = store.getAccessorKeys().length;
+        Index[] keys = store.getAccessorKeys();
 
         nPrimaryNode = new NodeAVLDiskLarge(this, 0);
 
         NodeAVL n = nPrimaryNode;
 
-        for (int i = 1; i < indexcount; i++) {
-            n.nNext = new NodeAVLDiskLarge(this, i);
-            n       = n.nNext;
+        for (int i = 1; i < keys.length; i++) {
+            if (keys[i].getStructure() == Index.STRUCTURE_BTREE) {
+                n.nNext = new NodeAVL(this);
+            } else {
+                n.nNext = new NodeAVLDiskLarge(this, i);
+            }
+
+            n = n.nNext;
         }
     }
 }
@@ -2640,6 +2640,8 @@ public class SchemaManager {
                         list.add(ddl);
                     }
                 }
+
+                list.addAll(t.getSQLForStatistics());
             }
 
             String[] array = new String[list.size()];
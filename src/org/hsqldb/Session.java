@@ -64,6 +64,7 @@ import org.hsqldb.result.ResultLob;
 import org.hsqldb.result.ResultProperties;
 import org.hsqldb.rights.Grantee;
 import org.hsqldb.rights.User;
+import org.hsqldb.scriptio.ScriptWriterBase;
 import org.hsqldb.types.BlobDataID;
 import org.hsqldb.types.ClobDataID;
 import org.hsqldb.types.TimeData;
@@ -114,6 +115,10 @@ public class Session implements SessionInterface {
     public OrderedHashSet   waitingSessions;
     OrderedHashSet          tempSet;
     OrderedHashSet          actionSet;
+    Table                   rowLockTable;
+    Object[]                rowLockKeys;
+    RowSetNavigator         batchNavigator;
+    HsqlArrayList           rowLockList;
     public CountUpDownLatch latch = new CountUpDownLatch();
     TimeoutManager          timeoutManager;
 
@@ -139,12 +144,17 @@ public class Session implements SessionInterface {
     public HsqlName currentSchema;
     public HsqlName loggedSchema;
 
+    // group commit
+    public ScriptWriterBase logSyncWriter;
+    public long             logSyncPosition;
+
     // query processing
     ParserCommand         parser;
     boolean               isProcessingScript;
     boolean               isProcessingLog;
     public SessionContext sessionContext;
     int                   resultMaxMemoryRows;
+    int                   parallelDegree;
 
     //
     public SessionData sessionData;
@@ -179,6 +189,7 @@ public class Session implements SessionInterface {
         waitingSessions             = new OrderedHashSet();
         tempSet                     = new OrderedHashSet();
         actionSet                   = new OrderedHashSet();
+        rowLockList                 = new HsqlArrayList();
         isolationLevelDefault       = database.defaultIsolationLevel;
         ignoreCase                  = database.sqlIgnoreCase;
         isolationLevel              = isolationLevelDefault;
@@ -197,6 +208,8 @@ public class Session implements SessionInterface {
         setResultMemoryRowCount(database.getResultMaxMemoryRows());
         resetSchema();
 
+        parallelDegree = database.getParallelDegree();
+
         sessionData           = new SessionData(database, this);
         statementManager      = new StatementManager(database);
         timeoutManager        = new TimeoutManager();
@@ -255,6 +268,39 @@ public class Session implements SessionInterface {
         database = null;
     }
 
+    /**
+     * Closes a Session of an internal worker thread. The Session has no
+     * transaction and is not registered with the SessionManager.
+     */
+    synchronized void closeWorker() {
+
+        if (isClosed) {
+            return;
+        }
+
+        sessionData.closeAllNavigators();
+        sessionData.persistentStoreCollection.release();
+        statementManager.reset();
+
+        isClosed      = true;
+        user          = null;
+        intConnection = null;
+        database      = null;
+    }
+
+    /**
+     * Clears the state left by a statement in a Session of a worker thread
+     * before the Session is reused.
+     */
+    void resetWorker() {
+
+        sessionContext.dynamicArguments = ValuePool.emptyObjectArray;
+
+        ArrayUtil.fillArray(sessionContext.rangeIterators, null);
+        sessionData.closeAllNavigators();
+        sessionData.persistentStoreCollection.clearAllTables();
+    }
+
     /**
      * Retrieves whether this Session is closed.
      *
@@ -595,6 +641,8 @@ public class Session implements SessionInterface {
 
                 throw Error.error(ErrorCode.X_40001);
             }
+
+            database.logger.syncCommit(this);
         } else {
             logSequences();
         }
@@ -690,7 +738,8 @@ public class Session implements SessionInterface {
 
         setResultMemoryRowCount(database.getResultMaxMemoryRows());
 
-        user = sessionUser;
+        parallelDegree = database.getParallelDegree();
+        user           = sessionUser;
 
         resetSchema();
         setZoneSeconds(sessionTimeZoneSeconds);
@@ -1348,6 +1397,9 @@ public class Session implements SessionInterface {
 
         timeoutManager.startTimeout(timeout);
 
+        // row lock keys are evaluated in beginAction
+        sessionContext.setDynamicArguments(pvals);
+
         repeatLoop:
         while (true) {
             actionIndex = rowActionList.size();
@@ -1515,6 +1567,11 @@ public class Session implements SessionInterface {
 
         Result error = null;
 
+        if (canExecuteBatchAction(cs)) {
+            return executeCompiledBatchAction(cs, nav, cmd.queryTimeout,
+                                              updateCounts, generatedResult);
+        }
+
         while (nav.next()) {
             Object[] pvals = nav.getCurrent();
             Result in = executeCompiledStatement(cs, pvals, cmd.queryTimeout);
@@ -1522,43 +1579,234 @@ public class Session implements SessionInterface {
             // On the client side, iterate over the vals and throw
             // a BatchUpdateException if a batch status value of
             // esultConstants.EXECUTE_FAILED is encountered in the result
-            if (in.isUpdateCount()) {
-                if (cs.hasGeneratedColumns()) {
-                    RowSetNavigator navgen =
-                        in.getChainedResult().getNavigator();
+            if (in.mode == ResultConstants.ERROR) {
+                updateCounts = ArrayUtil.arraySlice(updateCounts, 0, count);
+                error        = in;
 
-                    while (navgen.next()) {
-                        Object[] generatedRow = navgen.getCurrent();
+                break;
+            }
 
-                        generatedResult.getNavigator().add(generatedRow);
-                    }
+            updateCounts[count++] = getBatchUpdateCount(cs, in,
+                    generatedResult);
+        }
+
+        return Result.newBatchedExecuteResponse(updateCounts, generatedResult,
+                error);
+    }
+
+    private int getBatchUpdateCount(Statement cs, Result in,
+                                    Result generatedResult) {
+
+        if (in.isUpdateCount()) {
+            if (cs.hasGeneratedColumns()) {
+                RowSetNavigator navgen = in.getChainedResult().getNavigator();
+
+                while (navgen.next()) {
+                    Object[] generatedRow = navgen.getCurrent();
+
+                    generatedResult.getNavigator().add(generatedRow);
                 }
+            }
 
-                updateCounts[count++] = in.getUpdateCount();
-            } else if (in.isData()) {
+            return in.getUpdateCount();
+        } else if (in.isData()) {
 
-                // FIXME:  we don't have what it takes yet
-                // to differentiate between things like
-                // stored procedure calls to methods with
-                // void return type and select statements with
-                // a single row/column containing null
-                updateCounts[count++] = ResultConstants.SUCCESS_NO_INFO;
-            } else if (in.mode == ResultConstants.CALL_RESPONSE) {
-                updateCounts[count++] = ResultConstants.SUCCESS_NO_INFO;
-            } else if (in.mode == ResultConstants.ERROR) {
-                updateCounts = ArrayUtil.arraySlice(updateCounts, 0, count);
-                error        = in;
+            // FIXME:  we don't have what it takes yet
+            // to differentiate between things like
+            // stored procedure calls to methods with
+            // void return type and select statements with
+            // a single row/column containing null
+            return ResultConstants.SUCCESS_NO_INFO;
+        } else if (in.mode == ResultConstants.CALL_RESPONSE) {
+            return ResultConstants.SUCCESS_NO_INFO;
+        } else {
+            throw Error.runtimeError(ErrorCode.U_S0500, "Session");
+        }
+    }
+
+    /**
+     * A batch of INSERT, UPDATE or DELETE is executed as a single action
+     * when it is not called from a routine.
+     */
+    private boolean canExecuteBatchAction(Statement cs) {
+        return sessionContext.depth == 0 && cs.isBatchExecutable();
+    }
+
+    /**
+     * Executes all the parameter rows of a batch after acquiring the locks
+     * for the statement once. Each row is executed with its own action
+     * timestamp, so the rows see the changes made by earlier rows as with
+     * separate executions. A row that fails is rolled back and ends the
+     * batch. In auto-commit mode, the rows executed before the failed row
+     * are committed together at the end.
+     */
+    private Result executeCompiledBatchAction(Statement cs,
+            RowSetNavigator nav, int timeout, int[] updateCounts,
+            Result generatedResult) {
+
+        int    count = 0;
+        Result error = null;
+        Result r     = Result.updateZeroResult;
+
+        if (abortTransaction) {
+            error = handleAbortTransaction();
+
+            return Result.newBatchedExecuteResponse(new int[0],
+                    generatedResult, error);
+        }
+
+        sessionContext.currentStatement = cs;
+
+        // row locks are taken for the keys of all the rows
+        batchNavigator = nav;
+
+        try {
+            while (true) {
+                actionIndex = rowActionList.size();
+
+                database.txManager.beginAction(this, cs);
+
+                if (redoAction) {
+                    redoAction = false;
+
+                    continue;
+                }
 
                 break;
-            } else {
-                throw Error.runtimeError(ErrorCode.U_S0500, "Session");
+            }
+        } finally {
+            batchNavigator = null;
+        }
+
+        cs = sessionContext.currentStatement;
+
+        if (cs == null) {
+            error = Result.newErrorResult(Error.error(ErrorCode.X_07502));
+
+            return Result.newBatchedExecuteResponse(new int[0],
+                    generatedResult, error);
+        }
+
+        rowLoop:
+        while (nav.next()) {
+            Object[] pvals = nav.getCurrent();
+
+            while (true) {
+                boolean interrupted = awaitLatch();
+
+                if (abortTransaction || interrupted) {
+                    error = handleAbortTransaction();
+
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    break rowLoop;
+                }
+
+                if (abortAction) {
+                    error = Result.newErrorResult(
+                        Error.error(ErrorCode.X_40502));
+
+                    endAction(error);
+
+                    break rowLoop;
+                }
+
+                actionIndex = rowActionList.size();
+                statementStartTimestamp =
+                    database.txManager.getGlobalChangeTimestamp();
+
+                timeoutManager.startTimeout(timeout);
+                database.txManager.beginActionResume(this);
+                sessionContext.setDynamicArguments(pvals);
+
+                r = cs.execute(this);
+
+                if (database.logger.getSqlEventLogLevel()
+                        >= SimpleLog.LOG_NORMAL) {
+                    database.logger.logStatementEvent(this, cs, pvals, r,
+                                                      SimpleLog.LOG_NORMAL);
+                }
+
+                if (r.mode != ResultConstants.ERROR) {
+                    timeoutManager.endTimeout();
+                    sessionData.persistentStoreCollection
+                        .clearStatementTables();
+
+                    break;
+                }
+
+                endAction(r);
+
+                if (abortTransaction) {
+                    error = handleAbortTransaction();
+
+                    break rowLoop;
+                }
+
+                if (!redoAction) {
+                    error = r;
+
+                    break rowLoop;
+                }
+
+                redoAction = false;
+            }
+
+            updateCounts[count++] = getBatchUpdateCount(cs, r,
+                    generatedResult);
+        }
+
+        if (error == null) {
+            endAction(r);
+        } else {
+            updateCounts = ArrayUtil.arraySlice(updateCounts, 0, count);
+        }
+
+        if (!abortTransaction && sessionContext.currentStatement != null
+                && sessionContext.isAutoCommit.booleanValue()) {
+            try {
+                commit(false);
+            } catch (Exception e) {
+                updateCounts = new int[0];
+                error = Result.newErrorResult(Error.error(ErrorCode.X_40001,
+                        e));
             }
         }
 
+        sessionContext.currentStatement = null;
+
         return Result.newBatchedExecuteResponse(updateCounts, generatedResult,
                 error);
     }
 
+    /**
+     * Waits until the sessions this session waits for have released their
+     * locks. Returns true if the wait was interrupted and the transaction
+     * must be rolled back.
+     */
+    private boolean awaitLatch() {
+
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted = txInterruptRollback;
+
+                Thread.interrupted();
+
+                continue;
+            }
+
+            break;
+        }
+
+        return interrupted;
+    }
+
     private Result executeDirectBatchStatement(Result cmd) {
 
         int[] updateCounts;
@@ -2092,6 +2340,20 @@ public class Session implements SessionInterface {
         }
     }
 
+    public int getParallelDegree() {
+        return parallelDegree;
+    }
+
+    public void setParallelDegree(int degree) {
+
+        if (!database.getProperties().validateProperty(
+                HsqlDatabaseProperties.hsqldb_parallel_degree, degree)) {
+            throw Error.error(ErrorCode.X_42556);
+        }
+
+        parallelDegree = degree;
+    }
+
     // warnings
     HsqlDeque sqlWarnings;
 
@@ -32,6 +32,7 @@
 package org.hsqldb;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.rights.User;
@@ -51,6 +52,10 @@ public class SessionManager {
     private Session        sysSession;
     private Session        sysLobSession;
 
+    // idle sessions of the worker threads of parallel queries
+    private HsqlArrayList workerSessions = new HsqlArrayList();
+    static final int      maxIdleWorkerSessions = 64;
+
     /**
      * @todo:
      * Eliminate the Database-centric nature of SessionManager.
@@ -183,6 +188,75 @@ public class SessionManager {
         return session;
     }
 
+    /**
+     * Retrieves a new SYS Session for an internal task that runs in its own
+     * thread. The Session has its own id but is not registered with the
+     * user sessions, and is released with Session.closeWorker().
+     */
+    synchronized public Session newWorkerSession() {
+
+        Session session = new Session(sysSession.database,
+                                      sysSession.getUser(), false, false,
+                                      sessionIdCount++, null, 0);
+
+        session.currentSchema =
+            sysSession.database.schemaManager.getDefaultSchemaHsqlName();
+
+        return session;
+    }
+
+    /**
+     * Retrieves a read-only Session for a worker thread of a statement
+     * executed by the given session, with the user, time zone and dynamic
+     * arguments of that session. Idle Sessions with the same time zone are
+     * reused. The Session is returned with releaseWorkerSession().
+     */
+    synchronized Session getWorkerSession(Session parent) {
+
+        Session session = null;
+
+        for (int i = workerSessions.size() - 1; i >= 0; i--) {
+            Session current = (Session) workerSessions.get(i);
+
+            if (current.sessionTimeZoneSeconds
+                    == parent.sessionTimeZoneSeconds && (current
+                        .zoneString == null ? parent.zoneString == null
+                                            : current.zoneString.equals(
+                                                parent.zoneString))) {
+                session = current;
+
+                workerSessions.remove(i);
+
+                break;
+            }
+        }
+
+        if (session == null) {
+            session = new Session(parent.database, parent.getUser(), false,
+                                  true, sessionIdCount++, parent.zoneString,
+                                  parent.sessionTimeZoneSeconds);
+        }
+
+        session.setUser(parent.getUser());
+        session.setZoneSeconds(parent.timeZoneSeconds);
+
+        session.sessionContext.dynamicArguments =
+            parent.sessionContext.dynamicArguments;
+
+        return session;
+    }
+
+    synchronized void releaseWorkerSession(Session session) {
+
+        session.resetWorker();
+
+        if (workerSessions.size() < maxIdleWorkerSessions) {
+            workerSessions.add(session);
+        } else {
+            session.closeWorker();
+        }
+    }
+
     synchronized public Session newSysSession(HsqlName schema, User user) {
 
         Session session = new Session(sysSession.database, user, false, false,
@@ -225,6 +299,12 @@ public class SessionManager {
         closeAllSessions();
         sysSession.close();
         sysLobSession.close();
+
+        for (int i = 0; i < workerSessions.size(); i++) {
+            ((Session) workerSessions.get(i)).closeWorker();
+        }
+
+        workerSessions.clear();
     }
 
     /**
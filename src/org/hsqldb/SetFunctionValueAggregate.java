@@ -319,6 +319,8 @@ public class SetFunctionValueAggregate implements SetFunction {
 
         SetFunctionValueAggregate item = (SetFunctionValueAggregate) group;
 
+        hasNull |= item.hasNull;
+
         if (isDistinct) {
             HashSet  otherSet = item.distinctValues;
             Iterator it       = otherSet.iterator();
@@ -397,7 +399,7 @@ public class SetFunctionValueAggregate implements SetFunction {
                     case Types.SQL_DECIMAL :
                         if (currentBigDecimal == null) {
                             currentBigDecimal = item.currentBigDecimal;
-                        } else {
+                        } else if (item.currentBigDecimal != null) {
                             currentBigDecimal =
                                 currentBigDecimal.add(item.currentBigDecimal);
                         }
@@ -204,6 +204,31 @@ public abstract class Statement {
         return writeTableNames;
     }
 
+    /**
+     * Returns the table which is locked at row level instead of a table
+     * write lock when row locks are enabled, or null if the statement does
+     * not qualify.
+     */
+    public Table getRowLockTable() {
+        return null;
+    }
+
+    /**
+     * Returns the primary key values of the rows accessed in the row lock
+     * table, or null if they cannot be determined before execution.
+     */
+    public Object[][] getRowLockKeys(Session session) {
+        return null;
+    }
+
+    /**
+     * Returns true if all the parameter rows of a batch can be executed
+     * after a single acquisition of the locks for the statement.
+     */
+    public boolean isBatchExecutable() {
+        return false;
+    }
+
     public boolean isCatalogLock(int model) {
 
         switch (group) {
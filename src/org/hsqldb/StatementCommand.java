@@ -36,6 +36,7 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVLCheck;
+import org.hsqldb.index.IndexStatistics;
 import org.hsqldb.lib.HashMappedList;
 import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.OrderedHashSet;
@@ -127,6 +128,12 @@ public class StatementCommand extends Statement {
 
                 break;
             }
+            case StatementTypes.ANALYZE_TABLE : {
+                group    = StatementTypes.X_HSQLDB_DATABASE_OPERATION;
+                isLogged = false;
+
+                break;
+            }
             case StatementTypes.DATABASE_BACKUP :
                 group = StatementTypes.X_HSQLDB_DATABASE_OPERATION;
 
@@ -153,6 +160,11 @@ public class StatementCommand extends Statement {
             case StatementTypes.SET_DATABASE_DEFAULT_TABLE_TYPE :
             case StatementTypes.SET_DATABASE_FILES_CACHE_ROWS :
             case StatementTypes.SET_DATABASE_FILES_CACHE_SIZE :
+            case StatementTypes.SET_DATABASE_FILES_CACHE_SEGMENTS :
+            case StatementTypes.SET_DATABASE_FILES_CACHE_POLICY :
+            case StatementTypes.SET_DATABASE_FILES_CACHE_FLUSH :
+            case StatementTypes.SET_DATABASE_FILES_CACHE_READ_AHEAD :
+            case StatementTypes.SET_DATABASE_FILES_CACHE_OFFHEAP :
             case StatementTypes.SET_DATABASE_FILES_SCALE :
             case StatementTypes.SET_DATABASE_FILES_SPACE :
             case StatementTypes.SET_DATABASE_FILES_DEFRAG :
@@ -160,6 +172,8 @@ public class StatementCommand extends Statement {
             case StatementTypes.SET_DATABASE_FILES_LOBS_COMPRESSED :
             case StatementTypes.SET_DATABASE_FILES_LOG :
             case StatementTypes.SET_DATABASE_FILES_LOG_SIZE :
+            case StatementTypes.SET_DATABASE_FILES_LOG_FORMAT :
+            case StatementTypes.SET_DATABASE_FILES_CHECKPOINT_FUZZY :
             case StatementTypes.SET_DATABASE_FILES_NIO :
             case StatementTypes.SET_DATABASE_FILES_SCRIPT_FORMAT :
             case StatementTypes.SET_DATABASE_AUTHENTICATION :
@@ -167,11 +181,13 @@ public class StatementCommand extends Statement {
             case StatementTypes.SET_DATABASE_PASSWORD_DIGEST :
             case StatementTypes.SET_DATABASE_PROPERTY :
             case StatementTypes.SET_DATABASE_RESULT_MEMORY_ROWS :
+            case StatementTypes.SET_DATABASE_PARALLEL_DEGREE :
             case StatementTypes.SET_DATABASE_SQL_REFERENTIAL_INTEGRITY :
             case StatementTypes.SET_DATABASE_SQL :
             case StatementTypes.SET_DATABASE_DEFAULT_ISOLATION_LEVEL :
             case StatementTypes.SET_DATABASE_TRANSACTION_CONFLICT :
             case StatementTypes.SET_DATABASE_TRANSACTION_INTERRUPT :
+            case StatementTypes.SET_DATABASE_TRANSACTION_ROW_LOCKS :
             case StatementTypes.SET_DATABASE_GC :
             case StatementTypes.SET_DATABASE_SQL_COLLATION :
             case StatementTypes.SET_DATABASE_FILES_BACKUP_INCREMENT :
@@ -219,6 +235,11 @@ public class StatementCommand extends Statement {
                 isLogged               = false;
                 break;
 
+            case StatementTypes.SET_TABLE_STATISTICS :
+                group                  = StatementTypes.X_HSQLDB_SETTING;
+                isTransactionStatement = false;
+                break;
+
             case StatementTypes.SET_USER_LOCAL :
             case StatementTypes.SET_USER_INITIAL_SCHEMA :
             case StatementTypes.SET_USER_PASSWORD :
@@ -416,6 +437,99 @@ public class StatementCommand extends Statement {
                     return Result.newErrorResult(e, sql);
                 }
             }
+            case StatementTypes.SET_DATABASE_FILES_CACHE_SEGMENTS : {
+                try {
+                    int value = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+
+                    if (!session.database.getProperties().validateProperty(
+                            HsqlDatabaseProperties.hsqldb_cache_segments,
+                            value)) {
+                        throw Error.error(ErrorCode.X_42556);
+                    }
+
+                    session.database.logger.setCacheSegments(value);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+            case StatementTypes.SET_DATABASE_FILES_CACHE_POLICY : {
+                try {
+                    int value = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+                    session.database.logger.setCachePolicy(value);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+            case StatementTypes.SET_DATABASE_FILES_CACHE_FLUSH : {
+                try {
+                    int value = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+
+                    if (!session.database.getProperties().validateProperty(
+                            HsqlDatabaseProperties.hsqldb_cache_flush_rate,
+                            value)) {
+                        throw Error.error(ErrorCode.X_42556);
+                    }
+
+                    session.database.logger.setCacheFlushRate(value);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+            case StatementTypes.SET_DATABASE_FILES_CACHE_READ_AHEAD : {
+                try {
+                    int value = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+
+                    if (!session.database.getProperties().validateProperty(
+                            HsqlDatabaseProperties.hsqldb_cache_read_ahead,
+                            value)) {
+                        throw Error.error(ErrorCode.X_42556);
+                    }
+
+                    session.database.logger.setCacheReadAhead(value);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+            case StatementTypes.SET_DATABASE_FILES_CACHE_OFFHEAP : {
+                try {
+                    int value = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+
+                    if (!session.database.getProperties().validateProperty(
+                            HsqlDatabaseProperties.hsqldb_cache_offheap_size,
+                            value)) {
+                        throw Error.error(ErrorCode.X_42556);
+                    }
+
+                    session.database.logger.setCacheOffHeapSize(value);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_DATABASE_FILES_CHECK : {
                 try {
                     long value1 = ((Long) arguments[0]).longValue();
@@ -600,6 +714,32 @@ public class StatementCommand extends Statement {
                     return Result.newErrorResult(e, sql);
                 }
             }
+            case StatementTypes.SET_DATABASE_FILES_LOG_FORMAT : {
+                try {
+                    int value = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+                    session.database.logger.setLogFormat(value);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
+            case StatementTypes.SET_DATABASE_FILES_CHECKPOINT_FUZZY : {
+                try {
+                    boolean mode = ((Boolean) arguments[0]).booleanValue();
+
+                    session.checkAdmin();
+                    session.checkDDLWrite();
+                    session.database.logger.setCheckpointFuzzy(mode);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_DATABASE_FILES_TEMP_PATH : {
                 try {
                     String value = (String) arguments[0];
@@ -867,6 +1007,19 @@ public class StatementCommand extends Statement {
                     return Result.newErrorResult(e, sql);
                 }
             }
+            case StatementTypes.SET_DATABASE_TRANSACTION_ROW_LOCKS : {
+                try {
+                    boolean mode = ((Boolean) arguments[0]).booleanValue();
+
+                    session.checkAdmin();
+
+                    session.database.txRowLocks = mode;
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_DATABASE_TRANSACTION_INTERRUPT : {
                 try {
                     boolean mode = ((Boolean) arguments[0]).booleanValue();
@@ -914,6 +1067,25 @@ public class StatementCommand extends Statement {
 
                 return Result.updateZeroResult;
             }
+            case StatementTypes.SET_DATABASE_PARALLEL_DEGREE : {
+                try {
+                    int degree = ((Integer) arguments[0]).intValue();
+
+                    session.checkAdmin();
+
+                    if (!session.database.getProperties().validateProperty(
+                            HsqlDatabaseProperties.hsqldb_parallel_degree,
+                            degree)) {
+                        throw Error.error(ErrorCode.X_42556);
+                    }
+
+                    session.database.setParallelDegree(degree);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_DATABASE_TEXT_SOURCE : {
                 try {
                     String         source = (String) arguments[0];
@@ -1049,6 +1221,38 @@ public class StatementCommand extends Statement {
                     return Result.newErrorResult(e, sql);
                 }
             }
+            case StatementTypes.ANALYZE_TABLE : {
+                try {
+                    HsqlName name = (HsqlName) arguments[0];
+                    Table table =
+                        session.database.schemaManager.getUserTable(name.name,
+                            name.schema.name);
+
+                    StatementSchema.checkSchemaUpdateAuthorisation(session,
+                            table.getSchemaName());
+
+                    PersistentStore store = table.getRowStore(session);
+                    Index[]         list  = table.getIndexList();
+
+                    for (int i = 0; i < list.length; i++) {
+                        list[i].setStatistics(
+                            IndexStatistics.analyze(session, store, list[i]));
+                    }
+
+                    String[] sqls = table.getSQLForStatistics();
+
+                    for (int i = 0; i < sqls.length; i++) {
+                        session.database.logger.writeOtherStatement(session,
+                                sqls[i]);
+                    }
+
+                    session.database.schemaManager.setSchemaChangeTimestamp();
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_TABLE_NEW_TABLESPACE : {
                 try {
                     HsqlName name = (HsqlName) arguments[0];
@@ -1195,6 +1399,45 @@ public class StatementCommand extends Statement {
                     return Result.newErrorResult(e, sql);
                 }
             }
+            case StatementTypes.SET_TABLE_STATISTICS : {
+                try {
+                    HsqlName name      = (HsqlName) arguments[0];
+                    HsqlName indexName = (HsqlName) arguments[1];
+                    String   value     = (String) arguments[2];
+                    Table table =
+                        session.database.schemaManager.getUserTable(name.name,
+                            name.schema.name);
+                    Index index = table.getIndex(indexName.name);
+
+                    StatementSchema.checkSchemaUpdateAuthorisation(session,
+                            table.getSchemaName());
+
+                    if (index == null) {
+                        throw Error.error(ErrorCode.X_42501, indexName.name);
+                    }
+
+                    IndexStatistics statistics = null;
+
+                    try {
+                        statistics = IndexStatistics.newStatistics(session,
+                                index, value);
+                    } catch (HsqlException e) {
+
+                        // statistics that cannot be read are not used
+                        if (!session.isProcessingScript()
+                                && !session.isProcessingLog()) {
+                            throw e;
+                        }
+                    }
+
+                    index.setStatistics(statistics);
+                    session.database.schemaManager.setSchemaChangeTimestamp();
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_TABLE_READONLY : {
                 try {
                     HsqlName name = (HsqlName) arguments[0];
@@ -33,8 +33,10 @@ package org.hsqldb;
 
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.ParserDQL.CompileContext;
+import org.hsqldb.RangeVariable.RangeVariableConditions;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.Index;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashSet;
 import org.hsqldb.lib.OrderedHashSet;
@@ -85,6 +87,12 @@ public class StatementDML extends StatementDMQL {
     /** ResultMetaData for generated values */
     ResultMetaData generatedResultMetaData;
 
+    /** statement qualifies for row locks on baseTable */
+    boolean isRowLock;
+
+    /** primary key conditions of a row lock UPDATE or DELETE */
+    RangeVariableConditions rowLockConditions;
+
     public StatementDML(int type, int group, HsqlName schemaName) {
         super(type, group, schemaName);
     }
@@ -113,6 +121,8 @@ public class StatementDML extends StatementDMQL {
 
         if (type == StatementTypes.TRUNCATE) {
             isTruncate = true;
+        } else {
+            setRowLockConditions();
         }
 
         targetRange.addAllColumns();
@@ -145,6 +155,11 @@ public class StatementDML extends StatementDMQL {
         setDatabaseObjects(session, compileContext);
         checkAccessRights(session);
         targetRange.addAllColumns();
+
+        if (!ArrayUtil.haveCommonElement(baseTable.getPrimaryKey(),
+                                         updateColumnMap)) {
+            setRowLockConditions();
+        }
     }
 
     /**
@@ -205,6 +220,132 @@ public class StatementDML extends StatementDMQL {
         }
     }
 
+    /**
+     * Row locks are used for statements that access the rows of a table only
+     * by primary key values. The table must have no other unique constraint
+     * and no trigger, and the statement no subquery or routine.
+     */
+    boolean canLockRows() {
+
+        if (targetTable != baseTable || baseTable.isTemp()
+                || !baseTable.hasPrimaryKey()
+                || baseTable.triggerList.length > 0) {
+            return false;
+        }
+
+        if (subqueries.length > 0 || routines.length > 0) {
+            return false;
+        }
+
+        Index[] indexes = baseTable.getIndexList();
+
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i].isUnique()
+                    && indexes[i] != baseTable.getPrimaryIndex()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * An UPDATE or DELETE qualifies for row locks when the single range
+     * variable is accessed with equality conditions on all primary key
+     * columns, with values that are literals or parameters.
+     */
+    void setRowLockConditions() {
+
+        if (targetRangeVariables.length != 1 || !canLockRows()) {
+            return;
+        }
+
+        RangeVariable range = targetRangeVariables[0];
+
+        if (range.joinConditions.length != 1
+                || range.whereConditions.length != 1) {
+            return;
+        }
+
+        RangeVariableConditions conditions = range.joinConditions[0];
+
+        if (!conditions.hasIndexCondition()) {
+            conditions = range.whereConditions[0];
+        }
+
+        int keyCount = baseTable.getPrimaryKey().length;
+
+        if (conditions.rangeIndex != baseTable.getPrimaryIndex()
+                || conditions.indexedColumnCount != keyCount) {
+            return;
+        }
+
+        for (int i = 0; i < keyCount; i++) {
+            if (conditions.opTypes[i] != OpTypes.EQUAL
+                    || !isRowLockValue(
+                        conditions.indexCond[i].getRightNode())) {
+                return;
+            }
+        }
+
+        rowLockConditions = conditions;
+        isRowLock         = true;
+    }
+
+    static boolean isRowLockValue(Expression e) {
+        return e.opType == OpTypes.VALUE || e.opType == OpTypes.DYNAMIC_PARAM;
+    }
+
+    public Table getRowLockTable() {
+        return isRowLock ? baseTable
+                         : null;
+    }
+
+    public Object[][] getRowLockKeys(Session session) {
+
+        if (rowLockConditions == null) {
+            return null;
+        }
+
+        Object[] key = new Object[rowLockConditions.indexedColumnCount];
+
+        try {
+            for (int i = 0; i < key.length; i++) {
+                Expression e = rowLockConditions.indexCond[i];
+                Object value = e.getRightNode().getValue(session);
+
+                if (value == null) {
+                    return new Object[0][];
+                }
+
+                key[i] = e.getLeftNode().getDataType().convertToType(session,
+                        value, e.getRightNode().getDataType());
+            }
+        } catch (HsqlException ex) {
+            return null;
+        }
+
+        return new Object[][]{ key };
+    }
+
+    public boolean isBatchExecutable() {
+
+        if (isExplain) {
+            return false;
+        }
+
+        switch (type) {
+
+            case StatementTypes.INSERT :
+            case StatementTypes.UPDATE_WHERE :
+            case StatementTypes.DELETE_WHERE :
+                return true;
+
+            default :
+                return false;
+        }
+    }
+
     Result getResult(Session session) {
 
         Result result = null;
@@ -32,6 +32,7 @@
 package org.hsqldb;
 
 import org.hsqldb.ParserDQL.CompileContext;
+import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.navigator.RowIterator;
 import org.hsqldb.navigator.RowSetNavigator;
 import org.hsqldb.navigator.RowSetNavigatorClient;
@@ -93,6 +94,8 @@ public class StatementInsert extends StatementDML {
                          && insertExpression.nodes.length == 1
                          && updatableTableCheck == null
                          && specialAction == isNone;
+
+        setRowLockInsert();
     }
 
     /**
@@ -128,6 +131,98 @@ public class StatementInsert extends StatementDML {
         checkAccessRights(session);
     }
 
+    /**
+     * An INSERT of VALUES qualifies for row locks when the primary key values
+     * of each row are literals or parameters, or are generated for an
+     * identity primary key.
+     */
+    void setRowLockInsert() {
+
+        if (specialAction != isNone || updatableTableCheck != null
+                || !canLockRows()) {
+            return;
+        }
+
+        int[]        pkCols = baseTable.getPrimaryKey();
+        Expression[] list   = insertExpression.nodes;
+
+        for (int j = 0; j < list.length; j++) {
+            Expression[] rowArgs = list[j].nodes;
+
+            for (int i = 0; i < pkCols.length; i++) {
+                int index = ArrayUtil.find(insertColumnMap, pkCols[i]);
+
+                if (index < 0 || rowArgs[index].opType == OpTypes.DEFAULT) {
+                    if (pkCols.length == 1
+                            && pkCols[0] == baseTable.identityColumn) {
+                        continue;
+                    }
+
+                    return;
+                }
+
+                if (!isRowLockValue(rowArgs[index])) {
+                    return;
+                }
+            }
+        }
+
+        isRowLock = true;
+    }
+
+    /**
+     * Rows with a generated identity key cannot conflict with other rows and
+     * have no row lock.
+     */
+    public Object[][] getRowLockKeys(Session session) {
+
+        if (!isRowLock) {
+            return null;
+        }
+
+        Type[]       colTypes = baseTable.getColumnTypes();
+        int[]        pkCols   = baseTable.getPrimaryKey();
+        Expression[] list     = insertExpression.nodes;
+        Object[][]   keys     = new Object[list.length][];
+        int          count    = 0;
+
+        try {
+            for (int j = 0; j < list.length; j++) {
+                Expression[] rowArgs = list[j].nodes;
+                Object[]     key     = new Object[pkCols.length];
+
+                for (int i = 0; i < pkCols.length; i++) {
+                    int index = ArrayUtil.find(insertColumnMap, pkCols[i]);
+
+                    if (index < 0
+                            || rowArgs[index].opType == OpTypes.DEFAULT) {
+                        key = null;
+
+                        break;
+                    }
+
+                    Expression e     = rowArgs[index];
+                    Object     value = e.getValue(session);
+
+                    if (value == null) {
+                        return null;
+                    }
+
+                    key[i] = colTypes[pkCols[i]].convertToType(session,
+                            value, e.getDataType());
+                }
+
+                if (key != null) {
+                    keys[count++] = key;
+                }
+            }
+        } catch (HsqlException ex) {
+            return null;
+        }
+
+        return (Object[][]) ArrayUtil.resizeArrayIfDifferent(keys, count);
+    }
+
     /**
      * Executes an INSERT_SELECT or INSERT_VALUES statement.  It is assumed that
      * the argument is of the correct type.
@@ -1324,7 +1324,8 @@ public class StatementSchema extends Statement {
                             Constraint c = (Constraint) tempIndexes.get(i);
 
                             tableWorks.addIndex(c.getMainColumns(),
-                                                c.getName(), false);
+                                                c.getName(), false,
+                                                Index.STRUCTURE_AVL);
                         }
 
                         table = tableWorks.getTable();
@@ -1445,6 +1446,7 @@ public class StatementSchema extends Statement {
                 boolean       unique;
                 RoutineSchema routineSchema;
                 Boolean       ifNotExists;
+                int           structure;
 
                 table         = (Table) arguments[0];
                 indexColumns  = (int[]) arguments[1];
@@ -1452,6 +1454,7 @@ public class StatementSchema extends Statement {
                 unique        = ((Boolean) arguments[3]).booleanValue();
                 routineSchema = (RoutineSchema) arguments[4];
                 ifNotExists   = (Boolean) arguments[5];
+                structure     = ((Integer) arguments[6]).intValue();
 
                 /*
                         Index index        = table.getIndexForColumns(indexColumns);
@@ -1477,7 +1480,8 @@ public class StatementSchema extends Statement {
                 try {
                     TableWorks tableWorks = new TableWorks(session, table);
 
-                    tableWorks.addIndex(indexColumns, name, unique);
+                    tableWorks.addIndex(indexColumns, name, unique,
+                                        structure);
 
                     break;
                 } catch (HsqlException e) {
@@ -236,6 +236,7 @@ public class StatementSession extends Statement {
             case StatementTypes.SET_SESSION_FEATURE :
             case StatementTypes.SET_SESSION_RESULT_MAX_ROWS :
             case StatementTypes.SET_SESSION_RESULT_MEMORY_ROWS :
+            case StatementTypes.SET_SESSION_PARALLEL_DEGREE :
             case StatementTypes.SET_TRANSFORM_GROUP :
                 group = StatementTypes.X_HSQLDB_SESSION;
                 break;
@@ -723,6 +724,17 @@ public class StatementSession extends Statement {
 
                 return Result.updateZeroResult;
             }
+            case StatementTypes.SET_SESSION_PARALLEL_DEGREE : {
+                try {
+                    int degree = ((Integer) arguments[0]).intValue();
+
+                    session.setParallelDegree(degree);
+
+                    return Result.updateZeroResult;
+                } catch (HsqlException e) {
+                    return Result.newErrorResult(e, sql);
+                }
+            }
             case StatementTypes.SET_SESSION_SQL_IGNORECASE : {
                 try {
                     boolean mode = ((Boolean) arguments[0]).booleanValue();
@@ -181,6 +181,7 @@ public interface StatementTypes {
     int DATABASE_SCRIPT     = 1004;
     int LOAD_SCRIPT         = 1005;
     int CHECK_INDEX         = 1006;
+    int ANALYZE_TABLE       = 1007;
 
     // hsqldb database settings
     int SET_DATABASE_FILES_BACKUP_INCREMENT    = 1011;
@@ -222,6 +223,15 @@ public interface StatementTypes {
     int SET_DATABASE_TRANSACTION_INTERRUPT     = 1055;
     int SET_DATABASE_UNIQUE_NAME               = 1056;
     int SET_DATABASE_PASSWORD_DIGEST           = 1057;
+    int SET_DATABASE_FILES_CACHE_SEGMENTS      = 1058;
+    int SET_DATABASE_FILES_CACHE_POLICY        = 1059;
+    int SET_DATABASE_FILES_CACHE_FLUSH         = 1060;
+    int SET_DATABASE_FILES_CACHE_READ_AHEAD    = 1061;
+    int SET_DATABASE_FILES_CACHE_OFFHEAP       = 1062;
+    int SET_DATABASE_FILES_LOG_FORMAT          = 1063;
+    int SET_DATABASE_FILES_CHECKPOINT_FUZZY    = 1064;
+    int SET_DATABASE_TRANSACTION_ROW_LOCKS     = 1065;
+    int SET_DATABASE_PARALLEL_DEGREE           = 1066;
 
     // hsqldb user settings
     int SET_USER_LOCAL          = 1091;
@@ -239,6 +249,7 @@ public interface StatementTypes {
     int ROLLBACK_SAVEPOINT             = 1118;
     int DECLARE_SESSION_TABLE          = 1119;
     int ALTER_SESSION                  = 1120;
+    int SET_SESSION_PARALLEL_DEGREE    = 1110;
 
     // hsqldb schema
     int ALTER_INDEX                  = 1121;
@@ -283,6 +294,7 @@ public interface StatementTypes {
     int SET_TABLE_NEW_TABLESPACE = 1160;
     int SET_TABLE_SET_TABLESPACE = 1161;
     int LOG_SCHEMA_STATEMENT     = 1162;
+    int SET_TABLE_STATISTICS     = 1163;
 
     // hsqldb sql implementation
     int CONDITION = 1211;                         // element of IF
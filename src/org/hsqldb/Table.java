@@ -36,12 +36,14 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.Index.IndexUse;
+import org.hsqldb.index.IndexStatistics;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMappedList;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.lib.OrderedIntHashSet;
 import org.hsqldb.lib.Set;
+import org.hsqldb.lib.StringConverter;
 import org.hsqldb.lib.StringUtil;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.navigator.RangeIterator;
@@ -634,6 +636,37 @@ public class Table extends TableBase implements SchemaObject {
         return sb.toString();
     }
 
+    public String[] getSQLForStatistics() {
+
+        HsqlArrayList list = new HsqlArrayList();
+
+        for (int i = 0; i < indexList.length; i++) {
+            IndexStatistics statistics = indexList[i].getStatistics();
+
+            if (statistics == null) {
+                continue;
+            }
+
+            StringBuilder sb = new StringBuilder(128);
+
+            sb.append(Tokens.T_SET).append(' ').append(Tokens.T_TABLE);
+            sb.append(' ').append(getName().getSchemaQualifiedStatementName());
+            sb.append(' ').append(Tokens.T_INDEX).append(' ');
+            sb.append(i + 1).append(' ');
+            sb.append(Tokens.T_STATISTICS).append(' ');
+            sb.append(
+                StringConverter.toQuotedString(
+                    statistics.getPersistString(), '\'', true));
+            list.add(sb.toString());
+        }
+
+        String[] array = new String[list.size()];
+
+        list.toArray(array);
+
+        return array;
+    }
+
     public String getSQLForTableSpace() {
 
         if (!isCached() || tableSpace == DataSpaceManager.tableIdDefault) {
@@ -1369,6 +1402,11 @@ public class Table extends TableBase implements SchemaObject {
 
         tn.createPrimaryKey(indexName, pkCols, false);
 
+        if (pkCols != null && !newPK) {
+            tn.indexList[0].setStatistics(
+                getStatisticsForIndex(indexList[0], tn.indexList[0]));
+        }
+
         for (int i = 1; i < indexList.length; i++) {
             Index idx = indexList[i];
 
@@ -1382,9 +1420,11 @@ public class Table extends TableBase implements SchemaObject {
                                                    idx.getColumnDesc(), null,
                                                    false, idx.isUnique(),
                                                    idx.isConstraint(),
-                                                   idx.isForward());
+                                                   idx.isForward(),
+                                                   idx.getStructure());
 
             newIdx.setClustered(idx.isClustered());
+            newIdx.setStatistics(getStatisticsForIndex(idx, newIdx));
             tn.addIndexStructure(newIdx);
         }
 
@@ -2157,6 +2197,35 @@ public class Table extends TableBase implements SchemaObject {
         return -1;
     }
 
+    /**
+     * Returns the statistics of the old index if the new index has the same
+     * column types, otherwise null.
+     */
+    private static IndexStatistics getStatisticsForIndex(Index oldIndex,
+            Index newIndex) {
+
+        IndexStatistics statistics = oldIndex.getStatistics();
+
+        if (statistics == null) {
+            return null;
+        }
+
+        Type[] oldTypes = oldIndex.getColumnTypes();
+        Type[] newTypes = newIndex.getColumnTypes();
+
+        if (oldTypes.length != newTypes.length) {
+            return null;
+        }
+
+        for (int i = 0; i < oldTypes.length; i++) {
+            if (!oldTypes[i].equals(newTypes[i])) {
+                return null;
+            }
+        }
+
+        return statistics;
+    }
+
     /**
      * Returns the Index object of the given name or null if not found.
      */
@@ -2656,6 +2725,27 @@ public class Table extends TableBase implements SchemaObject {
             return Index.emptyUseArray;
         }
 
+        // a hash index on exactly the columns is preferred for equality
+        if (opType == OpTypes.EQUAL) {
+            for (int i = 0, count = indexList.length; i < count; i++) {
+                Index currentIndex = getIndex(i);
+
+                if (currentIndex.getStructure() != Index.STRUCTURE_HASH
+                        || currentIndex.getColumnCount() != set.size()) {
+                    continue;
+                }
+
+                int[] indexcols = currentIndex.getColumns();
+                int matchCount = ordered
+                                 ? set.getOrderedStartMatchCount(indexcols)
+                                 : set.getStartMatchCount(indexcols);
+
+                if (matchCount == set.size()) {
+                    return currentIndex.asArray();
+                }
+            }
+        }
+
         for (int i = 0, count = indexList.length; i < count; i++) {
             Index currentIndex = getIndex(i);
             int[] indexcols    = currentIndex.getColumns();
@@ -389,6 +389,16 @@ public class TableBase implements Cloneable {
             boolean[] descending, boolean[] nullsLast, boolean primaryKey,
             boolean unique, boolean constraint, boolean forward) {
 
+        return createIndexStructure(name, columns, descending, nullsLast,
+                                    primaryKey, unique, constraint, forward,
+                                    Index.STRUCTURE_AVL);
+    }
+
+    public final Index createIndexStructure(HsqlName name, int[] columns,
+            boolean[] descending, boolean[] nullsLast, boolean primaryKey,
+            boolean unique, boolean constraint, boolean forward,
+            int structure) {
+
         int    s     = columns.length;
         int[]  cols  = new int[s];
         Type[] types = new Type[s];
@@ -401,7 +411,7 @@ public class TableBase implements Cloneable {
         long id = database.persistentStoreCollection.getNextId();
         Index newIndex = database.logger.newIndex(name, id, this, cols,
             descending, nullsLast, types, primaryKey, unique, constraint,
-            forward);
+            forward, structure);
 
         return newIndex;
     }
@@ -507,10 +517,14 @@ public class TableBase implements Cloneable {
     public final Index createIndex(Session session, HsqlName name,
                                    int[] columns, boolean[] descending,
                                    boolean[] nullsLast, boolean unique,
-                                   boolean constraint, boolean forward) {
+                                   boolean constraint, boolean forward,
+                                   int structure) {
+
+        Index newIndex = createIndexStructure(name, columns, descending,
+                                              nullsLast, false, unique,
+                                              constraint, forward, structure);
 
-        Index newIndex = createAndAddIndexStructure(session, name, columns,
-            descending, nullsLast, unique, constraint, forward);
+        addIndex(session, newIndex);
 
         return newIndex;
     }
@@ -608,9 +608,11 @@ public class TableWorks {
      * @param col int[]
      * @param name HsqlName
      * @param unique boolean
+     * @param structure index structure
      * @return new index
      */
-    Index addIndex(int[] col, HsqlName name, boolean unique) {
+    Index addIndex(int[] col, HsqlName name, boolean unique,
+                   int structure) {
 
         Index newIndex;
 
@@ -619,10 +621,11 @@ public class TableWorks {
         if (session.isProcessingScript() || table.isEmpty(session)
                 || table.isIndexingMutable()) {
             newIndex = table.createIndex(session, name, col, null, null,
-                                         unique, false, false);
+                                         unique, false, false, structure);
         } else {
             newIndex = table.createIndexStructure(name, col, null, null,
-                                                  false, unique, false, false);
+                                                  false, unique, false, false,
+                                                  structure);
 
             Table tn = table.moveDefinition(session, table.tableType,
                                             ColumnSchema.emptyArray, null,
@@ -474,7 +474,7 @@ public class Tokens {
     static final String        T_DEFERRED             = "DEFERRED";
     static final String        T_DEFINED              = "DEFINED";
     static final String        T_DEFINER              = "DEFINER";
-    static final String        T_DEGREE               = "DEGREE";
+    public static final String T_DEGREE               = "DEGREE";
     static final String        T_DEPTH                = "DEPTH";
     static final String        T_DERIVED              = "DERIVED";
     static final String        T_DESC                 = "DESC";
@@ -659,6 +659,8 @@ public class Tokens {
     // other tokens
     static final String        T_ALIAS                = "ALIAS";
     static final String        T_AGGREGATE            = "AGGREGATE";
+    public static final String T_AHEAD                = "AHEAD";
+    static final String        T_ANALYZE              = "ANALYZE";
     public static final String T_AUTHENTICATION       = "AUTHENTICATION";
     static final String        T_AUTO_INCREMENT       = "AUTO_INCREMENT";
     static final String        T_AUTOCOMMIT           = "AUTOCOMMIT";
@@ -667,11 +669,12 @@ public class Tokens {
     static final String        T_BINARY_DOUBLE        = "BINARY_DOUBLE";
     static final String        T_BINARY_FLOAT         = "BINARY_FLOAT";
     static final String        T_BODY                 = "BODY";
+    public static final String T_BTREE                = "BTREE";
     static final String        T_BYTE                 = "BYTE";
     public static final String T_CACHE                = "CACHE";
     public static final String T_CACHED               = "CACHED";
     static final String        T_CASEWHEN             = "CASEWHEN";
-    static final String        T_CHECKPOINT           = "CHECKPOINT";
+    public static final String T_CHECKPOINT           = "CHECKPOINT";
     static final String        T_CITEXT               = "CITEXT";
     static final String        T_CLASS                = "CLASS";
     static final String        T_CLUSTERED            = "CLUSTERED";
@@ -701,8 +704,11 @@ public class Tokens {
     static final String        T_FILE                 = "FILE";
     public static final String T_FILES                = "FILES";
     static final String        T_FOLD                 = "FOLD";
-    static final String        T_FORMAT               = "FORMAT";
+    public static final String T_FLUSH                = "FLUSH";
+    public static final String T_FORMAT               = "FORMAT";
+    public static final String T_FUZZY                = "FUZZY";
     static final String        T_GROUP_CONCAT         = "GROUP_CONCAT";
+    public static final String T_HASH                 = "HASH";
     static final String        T_HEADER               = "HEADER";
     static final String        T_IFNULL               = "IFNULL";
     public static final String T_IGNORECASE           = "IGNORECASE";
@@ -723,6 +729,7 @@ public class Tokens {
     public static final String T_LOB                  = "LOB";
     public static final String T_LOCK                 = "LOCK";
     public static final String T_LOCKS                = "LOCKS";
+    public static final String T_LRU                  = "LRU";
     public static final String T_LONG                 = "LONG";
     public static final String T_LONGBLOB             = "LONGBLOB";
     public static final String T_LONGTEXT             = "LONGTEXT";
@@ -750,11 +757,14 @@ public class Tokens {
     static final String        T_NVL2                 = "NVL2";
     static final String        T_OCTETLENGTH          = "OCTETLENGTH";
     static final String        T_OFF                  = "OFF";
+    public static final String T_OFFHEAP              = "OFFHEAP";
     public static final String T_OTHER                = "OTHER";
     public static final String T_ORA                  = "ORA";
+    public static final String T_PARALLEL             = "PARALLEL";
     public static final String T_PASSWORD             = "PASSWORD";
     public static final String T_PERFORM              = "PERFORM";
     static final String        T_PLAN                 = "PLAN";
+    public static final String T_POLICY               = "POLICY";
     public static final String T_PGS                  = "PGS";
     static final String        T_PREVVAL              = "PREVVAL";
     static final String        T_PROPERTY             = "PROPERTY";
@@ -766,10 +776,13 @@ public class Tokens {
     static final String        T_RENAME               = "RENAME";
     static final String        T_ROWNUM               = "ROWNUM";
     static final String        T_SCRIPT               = "SCRIPT";
+    public static final String T_SEGMENTS             = "SEGMENTS";
     static final String        T_SEPARATOR            = "SEPARATOR";
     static final String        T_BLOCKING             = "BLOCKING";
     static final String        T_SHARE                = "SHARE";
+    public static final String T_SLRU                 = "SLRU";
     static final String        T_SHUTDOWN             = "SHUTDOWN";
+    public static final String T_STATISTICS           = "STATISTICS";
     static final String        T_SQL_TSI_DAY          = "SQL_TSI_DAY";
     static final String        T_SQL_TSI_FRAC_SECOND  = "SQL_TSI_FRAC_SECOND";
     static final String        T_SQL_TSI_MILLI_SECOND = "SQL_TSI_MILLI_SECOND";
@@ -1647,6 +1660,19 @@ public class Tokens {
     static final int        UNLOAD         = 674;
     static final int        VARCHAR2       = 675;
     static final int        WRITE_DELAY    = 676;
+    static final int        SEGMENTS       = 677;
+    static final int        POLICY         = 678;
+    static final int        LRU            = 679;
+    static final int        SLRU           = 680;
+    static final int        FLUSH          = 681;
+    static final int        AHEAD          = 682;
+    static final int        OFFHEAP        = 683;
+    static final int        BTREE          = 684;
+    static final int        HASH           = 685;
+    static final int        ANALYZE        = 686;
+    static final int        STATISTICS     = 687;
+    static final int        FUZZY          = 688;
+    static final int        PARALLEL       = 689;
 
     //
     static final int        ACOS                       = 701;
@@ -2261,8 +2287,10 @@ public class Tokens {
         commandSet.put(T_ADMIN, ADMIN);
         commandSet.put(T_AFTER, AFTER);
         commandSet.put(T_AGGREGATE, AGGREGATE);
+        commandSet.put(T_AHEAD, AHEAD);
         commandSet.put(T_ALIAS, ALIAS);
         commandSet.put(T_ALWAYS, ALWAYS);
+        commandSet.put(T_ANALYZE, ANALYZE);
         commandSet.put(T_ASC, ASC);
         commandSet.put(T_AUTHENTICATION, AUTHENTICATION);
         commandSet.put(T_AUTOCOMMIT, AUTOCOMMIT);
@@ -2274,6 +2302,7 @@ public class Tokens {
         commandSet.put(T_BYTE, BYTE);
         commandSet.put(T_BLOCKING, BLOCKING);
         commandSet.put(T_BODY, BODY);
+        commandSet.put(T_BTREE, BTREE);
         commandSet.put(T_CACHE, CACHE);
         commandSet.put(T_CACHED, CACHED);
         commandSet.put(T_CASCADE, CASCADE);
@@ -2305,6 +2334,7 @@ public class Tokens {
         commandSet.put(T_DEFERRABLE, DEFERRABLE);
         commandSet.put(T_DEFAULTS, DEFAULTS);
         commandSet.put(T_DEFINER, DEFINER);
+        commandSet.put(T_DEGREE, DEGREE);
         commandSet.put(T_DEFRAG, DEFRAG);
         commandSet.put(T_DELAY, DELAY);
         commandSet.put(T_DESC, DESC);
@@ -2325,13 +2355,16 @@ public class Tokens {
         commandSet.put(T_FINAL, FINAL);
         commandSet.put(T_FIRST, FIRST);
         commandSet.put(T_FOLLOWING, FOLLOWING);
+        commandSet.put(T_FLUSH, FLUSH);
         commandSet.put(T_FORMAT, FORMAT);
         commandSet.put(T_FOUND, FOUND);
+        commandSet.put(T_FUZZY, FUZZY);
         commandSet.put(T_G_FACTOR, G);
         commandSet.put(T_GC, GC);
         commandSet.put(T_GENERATED, GENERATED);
         commandSet.put(T_GRANTED, GRANTED);
         commandSet.put(T_GROUP_CONCAT, GROUP_CONCAT);
+        commandSet.put(T_HASH, HASH);
         commandSet.put(T_HEADER, HEADER);
         commandSet.put(T_IF, IF);
         commandSet.put(T_IGNORE, IGNORE);
@@ -2364,6 +2397,7 @@ public class Tokens {
         commandSet.put(T_LOB, LOB);
         commandSet.put(T_LOCK, LOCK);
         commandSet.put(T_LOCKS, LOCKS);
+        commandSet.put(T_LRU, LRU);
         commandSet.put(T_LONG, LONG);
         commandSet.put(T_LONGBLOB, LONGBLOB);
         commandSet.put(T_LONGTEXT, LONGTEXT);
@@ -2399,17 +2433,20 @@ public class Tokens {
         commandSet.put(T_OBJECT, OBJECT);
         commandSet.put(T_OCTETS, OCTETS);
         commandSet.put(T_OFF, OFF);
+        commandSet.put(T_OFFHEAP, OFFHEAP);
         commandSet.put(T_OPTION, OPTION);
         commandSet.put(T_ORDINALITY, ORDINALITY);
         commandSet.put(T_OTHERS, OTHERS);
         commandSet.put(T_OVERRIDING, OVERRIDING);
         commandSet.put(T_P_FACTOR, P);
         commandSet.put(T_PAD, PAD);
+        commandSet.put(T_PARALLEL, PARALLEL);
         commandSet.put(T_PARTIAL, PARTIAL);
         commandSet.put(T_PASSWORD, PASSWORD);
         commandSet.put(T_PERFORM, PERFORM);
         commandSet.put(T_PLACING, PLACING);
         commandSet.put(T_PLAN, PLAN);
+        commandSet.put(T_POLICY, POLICY);
         commandSet.put(T_PRECEDING, PRECEDING);
         commandSet.put(T_PRESERVE, PRESERVE);
         commandSet.put(T_PREVVAL, PREVVAL);
@@ -2434,12 +2471,14 @@ public class Tokens {
         commandSet.put(T_SCHEMA, SCHEMA);
         commandSet.put(T_SCRIPT, SCRIPT);
         commandSet.put(T_SEQUENCE, SEQUENCE);
+        commandSet.put(T_SEGMENTS, SEGMENTS);
         commandSet.put(T_SEPARATOR, SEPARATOR);
         commandSet.put(T_SERIALIZABLE, SERIALIZABLE);
         commandSet.put(T_SERVER, SERVER);
         commandSet.put(T_SESSION, SESSION);
         commandSet.put(T_SETS, SETS);
         commandSet.put(T_SHUTDOWN, SHUTDOWN);
+        commandSet.put(T_SLRU, SLRU);
         commandSet.put(T_SIMPLE, SIMPLE);
         commandSet.put(T_SIZE, SIZE);
         commandSet.put(T_SOURCE, SOURCE);
@@ -2484,6 +2523,7 @@ public class Tokens {
         commandSet.put(T_SQL_TSI_YEAR, SQL_TSI_YEAR);
         commandSet.put(T_STOP, STOP);
         commandSet.put(T_STATEMENT, STATEMENT);
+        commandSet.put(T_STATISTICS, STATISTICS);
         commandSet.put(T_STRUCTURE, STRUCTURE);
         commandSet.put(T_STYLE, STYLE);
         commandSet.put(T_SYNONYM, SYNONYM);
@@ -291,6 +291,8 @@ implements TransactionManager {
                 return;
             }
 
+            setRowLocksTPL(session, cs);
+
             boolean canProceed = setWaitedSessionsTPL(session, cs);
 
             if (canProceed) {
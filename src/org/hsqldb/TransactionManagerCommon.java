@@ -31,6 +31,7 @@
 
 package org.hsqldb;
 
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -42,10 +43,11 @@ import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.HashMap;
 import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.Iterator;
-import org.hsqldb.lib.LongDeque;
 import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.lib.MultiValueHashMap;
 import org.hsqldb.lib.OrderedHashSet;
+import org.hsqldb.navigator.RowSetNavigator;
+import org.hsqldb.types.Type;
 
 /**
  * Shared code for TransactionManager classes
@@ -64,11 +66,17 @@ class TransactionManagerCommon {
     //
     ReentrantReadWriteLock           lock      = new ReentrantReadWriteLock();
     ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+    ReentrantReadWriteLock.ReadLock  readLock  = lock.readLock();
 
     // functional unit - sessions involved in live transactions
 
-    /** live transactions keeping committed transactions from being merged */
-    LongDeque liveTransactionTimestamps = new LongDeque();
+    /**
+     * live transactions keeping committed transactions from being merged;
+     * added to concurrently by sessions holding the readLock, removed from
+     * while holding the writeLock
+     */
+    ConcurrentSkipListSet<Long> liveTransactionTimestamps =
+        new ConcurrentSkipListSet<Long>();
 
     /** global timestamp for database */
     AtomicLong globalChangeTimestamp = new AtomicLong(1);
@@ -80,6 +88,14 @@ class TransactionManagerCommon {
     HashMap           tableWriteLocks = new HashMap();
     MultiValueHashMap tableReadLocks  = new MultiValueHashMap();
 
+    // functional unit - row locks
+
+    /** Map : table name -> sessions holding row locks in the table */
+    MultiValueHashMap tableRowLocks = new MultiValueHashMap();
+
+    /** Map : RowLockKey -> session holding the row lock */
+    HashMap rowLocks = new HashMap();
+
     //
     volatile boolean hasExpired;
 
@@ -120,8 +136,8 @@ class TransactionManagerCommon {
                     TransactionManagerMVCC txMan =
                         new TransactionManagerMVCC(database);
 
-                    txMan.liveTransactionTimestamps.addLast(
-                        session.transactionTimestamp);
+                    txMan.liveTransactionTimestamps.add(
+                        Long.valueOf(session.transactionTimestamp));
 
                     txMan.catalogWriteSession = session;
                     txMan.isLockedMode        = true;
@@ -141,8 +157,8 @@ class TransactionManagerCommon {
                 case TransactionManager.MVLOCKS : {
                     manager = new TransactionManagerMV2PL(database);
 
-                    manager.liveTransactionTimestamps.addLast(
-                        session.transactionTimestamp);
+                    manager.liveTransactionTimestamps.add(
+                        Long.valueOf(session.transactionTimestamp));
 
                     OrderedHashSet set = session.waitingSessions;
 
@@ -637,7 +653,8 @@ class TransactionManagerCommon {
             getTransactionSessions(session);
         }
 
-        HsqlName[] nameList = cs.getTableNamesForWrite();
+        HsqlName[] nameList    = cs.getTableNamesForWrite();
+        HsqlName   rowLockName = getRowLockTableName(session);
 
         for (int i = 0; i < nameList.length; i++) {
             HsqlName name = nameList[i];
@@ -661,6 +678,18 @@ class TransactionManagerCommon {
                     session.tempSet.add(holder);
                 }
             }
+
+            if (name == rowLockName) {
+                for (int j = 0; j < session.rowLockKeys.length; j++) {
+                    holder = (Session) rowLocks.get(session.rowLockKeys[j]);
+
+                    if (holder != null && holder != session) {
+                        session.tempSet.add(holder);
+                    }
+                }
+            } else {
+                addRowLockHolders(session, name);
+            }
         }
 
         nameList = cs.getTableNamesForRead();
@@ -683,6 +712,8 @@ class TransactionManagerCommon {
             if (holder != null && holder != session) {
                 session.tempSet.add(holder);
             }
+
+            addRowLockHolders(session, name);
         }
 
         if (session.tempSet.isEmpty()) {
@@ -700,6 +731,100 @@ class TransactionManagerCommon {
         return false;
     }
 
+    /**
+     * sessions holding row locks in a table conflict with table locks
+     */
+    void addRowLockHolders(Session session, HsqlName name) {
+
+        Iterator it = tableRowLocks.get(name);
+
+        while (it.hasNext()) {
+            Session holder = (Session) it.next();
+
+            if (holder != session) {
+                session.tempSet.add(holder);
+            }
+        }
+    }
+
+    /**
+     * Sets the row lock table and keys of the session for the statement. A
+     * statement with row locks takes these instead of a table write lock on
+     * the table, allowing other statements with row locks on different rows
+     * of the table to proceed.
+     */
+    void setRowLocksTPL(Session session, Statement cs) {
+
+        session.rowLockTable = null;
+        session.rowLockKeys  = null;
+
+        if (cs == null || !database.txRowLocks) {
+            return;
+        }
+
+        Table table = cs.getRowLockTable();
+
+        if (table == null) {
+            return;
+        }
+
+        Object[][] keys = session.batchNavigator == null
+                          ? cs.getRowLockKeys(session)
+                          : getBatchRowLockKeys(session, cs);
+
+        if (keys == null) {
+            return;
+        }
+
+        Object[] rowKeys = new Object[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            rowKeys[i] = new RowLockKey(session, table, keys[i]);
+        }
+
+        session.rowLockTable = table;
+        session.rowLockKeys  = rowKeys;
+    }
+
+    /**
+     * Returns the keys for all the parameter rows of a batch, or null if
+     * the keys of a row cannot be determined.
+     */
+    Object[][] getBatchRowLockKeys(Session session, Statement cs) {
+
+        RowSetNavigator nav  = session.batchNavigator;
+        HsqlArrayList   list = new HsqlArrayList();
+
+        try {
+            while (nav.next()) {
+                session.sessionContext.setDynamicArguments(nav.getCurrent());
+
+                Object[][] keys = cs.getRowLockKeys(session);
+
+                if (keys == null) {
+                    return null;
+                }
+
+                for (int i = 0; i < keys.length; i++) {
+                    list.add(keys[i]);
+                }
+            }
+        } finally {
+            nav.beforeFirst();
+        }
+
+        Object[][] keys = new Object[list.size()][];
+
+        list.toArray(keys);
+
+        return keys;
+    }
+
+    HsqlName getRowLockTableName(Session session) {
+        return session.rowLockTable == null ? null
+                                            : session.rowLockTable.getName();
+    }
+
     void setWaitingSessionTPL(Session session) {
 
         int count = session.tempSet.size();
@@ -722,7 +847,8 @@ class TransactionManagerCommon {
             return;
         }
 
-        HsqlName[] nameList = cs.getTableNamesForWrite();
+        HsqlName[] nameList    = cs.getTableNamesForWrite();
+        HsqlName   rowLockName = getRowLockTableName(session);
 
         for (int i = 0; i < nameList.length; i++) {
             HsqlName name = nameList[i];
@@ -731,6 +857,21 @@ class TransactionManagerCommon {
                 continue;
             }
 
+            if (name == rowLockName) {
+                tableRowLocks.put(name, session);
+
+                for (int j = 0; j < session.rowLockKeys.length; j++) {
+                    Object key = session.rowLockKeys[j];
+
+                    if (rowLocks.get(key) != session) {
+                        rowLocks.put(key, session);
+                        session.rowLockList.add(key);
+                    }
+                }
+
+                continue;
+            }
+
             tableWriteLocks.put(name, session);
         }
 
@@ -774,6 +915,22 @@ class TransactionManagerCommon {
                 it.remove();
             }
         }
+
+        it = tableRowLocks.values().iterator();
+
+        while (it.hasNext()) {
+            Session s = (Session) it.next();
+
+            if (s == session) {
+                it.remove();
+            }
+        }
+
+        for (int i = 0; i < session.rowLockList.size(); i++) {
+            rowLocks.remove(session.rowLockList.get(i));
+        }
+
+        session.rowLockList.clear();
     }
 
     void unlockReadTablesTPL(Session session, HsqlName[] locks) {
@@ -834,13 +991,42 @@ class TransactionManagerCommon {
         return true;
     }
 
-    long getFirstLiveTransactionTimestamp() {
+    /**
+     * add session to the set of live transactions, used by MVCC and MV2PL
+     * while holding the readLock so that concurrent sessions can begin
+     * transactions without waiting on each other
+     */
+    void beginLiveTransaction(Session session) {
+
+        beginTransactionCommon(session);
+        liveTransactionTimestamps.add(
+            Long.valueOf(session.transactionTimestamp));
+    }
+
+    /**
+     * remove session from the set of live transactions, returns false if
+     * the transaction was not live
+     */
+    boolean endLiveTransaction(Session session) {
 
-        if (liveTransactionTimestamps.isEmpty()) {
-            return Long.MAX_VALUE;
+        if (liveTransactionTimestamps.remove(
+                Long.valueOf(session.transactionTimestamp))) {
+            transactionCount.decrementAndGet();
+
+            return true;
         }
 
-        return liveTransactionTimestamps.get(0);
+        return false;
+    }
+
+    /**
+     * called while holding the writeLock, which excludes removals from the
+     * set between the two calls
+     */
+    long getFirstLiveTransactionTimestamp() {
+        return liveTransactionTimestamps.isEmpty()
+               ? Long.MAX_VALUE
+               : liveTransactionTimestamps.first().longValue();
     }
 
     /**
@@ -1029,4 +1215,60 @@ class TransactionManagerCommon {
     }
 
     public void abortAction(Session session) {}
+
+    /**
+     * Primary key values of a locked row. Values are compared with the column
+     * types. Character values are included in the hash code only when the
+     * collation cannot treat different strings as equal.
+     */
+    static final class RowLockKey {
+
+        final Session  session;
+        final Table    table;
+        final Object[] data;
+        final int      hash;
+
+        RowLockKey(Session session, Table table, Object[] data) {
+
+            this.session = session;
+            this.table   = table;
+            this.data    = data;
+
+            Type[] types = table.getPrimaryKeyTypes();
+            int    h     = table.hashCode();
+
+            for (int i = 0; i < data.length; i++) {
+                h = 31 * h + types[i].hashCode(data[i]);
+            }
+
+            hash = h;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object other) {
+
+            if (!(other instanceof RowLockKey)) {
+                return false;
+            }
+
+            RowLockKey key = (RowLockKey) other;
+
+            if (key.table != table || key.hash != hash) {
+                return false;
+            }
+
+            Type[] types = table.getPrimaryKeyTypes();
+
+            for (int i = 0; i < data.length; i++) {
+                if (types[i].compare(session, data[i], key.data[i]) != 0) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
 }
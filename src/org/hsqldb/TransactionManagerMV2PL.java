@@ -31,10 +31,11 @@
 
 package org.hsqldb;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
-import org.hsqldb.lib.HsqlDeque;
-import org.hsqldb.lib.LongDeque;
 import org.hsqldb.persist.PersistentStore;
 
 /**
@@ -48,8 +49,10 @@ public class TransactionManagerMV2PL extends TransactionManagerCommon
 implements TransactionManager {
 
     // functional unit - merged committed transactions
-    HsqlDeque committedTransactions          = new HsqlDeque();
-    LongDeque committedTransactionTimestamps = new LongDeque();
+
+    /** Map : commit timestamp -> row actions of committed transaction */
+    ConcurrentSkipListMap<Long, Object[]> committedTransactions =
+        new ConcurrentSkipListMap<Long, Object[]>();
 
     public TransactionManagerMV2PL(Database db) {
 
@@ -337,23 +340,11 @@ implements TransactionManager {
     }
 
     /**
-     * add a list of actions to the end of queue
+     * add a list of actions to the queue, ordered by commit timestamp
      */
     void addToCommittedQueue(Session session, Object[] list) {
-
-        synchronized (committedTransactionTimestamps) {
-
-            // add the txList according to commit timestamp
-            committedTransactions.addLast(list);
-
-            // get session commit timestamp
-            committedTransactionTimestamps.addLast(session.actionTimestamp);
-/* debug 190
-            if (committedTransactions.size() > 64) {
-                System.out.println("******* excessive transaction queue");
-            }
-// debug 190 */
-        }
+        committedTransactions.put(Long.valueOf(session.actionTimestamp),
+                                  list);
     }
 
     /**
@@ -364,25 +355,26 @@ implements TransactionManager {
         long timestamp = getFirstLiveTransactionTimestamp();
 
         while (true) {
-            long     commitTimestamp = 0;
-            Object[] actions         = null;
+            Map.Entry<Long, Object[]> entry =
+                committedTransactions.firstEntry();
 
-            synchronized (committedTransactionTimestamps) {
-                if (committedTransactionTimestamps.isEmpty()) {
-                    break;
-                }
+            if (entry == null) {
+                break;
+            }
 
-                commitTimestamp = committedTransactionTimestamps.getFirst();
+            long commitTimestamp = entry.getKey().longValue();
 
-                if (commitTimestamp < timestamp) {
-                    committedTransactionTimestamps.removeFirst();
+            if (commitTimestamp >= timestamp) {
+                break;
+            }
 
-                    actions = (Object[]) committedTransactions.removeFirst();
-                } else {
-                    break;
-                }
+            if (!committedTransactions.remove(entry.getKey(),
+                                              entry.getValue())) {
+                continue;
             }
 
+            Object[] actions = entry.getValue();
+
             mergeTransaction(actions, 0, actions.length, commitTimestamp);
             finaliseRows(session, actions, 0, actions.length);
         }
@@ -390,16 +382,14 @@ implements TransactionManager {
 
     public void beginTransaction(Session session) {
 
-        writeLock.lock();
+        readLock.lock();
 
         try {
             if (!session.isTransaction) {
-                beginTransactionCommon(session);
-                liveTransactionTimestamps.addLast(
-                    session.transactionTimestamp);
+                beginLiveTransaction(session);
             }
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
@@ -424,6 +414,8 @@ implements TransactionManager {
                 return;
             }
 
+            setRowLocksTPL(session, cs);
+
             boolean canProceed = setWaitedSessionsTPL(session, cs);
 
             if (canProceed) {
@@ -450,19 +442,17 @@ implements TransactionManager {
      */
     public void beginActionResume(Session session) {
 
-        writeLock.lock();
+        readLock.lock();
 
         try {
             if (session.isTransaction) {
                 session.actionTimestamp      = getNextGlobalChangeTimestamp();
                 session.actionStartTimestamp = session.actionTimestamp;
             } else {
-                beginTransactionCommon(session);
-                liveTransactionTimestamps.addLast(
-                    session.transactionTimestamp);
+                beginLiveTransaction(session);
             }
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
@@ -479,12 +469,7 @@ implements TransactionManager {
      */
     private void endTransaction(Session session) {
 
-        long timestamp = session.transactionTimestamp;
-        int  index     = liveTransactionTimestamps.indexOf(timestamp);
-
-        if (index >= 0) {
-            transactionCount.decrementAndGet();
-            liveTransactionTimestamps.remove(index);
+        if (endLiveTransaction(session)) {
             mergeExpiredTransactions(session);
         }
     }
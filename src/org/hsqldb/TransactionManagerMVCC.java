@@ -31,10 +31,12 @@
 
 package org.hsqldb;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
-import org.hsqldb.lib.HsqlDeque;
-import org.hsqldb.lib.LongDeque;
 import org.hsqldb.persist.PersistentStore;
 
 /**
@@ -48,8 +50,10 @@ public class TransactionManagerMVCC extends TransactionManagerCommon
 implements TransactionManager {
 
     // functional unit - merged committed transactions
-    HsqlDeque committedTransactions          = new HsqlDeque();
-    LongDeque committedTransactionTimestamps = new LongDeque();
+
+    /** Map : commit timestamp -> row actions of committed transaction */
+    ConcurrentSkipListMap<Long, Object[]> committedTransactions =
+        new ConcurrentSkipListMap<Long, Object[]>();
 
     // locks
     boolean isLockedMode;
@@ -64,6 +68,14 @@ implements TransactionManager {
     //
     int redoCount = 0;
 
+    // background merge of committed transactions
+    static final int           mergeBatchSize     = 64;
+    static final int           maxCommittedQueued = 1024;
+    final TransactionCollector collector          = new TransactionCollector();
+
+    /** count of committedTransactions, guarded by the write lock */
+    int committedCount;
+
     //
     public TransactionManagerMVCC(Database db) {
 
@@ -98,7 +110,13 @@ implements TransactionManager {
     }
 
     public void setTransactionControl(Session session, int mode) {
+
         super.setTransactionControl(session, mode);
+
+        if (database.txManager != this) {
+            mergeAllExpiredTransactions(session);
+            collector.close();
+        }
     }
 
     public void completeActions(Session session) {}
@@ -203,9 +221,8 @@ implements TransactionManager {
             }
 
             // session.actionTimestamp is the committed tx timestamp
-            if (session == lobSession
-                    || getFirstLiveTransactionTimestamp()
-                       > session.actionTimestamp) {
+            // other actions are merged by the collector
+            if (session == lobSession) {
                 Object[] list = session.rowActionList.getArray();
 
                 mergeTransaction(list, 0, limit, session.actionTimestamp);
@@ -216,6 +233,11 @@ implements TransactionManager {
 
                     addToCommittedQueue(session, list);
                 }
+
+                // the collector is behind
+                if (committedCount > maxCommittedQueued) {
+                    mergeExpiredTransactions(session, mergeBatchSize);
+                }
             }
 
             endTransactionTPL(session);
@@ -229,6 +251,8 @@ implements TransactionManager {
             writeLock.unlock();
         }
 
+        collector.schedule();
+
         return true;
     }
 
@@ -252,6 +276,8 @@ implements TransactionManager {
         } finally {
             writeLock.unlock();
         }
+
+        collector.schedule();
     }
 
     public void rollbackSavepoint(Session session, int index) {
@@ -581,69 +607,86 @@ implements TransactionManager {
     }
 
     /**
-     * add a list of actions to the end of queue
+     * add a list of actions to the queue, ordered by commit timestamp
      */
     void addToCommittedQueue(Session session, Object[] list) {
 
-        synchronized (committedTransactionTimestamps) {
-
-            // add the txList according to commit timestamp
-            committedTransactions.addLast(list);
+        committedTransactions.put(Long.valueOf(session.actionTimestamp),
+                                  list);
 
-            // get session commit timestamp
-            committedTransactionTimestamps.addLast(session.actionTimestamp);
-/* debug 190
-            if (committedTransactions.size() > 64) {
-                System.out.println("******* excessive transaction queue");
-            }
-// debug 190 */
-        }
+        committedCount++;
     }
 
     /**
-     * expire all committed transactions that are no longer in scope
+     * expire committed transactions that are no longer in scope, up to the
+     * given count, and return the number expired
      */
-    void mergeExpiredTransactions(Session session) {
+    int mergeExpiredTransactions(Session session, int count) {
 
         long timestamp = getFirstLiveTransactionTimestamp();
+        int  merged    = 0;
 
-        while (true) {
-            long     commitTimestamp;
-            Object[] actions;
+        while (merged < count) {
+            Map.Entry<Long, Object[]> entry =
+                committedTransactions.firstEntry();
 
-            synchronized (committedTransactionTimestamps) {
-                if (committedTransactionTimestamps.isEmpty()) {
-                    break;
-                }
+            if (entry == null) {
+                break;
+            }
 
-                commitTimestamp = committedTransactionTimestamps.getFirst();
+            long commitTimestamp = entry.getKey().longValue();
 
-                if (commitTimestamp < timestamp) {
-                    committedTransactionTimestamps.removeFirst();
+            if (commitTimestamp >= timestamp) {
+                break;
+            }
 
-                    actions = (Object[]) committedTransactions.removeFirst();
-                } else {
-                    break;
-                }
+            if (!committedTransactions.remove(entry.getKey(),
+                                              entry.getValue())) {
+                continue;
             }
 
+            committedCount--;
+
+            Object[] actions = entry.getValue();
+
             mergeTransaction(actions, 0, actions.length, commitTimestamp);
             finaliseRows(session, actions, 0, actions.length);
+
+            merged++;
         }
+
+        return merged;
     }
 
-    public void beginTransaction(Session session) {
+    /**
+     * expire all committed transactions that are no longer in scope, used
+     * before statements that need the final state of all rows
+     */
+    void mergeAllExpiredTransactions(Session session) {
+
+        if (committedTransactions.isEmpty()) {
+            return;
+        }
 
         writeLock.lock();
 
+        try {
+            mergeExpiredTransactions(session, Integer.MAX_VALUE);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void beginTransaction(Session session) {
+
+        readLock.lock();
+
         try {
             if (!session.isTransaction) {
-                beginTransactionCommon(session);
-                liveTransactionTimestamps.addLast(
-                    session.transactionTimestamp);
+                beginLiveTransaction(session);
             }
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
         }
     }
 
@@ -696,38 +739,30 @@ implements TransactionManager {
      */
     public void beginActionResume(Session session) {
 
-        writeLock.lock();
+        readLock.lock();
 
         try {
             if (session.isTransaction) {
                 session.actionTimestamp      = getNextGlobalChangeTimestamp();
                 session.actionStartTimestamp = session.actionTimestamp;
             } else {
-                beginTransactionCommon(session);
-                liveTransactionTimestamps.addLast(
-                    session.transactionTimestamp);
+                beginLiveTransaction(session);
             }
         } finally {
-            writeLock.unlock();
+            readLock.unlock();
+        }
+
+        if (session == catalogWriteSession) {
+            mergeAllExpiredTransactions(session);
         }
     }
 
     /**
-     * remove session from queue when a transaction ends
-     * and expire any committed transactions
-     * that are no longer required. remove transactions ended before the first
-     * timestamp in liveTransactionsSession queue
+     * remove session from queue when a transaction ends. Committed
+     * transactions that are no longer required are expired by the collector
      */
     void endTransaction(Session session) {
-
-        long timestamp = session.transactionTimestamp;
-        int  index     = liveTransactionTimestamps.indexOf(timestamp);
-
-        if (index >= 0) {
-            transactionCount.decrementAndGet();
-            liveTransactionTimestamps.remove(index);
-            mergeExpiredTransactions(session);
-        }
+        endLiveTransaction(session);
     }
 
     private void countDownLatches(Session session) {
@@ -844,4 +879,89 @@ implements TransactionManager {
                              long statementTimestamp, int mode) {
         super.resetSession(session, targetSession, statementTimestamp, mode);
     }
+
+    /**
+     * Merges the row actions of committed transactions into the rows and
+     * removes deleted rows in the background, once the transactions have
+     * ended before the oldest live transaction started. Runs on the
+     * timer thread when a transaction ends, in batches that each hold the
+     * write lock briefly, so that commits do not wait for this work. When
+     * more than maxCommittedQueued transactions are queued, each commit
+     * also merges a batch. Uses its own worker session, as other threads
+     * may use the SYS session at the same time.
+     */
+    class TransactionCollector implements Runnable {
+
+        private final AtomicBoolean isScheduled = new AtomicBoolean();
+        private Session             collectorSession;
+
+        public void run() {
+
+            isScheduled.set(false);
+
+            int state = database.getState();
+
+            if (state != Database.DATABASE_ONLINE
+                    && state != Database.DATABASE_OPENING) {
+                return;
+            }
+
+            if (database.txManager != TransactionManagerMVCC.this) {
+                return;
+            }
+
+            try {
+                while (true) {
+                    int merged;
+
+                    writeLock.lock();
+
+                    try {
+                        if (collectorSession == null) {
+                            collectorSession =
+                                database.sessionManager.newWorkerSession();
+                        }
+
+                        merged = mergeExpiredTransactions(collectorSession,
+                                                          mergeBatchSize);
+                    } finally {
+                        writeLock.unlock();
+                    }
+
+                    if (merged < mergeBatchSize) {
+                        break;
+                    }
+                }
+            } catch (Throwable e) {
+                database.logger.logSevereEvent("TransactionCollector failed",
+                                               e);
+            }
+        }
+
+        void close() {
+
+            writeLock.lock();
+
+            try {
+                if (collectorSession != null) {
+                    collectorSession.closeWorker();
+
+                    collectorSession = null;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        void schedule() {
+
+            if (committedTransactions.isEmpty()) {
+                return;
+            }
+
+            if (isScheduled.compareAndSet(false, true)) {
+                DatabaseManager.getTimer().scheduleAfter(0, this);
+            }
+        }
+    }
 }
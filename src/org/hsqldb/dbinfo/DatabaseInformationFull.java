@@ -63,6 +63,7 @@ import org.hsqldb.Tokens;
 import org.hsqldb.TriggerDef;
 import org.hsqldb.View;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexStatistics;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.FileUtil;
 import org.hsqldb.lib.HashMappedList;
@@ -79,6 +80,7 @@ import org.hsqldb.persist.DataSpaceManager;
 import org.hsqldb.persist.DirectoryBlockCachedObject;
 import org.hsqldb.persist.HsqlDatabaseProperties;
 import org.hsqldb.persist.HsqlProperties;
+import org.hsqldb.persist.OffHeapCache;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.persist.TableSpaceManager;
 import org.hsqldb.persist.TextCache;
@@ -484,6 +486,10 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
             addColumn(t, "CACHE_BYTES", CARDINAL_NUMBER);        // not null
             addColumn(t, "FILE_LOST_BYTES", CARDINAL_NUMBER);    // not null
             addColumn(t, "FILE_FREE_POS", CARDINAL_NUMBER);      // not null
+            addColumn(t, "OFFHEAP_MAX_BYTES", CARDINAL_NUMBER);  // not null
+            addColumn(t, "OFFHEAP_BYTES", CARDINAL_NUMBER);      // not null
+            addColumn(t, "OFFHEAP_HITS", CARDINAL_NUMBER);       // not null
+            addColumn(t, "OFFHEAP_MISSES", CARDINAL_NUMBER);     // not null
 
             HsqlName name = HsqlNameManager.newInfoSchemaObjectName(
                 sysTableHsqlNames[SYSTEM_CACHEINFO].name, false,
@@ -502,6 +508,10 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
         final int icache_length    = 4;
         final int ilost_bytes      = 5;
         final int ifree_pos        = 6;
+        final int ioffheap_max     = 7;
+        final int ioffheap_bytes   = 8;
+        final int ioffheap_hits    = 9;
+        final int ioffheap_misses  = 10;
 
         //
         DataFileCache cache = null;
@@ -564,6 +574,22 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
             row[ilost_bytes] = ValuePool.getLong(cache.getLostBlockSize());
             row[ifree_pos]   = ValuePool.getLong(cache.getFileFreePos());
 
+            OffHeapCache offHeap = cache.getOffHeapCache();
+
+            if (offHeap == null) {
+                row[ioffheap_max]    = ValuePool.getLong(0);
+                row[ioffheap_bytes]  = ValuePool.getLong(0);
+                row[ioffheap_hits]   = ValuePool.getLong(0);
+                row[ioffheap_misses] = ValuePool.getLong(0);
+            } else {
+                row[ioffheap_max] = ValuePool.getLong(offHeap.getCapacity());
+                row[ioffheap_bytes] =
+                    ValuePool.getLong(offHeap.getStoredBytes());
+                row[ioffheap_hits] = ValuePool.getLong(offHeap.getHitCount());
+                row[ioffheap_misses] =
+                    ValuePool.getLong(offHeap.getMissCount());
+            }
+
             t.insertSys(session, store, row);
         }
 
@@ -1676,8 +1702,16 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
      * ALLOCATED_ROWS   BIGINT    allocated row count
      * ALLOCATED_SPACE  BIGINT    allocated bytes
      * USED_SPACE       BIGINT    used bytes
+     * DISTINCT_VALUES  BIGINT    number of distinct keys
+     * COLUMN_DISTINCT_VALUES  VARCHAR number of distinct values of leading columns
+     * NULL_VALUES      BIGINT    number of nulls in the first column
+     * HISTOGRAM        VARCHAR   equi-depth histogram of the first column
+     * MOST_COMMON_VALUES VARCHAR most common values of the first column
      * </pre> <p>
      *
+     * The CARDINALITY and the last five columns are filled for the indexes
+     * of tables that have been analysed with ANALYZE TABLE.<p>
+     *
      * @return a <code>Table</code> object describing the visible
      *        <code>Index</code> objects for each accessible
      *        table defined within this database.
@@ -1702,6 +1736,11 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
             addColumn(t, "ALLOCATED_SPACE", CARDINAL_NUMBER);
             addColumn(t, "SPACE_ID", CARDINAL_NUMBER);
             addColumn(t, "BASE_SPACE", CARDINAL_NUMBER);
+            addColumn(t, "DISTINCT_VALUES", CARDINAL_NUMBER);
+            addColumn(t, "COLUMN_DISTINCT_VALUES", CHARACTER_DATA);
+            addColumn(t, "NULL_VALUES", CARDINAL_NUMBER);
+            addColumn(t, "HISTOGRAM", CHARACTER_DATA);
+            addColumn(t, "MOST_COMMON_VALUES", CHARACTER_DATA);
 
             // order: NON_UNIQUE, TYPE, INDEX_NAME, and ORDINAL_POSITION.
             // added for unique: INDEX_QUALIFIER, TABLE_NAME
@@ -1731,12 +1770,18 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
         Object[] row;
 
         // column number mappings
-        final int itable_cat   = 0;
-        final int itable_schem = 1;
-        final int itable_name  = 2;
-        final int itable_type  = 3;
-        final int iindex_name  = 4;
-        final int iordinal_pos = 5;
+        final int itable_cat    = 0;
+        final int itable_schem  = 1;
+        final int itable_name   = 2;
+        final int itable_type   = 3;
+        final int iindex_name   = 4;
+        final int iordinal_pos  = 5;
+        final int icardinality  = 6;
+        final int idistinct     = 12;
+        final int icol_distinct = 13;
+        final int inull_values  = 14;
+        final int ihistogram    = 15;
+        final int ifrequent     = 16;
 
         // Initialization
         tables =
@@ -1769,6 +1814,31 @@ extends org.hsqldb.dbinfo.DatabaseInformationMain {
                 row[iindex_name]  = indexName;
                 row[iordinal_pos] = Long.valueOf(index.getPosition() + 1);
 
+                IndexStatistics statistics = index.getStatistics();
+
+                if (statistics != null) {
+                    long[]        distinct = statistics.getDistinctCounts();
+                    StringBuilder sb       = new StringBuilder();
+
+                    for (int j = 0; j < distinct.length; j++) {
+                        if (j > 0) {
+                            sb.append(',');
+                        }
+
+                        sb.append(distinct[j]);
+                    }
+
+                    row[icardinality] =
+                        Long.valueOf(statistics.getRowCount());
+                    row[idistinct] =
+                        Long.valueOf(distinct[distinct.length - 1]);
+                    row[icol_distinct] = sb.toString();
+                    row[inull_values] =
+                        Long.valueOf(statistics.getNullCount());
+                    row[ihistogram] = statistics.getValuesString(true);
+                    row[ifrequent]  = statistics.getValuesString(false);
+                }
+
                 t.insertSys(session, store, row);
             }
         }
@@ -52,6 +52,11 @@ public interface Index extends SchemaObject {
     int INDEX_NON_UNIQUE = 1;
     int INDEX_UNIQUE     = 2;
 
+    //
+    int STRUCTURE_AVL   = 0;
+    int STRUCTURE_BTREE = 1;
+    int STRUCTURE_HASH  = 2;
+
     //
     double minimumSelectivity = 16;
     double cachedFactor       = 8;
@@ -149,6 +154,18 @@ public interface Index extends SchemaObject {
 
     boolean isClustered();
 
+    /**
+     * Returns the STRUCTURE_XXX constant for the implementation of the index
+     */
+    int getStructure();
+
+    /**
+     * Returns the statistics collected by ANALYZE TABLE, or null.
+     */
+    IndexStatistics getStatistics();
+
+    void setStatistics(IndexStatistics statistics);
+
     /**
      * Returns the node count.
      */
@@ -234,6 +251,19 @@ public interface Index extends SchemaObject {
                          RangeVariableConditions[] conditions,
                          int distinctCount, boolean[] map);
 
+    /**
+     * Returns up to count iterators over consecutive ranges of the index.
+     * Together they return the rows of firstRow() in the same order. Each
+     * iterator can be used by a different thread.
+     *
+     * @return iterators in index order
+     * @param session Session
+     * @param store PersistentStore
+     * @param count maximum number of iterators
+     */
+    RowIterator[] firstRows(Session session, PersistentStore store,
+                            int count);
+
     /**
      * Returns the row for the last node of the index
      *
@@ -70,7 +70,11 @@
 
 package org.hsqldb.index;
 
+import java.util.Arrays;
+import java.util.Comparator;
+
 import org.hsqldb.Constraint;
+import org.hsqldb.HsqlException;
 import org.hsqldb.HsqlNameManager.HsqlName;
 import org.hsqldb.OpTypes;
 import org.hsqldb.RangeVariable.RangeVariableConditions;
@@ -85,9 +89,12 @@ import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HsqlArrayList;
 import org.hsqldb.lib.OrderedHashSet;
 import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.DataFileCache;
 import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowDataSorter;
 import org.hsqldb.rights.Grantee;
 import org.hsqldb.types.DateTimeType;
 import org.hsqldb.types.TimestampData;
@@ -119,6 +126,19 @@ public class IndexAVL implements Index {
     private static final IndexRowIterator emptyIterator =
         new IndexRowIterator(null, null, null, null, 0, false, false);
 
+    /**
+     * Returned by the optimistic traversals when the tree may have changed
+     * during the traversal, which must then be repeated under the read lock.
+     */
+    static final NodeAVL retryNode = new NodeAVL();
+
+    /**
+     * Limit on the links followed in one direction by an optimistic
+     * traversal. A consistent AVL tree is never as deep, so a longer path
+     * can only be read while the tree is changing.
+     */
+    static final int optimisticDepth = 64;
+
     // fields
     private final long       persistenceId;
     protected final HsqlName name;
@@ -126,8 +146,8 @@ public class IndexAVL implements Index {
     final int[]              colIndex;
     private final int[]      defaultColMap;
     final Type[]             colTypes;
-    private final boolean[]  colDesc;
-    private final boolean[]  nullsLast;
+    final boolean[]          colDesc;
+    final boolean[]          nullsLast;
     final boolean            isSimpleOrder;
     final boolean            isSimple;
     protected final boolean  isPK;        // PK with or without columns
@@ -138,6 +158,7 @@ public class IndexAVL implements Index {
     protected TableBase      table;
     int                      position;
     private IndexUse[]       asArray;
+    private volatile IndexStatistics statistics;
 
     //
     Object[] nullData;
@@ -376,6 +397,18 @@ public class IndexAVL implements Index {
         return isClustered;
     }
 
+    public int getStructure() {
+        return STRUCTURE_AVL;
+    }
+
+    public IndexStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(IndexStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     /**
      * Returns the node count.
      */
@@ -770,13 +803,17 @@ public class IndexAVL implements Index {
     }
 
     boolean hasNulls(Session session, Object[] rowData) {
+        return hasNulls(session, rowData, colIndex);
+    }
+
+    boolean hasNulls(Session session, Object[] rowData, int[] rowColMap) {
 
         boolean uniqueNulls = session == null
                               || session.database.sqlUniqueNulls;
         boolean compareId = false;
 
         for (int j = 0; j < colIndex.length; j++) {
-            if (rowData[colIndex[j]] == null) {
+            if (rowData[rowColMap[j]] == null) {
                 compareId = true;
 
                 if (uniqueNulls) {
@@ -831,17 +868,7 @@ public class IndexAVL implements Index {
             }
 
             if (compare == 0) {
-                Constraint c = null;
-
-                if (isConstraint) {
-                    c = ((Table) table).getUniqueConstraintForIndex(this);
-                }
-
-                if (c == null) {
-                    throw Error.error(ErrorCode.X_23505, name.statementName);
-                } else {
-                    throw c.getException(row.getData());
-                }
+                throw getUniqueException(row.getData());
             }
 
             isleft = compare < 0;
@@ -858,6 +885,232 @@ public class IndexAVL implements Index {
         balance(store, x, isleft);
     }
 
+    private HsqlException getUniqueException(Object[] data) {
+
+        Constraint c = null;
+
+        if (isConstraint) {
+            c = ((Table) table).getUniqueConstraintForIndex(this);
+        }
+
+        if (c == null) {
+            return Error.error(ErrorCode.X_23505, name.statementName);
+        } else {
+            return c.getException(data);
+        }
+    }
+
+    /**
+     * Links the nodes of rows that are not yet in the index into a balanced
+     * tree and sets it as the tree of the index, which must be empty. The
+     * rows are sorted first if they are not in the order of the index.
+     * Returns false without linking the nodes if a unique index would be
+     * violated.
+     */
+    public boolean insertRows(final Session session, PersistentStore store,
+                              Row[] rows, int count) {
+
+        if (!isSorted(session, rows, count)) {
+            Row[] sorted = new Row[count];
+
+            ArrayUtil.copyArray(rows, sorted, count);
+            // merge sort uses fewer comparisons on partly ordered rows
+            Arrays.sort(sorted, new Comparator<Row>() {
+
+                public int compare(Row a, Row b) {
+                    return compareRowForInsertOrDelete(session, a, b, true,
+                                                       0);
+                }
+            });
+
+            rows = sorted;
+        }
+
+        if (isUnique) {
+            for (int i = 1; i < count; i++) {
+                if (!hasNulls(session, rows[i].getData())
+                        && compareRowForInsertOrDelete(
+                            session, rows[i], rows[i - 1], false, 0) == 0) {
+                    return false;
+                }
+            }
+        }
+
+        store.setAccessor(this, linkNodes(store, rows, 0, count));
+
+        return true;
+    }
+
+    private boolean isSorted(Session session, Row[] rows, int count) {
+
+        for (int i = 1; i < count; i++) {
+            if (compareRowForInsertOrDelete(session, rows[i], rows[i - 1],
+                                            true, 0) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the root of a tree of the nodes of the sorted rows from
+     * position from to to. The middle row is the root and a subtree of n
+     * nodes has a height equal to the bit length of n.
+     */
+    private NodeAVL linkNodes(PersistentStore store, Row[] rows, int from,
+                              int to) {
+
+        if (from == to) {
+            return null;
+        }
+
+        int     mid   = (from + to) >>> 1;
+        NodeAVL left  = linkNodes(store, rows, from, mid);
+        NodeAVL right = linkNodes(store, rows, mid + 1, to);
+        NodeAVL node  = ((RowAVL) rows[mid]).getNode(position);
+        int balance = Integer.numberOfLeadingZeros(mid - from)
+                      - Integer.numberOfLeadingZeros(to - mid - 1);
+
+        node = node.set(store, true, left);
+        node = node.set(store, false, right);
+        node = node.setBalance(store, balance);
+
+        return node;
+    }
+
+    /**
+     * Returns the data used for sorting the rows of a CACHED table for
+     * insertSorted(), which is the values of the index columns followed by
+     * the position of the row.
+     */
+    public Object[] getSortKey(Row row) {
+
+        Object[] data = row.getData();
+        Object[] key  = new Object[colIndex.length + 1];
+
+        for (int j = 0; j < colIndex.length; j++) {
+            key[j] = data[colIndex[j]];
+        }
+
+        key[colIndex.length] = Long.valueOf(row.getPos());
+
+        return key;
+    }
+
+    public Type[] getSortKeyTypes() {
+
+        Type[] types = new Type[colTypes.length + 1];
+
+        ArrayUtil.copyArray(colTypes, types, colTypes.length);
+
+        types[colTypes.length] = Type.SQL_BIGINT;
+
+        return types;
+    }
+
+    /**
+     * Returns true if the rows of this index are in the same order as those
+     * of an index of another table on columns with the same names and types.
+     * Used when a table is recreated after a change to its columns.
+     */
+    public boolean isSameOrder(IndexAVL other) {
+
+        if (colIndex.length != other.colIndex.length
+                || table.isSystemVersioned || other.table.isSystemVersioned) {
+            return false;
+        }
+
+        for (int j = 0; j < colIndex.length; j++) {
+            String name = ((Table) table).getColumn(
+                colIndex[j]).getName().name;
+            String otherName = ((Table) other.table).getColumn(
+                other.colIndex[j]).getName().name;
+
+            if (!name.equals(otherName)
+                    || !colTypes[j].equals(other.colTypes[j])
+                    || colDesc[j] != other.colDesc[j]
+                    || nullsLast[j] != other.nullsLast[j]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public Comparator<Object[]> getSortKeyComparator(final Session session) {
+
+        return new Comparator<Object[]>() {
+
+            public int compare(Object[] keyA, Object[] keyB) {
+
+                int i = compareSortKey(session, keyA, keyB);
+
+                if (i == 0) {
+                    long diff =
+                        ((Long) keyA[colIndex.length]).longValue()
+                        - ((Long) keyB[colIndex.length]).longValue();
+
+                    i = diff == 0L ? 0
+                                   : diff > 0L ? 1
+                                               : -1;
+                }
+
+                return i;
+            }
+        };
+    }
+
+    int compareSortKey(Session session, Object[] a, Object[] b) {
+
+        for (int j = 0; j < colIndex.length; j++) {
+            int i = colTypes[j].compare(session, a[j], b[j]);
+
+            if (i != 0) {
+                if (isSimpleOrder) {
+                    return i;
+                }
+
+                boolean nulls = a[j] == null || b[j] == null;
+
+                if (colDesc[j] && !nulls) {
+                    i = -i;
+                }
+
+                if (nullsLast[j] && nulls) {
+                    i = -i;
+                }
+
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Builds a balanced tree for the rows of a CACHED table from the sorted
+     * keys of the rows, returned by getSortKey() and sorted with the
+     * comparator from getSortKeyComparator(). The rows are not read. The
+     * links of each node are added to links in the format of
+     * NodeAVLDisk.newLink(), to be set in the order of the rows. Returns the
+     * position of the root row, or -1 if there are no rows.
+     */
+    public long linkSorted(Session session, PersistentStore store,
+                           RowDataSorter keys, RowDataSorter links) {
+
+        NodeLinker linker = new NodeLinker(session, store, keys, links);
+        long[]     root   = linker.linkNodes(keys.size());
+
+        if (root == null) {
+            return -1;
+        }
+
+        linker.addLink(root, -1);
+
+        return root[0];
+    }
+
     public void delete(Session session, PersistentStore store, Row row) {
 
         row = (Row) store.get(row, false);
@@ -1066,8 +1319,35 @@ public class IndexAVL implements Index {
             return emptyIterator;
         }
 
+        boolean single = isSingleRowMatch(session, rowdata, matchCount,
+                                          compareType);
+
         return new IndexRowIterator(session, store, this, node, distinctCount,
-                                    false, reversed);
+                                    single, reversed);
+    }
+
+    /**
+     * A unique index with all columns matched by equality to non-null values
+     * has at most one matching row when rows have a single version. The
+     * iterator then does not read ahead to the next node, which may belong
+     * to a row of a concurrent transaction.
+     */
+    boolean isSingleRowMatch(Session session, Object[] rowdata,
+                             int matchCount, int compareType) {
+
+        if (!isUnique || matchCount != colIndex.length
+                || compareType != OpTypes.EQUAL || session == null
+                || session.database.txManager.isMVRows()) {
+            return false;
+        }
+
+        for (int i = 0; i < matchCount; i++) {
+            if (rowdata[i] == null) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -1150,6 +1430,17 @@ public class IndexAVL implements Index {
                                 RangeVariableConditions[] conditions,
                                 int distinctCount, boolean[] map) {
 
+        NodeAVL node = endNodeOptimistic(session, store, false);
+
+        if (node != retryNode) {
+            if (node == null) {
+                return emptyIterator;
+            }
+
+            return new IndexRowIterator(session, store, this, node,
+                                        distinctCount, false, false);
+        }
+
         store.readLock();
 
         try {
@@ -1185,6 +1476,17 @@ public class IndexAVL implements Index {
 
     public RowIterator firstRow(PersistentStore store) {
 
+        NodeAVL node = endNodeOptimistic(null, store, false);
+
+        if (node != retryNode) {
+            if (node == null) {
+                return emptyIterator;
+            }
+
+            return new IndexRowIterator(null, store, this, node, 0, false,
+                                        false);
+        }
+
         store.readLock();
 
         try {
@@ -1206,6 +1508,118 @@ public class IndexAVL implements Index {
         }
     }
 
+    /**
+     * The ranges are split at nodes of the top levels of the tree, which
+     * divide the index into parts of similar size. Only nodes with rows
+     * that the session can read are used, as these rows are not removed
+     * from the index while the session reads the ranges. Each iterator ends
+     * before the first row of the next range.
+     */
+    public RowIterator[] firstRows(Session session, PersistentStore store,
+                                   int count) {
+
+        store.readLock();
+
+        try {
+            NodeAVL       root  = getAccessor(store);
+            HsqlArrayList nodes = new HsqlArrayList();
+
+            for (int depth = 0; nodes.size() < count * 2 - 1; depth++) {
+                int size = nodes.size();
+
+                nodes.clear();
+                addSplitNodes(session, store, root, depth, nodes);
+
+                if (depth > 0 && nodes.size() == size) {
+                    break;
+                }
+            }
+
+            int           splits    = Math.min(count - 1, nodes.size());
+            RowIterator[] iterators = new RowIterator[splits + 1];
+            NodeAVL       start     = root;
+
+            while (start != null && start.getLeft(store) != null) {
+                start = start.getLeft(store);
+            }
+
+            for (int i = 0; i <= splits; i++) {
+                NodeAVL end = null;
+
+                if (i < splits) {
+                    end = (NodeAVL) nodes.get(((i + 1) * (nodes.size() + 1))
+                                              / (splits + 1) - 1);
+                }
+
+                iterators[i] = rangeIterator(session, store, start, end);
+                start        = end;
+            }
+
+            return iterators;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Adds the nodes down to depth below x that the session can read, in
+     * index order.
+     */
+    private void addSplitNodes(Session session, PersistentStore store,
+                               NodeAVL x, int depth, HsqlArrayList nodes) {
+
+        if (x == null) {
+            return;
+        }
+
+        if (depth > 0) {
+            addSplitNodes(session, store, x.getLeft(store), depth - 1, nodes);
+        }
+
+        if (session == null
+                || store.canRead(session, x.getRow(store),
+                                 TransactionManager.ACTION_READ, null)) {
+            nodes.add(x);
+        }
+
+        if (depth > 0) {
+            addSplitNodes(session, store, x.getRight(store), depth - 1,
+                          nodes);
+        }
+    }
+
+    /**
+     * Returns an iterator from the first readable node at or after start,
+     * which ends before end. When end is null it ends with the index.
+     */
+    private RowIterator rangeIterator(Session session, PersistentStore store,
+                                      NodeAVL start, NodeAVL end) {
+
+        long endPos = end == null ? -1
+                                  : end.getRow(store).getPos();
+
+        for (NodeAVL x = start; x != null && x != end; x = next(store, x)) {
+            Row row = x.getRow(store);
+
+            if (row.getPos() == endPos) {
+                break;
+            }
+
+            if (session == null
+                    || store.canRead(session, row,
+                                     TransactionManager.ACTION_READ, null)) {
+                IndexRowIterator it = new IndexRowIterator(session, store,
+                    this, x, 0, false, false);
+
+                it.endPos = endPos;
+
+                return it;
+            }
+        }
+
+        return emptyIterator;
+    }
+
     /**
      * Returns the row for the last node of the index
      *
@@ -1214,6 +1628,17 @@ public class IndexAVL implements Index {
     public RowIterator lastRow(Session session, PersistentStore store,
                                int distinctCount, boolean[] map) {
 
+        NodeAVL node = endNodeOptimistic(session, store, true);
+
+        if (node != retryNode) {
+            if (node == null) {
+                return emptyIterator;
+            }
+
+            return new IndexRowIterator(session, store, this, node,
+                                        distinctCount, false, true);
+        }
+
         store.readLock();
 
         try {
@@ -1248,38 +1673,184 @@ public class IndexAVL implements Index {
     }
 
     /**
-     * Returns the node after the given one
+     * Returns the first or last node that can be read by the session,
+     * traversing the tree without the read lock. Returns retryNode if the
+     * tree was changed during the traversal, if the store does not support
+     * optimistic reads, or if the node cannot be read by the session.
      */
-    NodeAVL next(Session session, PersistentStore store, NodeAVL x,
-                 int distinctCount) {
+    NodeAVL endNodeOptimistic(Session session, PersistentStore store,
+                              boolean last) {
 
-        if (x == null) {
-            return null;
+        long stamp = store.tryOptimisticRead();
+
+        if (stamp == -1) {
+            return retryNode;
         }
 
-        if (distinctCount != 0) {
-            return findDistinctNode(session, store, x, distinctCount, false);
+        NodeAVL x;
+
+        try {
+            x = endNodeNoLock(store, last);
+        } catch (RuntimeException e) {
+            return retryNode;
         }
 
-        while (true) {
-            x = next(store, x);
+        if (x == retryNode) {
+            return retryNode;
+        }
 
-            if (x == null) {
-                return x;
-            }
+        return checkOptimistic(session, store, x, stamp,
+                               TransactionManager.ACTION_READ);
+    }
 
-            if (session == null) {
-                return x;
-            }
+    private NodeAVL endNodeNoLock(PersistentStore store, boolean last) {
 
-            Row row = x.getRow(store);
+        NodeAVL x     = getAccessor(store);
+        NodeAVL l     = x;
+        int     depth = 0;
 
-            if (store.canRead(session, row, TransactionManager.ACTION_READ,
-                              null)) {
-                return x;
+        while (l != null) {
+            if (++depth > optimisticDepth) {
+                return retryNode;
             }
+
+            x = l;
+            l = last ? x.getRight(store)
+                     : x.getLeft(store);
         }
-    }
+
+        return x;
+    }
+
+    /**
+     * Returns the next or previous node that can be read by the session,
+     * traversing the tree without the read lock. Returns retryNode as in
+     * endNodeOptimistic.
+     */
+    NodeAVL nextOptimistic(Session session, PersistentStore store, NodeAVL x,
+                           boolean reversed) {
+
+        long stamp = store.tryOptimisticRead();
+
+        if (stamp == -1) {
+            return retryNode;
+        }
+
+        try {
+            x = nextNoLock(store, x, reversed);
+        } catch (RuntimeException e) {
+
+            // a row removed by a writer may have its node links cleared
+            return retryNode;
+        }
+
+        if (x == retryNode) {
+            return retryNode;
+        }
+
+        return checkOptimistic(session, store, x, stamp,
+                               TransactionManager.ACTION_READ);
+    }
+
+    private NodeAVL nextNoLock(PersistentStore store, NodeAVL x,
+                               boolean reversed) {
+
+        RowAVL  row   = x.getRow(store);
+        int     depth = 0;
+        NodeAVL temp;
+
+        x    = row.getNode(position);
+        temp = reversed ? x.getLeft(store)
+                        : x.getRight(store);
+
+        if (temp != null) {
+            x    = temp;
+            temp = reversed ? x.getRight(store)
+                            : x.getLeft(store);
+
+            while (temp != null) {
+                if (++depth > optimisticDepth) {
+                    return retryNode;
+                }
+
+                x    = temp;
+                temp = reversed ? x.getRight(store)
+                                : x.getLeft(store);
+            }
+        } else {
+            temp = x;
+            x    = x.getParent(store);
+
+            while (x != null && temp == (reversed ? x.getLeft(store)
+                                                  : x.getRight(store))) {
+                if (++depth > optimisticDepth) {
+                    return retryNode;
+                }
+
+                temp = x;
+                x    = x.getParent(store);
+            }
+        }
+
+        return x;
+    }
+
+    /**
+     * Validates the stamp of an optimistic traversal that found node x.
+     */
+    private NodeAVL checkOptimistic(Session session, PersistentStore store,
+                                    NodeAVL x, long stamp, int readMode) {
+
+        if (!store.validateRead(stamp)) {
+            return retryNode;
+        }
+
+        if (x == null || session == null) {
+            return x;
+        }
+
+        Row row = x.getRow(store);
+
+        if (store.canRead(session, row, readMode, colIndex)) {
+            return x;
+        }
+
+        return retryNode;
+    }
+
+    /**
+     * Returns the node after the given one
+     */
+    NodeAVL next(Session session, PersistentStore store, NodeAVL x,
+                 int distinctCount) {
+
+        if (x == null) {
+            return null;
+        }
+
+        if (distinctCount != 0) {
+            return findDistinctNode(session, store, x, distinctCount, false);
+        }
+
+        while (true) {
+            x = next(store, x);
+
+            if (x == null) {
+                return x;
+            }
+
+            if (session == null) {
+                return x;
+            }
+
+            Row row = x.getRow(store);
+
+            if (store.canRead(session, row, TransactionManager.ACTION_READ,
+                              null)) {
+                return x;
+            }
+        }
+    }
 
     NodeAVL last(Session session, PersistentStore store, NodeAVL x,
                  int distinctCount) {
@@ -1517,125 +2088,48 @@ public class IndexAVL implements Index {
                      int[] rowColMap, int fieldCount, int compareType,
                      int readMode, boolean reversed) {
 
-        store.readLock();
+        if (compareType != OpTypes.EQUAL
+                && compareType != OpTypes.IS_NULL) {
+            fieldCount--;
 
-        try {
-            NodeAVL x          = getAccessor(store);
-            NodeAVL n          = null;
-            NodeAVL result     = null;
-            Row     currentRow = null;
-
-            if (compareType != OpTypes.EQUAL
-                    && compareType != OpTypes.IS_NULL) {
-                fieldCount--;
-
-                if (compareType == OpTypes.SMALLER
-                        || compareType == OpTypes.SMALLER_EQUAL
-                        || compareType == OpTypes.MAX) {
-                    reversed = true;
-                }
+            if (compareType == OpTypes.SMALLER
+                    || compareType == OpTypes.SMALLER_EQUAL
+                    || compareType == OpTypes.MAX) {
+                reversed = true;
             }
+        }
 
-            while (x != null) {
-                currentRow = x.getRow(store);
-
-                int i = 0;
-
-                if (fieldCount > 0) {
-                    i = compareRowNonUnique(session, currentRow.getData(),
-                                            rowdata, rowColMap, fieldCount);
-                }
-
-                if (i == 0) {
-                    switch (compareType) {
-
-                        case OpTypes.MAX :
-                        case OpTypes.IS_NULL :
-                        case OpTypes.EQUAL : {
-                            result = x;
-
-                            if (reversed) {
-                                n = x.getRight(store);
-                            } else {
-                                n = x.getLeft(store);
-                            }
-
-                            break;
-                        }
-                        case OpTypes.NOT :
-                        case OpTypes.GREATER : {
-                            i = compareObject(session, currentRow.getData(),
-                                              rowdata, rowColMap, fieldCount,
-                                              compareType);
-
-                            if (i <= 0) {
-                                n = x.getRight(store);
-                            } else {
-                                result = x;
-                                n      = x.getLeft(store);
-                            }
+        long stamp = store.tryOptimisticRead();
 
-                            break;
-                        }
-                        case OpTypes.GREATER_EQUAL_PRE :
-                        case OpTypes.GREATER_EQUAL : {
-                            i = compareObject(session, currentRow.getData(),
-                                              rowdata, rowColMap, fieldCount,
-                                              compareType);
-
-                            if (i < 0) {
-                                n = x.getRight(store);
-                            } else {
-                                result = x;
-                                n      = x.getLeft(store);
-                            }
+        if (stamp != -1) {
+            NodeAVL result;
 
-                            break;
-                        }
-                        case OpTypes.SMALLER : {
-                            i = compareObject(session, currentRow.getData(),
-                                              rowdata, rowColMap, fieldCount,
-                                              compareType);
-
-                            if (i < 0) {
-                                result = x;
-                                n      = x.getRight(store);
-                            } else {
-                                n = x.getLeft(store);
-                            }
+            try {
+                result = findNodeNoLock(session, store, rowdata, rowColMap,
+                                        fieldCount, compareType, reversed,
+                                        optimisticDepth);
+            } catch (RuntimeException e) {
+                result = retryNode;
+            }
 
-                            break;
-                        }
-                        case OpTypes.SMALLER_EQUAL : {
-                            i = compareObject(session, currentRow.getData(),
-                                              rowdata, rowColMap, fieldCount,
-                                              compareType);
-
-                            if (i <= 0) {
-                                result = x;
-                                n      = x.getRight(store);
-                            } else {
-                                n = x.getLeft(store);
-                            }
+            if (result != retryNode) {
+                result = checkOptimistic(session, store, result, stamp,
+                                         readMode);
+            }
 
-                            break;
-                        }
-                        default :
-                            throw Error.runtimeError(ErrorCode.U_S0500,
-                                                     "Index");
-                    }
-                } else if (i < 0) {
-                    n = x.getRight(store);
-                } else if (i > 0) {
-                    n = x.getLeft(store);
-                }
+            if (result != retryNode) {
+                return result;
+            }
+        }
 
-                if (n == null) {
-                    break;
-                }
+        store.readLock();
 
-                x = n;
-            }
+        try {
+            NodeAVL result = findNodeNoLock(session, store, rowdata,
+                                            rowColMap, fieldCount,
+                                            compareType, reversed,
+                                            Integer.MAX_VALUE);
+            Row     currentRow;
 
             // MVCC 190
             if (session == null) {
@@ -1674,6 +2168,128 @@ public class IndexAVL implements Index {
         }
     }
 
+    /**
+     * Descends the tree to the node matching the row data, stopping with
+     * retryNode after maxDepth links.
+     */
+    NodeAVL findNodeNoLock(Session session, PersistentStore store,
+                           Object[] rowdata, int[] rowColMap, int fieldCount,
+                           int compareType, boolean reversed, int maxDepth) {
+
+        NodeAVL x          = getAccessor(store);
+        NodeAVL n          = null;
+        NodeAVL result     = null;
+        Row     currentRow = null;
+        int     depth      = 0;
+
+        while (x != null) {
+            if (++depth > maxDepth) {
+                return retryNode;
+            }
+
+            currentRow = x.getRow(store);
+
+            int i = 0;
+
+            if (fieldCount > 0) {
+                i = compareRowNonUnique(session, currentRow.getData(),
+                                        rowdata, rowColMap, fieldCount);
+            }
+
+            if (i == 0) {
+                switch (compareType) {
+
+                    case OpTypes.MAX :
+                    case OpTypes.IS_NULL :
+                    case OpTypes.EQUAL : {
+                        result = x;
+
+                        if (reversed) {
+                            n = x.getRight(store);
+                        } else {
+                            n = x.getLeft(store);
+                        }
+
+                        break;
+                    }
+                    case OpTypes.NOT :
+                    case OpTypes.GREATER : {
+                        i = compareObject(session, currentRow.getData(),
+                                          rowdata, rowColMap, fieldCount,
+                                          compareType);
+
+                        if (i <= 0) {
+                            n = x.getRight(store);
+                        } else {
+                            result = x;
+                            n      = x.getLeft(store);
+                        }
+
+                        break;
+                    }
+                    case OpTypes.GREATER_EQUAL_PRE :
+                    case OpTypes.GREATER_EQUAL : {
+                        i = compareObject(session, currentRow.getData(),
+                                          rowdata, rowColMap, fieldCount,
+                                          compareType);
+
+                        if (i < 0) {
+                            n = x.getRight(store);
+                        } else {
+                            result = x;
+                            n      = x.getLeft(store);
+                        }
+
+                        break;
+                    }
+                    case OpTypes.SMALLER : {
+                        i = compareObject(session, currentRow.getData(),
+                                          rowdata, rowColMap, fieldCount,
+                                          compareType);
+
+                        if (i < 0) {
+                            result = x;
+                            n      = x.getRight(store);
+                        } else {
+                            n = x.getLeft(store);
+                        }
+
+                        break;
+                    }
+                    case OpTypes.SMALLER_EQUAL : {
+                        i = compareObject(session, currentRow.getData(),
+                                          rowdata, rowColMap, fieldCount,
+                                          compareType);
+
+                        if (i <= 0) {
+                            result = x;
+                            n      = x.getRight(store);
+                        } else {
+                            n = x.getLeft(store);
+                        }
+
+                        break;
+                    }
+                    default :
+                        throw Error.runtimeError(ErrorCode.U_S0500,
+                                                 "Index");
+                }
+            } else if (i < 0) {
+                n = x.getRight(store);
+            } else if (i > 0) {
+                n = x.getLeft(store);
+            }
+
+            if (n == null) {
+                break;
+            }
+
+            x = n;
+        }
+
+        return result;
+    }
+
     NodeAVL findDistinctNode(Session session, PersistentStore store,
                              NodeAVL node, int fieldCount, boolean reversed) {
 
@@ -1821,6 +2437,306 @@ public class IndexAVL implements Index {
         }
     }
 
+    /**
+     * Builds the tree from sorted keys as linkNodes() does from sorted rows
+     * and checks the keys of a unique index. The links of a node are added
+     * after the node that is its parent is known.
+     */
+    class NodeLinker {
+
+        final Session         session;
+        final PersistentStore store;
+        final RowDataSorter   keys;
+        final RowDataSorter   links;
+        Object[]              lastKey;
+
+        NodeLinker(Session session, PersistentStore store,
+                   RowDataSorter keys, RowDataSorter links) {
+
+            this.session = session;
+            this.store   = store;
+            this.keys    = keys;
+            this.links   = links;
+        }
+
+        /**
+         * Returns the position, left, right and balance of the root of the
+         * subtree.
+         */
+        long[] linkNodes(long count) {
+
+            if (count == 0) {
+                return null;
+            }
+
+            long   leftCount  = count >>> 1;
+            long   rightCount = count - leftCount - 1;
+            long[] left       = linkNodes(leftCount);
+            long   pos        = nextPosition();
+            long[] right      = linkNodes(rightCount);
+            int balance = Long.numberOfLeadingZeros(leftCount)
+                          - Long.numberOfLeadingZeros(rightCount);
+
+            addLink(left, pos);
+            addLink(right, pos);
+
+            return new long[] {
+                pos, left == null ? -1
+                                  : left[0], right == null ? -1
+                                                           : right[0],
+                balance
+            };
+        }
+
+        void addLink(long[] node, long parent) {
+
+            if (node != null) {
+                links.add(NodeAVLDisk.newLink(node[0], position, node[1],
+                                              node[2], parent,
+                                              (int) node[3]));
+            }
+        }
+
+        private long nextPosition() {
+
+            Object[] key = keys.next();
+            long     pos = ((Long) key[colIndex.length]).longValue();
+
+            if (isUnique && lastKey != null
+                    && !hasNulls(session, key, defaultColMap)
+                    && compareSortKey(session, key, lastKey) == 0) {
+                Row row = (Row) store.get(pos, false);
+
+                throw getUniqueException(row.getData());
+            }
+
+            lastKey = key;
+
+            return pos;
+        }
+    }
+
+    /**
+     * Returns a cursor for the inner range of a merge join with equality
+     * conditions on the first matchCount columns, or null if the index has
+     * DESC or NULLS LAST columns.
+     */
+    public MergeJoinCursor getMergeJoinCursor(int matchCount) {
+
+        if (!isSimpleOrder) {
+            return null;
+        }
+
+        return new MergeJoinCursor(matchCount);
+    }
+
+    /**
+     * Finds the rows for a merge join. The cursor keeps the values of the
+     * last search and the first node with values not smaller than those.
+     * When the outer rows are in the order of the index, the next values are
+     * not smaller and the search moves forward from that node, instead of
+     * descending the tree from the root. The tree is descended when the
+     * values are smaller.
+     */
+    public final class MergeJoinCursor {
+
+        final int matchCount;
+        Object[]  lastData;
+        NodeAVL   lastNode;
+        NodeAVL   startNode;
+
+        MergeJoinCursor(int matchCount) {
+
+            this.matchCount = matchCount;
+            this.lastData   = new Object[matchCount];
+        }
+
+        public RowIterator findFirstRow(Session session,
+                                        PersistentStore store,
+                                        Object[] rowdata) {
+
+            NodeAVL node  = retryNode;
+            long    stamp = store.tryOptimisticRead();
+
+            if (stamp != -1) {
+                try {
+                    node = findNode(session, store, rowdata, optimisticDepth);
+                } catch (RuntimeException e) {
+                    node = retryNode;
+                }
+
+                if (!store.validateRead(stamp)) {
+                    node = retryNode;
+                }
+            }
+
+            if (node == retryNode) {
+                store.readLock();
+
+                try {
+                    node = findNode(session, store, rowdata,
+                                    Integer.MAX_VALUE);
+                } finally {
+                    store.readUnlock();
+                }
+            }
+
+            lastNode = startNode;
+
+            if (lastNode != null) {
+                ArrayUtil.copyArray(rowdata, lastData, matchCount);
+            }
+
+            if (node == null) {
+                return emptyIterator;
+            }
+
+            return new IndexRowIterator(session, store, IndexAVL.this, node,
+                                        0, false, false);
+        }
+
+        /**
+         * Returns the first node with values equal to rowdata that can be
+         * read by the session, or null. Sets startNode to the first node
+         * with values not smaller than rowdata, or null if it is not known.
+         * Returns retryNode when maxDepth is reached.
+         */
+        private NodeAVL findNode(Session session, PersistentStore store,
+                                 Object[] rowdata, int maxDepth) {
+
+            NodeAVL node = findFromLastNode(session, store, rowdata,
+                                            maxDepth);
+
+            if (node == retryNode) {
+                node = findNodeNoLock(session, store, rowdata, defaultColMap,
+                                      matchCount, OpTypes.EQUAL, false,
+                                      maxDepth);
+
+                if (node == retryNode) {
+                    return node;
+                }
+            }
+
+            startNode = node;
+
+            // skip the rows not visible to the session
+            while (node != null) {
+                Row row = node.getRow(store);
+
+                if (compareRowNonUnique(session, row.getData(), rowdata,
+                                        defaultColMap, matchCount) != 0) {
+                    return null;
+                }
+
+                if (session == null
+                        || store.canRead(session, row,
+                                         TransactionManager.ACTION_READ,
+                                         colIndex)) {
+                    return node;
+                }
+
+                node = next(store, node);
+            }
+
+            return null;
+        }
+
+        /**
+         * Returns the first node with values not smaller than rowdata, or
+         * null if there is no such node, or retryNode if the search must
+         * descend the tree from the root. The search climbs from the last
+         * node to the nearest ancestor with larger values, then descends the
+         * right subtree of the node below it. The number of nodes passed
+         * grows with the logarithm of the distance between the two nodes.
+         */
+        private NodeAVL findFromLastNode(Session session,
+                                         PersistentStore store,
+                                         Object[] rowdata, int maxDepth) {
+
+            if (lastNode == null) {
+                return retryNode;
+            }
+
+            for (int j = 0; j < matchCount; j++) {
+                int i = colTypes[j].compare(session, rowdata[j], lastData[j]);
+
+                if (i < 0) {
+                    return retryNode;
+                }
+
+                if (i > 0) {
+                    break;
+                }
+            }
+
+            RowAVL  row = lastNode.getRow(store);
+            NodeAVL x   = row.getNode(position);
+
+            // the row has been removed from the index
+            if (x.isRoot(store)) {
+                NodeAVL root = getAccessor(store);
+
+                if (root == null
+                        || root.getRow(store).getPos() != row.getPos()) {
+                    return retryNode;
+                }
+            }
+
+            if (compareRowNonUnique(session, row.getData(), rowdata,
+                                    defaultColMap, matchCount) >= 0) {
+                return x;
+            }
+
+            NodeAVL result = null;
+            int     depth  = 0;
+
+            while (true) {
+                if (++depth > maxDepth) {
+                    return retryNode;
+                }
+
+                NodeAVL parent = x.getParent(store);
+
+                if (parent == null) {
+                    break;
+                }
+
+                if (!parent.isRight(store, x)) {
+                    row = parent.getRow(store);
+
+                    if (compareRowNonUnique(session, row.getData(), rowdata,
+                                            defaultColMap, matchCount) >= 0) {
+                        result = parent;
+
+                        break;
+                    }
+                }
+
+                x = parent;
+            }
+
+            x = x.getRight(store);
+
+            while (x != null) {
+                if (++depth > maxDepth) {
+                    return retryNode;
+                }
+
+                row = x.getRow(store);
+
+                if (compareRowNonUnique(session, row.getData(), rowdata,
+                                        defaultColMap, matchCount) >= 0) {
+                    result = x;
+                    x      = x.getLeft(store);
+                } else {
+                    x = x.getRight(store);
+                }
+            }
+
+            return result;
+        }
+    }
+
     public static final class IndexRowIterator implements RowIterator {
 
         final Session         session;
@@ -1831,6 +2747,7 @@ public class IndexAVL implements Index {
         int                   distinctCount;
         boolean               single;
         boolean               reversed;
+        long                  endPos = -1;
 
         /**
          * When session == null, rows from all sessions are returned
@@ -1852,6 +2769,14 @@ public class IndexAVL implements Index {
             }
 
             nextnode = node;
+
+            if (!single && node != null) {
+                DataFileCache cache = store.getCache();
+
+                if (cache != null) {
+                    cache.startReadAhead();
+                }
+            }
         }
 
         public Object getField(int col) {
@@ -1895,8 +2820,17 @@ public class IndexAVL implements Index {
 
             NodeAVL lastnode = nextnode;
 
+            NodeAVL node = retryNode;
+
+            if (!single && distinctCount == 0 && endPos == -1) {
+                node = index.nextOptimistic(session, store, nextnode,
+                                            reversed);
+            }
+
             if (single) {
                 nextnode = null;
+            } else if (node != retryNode) {
+                nextnode = node;
             } else {
                 store.readLock();
 
@@ -1905,9 +2839,11 @@ public class IndexAVL implements Index {
                         if (reversed) {
                             nextnode = index.last(session, store, nextnode,
                                                   distinctCount);
-                        } else {
+                        } else if (endPos == -1) {
                             nextnode = index.next(session, store, nextnode,
                                                   distinctCount);
+                        } else {
+                            nextnode = index.next(store, nextnode);
                         }
 
                         if (nextnode == null) {
@@ -1916,6 +2852,12 @@ public class IndexAVL implements Index {
 
                         Row row = nextnode.getRow(store);
 
+                        if (row.getPos() == endPos) {
+                            nextnode = null;
+
+                            break;
+                        }
+
                         if (session == null
                                 || store.canRead(
                                     session, row,
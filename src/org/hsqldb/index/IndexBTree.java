@@ -0,0 +1,1387 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.OpTypes;
+import org.hsqldb.RangeVariable.RangeVariableConditions;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.TableBase;
+import org.hsqldb.Tokens;
+import org.hsqldb.TransactionManager;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.LongDeque;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.CachedObject;
+import org.hsqldb.persist.DataFileCache;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * Implementation of a B+tree index for CACHED tables.<p>
+ *
+ * The index is held in NodeBTree pages stored in the table space of the
+ * table. The root page is the accessor of the index in the store. Leaf
+ * pages hold the positions and the keys of rows, ordered on the index
+ * columns and the row position. A branch page holds the position and key
+ * of the first row of each child. A search compares the keys in the pages
+ * and reads only the rows that are returned, except for entries that have
+ * no key in the page (see NodeBTree).<p>
+ *
+ * Only non-unique indexes created with USING BTREE use this
+ * implementation. Primary key, unique and constraint indexes are always
+ * IndexAVL. Rows have no AVL node for a B+tree index.<p>
+ *
+ * Iterators hold the position of the next row in a leaf page. When the
+ * index has been modified since the position was found, the position is
+ * found again from the last row returned.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class IndexBTree extends IndexAVL {
+
+    static final int NO_POS   = NodeAVL.NO_POS;
+    static final int maxDepth = 32;
+
+    //
+    static final int SEARCH_FIRST    = 0;
+    static final int SEARCH_LAST     = 1;
+    static final int SEARCH_KEY      = 2;
+    static final int SEARCH_NEXT     = 3;
+    static final int SEARCH_PREVIOUS = 4;
+    static final int SEARCH_DISTINCT = 5;
+
+    // used only for the size of keys
+    static final RowOutputBinary keySizer = new RowOutputBinary(0, 1);
+
+    /**
+     * Incremented with each change to the pages, while the write lock of
+     * the store is held.
+     */
+    long changeCount;
+
+    /**
+     * Constructor declaration
+     *
+     * @param name HsqlName of the index
+     * @param id persistnece id
+     * @param table table of the index
+     * @param columns array of column indexes
+     * @param descending boolean[]
+     * @param nullsLast boolean[]
+     * @param colTypes array of column types
+     * @param pk if index is for a primary key
+     * @param unique is this a unique index
+     * @param constraint does this index belonging to a constraint
+     * @param forward is this an auto-index for an FK that refers to a table
+     *   defined after this table
+     */
+    public IndexBTree(HsqlName name, long id, TableBase table, int[] columns,
+                      boolean[] descending, boolean[] nullsLast,
+                      Type[] colTypes, boolean pk, boolean unique,
+                      boolean constraint, boolean forward) {
+        super(name, id, table, columns, descending, nullsLast, colTypes, pk,
+              unique, constraint, forward);
+    }
+
+    public int getStructure() {
+        return STRUCTURE_BTREE;
+    }
+
+    public String getSQL() {
+
+        StringBuilder sb = new StringBuilder(super.getSQL());
+
+        sb.append(' ').append(Tokens.T_USING).append(' ');
+        sb.append(Tokens.T_BTREE);
+
+        return sb.toString();
+    }
+
+    public double[] searchCost(Session session, PersistentStore store) {
+
+        double[] changes = new double[colIndex.length];
+
+        store.readLock();
+
+        try {
+            long rootPos = getRootPos(store);
+
+            if (rootPos == NO_POS) {
+                return changes;
+            }
+
+            PersistentStore pageStore = store.getAccessorStore(this);
+            NodeBTree       page      = getPage(pageStore, rootPos, false);
+
+            // the first rows of the children of the root are spread over
+            // the whole index
+            int      sampleCount = page.count;
+            Object[] key         = getEntryKey(store, page, 0);
+
+            for (int i = 1; i < sampleCount; i++) {
+                Object[] nextKey = getEntryKey(store, page, i);
+
+                compareKeyForChange(session, key, nextKey, changes);
+
+                key = nextKey;
+            }
+
+            long rowCount = store.elementCount();
+
+            for (int i = 0; i < colIndex.length; i++) {
+                double distinct = changes[i] + 1;
+
+                if (distinct >= sampleCount) {
+                    distinct = rowCount;
+                }
+
+                changes[i] = rowCount / distinct;
+
+                if (changes[i] < 2) {
+                    changes[i] = 2;
+                }
+            }
+
+            return changes;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    public boolean isEmpty(PersistentStore store) {
+
+        store.readLock();
+
+        try {
+            return getRootPos(store) == NO_POS;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Insert a row into the index
+     */
+    public void insert(Session session, PersistentStore store, Row row) {
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        long            rowPos    = row.getPos();
+        Object[]        key       = getPageKey(row.getData());
+        int             keySize   = 0;
+
+        if (key != null) {
+            keySize = getKeySize(key);
+
+            if (keySize > NodeBTree.MAX_KEY_SIZE) {
+                key     = null;
+                keySize = 0;
+            }
+        }
+
+        changeCount++;
+
+        if (getRootPos(store) == NO_POS) {
+            NodeBTree page = newPage(pageStore, true);
+
+            page.insertEntry(0, NO_POS, rowPos, key, keySize);
+            store.setAccessor(this, page);
+            page.keepInMemory(false);
+
+            return;
+        }
+
+        long[] pagePath  = new long[maxDepth];
+        int[]  indexPath = new int[maxDepth];
+        int depth = findLeaf(session, store, pageStore, row, pagePath,
+                             indexPath);
+        NodeBTree leaf     = getPage(pageStore, pagePath[depth], false);
+        int       i        = findInsertIndex(session, store, leaf, row);
+        long      childPos = NO_POS;
+
+        while (true) {
+            NodeBTree page = getPage(pageStore, pagePath[depth], true);
+
+            try {
+                if (page.hasRoom(keySize)) {
+                    page.insertEntry(i, childPos, rowPos, key, keySize);
+
+                    if (i == 0) {
+                        setFirstRow(pageStore, pagePath, indexPath, depth,
+                                    page);
+                    }
+
+                    return;
+                }
+
+                NodeBTree right = newPage(pageStore, page.isLeaf);
+
+                try {
+                    int half = page.getSplitIndex();
+
+                    page.moveEntries(half, right);
+
+                    if (page.isLeaf) {
+                        linkPage(pageStore, page, right);
+                    }
+
+                    if (i <= half) {
+                        page.insertEntry(i, childPos, rowPos, key, keySize);
+
+                        if (i == 0) {
+                            setFirstRow(pageStore, pagePath, indexPath,
+                                        depth, page);
+                        }
+                    } else {
+                        right.insertEntry(i - half, childPos, rowPos, key,
+                                          keySize);
+                    }
+
+                    // the new page is added to the parent
+                    childPos = right.getPos();
+                    rowPos   = right.getRowPos(0);
+                    key      = right.getKey(0);
+                    keySize  = right.getKeySize(0);
+
+                    if (depth == 0) {
+                        NodeBTree root = newPage(pageStore, false);
+
+                        root.insertEntry(0, page.getPos(), page.getRowPos(0),
+                                         page.getKey(0), page.getKeySize(0));
+                        root.insertEntry(1, childPos, rowPos, key, keySize);
+                        store.setAccessor(this, root);
+                        root.keepInMemory(false);
+
+                        return;
+                    }
+
+                    depth--;
+
+                    i = indexPath[depth] + 1;
+                } finally {
+                    right.keepInMemory(false);
+                }
+            } finally {
+                page.keepInMemory(false);
+            }
+        }
+    }
+
+    public void delete(Session session, PersistentStore store, Row row) {
+
+        if (getRootPos(store) == NO_POS) {
+            return;
+        }
+
+        row = (Row) store.get(row, false);
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        long[]          pagePath  = new long[maxDepth];
+        int[]           indexPath = new int[maxDepth];
+        int depth = findLeaf(session, store, pageStore, row, pagePath,
+                             indexPath);
+        NodeBTree leaf = getPage(pageStore, pagePath[depth], false);
+        int       i    = findEntryIndex(session, store, leaf, row);
+
+        if (i < 0) {
+            return;
+        }
+
+        changeCount++;
+
+        while (true) {
+            NodeBTree page = getPage(pageStore, pagePath[depth], true);
+
+            if (page.count > 1) {
+                page.removeEntry(i);
+
+                if (i == 0) {
+                    setFirstRow(pageStore, pagePath, indexPath, depth, page);
+                }
+
+                page.keepInMemory(false);
+
+                break;
+            }
+
+            // the page is empty and is removed from the parent
+            if (page.isLeaf) {
+                unlinkPage(pageStore, page);
+            }
+
+            page.keepInMemory(false);
+            pageStore.remove(page);
+
+            if (depth == 0) {
+                store.setAccessor(this, null);
+
+                return;
+            }
+
+            depth--;
+
+            i = indexPath[depth];
+        }
+
+        // a root with a single child is replaced with the child
+        while (true) {
+            NodeBTree root = getPage(pageStore, getRootPos(store), false);
+
+            if (root.isLeaf || root.count > 1) {
+                break;
+            }
+
+            NodeBTree child = getPage(pageStore, root.getChildPos(0), false);
+
+            store.setAccessor(this, child);
+            pageStore.remove(root);
+        }
+    }
+
+    public boolean existsParent(Session session, PersistentStore store,
+                                Object[] rowdata, int[] rowColMap) {
+
+        IndexBTreeIterator it = findIterator(session, store, rowdata,
+                                             rowColMap, rowColMap.length,
+                                             OpTypes.EQUAL,
+                                             TransactionManager.ACTION_REF,
+                                             false);
+
+        return it != null;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata, int matchCount,
+                                    int distinctCount, int compareType,
+                                    boolean reversed, boolean[] map) {
+
+        IndexBTreeIterator it = findIterator(session, store, rowdata,
+                                             getDefaultColumnMap(), matchCount,
+                                             compareType,
+                                             TransactionManager.ACTION_READ,
+                                             reversed);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        it.distinctCount = distinctCount;
+
+        return it;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata) {
+
+        IndexBTreeIterator it = findIterator(session, store, rowdata, colIndex,
+                                             colIndex.length, OpTypes.EQUAL,
+                                             TransactionManager.ACTION_READ,
+                                             false);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator findFirstRow(Session session, PersistentStore store,
+                                    Object[] rowdata, int[] rowColMap) {
+
+        IndexBTreeIterator it = findIterator(session, store, rowdata,
+                                             rowColMap, rowColMap.length,
+                                             OpTypes.EQUAL,
+                                             TransactionManager.ACTION_READ,
+                                             false);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator findFirstRowNotNull(Session session,
+                                           PersistentStore store) {
+
+        IndexBTreeIterator it = findIterator(session, store, nullData,
+                                             getDefaultColumnMap(), 1,
+                                             OpTypes.NOT,
+                                             TransactionManager.ACTION_READ,
+                                             false);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    public RowIterator firstRow(Session session, PersistentStore store,
+                                RangeVariableConditions[] conditions,
+                                int distinctCount, boolean[] map) {
+
+        IndexBTreeIterator it = findEnd(session, store, false);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        it.distinctCount = distinctCount;
+
+        return it;
+    }
+
+    public RowIterator firstRow(PersistentStore store) {
+
+        IndexBTreeIterator it = findEnd(null, store, false);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        return it;
+    }
+
+    /**
+     * The pages are not split into ranges. A single iterator is returned.
+     */
+    public RowIterator[] firstRows(Session session, PersistentStore store,
+                                   int count) {
+        return new RowIterator[]{ firstRow(session, store, null, 0, null) };
+    }
+
+    public RowIterator lastRow(Session session, PersistentStore store,
+                               int distinctCount, boolean[] map) {
+
+        IndexBTreeIterator it = findEnd(session, store, true);
+
+        if (it == null) {
+            return emptyIterator();
+        }
+
+        it.distinctCount = distinctCount;
+
+        return it;
+    }
+
+    /**
+     * Adds the positions of all the pages of the index to the list.
+     */
+    public void getPagePositions(PersistentStore store, LongDeque list) {
+
+        long rootPos = getRootPos(store);
+
+        if (rootPos == NO_POS) {
+            return;
+        }
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        int             first     = list.size();
+
+        list.add(rootPos);
+
+        for (int i = first; i < list.size(); i++) {
+            NodeBTree page = getPage(pageStore, list.get(i), false);
+
+            if (!page.isLeaf) {
+                for (int j = 0; j < page.count; j++) {
+                    list.add(page.getChildPos(j));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the order of the rows in the leaf pages and the keys of the
+     * rows in the pages.
+     */
+    public IndexStats checkIndex(Session session, PersistentStore store) {
+
+        IndexStats stats = new IndexStats();
+
+        stats.index = this;
+        stats.store = store;
+
+        IndexBTreeIterator it = findEnd(null, store, false);
+        Row                lastRow    = null;
+        long               lastPos    = NO_POS;
+        long               entryCount = 0;
+
+        if (it != null) {
+            PersistentStore pageStore = store.getAccessorStore(this);
+
+            do {
+                entryCount++;
+
+                Row row;
+
+                try {
+                    row = getRow(store, it.rowPos);
+                } catch (Throwable t) {
+                    stats.errorCount++;
+
+                    continue;
+                }
+
+                Object[] key = getPage(pageStore, it.leafPos,
+                                       false).getKey(it.slot);
+
+                if (key != null
+                        && compareKeyNonUnique(
+                            session, key, row.getData(), colIndex,
+                            colIndex.length) != 0) {
+                    stats.unorderedList.add("wrong key " + it.rowPos);
+                }
+
+                if (lastRow != null
+                        && compareRowForInsertOrDelete(
+                            session, lastRow, row, true, 0) >= 0) {
+                    stats.unorderedList.add("unordered row " + lastPos + " "
+                                            + it.rowPos);
+                }
+
+                if (session == null
+                        || store.canRead(session, row,
+                                         TransactionManager.ACTION_READ,
+                                         null)) {
+                    stats.goodRowCount++;
+                }
+
+                lastRow = row;
+                lastPos = it.rowPos;
+            } while (it.step(pageStore, false));
+        }
+
+        if (entryCount != store.elementCount()) {
+            stats.unorderedList.add("row count " + entryCount);
+        }
+
+        stats.hasErrors = stats.errorCount != 0
+                          || !stats.unorderedList.isEmpty();
+
+        return stats;
+    }
+
+    long getRootPos(PersistentStore store) {
+
+        CachedObject root = store.getAccessor(this);
+
+        return root == null ? NO_POS
+                            : root.getPos();
+    }
+
+    static NodeBTree getPage(PersistentStore pageStore, long pos,
+                             boolean keep) {
+
+        NodeBTree page = (NodeBTree) pageStore.get(pos, keep);
+
+        if (page == null) {
+            throw Error.error(ErrorCode.DATA_FILE_ERROR);
+        }
+
+        return page;
+    }
+
+    static Row getRow(PersistentStore store, long pos) {
+        return (Row) store.get(pos, false);
+    }
+
+    /**
+     * Returns the key of a row to store in the pages, or null when keys are
+     * not stored. Keys are not stored for encrypted databases, as the pages
+     * are not encrypted, or for system versioned tables, which are ordered
+     * on the system end version of rows after the index columns.
+     */
+    Object[] getPageKey(Object[] data) {
+
+        if (table.isSystemVersioned
+                || table.database.logger.getCrypto() != null) {
+            return null;
+        }
+
+        return getKey(data);
+    }
+
+    Object[] getKey(Object[] data) {
+
+        Object[] key = new Object[colIndex.length];
+
+        for (int j = 0; j < colIndex.length; j++) {
+            key[j] = data[colIndex[j]];
+        }
+
+        return key;
+    }
+
+    int getKeySize(Object[] key) {
+        return keySizer.getSize(key, key.length, colTypes);
+    }
+
+    /**
+     * Returns the key of entry i of the page, which is read from the row if
+     * the page has no key for the entry.
+     */
+    Object[] getEntryKey(PersistentStore store, NodeBTree page, int i) {
+
+        Object[] key = page.getKey(i);
+
+        if (key == null) {
+            key = getKey(getRow(store, page.getRowPos(i)).getData());
+        }
+
+        return key;
+    }
+
+    /**
+     * Compares a row of the table with entry i of the page, with the same
+     * result as compareRowForInsertOrDelete() with the row of the entry.
+     */
+    int compareEntry(Session session, PersistentStore store, Row row,
+                     NodeBTree page, int i) {
+
+        long pos = page.getRowPos(i);
+
+        if (table.isSystemVersioned) {
+            return compareRowForInsertOrDelete(session, row,
+                                               getRow(store, pos), true, 0);
+        }
+
+        Object[] a   = row.getData();
+        Object[] key = getEntryKey(store, page, i);
+
+        for (int j = 0; j < colIndex.length; j++) {
+            int c = colTypes[j].compare(session, a[colIndex[j]], key[j]);
+
+            if (c != 0) {
+                if (isSimpleOrder) {
+                    return c;
+                }
+
+                boolean nulls = a[colIndex[j]] == null || key[j] == null;
+
+                if (colDesc[j] && !nulls) {
+                    c = -c;
+                }
+
+                if (nullsLast[j] && nulls) {
+                    c = -c;
+                }
+
+                return c;
+            }
+        }
+
+        long diff = row.getPos() - pos;
+
+        return diff == 0L ? 0
+                          : diff > 0L ? 1
+                                      : -1;
+    }
+
+    /**
+     * As compareRowNonUnique() with a key of this index in place of a row of
+     * the table.
+     */
+    int compareKeyNonUnique(Session session, Object[] key, Object[] b,
+                            int[] rowColMap, int fieldCount) {
+
+        for (int j = 0; j < fieldCount; j++) {
+            int i = colTypes[j].compare(session, key[j], b[rowColMap[j]]);
+
+            if (i != 0) {
+                return i;
+            }
+        }
+
+        return 0;
+    }
+
+    int compareKeyObject(Session session, Object[] key, Object[] b,
+                         int[] rowColMap, int position, int opType) {
+        return colTypes[position].compare(session, key[position],
+                                          b[rowColMap[position]], opType);
+    }
+
+    void compareKeyForChange(Session session, Object[] a, Object[] b,
+                             double[] changes) {
+
+        int c = 0;
+
+        for (int j = 0; j < colIndex.length; j++) {
+            if (c == 0) {
+                c = colTypes[j].compare(session, a[j], b[j]);
+            }
+
+            if (c != 0) {
+                changes[j]++;
+            }
+        }
+    }
+
+    private NodeBTree newPage(PersistentStore pageStore, boolean leaf) {
+
+        NodeBTree page = new NodeBTree(this, leaf);
+
+        pageStore.add(page, true);
+
+        return page;
+    }
+
+    /**
+     * Links the new leaf page after the given one.
+     */
+    private static void linkPage(PersistentStore pageStore, NodeBTree page,
+                                 NodeBTree newPage) {
+
+        newPage.prevPage = page.getPos();
+        newPage.nextPage = page.nextPage;
+
+        if (page.nextPage != NO_POS) {
+            NodeBTree next = getPage(pageStore, page.nextPage, true);
+
+            next.prevPage = newPage.getPos();
+
+            next.setChanged(true);
+            next.keepInMemory(false);
+        }
+
+        page.nextPage = newPage.getPos();
+
+        page.setChanged(true);
+    }
+
+    private static void unlinkPage(PersistentStore pageStore,
+                                   NodeBTree page) {
+
+        if (page.prevPage != NO_POS) {
+            NodeBTree prev = getPage(pageStore, page.prevPage, true);
+
+            prev.nextPage = page.nextPage;
+
+            prev.setChanged(true);
+            prev.keepInMemory(false);
+        }
+
+        if (page.nextPage != NO_POS) {
+            NodeBTree next = getPage(pageStore, page.nextPage, true);
+
+            next.prevPage = page.prevPage;
+
+            next.setChanged(true);
+            next.keepInMemory(false);
+        }
+    }
+
+    /**
+     * Sets the first row of the page at depth in the parent pages.
+     */
+    private static void setFirstRow(PersistentStore pageStore,
+                                    long[] pagePath, int[] indexPath,
+                                    int depth, NodeBTree page) {
+
+        long     rowPos  = page.getRowPos(0);
+        Object[] key     = page.getKey(0);
+        int      keySize = page.getKeySize(0);
+
+        for (int d = depth - 1; d >= 0; d--) {
+            NodeBTree parent = getPage(pageStore, pagePath[d], true);
+
+            parent.setEntry(indexPath[d], rowPos, key, keySize);
+            parent.keepInMemory(false);
+
+            if (indexPath[d] != 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Descends to the leaf page that contains or would contain the row,
+     * recording the pages and the child indexes on the path. Returns the
+     * depth of the leaf page.
+     */
+    private int findLeaf(Session session, PersistentStore store,
+                         PersistentStore pageStore, Row row,
+                         long[] pagePath, int[] indexPath) {
+
+        long pos   = getRootPos(store);
+        int  depth = 0;
+
+        while (true) {
+            if (depth == maxDepth) {
+                throw Error.error(ErrorCode.DATA_FILE_ERROR);
+            }
+
+            NodeBTree page = getPage(pageStore, pos, false);
+
+            pagePath[depth] = pos;
+
+            if (page.isLeaf) {
+                return depth;
+            }
+
+            // the last child with a first row not greater than row
+            int low  = 1;
+            int high = page.count;
+
+            while (low < high) {
+                int mid     = (low + high) >>> 1;
+                int compare = compareEntry(session, store, row, page, mid);
+
+                if (compare < 0) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+
+            indexPath[depth] = low - 1;
+            pos              = page.getChildPos(low - 1);
+
+            depth++;
+        }
+    }
+
+    private int findInsertIndex(Session session, PersistentStore store,
+                                NodeBTree leaf, Row row) {
+
+        int low  = 0;
+        int high = leaf.count;
+
+        while (low < high) {
+            int mid     = (low + high) >>> 1;
+            int compare = compareEntry(session, store, row, leaf, mid);
+
+            if (compare == 0) {
+                throw Error.runtimeError(ErrorCode.U_S0500, "IndexBTree");
+            }
+
+            if (compare < 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private int findEntryIndex(Session session, PersistentStore store,
+                               NodeBTree leaf, Row row) {
+
+        int low  = 0;
+        int high = leaf.count;
+
+        while (low < high) {
+            int mid     = (low + high) >>> 1;
+            int compare = compareEntry(session, store, row, leaf, mid);
+
+            if (compare == 0) {
+                return mid;
+            }
+
+            if (compare < 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds a match with a row from a different table, with the same
+     * conditions as IndexAVL.findNode()
+     */
+    IndexBTreeIterator findIterator(Session session, PersistentStore store,
+                                Object[] rowdata, int[] rowColMap,
+                                int fieldCount, int compareType,
+                                int readMode, boolean reversed) {
+
+        if (compareType != OpTypes.EQUAL
+                && compareType != OpTypes.IS_NULL) {
+            fieldCount--;
+
+            if (compareType == OpTypes.SMALLER
+                    || compareType == OpTypes.SMALLER_EQUAL
+                    || compareType == OpTypes.MAX) {
+                reversed = true;
+            }
+        }
+
+        Search search = new Search(SEARCH_KEY);
+
+        search.rowdata     = rowdata;
+        search.rowColMap   = rowColMap;
+        search.fieldCount  = fieldCount;
+        search.compareType = compareType;
+
+        switch (compareType) {
+
+            case OpTypes.SMALLER :
+            case OpTypes.SMALLER_EQUAL :
+                search.before = true;
+                break;
+
+            case OpTypes.MAX :
+            case OpTypes.IS_NULL :
+            case OpTypes.EQUAL :
+                search.before = reversed;
+                break;
+
+            default :
+        }
+
+        IndexBTreeIterator it = new IndexBTreeIterator(session, store, this,
+            reversed);
+
+        store.readLock();
+
+        try {
+            if (!seek(session, store, search, it)) {
+                return null;
+            }
+
+            Row row = getRow(store, it.rowPos);
+
+            while (true) {
+                if (fieldCount > 0
+                        && compareRowNonUnique(
+                            session, row.getData(), rowdata, rowColMap,
+                            fieldCount) != 0) {
+                    return null;
+                }
+
+                if (session == null
+                        || store.canRead(session, row, readMode, colIndex)) {
+                    break;
+                }
+
+                if (!it.step(store.getAccessorStore(this), reversed)) {
+                    return null;
+                }
+
+                row = getRow(store, it.rowPos);
+            }
+
+            it.nextRow = row;
+
+            it.startReadAhead();
+
+            return it;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Returns an iterator positioned at the first or last row that can be
+     * read by the session.
+     */
+    IndexBTreeIterator findEnd(Session session, PersistentStore store,
+                               boolean last) {
+
+        Search search = new Search(last ? SEARCH_LAST
+                                        : SEARCH_FIRST);
+
+        search.before = last;
+
+        IndexBTreeIterator it = new IndexBTreeIterator(session, store, this,
+            last);
+
+        store.readLock();
+
+        try {
+            if (!seek(session, store, search, it)) {
+                return null;
+            }
+
+            it.nextRow = next(session, store, it, false);
+
+            if (it.nextRow == null) {
+                return null;
+            }
+
+            it.startReadAhead();
+
+            return it;
+        } finally {
+            store.readUnlock();
+        }
+    }
+
+    /**
+     * Returns the row at or after the position of the iterator that can be
+     * read by the session, or null. When advance is true, the position is
+     * moved past the last row returned by the iterator first.
+     */
+    Row next(Session session, PersistentStore store, IndexBTreeIterator it,
+             boolean advance) {
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        boolean         found     = true;
+
+        if (advance) {
+            if (it.distinctCount != 0) {
+                Search search = new Search(SEARCH_DISTINCT);
+
+                search.rowdata    = it.lastrow.getData();
+                search.fieldCount = it.distinctCount;
+                search.before     = it.reversed;
+                found             = seek(session, store, search, it);
+            } else if (it.changeCount == changeCount) {
+                found = it.step(pageStore, it.reversed);
+            } else {
+                Search search = new Search(it.reversed ? SEARCH_PREVIOUS
+                                                       : SEARCH_NEXT);
+
+                search.row    = it.lastrow;
+                search.before = it.reversed;
+                found         = seek(session, store, search, it);
+            }
+        }
+
+        while (found) {
+            Row row = getRow(store, it.rowPos);
+
+            if (session == null
+                    || store.canRead(session, row,
+                                     TransactionManager.ACTION_READ, null)) {
+                return row;
+            }
+
+            found = it.step(pageStore, it.reversed);
+        }
+
+        return null;
+    }
+
+    /**
+     * Positions the iterator at the first row for which the search is after
+     * the position, or at the row before it when search.before is true.
+     * Returns false if there is no such row.
+     */
+    boolean seek(Session session, PersistentStore store, Search search,
+                 IndexBTreeIterator it) {
+
+        long rootPos = getRootPos(store);
+
+        if (rootPos == NO_POS) {
+            return false;
+        }
+
+        PersistentStore pageStore = store.getAccessorStore(this);
+        NodeBTree       page      = getPage(pageStore, rootPos, false);
+        int             depth     = 0;
+
+        while (!page.isLeaf) {
+            if (++depth == maxDepth) {
+                throw Error.error(ErrorCode.DATA_FILE_ERROR);
+            }
+
+            int i = findFirstAfter(session, store, page, search, 1);
+
+            page = getPage(pageStore, page.getChildPos(i - 1), false);
+        }
+
+        int i = findFirstAfter(session, store, page, search, 0);
+
+        if (search.before) {
+            i--;
+        }
+
+        return it.setPosition(pageStore, page, i);
+    }
+
+    private int findFirstAfter(Session session, PersistentStore store,
+                               NodeBTree page, Search search, int low) {
+
+        int high = page.count;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (search.isAfter(session, store, page, mid)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * A search condition that is false for the rows before a position in the
+     * index and true for the rows at and after the position.
+     */
+    final class Search {
+
+        final int mode;
+        Object[]  rowdata;
+        int[]     rowColMap;
+        int       fieldCount;
+        int       compareType;
+        Row       row;
+        boolean   before;
+
+        Search(int mode) {
+            this.mode = mode;
+        }
+
+        /**
+         * Returns true if entry i of the page is at or after the position.
+         */
+        boolean isAfter(Session session, PersistentStore store,
+                        NodeBTree page, int entry) {
+
+            switch (mode) {
+
+                case SEARCH_FIRST :
+                    return true;
+
+                case SEARCH_LAST :
+                    return false;
+
+                case SEARCH_NEXT :
+                    return compareEntry(session, store, row, page, entry)
+                           < 0;
+
+                case SEARCH_PREVIOUS :
+                    return compareEntry(session, store, row, page, entry)
+                           <= 0;
+
+                case SEARCH_DISTINCT : {
+                    Object[] key = getEntryKey(store, page, entry);
+                    int i = compareKeyNonUnique(session, key, rowdata,
+                                                colIndex, fieldCount);
+
+                    return before ? i >= 0
+                                  : i > 0;
+                }
+                case SEARCH_KEY :
+                    break;
+
+                default :
+                    throw Error.runtimeError(ErrorCode.U_S0500,
+                                             "IndexBTree");
+            }
+
+            Object[] key = getEntryKey(store, page, entry);
+            int      i   = 0;
+
+            if (fieldCount > 0) {
+                i = compareKeyNonUnique(session, key, rowdata, rowColMap,
+                                        fieldCount);
+            }
+
+            if (i != 0) {
+                return i > 0;
+            }
+
+            switch (compareType) {
+
+                case OpTypes.MAX :
+                case OpTypes.IS_NULL :
+                case OpTypes.EQUAL :
+                    return !before;
+
+                case OpTypes.NOT :
+                case OpTypes.GREATER :
+                case OpTypes.SMALLER_EQUAL :
+                    return compareKeyObject(session, key, rowdata,
+                                            rowColMap, fieldCount,
+                                            compareType) > 0;
+
+                case OpTypes.GREATER_EQUAL_PRE :
+                case OpTypes.GREATER_EQUAL :
+                case OpTypes.SMALLER :
+                    return compareKeyObject(session, key, rowdata,
+                                            rowColMap, fieldCount,
+                                            compareType) >= 0;
+
+                default :
+                    throw Error.runtimeError(ErrorCode.U_S0500,
+                                             "IndexBTree");
+            }
+        }
+    }
+
+    public static final class IndexBTreeIterator implements RowIterator {
+
+        final Session         session;
+        final PersistentStore store;
+        final IndexBTree      index;
+        final boolean         reversed;
+        int                   distinctCount;
+
+        // position of nextRow
+        long leafPos = NO_POS;
+        int  slot;
+        long rowPos;
+        long changeCount;
+
+        //
+        Row nextRow;
+        Row lastrow;
+
+        /**
+         * When session == null, rows from all sessions are returned
+         */
+        IndexBTreeIterator(Session session, PersistentStore store,
+                           IndexBTree index, boolean reversed) {
+
+            this.session  = session;
+            this.store    = store;
+            this.index    = index;
+            this.reversed = reversed;
+        }
+
+        void startReadAhead() {
+
+            DataFileCache cache = store.getCache();
+
+            if (cache != null) {
+                cache.startReadAhead();
+            }
+        }
+
+        /**
+         * Sets the position to the entry at slot in the page. The slot can
+         * be one past the last entry, or -1, to move to the next or
+         * previous page.
+         */
+        boolean setPosition(PersistentStore pageStore, NodeBTree page,
+                            int slot) {
+
+            if (slot >= page.count) {
+                if (page.nextPage == NO_POS) {
+                    return false;
+                }
+
+                page = getPage(pageStore, page.nextPage, false);
+                slot = 0;
+            } else if (slot < 0) {
+                if (page.prevPage == NO_POS) {
+                    return false;
+                }
+
+                page = getPage(pageStore, page.prevPage, false);
+                slot = page.count - 1;
+            }
+
+            this.leafPos     = page.getPos();
+            this.slot        = slot;
+            this.rowPos      = page.getRowPos(slot);
+            this.changeCount = index.changeCount;
+
+            return true;
+        }
+
+        boolean step(PersistentStore pageStore, boolean back) {
+
+            NodeBTree page = getPage(pageStore, leafPos, false);
+
+            return setPosition(pageStore, page, back ? slot - 1
+                                                     : slot + 1);
+        }
+
+        public Object getField(int col) {
+
+            if (lastrow == null) {
+                return null;
+            }
+
+            return lastrow.getData()[col];
+        }
+
+        public boolean next() {
+
+            getNextRow();
+
+            return lastrow != null;
+        }
+
+        public Row getCurrentRow() {
+            return lastrow;
+        }
+
+        public Object[] getCurrent() {
+
+            if (lastrow == null) {
+                return null;
+            }
+
+            return lastrow.getData();
+        }
+
+        private Row getNextRow() {
+
+            if (nextRow == null) {
+                release();
+
+                lastrow = null;
+
+                return null;
+            }
+
+            lastrow = nextRow;
+
+            store.readLock();
+
+            try {
+                nextRow = index.next(session, store, this, true);
+            } finally {
+                store.readUnlock();
+            }
+
+            return lastrow;
+        }
+
+        public void removeCurrent() {
+            store.delete(session, lastrow);
+            store.remove(lastrow);
+        }
+
+        public void release() {}
+
+        public long getRowId() {
+            return lastrow.getPos();
+        }
+    }
+}
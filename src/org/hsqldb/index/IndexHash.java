@@ -0,0 +1,531 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.index;
+
+import java.math.BigDecimal;
+
+import org.hsqldb.HsqlNameManager.HsqlName;
+import org.hsqldb.OpTypes;
+import org.hsqldb.Row;
+import org.hsqldb.RowAVL;
+import org.hsqldb.Session;
+import org.hsqldb.TableBase;
+import org.hsqldb.Tokens;
+import org.hsqldb.map.HashIndex;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.CharacterType;
+import org.hsqldb.types.Collation;
+import org.hsqldb.types.TimeData;
+import org.hsqldb.types.TimestampData;
+import org.hsqldb.types.Type;
+import org.hsqldb.types.Types;
+
+/**
+ * Implementation of a hash index for MEMORY tables.<p>
+ *
+ * The index is an AVL index with an additional hash table that maps each
+ * distinct key to the row that comes first in the AVL order among the rows
+ * with the key. Searches for a key over all the index columns use the hash
+ * table, while all other searches and iterators use the AVL tree.<p>
+ *
+ * The AVL tree is kept for three reasons. The hash table has one entry per
+ * distinct key; the other rows with the key, and the older versions of
+ * rows under MVCC, are reached from the first row by following the AVL
+ * tree, so the hash table needs no chain of rows. Iterators for ranges,
+ * ORDER BY, MIN and MAX, searches on the leading columns of the index, and
+ * the full scans used by DDL work as for other indexes. Rows of MEMORY
+ * tables have one node for each index in a fixed order, which the other
+ * indexes of the table rely on. The cost is the memory of the AVL node,
+ * about 40 bytes per row, in addition to about 17 bytes per row for the
+ * hash table.<p>
+ *
+ * The hash codes are computed from the values so that values that are
+ * equal in comparison have the same hash code. Columns of types that have
+ * no such hash code, such as strings with a locale collation, do not
+ * contribute to the hash code.<p>
+ *
+ * The hash table is modified only while the write lock of the store is
+ * held. It is read in the same way as the AVL tree, without the read lock
+ * when the store allows it.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class IndexHash extends IndexAVLMemory {
+
+    public static final int HASH_NONE     = 0;
+    public static final int HASH_EXACT    = 1;
+    public static final int HASH_APPROX   = 2;
+    public static final int HASH_CHAR     = 3;
+    public static final int HASH_DATETIME = 4;
+    public static final int HASH_OBJECT   = 5;
+
+    //
+    static final int  initialCapacity = 64;
+    static final long maxLongHash     = 1000000000000000000L;
+
+    //
+    final int[] hashKinds;
+    HashIndex   hashIndex;
+    int[]       hashCodes;
+    RowAVL[]    rowTable;
+    int         keyCount;
+
+    /**
+     * Constructor declaration
+     *
+     * @param name HsqlName of the index
+     * @param id persistnece id
+     * @param table table of the index
+     * @param columns array of column indexes
+     * @param descending boolean[] for result sets
+     * @param nullsLast boolean[] for result sets
+     * @param colTypes array of column types
+     * @param pk is index for a primary key
+     * @param unique is this a unique index
+     * @param constraint does this index belong to a constraint
+     * @param forward is this an auto-index for an FK that refers to a table
+     *   defined after this table
+     */
+    public IndexHash(HsqlName name, long id, TableBase table, int[] columns,
+                     boolean[] descending, boolean[] nullsLast,
+                     Type[] colTypes, boolean pk, boolean unique,
+                     boolean constraint, boolean forward) {
+
+        super(name, id, table, columns, descending, nullsLast, colTypes, pk,
+              unique, constraint, forward);
+
+        hashKinds = new int[colTypes.length];
+
+        for (int i = 0; i < colTypes.length; i++) {
+            hashKinds[i] = getHashKind(colTypes[i]);
+        }
+
+        resetHash(initialCapacity);
+    }
+
+    public int getStructure() {
+        return STRUCTURE_HASH;
+    }
+
+    public String getSQL() {
+
+        StringBuilder sb = new StringBuilder(super.getSQL());
+
+        sb.append(' ').append(Tokens.T_USING).append(' ');
+        sb.append(Tokens.T_HASH);
+
+        return sb.toString();
+    }
+
+    /**
+     * The estimate for a search on all the columns is the exact average
+     * count of rows for each key.
+     */
+    public double[] searchCost(Session session, PersistentStore store) {
+
+        double[] changes = super.searchCost(session, store);
+
+        store.readLock();
+
+        try {
+            if (keyCount > 0 && getAccessor(store) != null) {
+                double rowsPerKey = (double) store.elementCount() / keyCount;
+
+                changes[changes.length - 1] = rowsPerKey < 1 ? 1
+                                                             : rowsPerKey;
+            }
+        } finally {
+            store.readUnlock();
+        }
+
+        return changes;
+    }
+
+    public void insert(Session session, PersistentStore store, Row row) {
+
+        if (getAccessor(store) == null) {
+            resetHash(initialCapacity);
+        }
+
+        super.insert(session, store, row);
+
+        NodeAVL node = ((RowAVL) row).getNode(position);
+        NodeAVL prev = last(store, node);
+
+        if (prev != null
+                && compareRowNonUnique(session, prev.getData(store),
+                                       row.getData(),
+                                       colIndex.length) == 0) {
+            return;
+        }
+
+        setFirstRow(session, (RowAVL) row);
+    }
+
+    public void delete(Session session, PersistentStore store, Row row) {
+
+        row = (Row) store.get(row, false);
+
+        NodeAVL node = ((RowAVL) row).getNode(position);
+
+        if (node == null) {
+            return;
+        }
+
+        Object[] rowData    = row.getData();
+        int      hash       = getRowHash(rowData, colIndex);
+        int      lastLookup = -1;
+        int      lookup     = hashIndex.getLookup(hash);
+
+        for (; lookup >= 0;
+                lastLookup = lookup,
+                lookup = hashIndex.getNextLookup(lookup)) {
+            if (rowTable[lookup] == row) {
+                break;
+            }
+        }
+
+        if (lookup < 0) {
+            super.delete(session, store, row);
+
+            return;
+        }
+
+        NodeAVL next = next(store, node);
+
+        super.delete(session, store, row);
+
+        if (next != null
+                && compareRowNonUnique(session, next.getData(store), rowData,
+                                       colIndex.length) == 0) {
+            rowTable[lookup] = next.getRow(store);
+
+            return;
+        }
+
+        hashIndex.unlinkNode(hashIndex.getHashIndex(hash), lastLookup,
+                             lookup);
+
+        rowTable[lookup] = null;
+
+        keyCount--;
+    }
+
+    /**
+     * Uses the hash table for a search on all the columns, with maxDepth
+     * limiting the length of the hash chain that is searched.
+     */
+    NodeAVL findNodeNoLock(Session session, PersistentStore store,
+                           Object[] rowdata, int[] rowColMap, int fieldCount,
+                           int compareType, boolean reversed, int maxDepth) {
+
+        if (compareType != OpTypes.EQUAL || fieldCount != colIndex.length
+                || reversed) {
+            return super.findNodeNoLock(session, store, rowdata, rowColMap,
+                                        fieldCount, compareType, reversed,
+                                        maxDepth);
+        }
+
+        if (getAccessor(store) == null) {
+            return null;
+        }
+
+        RowAVL[] rows   = rowTable;
+        int[]    codes  = hashCodes;
+        int      hash   = getRowHash(rowdata, rowColMap);
+        int      lookup = hashIndex.getLookup(hash);
+        int      depth  = 0;
+
+        for (; lookup >= 0; lookup = hashIndex.getNextLookup(lookup)) {
+            if (++depth > maxDepth) {
+                return retryNode;
+            }
+
+            RowAVL row = rows[lookup];
+
+            if (codes[lookup] != hash || row == null) {
+                continue;
+            }
+
+            if (compareRowNonUnique(session, row.getData(), rowdata,
+                                    rowColMap, fieldCount) == 0) {
+                return row.getNode(position);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Sets the row as the first row for its key.
+     */
+    private void setFirstRow(Session session, RowAVL row) {
+
+        Object[] rowData = row.getData();
+        int      hash    = getRowHash(rowData, colIndex);
+        int      lookup  = hashIndex.getLookup(hash);
+
+        for (; lookup >= 0; lookup = hashIndex.getNextLookup(lookup)) {
+            if (hashCodes[lookup] == hash
+                    && compareRowNonUnique(session, rowTable[lookup].getData(),
+                                           rowData,
+                                           colIndex.length) == 0) {
+                rowTable[lookup] = row;
+
+                return;
+            }
+        }
+
+        if (keyCount == rowTable.length) {
+            resizeHash(rowTable.length * 2);
+        }
+
+        lookup = hashIndex.linkNode(hashIndex.getHashIndex(hash), -1);
+        hashCodes[lookup] = hash;
+        rowTable[lookup]  = row;
+
+        keyCount++;
+    }
+
+    private void resetHash(int capacity) {
+
+        hashIndex = new HashIndex(capacity, capacity, true);
+        hashCodes = new int[capacity];
+        rowTable  = new RowAVL[capacity];
+        keyCount  = 0;
+    }
+
+    private void resizeHash(int capacity) {
+
+        int[]     oldCodes = hashCodes;
+        RowAVL[]  oldRows  = rowTable;
+        HashIndex newIndex = new HashIndex(capacity, capacity, true);
+        int[]     newCodes = new int[capacity];
+        RowAVL[]  newRows  = new RowAVL[capacity];
+
+        for (int i = 0; i < oldRows.length; i++) {
+            if (oldRows[i] == null) {
+                continue;
+            }
+
+            int lookup = newIndex.linkNode(newIndex.getHashIndex(oldCodes[i]),
+                                           -1);
+
+            newCodes[lookup] = oldCodes[i];
+            newRows[lookup]  = oldRows[i];
+        }
+
+        // readers without the lock check the codes and rows they read
+        rowTable  = newRows;
+        hashCodes = newCodes;
+        hashIndex = newIndex;
+    }
+
+    int getRowHash(Object[] rowData, int[] rowColMap) {
+
+        int hash = 0;
+
+        for (int j = 0; j < hashKinds.length; j++) {
+            hash = 31 * hash
+                   + getHashCode(hashKinds[j], colTypes[j],
+                                 rowData[rowColMap[j]]);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns true if values of the type have a hash code that is consistent
+     * with comparison.
+     */
+    public static boolean isHashable(Type type) {
+
+        if (type.isCharacterType()
+                && ((CharacterType) type).getCollation()
+                    .isLocaleCollation()) {
+            return false;
+        }
+
+        return getHashKind(type) != HASH_NONE;
+    }
+
+    public static int getHashKind(Type type) {
+
+        if (type.isLobType()) {
+            return HASH_NONE;
+        }
+
+        if (type.isNumberType()) {
+            switch (type.typeCode) {
+
+                case Types.SQL_REAL :
+                case Types.SQL_FLOAT :
+                case Types.SQL_DOUBLE :
+                    return HASH_APPROX;
+
+                default :
+                    return HASH_EXACT;
+            }
+        }
+
+        if (type.isCharacterType()) {
+            return HASH_CHAR;
+        }
+
+        if (type.isDateTimeType()) {
+            return HASH_DATETIME;
+        }
+
+        if (type.isIntervalType() || type.isBooleanType()) {
+            return HASH_OBJECT;
+        }
+
+        return HASH_NONE;
+    }
+
+    public static int getHashCode(int kind, Type type, Object value) {
+
+        if (value == null) {
+            return 0;
+        }
+
+        switch (kind) {
+
+            case HASH_EXACT :
+                return getNumberHashCode(value);
+
+            case HASH_APPROX :
+                return getDoubleHashCode(((Number) value).doubleValue());
+
+            case HASH_CHAR : {
+                Collation collation = ((CharacterType) type).getCollation();
+
+                if (collation.isLocaleCollation()) {
+                    return 0;
+                }
+
+                boolean ignoreCase = !collation.isUnicodeSimple();
+                String  s          = (String) value;
+                int     end        = s.length();
+                int     h          = 0;
+
+                // trailing spaces are ignored in comparison with padding
+                while (end > 0 && s.charAt(end - 1) == ' ') {
+                    end--;
+                }
+
+                for (int i = 0; i < end; i++) {
+                    char c = s.charAt(i);
+
+                    if (ignoreCase) {
+                        c = Character.toLowerCase(Character.toUpperCase(c));
+                    }
+
+                    h = 31 * h + c;
+                }
+
+                return h;
+            }
+            case HASH_DATETIME :
+                if (value instanceof TimeData) {
+                    return ((TimeData) value).getSeconds();
+                }
+
+                return getLongHashCode(((TimestampData) value).getSeconds());
+
+            case HASH_OBJECT :
+                return value.hashCode();
+
+            default :
+                return 0;
+        }
+    }
+
+    /**
+     * Values of different numeric classes that are equal in comparison
+     * have the same hash code. Integral values with fewer than 19 digits
+     * use the hash code of the long value, other values use the hash code
+     * of the double value.
+     */
+    static int getNumberHashCode(Object value) {
+
+        if (value instanceof Integer) {
+            return getLongHashCode(((Integer) value).intValue());
+        }
+
+        if (value instanceof Long) {
+            long l = ((Long) value).longValue();
+
+            if (l < maxLongHash && l > -maxLongHash) {
+                return getLongHashCode(l);
+            }
+
+            return getDoubleHashCode((double) l);
+        }
+
+        if (value instanceof BigDecimal) {
+            BigDecimal bd = (BigDecimal) value;
+
+            if (bd.signum() == 0) {
+                return getLongHashCode(0);
+            }
+
+            if (bd.scale() > 0) {
+                bd = bd.stripTrailingZeros();
+            }
+
+            if (bd.scale() <= 0 && bd.precision() - bd.scale() < 19) {
+                return getLongHashCode(bd.longValue());
+            }
+
+            return getDoubleHashCode(bd.doubleValue());
+        }
+
+        return getDoubleHashCode(((Number) value).doubleValue());
+    }
+
+    static int getDoubleHashCode(double d) {
+
+        if (d < maxLongHash && d > -maxLongHash && d == (long) d) {
+            return getLongHashCode((long) d);
+        }
+
+        return getLongHashCode(Double.doubleToLongBits(d));
+    }
+
+    static int getLongHashCode(long l) {
+        return (int) (l ^ (l >>> 32));
+    }
+}
@@ -0,0 +1,657 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.HsqlException;
+import org.hsqldb.OpTypes;
+import org.hsqldb.Session;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.lib.LongDeque;
+import org.hsqldb.navigator.RowIterator;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.types.Type;
+
+/**
+ * Statistics of the rows of an index, collected by ANALYZE TABLE.<p>
+ *
+ * For each leading group of columns of the index the count of distinct
+ * values is held. For the first column, the count of nulls, an equi-depth
+ * histogram and the most frequent values are also held when the type of
+ * the column allows.<p>
+ *
+ * The histogram is a list of values of the first column in ascending order,
+ * with the count of non-null rows that have a value less than or equal to
+ * each value. The first entry is the smallest value and the last entry is
+ * the largest value. The other entries are spaced so that roughly the same
+ * count of rows falls between consecutive entries.<p>
+ *
+ * Estimates are scaled by the ratio of the current row count to the row
+ * count at the time of analysis. The statistics are persisted with a
+ * SET TABLE ... INDEX ... STATISTICS statement in the .script file.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class IndexStatistics {
+
+    public static final int histogramSize = 32;
+    public static final int frequentSize  = 8;
+
+    //
+    final Type     type;
+    final long     rowCount;
+    final long     nullCount;
+    final long[]   distinctCounts;
+    final Object[] boundValues;
+    final long[]   boundCounts;
+    final Object[] frequentValues;
+    final long[]   frequentCounts;
+
+    IndexStatistics(Type type, long rowCount, long nullCount,
+                    long[] distinctCounts, Object[] boundValues,
+                    long[] boundCounts, Object[] frequentValues,
+                    long[] frequentCounts) {
+
+        this.type           = type;
+        this.rowCount       = rowCount;
+        this.nullCount      = nullCount;
+        this.distinctCounts = distinctCounts;
+        this.boundValues    = boundValues;
+        this.boundCounts    = boundCounts;
+        this.frequentValues = frequentValues;
+        this.frequentCounts = frequentCounts;
+    }
+
+    /**
+     * Collects the statistics in a single pass over the rows of the index
+     * that are visible to the session.
+     */
+    public static IndexStatistics analyze(Session session,
+                                          PersistentStore store,
+                                          Index index) {
+
+        Type[]  types        = index.getColumnTypes();
+        int[]   cols         = index.getColumns();
+        long[]  distinct     = new long[cols.length];
+        boolean distribution = hasDistribution(types[0]);
+        long    step         = store.elementCount() / histogramSize;
+        HsqlArrayList boundList      = new HsqlArrayList();
+        LongDeque     boundCountList = new LongDeque();
+        Object[]      frequent       = new Object[frequentSize];
+        long[]        frequentCount  = new long[frequentSize];
+        long          rowCount       = 0;
+        long          nullCount      = 0;
+        long          nonNullCount   = 0;
+        Object        runValue       = null;
+        long          runCount       = 0;
+        Object[]      last           = null;
+        RowIterator   it = index.firstRow(session, store, null, 0, null);
+
+        if (step < 1) {
+            step = 1;
+        }
+
+        while (it.next()) {
+            Object[] data  = it.getCurrent();
+            int      first = 0;
+
+            if (last != null) {
+                for (first = 0; first < cols.length; first++) {
+                    if (types[first].compare(session, last[cols[first]],
+                                             data[cols[first]]) != 0) {
+                        break;
+                    }
+                }
+            }
+
+            for (int j = first; j < cols.length; j++) {
+                distinct[j]++;
+            }
+
+            rowCount++;
+
+            last = data;
+
+            Object value = data[cols[0]];
+
+            if (value == null) {
+                nullCount++;
+
+                continue;
+            }
+
+            if (!distribution) {
+                continue;
+            }
+
+            if (runValue != null && first == 0) {
+                addRun(boundList, boundCountList, frequent, frequentCount,
+                       runValue, runCount, nonNullCount, step);
+
+                runValue = null;
+            }
+
+            if (runValue == null) {
+                runValue = value;
+                runCount = 0;
+            }
+
+            runCount++;
+            nonNullCount++;
+        }
+
+        it.release();
+
+        if (runValue != null) {
+            addRun(boundList, boundCountList, frequent, frequentCount,
+                   runValue, runCount, nonNullCount, 0);
+        }
+
+        Object[] boundValues = boundList.toArray();
+        long[]   boundCounts = boundCountList.toArray();
+
+        // keep only values that are more frequent than a histogram interval
+        int count = 0;
+
+        for (int i = 0; i < frequentSize; i++) {
+            if (frequent[i] != null && frequentCount[i] > step) {
+                frequent[count]      = frequent[i];
+                frequentCount[count] = frequentCount[i];
+
+                count++;
+            }
+        }
+
+        Object[] frequentValues = new Object[count];
+        long[]   frequentCounts = new long[count];
+
+        System.arraycopy(frequent, 0, frequentValues, 0, count);
+        System.arraycopy(frequentCount, 0, frequentCounts, 0, count);
+        sortFrequent(frequentValues, frequentCounts);
+
+        return new IndexStatistics(types[0], rowCount, nullCount, distinct,
+                                   boundValues, boundCounts, frequentValues,
+                                   frequentCounts);
+    }
+
+    /**
+     * Adds a run of equal values of the first column to the histogram and
+     * the list of most frequent values. A step of 0 indicates the last run.
+     */
+    private static void addRun(HsqlArrayList boundList,
+                               LongDeque boundCountList, Object[] frequent,
+                               long[] frequentCount, Object value,
+                               long runCount, long nonNullCount, long step) {
+
+        int  size      = boundList.size();
+        long lastCount = size == 0 ? 0
+                                   : boundCountList.getLast();
+
+        if (size == 0 || step == 0 || nonNullCount - lastCount >= step) {
+            boundList.add(value);
+            boundCountList.add(nonNullCount);
+        }
+
+        if (runCount < 2) {
+            return;
+        }
+
+        int min = 0;
+
+        for (int i = 1; i < frequentSize; i++) {
+            if (frequentCount[i] < frequentCount[min]) {
+                min = i;
+            }
+        }
+
+        if (runCount > frequentCount[min]) {
+            frequent[min]      = value;
+            frequentCount[min] = runCount;
+        }
+    }
+
+    private static void sortFrequent(Object[] values, long[] counts) {
+
+        for (int i = 1; i < counts.length; i++) {
+            for (int j = i; j > 0 && counts[j] > counts[j - 1]; j--) {
+                long   count = counts[j];
+                Object value = values[j];
+
+                counts[j]     = counts[j - 1];
+                values[j]     = values[j - 1];
+                counts[j - 1] = count;
+                values[j - 1] = value;
+            }
+        }
+    }
+
+    /**
+     * Returns true if a histogram is kept for values of the type.
+     */
+    static boolean hasDistribution(Type type) {
+
+        if (type.isLobType()) {
+            return false;
+        }
+
+        return type.isNumberType() || type.isCharacterType()
+               || type.isDateTimeType() || type.isIntervalType()
+               || type.isBooleanType();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getNullCount() {
+        return nullCount;
+    }
+
+    public long[] getDistinctCounts() {
+        return distinctCounts;
+    }
+
+    /**
+     * Returns the average count of rows with the same values in the given
+     * count of leading columns.
+     */
+    public double getRowsPerKey(int columnCount, long currentRowCount) {
+
+        long distinct = distinctCounts[columnCount - 1];
+
+        if (distinct == 0) {
+            return 1;
+        }
+
+        double rows = (double) rowCount / distinct;
+
+        rows *= getScale(currentRowCount);
+
+        return rows < 1 ? 1
+                        : rows;
+    }
+
+    /**
+     * Returns an estimate of the count of rows that satisfy all the
+     * conditions on the first column, or -1 if no estimate can be made.
+     * The values must be of the type of the column.
+     *
+     * @param session Session
+     * @param opTypes OpTypes of the conditions
+     * @param values values compared with the column
+     * @param currentRowCount current count of rows in the table
+     * @return estimated row count
+     */
+    public double estimateRows(Session session, int[] opTypes,
+                               Object[] values, long currentRowCount) {
+
+        long   nonNullCount = rowCount - nullCount;
+        double rows         = nonNullCount;
+
+        for (int i = 0; i < opTypes.length; i++) {
+            double current = estimateRows(session, opTypes[i], values[i]);
+
+            if (current < 0) {
+                return -1;
+            }
+
+            if (opTypes[i] == OpTypes.IS_NULL) {
+                return current * getScale(currentRowCount);
+            }
+
+            // each condition excludes a range of the non-null values
+            rows = rows + current - nonNullCount;
+        }
+
+        rows *= getScale(currentRowCount);
+
+        return rows < 1 ? 1
+                        : rows;
+    }
+
+    private double estimateRows(Session session, int opType, Object value) {
+
+        long nonNullCount = rowCount - nullCount;
+
+        switch (opType) {
+
+            case OpTypes.IS_NULL :
+                return nullCount;
+
+            case OpTypes.NOT :
+                return nonNullCount;
+        }
+
+        if (boundValues.length == 0) {
+            return -1;
+        }
+
+        if (value == null) {
+            return 0;
+        }
+
+        switch (opType) {
+
+            case OpTypes.EQUAL :
+                return getEqualCount(session, value);
+
+            case OpTypes.SMALLER :
+                return getSmallerCount(session, value, false);
+
+            case OpTypes.SMALLER_EQUAL :
+                return getSmallerCount(session, value, true);
+
+            case OpTypes.GREATER :
+                return nonNullCount - getSmallerCount(session, value, true);
+
+            case OpTypes.GREATER_EQUAL :
+            case OpTypes.GREATER_EQUAL_PRE :
+                return nonNullCount - getSmallerCount(session, value, false);
+
+            default :
+                return -1;
+        }
+    }
+
+    private double getEqualCount(Session session, Object value) {
+
+        int last = boundValues.length - 1;
+
+        if (type.compare(session, value, boundValues[0]) < 0
+                || type.compare(session, value, boundValues[last]) > 0) {
+            return 0;
+        }
+
+        long otherCount    = rowCount - nullCount;
+        long otherDistinct = distinctCounts[0] - (nullCount > 0 ? 1
+                                                                : 0);
+
+        for (int i = 0; i < frequentValues.length; i++) {
+            if (type.compare(session, value, frequentValues[i]) == 0) {
+                return frequentCounts[i];
+            }
+
+            otherCount -= frequentCounts[i];
+        }
+
+        otherDistinct -= frequentValues.length;
+
+        if (otherDistinct < 1) {
+            return 1;
+        }
+
+        return (double) otherCount / otherDistinct;
+    }
+
+    /**
+     * Returns the count of rows with values less than, or less than or
+     * equal to, the value.
+     */
+    private double getSmallerCount(Session session, Object value,
+                                   boolean orEqual) {
+
+        int low  = 0;
+        int high = boundValues.length;
+
+        // find the first bound that is larger than the value, or equal to it
+        while (low < high) {
+            int mid     = (low + high) >>> 1;
+            int compare = type.compare(session, boundValues[mid], value);
+
+            if (compare < 0 || (orEqual && compare == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        if (low == boundValues.length) {
+            return rowCount - nullCount;
+        }
+
+        if (low == 0) {
+            return 0;
+        }
+
+        long lowCount  = boundCounts[low - 1];
+        long highCount = boundCounts[low];
+
+        if (!orEqual && type.compare(session, boundValues[low], value) == 0) {
+            highCount -= getEqualCount(session, value);
+
+            return highCount < lowCount ? lowCount
+                                        : highCount;
+        }
+
+        double fraction = 0.5;
+
+        if (type.isNumberType()) {
+            double lowValue  = ((Number) boundValues[low - 1]).doubleValue();
+            double highValue = ((Number) boundValues[low]).doubleValue();
+            double current   = ((Number) value).doubleValue();
+
+            if (highValue > lowValue) {
+                fraction = (current - lowValue) / (highValue - lowValue);
+            }
+        }
+
+        return lowCount + (highCount - lowCount) * fraction;
+    }
+
+    private double getScale(long currentRowCount) {
+
+        if (rowCount == 0 || currentRowCount <= 0) {
+            return 1;
+        }
+
+        return (double) currentRowCount / rowCount;
+    }
+
+    /**
+     * Returns the statistics as a string for persistence. Values are
+     * written with their length, followed by their character form.
+     */
+    public String getPersistString() {
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(rowCount).append(';').append(nullCount).append(';');
+
+        for (int i = 0; i < distinctCounts.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            sb.append(distinctCounts[i]);
+        }
+
+        sb.append(';');
+        appendValues(sb, boundValues, boundCounts);
+        sb.append(';');
+        appendValues(sb, frequentValues, frequentCounts);
+
+        return sb.toString();
+    }
+
+    private void appendValues(StringBuilder sb, Object[] values,
+                              long[] counts) {
+
+        for (int i = 0; i < values.length; i++) {
+            String value = type.convertToString(values[i]);
+
+            if (i > 0) {
+                sb.append(',');
+            }
+
+            sb.append(value.length()).append(':').append(value);
+            sb.append('=').append(counts[i]);
+        }
+    }
+
+    /**
+     * Returns the values with their counts, for display.
+     */
+    public String getValuesString(boolean histogram) {
+
+        Object[]      values = histogram ? boundValues
+                                         : frequentValues;
+        long[]        counts = histogram ? boundCounts
+                                         : frequentCounts;
+        StringBuilder sb     = new StringBuilder();
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+
+            sb.append(type.convertToSQLString(values[i]));
+            sb.append('=').append(counts[i]);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Reads the statistics from the persisted string.
+     */
+    public static IndexStatistics newStatistics(Session session, Index index,
+            String string) {
+
+        try {
+            Reader   reader   = new Reader(string);
+            Type     type     = index.getColumnTypes()[0];
+            long     rowCount = reader.readLong(';');
+            long     nulls    = reader.readLong(';');
+            long[]   distinct = new long[index.getColumnCount()];
+            LongDeque counts  = new LongDeque();
+
+            for (int i = 0; i < distinct.length; i++) {
+                distinct[i] = reader.readLong(i == distinct.length - 1 ? ';'
+                                                                      : ',');
+            }
+
+            Object[] boundValues = reader.readValues(session, type, counts);
+            long[]   boundCounts = counts.toArray();
+            Object[] frequentValues = reader.readValues(session, type,
+                counts);
+            long[]   frequentCounts = counts.toArray();
+
+            return new IndexStatistics(type, rowCount, nulls, distinct,
+                                       boundValues, boundCounts,
+                                       frequentValues, frequentCounts);
+        } catch (HsqlException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw Error.error(ErrorCode.X_22018);
+        }
+    }
+
+    private static class Reader {
+
+        final String string;
+        int          position;
+
+        Reader(String string) {
+            this.string = string;
+        }
+
+        long readLong(char separator) {
+
+            int end = string.indexOf(separator, position);
+
+            if (end < 0) {
+                end = string.length();
+            }
+
+            long value = Long.parseLong(string.substring(position, end));
+
+            position = end + 1;
+
+            return value;
+        }
+
+        Object[] readValues(Session session, Type type, LongDeque counts) {
+
+            HsqlArrayList list = new HsqlArrayList();
+
+            counts.clear();
+
+            while (position < string.length()
+                    && string.charAt(position) != ';') {
+                int end    = string.indexOf(':', position);
+                int length = Integer.parseInt(string.substring(position, end));
+                String value = string.substring(end + 1, end + 1 + length);
+
+                position = end + 1 + length;
+
+                if (string.charAt(position) != '=') {
+                    throw new IllegalArgumentException();
+                }
+
+                position++;
+
+                list.add(type.convertToType(session, value,
+                                            Type.SQL_VARCHAR_DEFAULT));
+                counts.add(readValueCount());
+            }
+
+            position++;
+
+            return list.toArray();
+        }
+
+        long readValueCount() {
+
+            int end = position;
+
+            while (end < string.length()
+                    && Character.isDigit(string.charAt(end))) {
+                end++;
+            }
+
+            long value = Long.parseLong(string.substring(position, end));
+
+            position = end;
+
+            if (position < string.length()
+                    && string.charAt(position) == ',') {
+                position++;
+            }
+
+            return value;
+        }
+    }
+}
@@ -71,6 +71,7 @@
 package org.hsqldb.index;
 
 import java.io.IOException;
+import java.util.Comparator;
 
 import org.hsqldb.RowAVL;
 import org.hsqldb.RowAVLDisk;
@@ -79,6 +80,7 @@ import org.hsqldb.lib.LongLookup;
 import org.hsqldb.persist.PersistentStore;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
 
 // fredt@users 20020221 - patch 513005 by sqlbob@users (RMP)
 // fredt@users 20020920 - path 1.7.1 - refactoring to cut memory footprint
@@ -108,6 +110,29 @@ public class NodeAVLDisk extends NodeAVL {
     private int             iId;    // id of Index object for this Node
     public static final int SIZE_IN_BYTE = 4 * 4;
 
+    /**
+     * The links of a node when an index is built from sorted keys: position
+     * of the row, index position, left, right, parent and balance. The
+     * links are sorted on the position of the row before they are set.
+     */
+    public static final Type[] linkTypes = new Type[] {
+        Type.SQL_BIGINT, Type.SQL_INTEGER, Type.SQL_BIGINT, Type.SQL_BIGINT,
+        Type.SQL_BIGINT, Type.SQL_INTEGER
+    };
+    public static final Comparator<Object[]> linkComparator =
+        new Comparator<Object[]>() {
+
+        public int compare(Object[] a, Object[] b) {
+
+            long posA = ((Long) a[0]).longValue();
+            long posB = ((Long) b[0]).longValue();
+
+            return posA == posB ? 0
+                                : posA > posB ? 1
+                                              : -1;
+        }
+    };
+
     public NodeAVLDisk(RowAVLDisk r, RowInputInterface in,
                        int id) throws IOException {
 
@@ -164,6 +189,34 @@ public class NodeAVLDisk extends NodeAVL {
         return row.getPos();
     }
 
+    static Object[] newLink(long pos, int index, long left, long right,
+                            long parent, int balance) {
+
+        return new Object[] {
+            Long.valueOf(pos), Integer.valueOf(index), Long.valueOf(left),
+            Long.valueOf(right), Long.valueOf(parent), Integer.valueOf(balance)
+        };
+    }
+
+    /**
+     * Sets the links from newLink(). A position of -1 is no link. The row
+     * must be in memory and is marked as changed by the caller.
+     */
+    public void setLinks(Object[] link) {
+
+        long left   = ((Long) link[2]).longValue();
+        long right  = ((Long) link[3]).longValue();
+        long parent = ((Long) link[4]).longValue();
+
+        iLeft    = left < 0 ? NO_POS
+                            : (int) left;
+        iRight   = right < 0 ? NO_POS
+                             : (int) right;
+        iParent  = parent < 0 ? NO_POS
+                              : (int) parent;
+        iBalance = ((Integer) link[5]).intValue();
+    }
+
     public RowAVL getRow(PersistentStore store) {
         return (RowAVLDisk) store.get(this.row, false);
     }
@@ -0,0 +1,368 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.index;
+
+import org.hsqldb.lib.LongLookup;
+import org.hsqldb.persist.CachedObjectBase;
+import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.rowio.RowOutputInterface;
+
+/**
+ * Page of a B+tree index on a CACHED table. Pages are fixed size block
+ * objects stored in the table space of the table.<p>
+ *
+ * A leaf page holds an entry for each row in index order and links to the
+ * previous and next leaf pages. An entry holds the file position of the
+ * row and the values of the index columns of the row, the key. A branch
+ * page holds an entry for each child page, with the position of the child
+ * and the position and key of the first row in the subtree of the
+ * child.<p>
+ *
+ * The number of entries depends on the size of the keys. An entry can
+ * have no key, in which case the key is read from the row. This is the
+ * case for keys larger than MAX_KEY_SIZE, for all entries of encrypted
+ * databases and system versioned tables, and for a separator key that
+ * does not fit in its branch page.<p>
+ *
+ * Pages are never empty. A page that loses its last entry is removed from
+ * its parent.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class NodeBTree extends CachedObjectBase {
+
+    public static final int SIZE_IN_BYTE = 4096;
+    static final int        HEADER_SIZE  = 24;
+    static final int        DATA_SIZE    = SIZE_IN_BYTE - HEADER_SIZE;
+
+    // size of an entry without a key, including the key flag
+    static final int LEAF_ENTRY_SIZE   = 8 + 1;
+    static final int BRANCH_ENTRY_SIZE = 8 + 8 + 1;
+
+    //
+    static final int MAX_ENTRY_COUNT = DATA_SIZE / LEAF_ENTRY_SIZE;
+    static final int MAX_KEY_SIZE    = DATA_SIZE / 8;
+
+    //
+    static final int FLAG_LEAF = 1;
+
+    //
+    final IndexBTree index;
+    boolean          isLeaf;
+    int              count;
+    long             prevPage = NodeAVL.NO_POS;
+    long             nextPage = NodeAVL.NO_POS;
+    long[]           rowPositions;
+    long[]           childPositions;
+    Object[][]       keys;
+    int[]            keySizes;
+    int              dataSize;
+
+    /**
+     * Constructor for pages read from the file.
+     */
+    public NodeBTree(IndexBTree index) {
+        this.index = index;
+    }
+
+    /**
+     * Constructor for new pages.
+     */
+    NodeBTree(IndexBTree index, boolean isLeaf) {
+
+        this.index = index;
+
+        setLeaf(isLeaf);
+        setChanged(true);
+    }
+
+    private void setLeaf(boolean isLeaf) {
+
+        this.isLeaf  = isLeaf;
+        rowPositions = new long[MAX_ENTRY_COUNT];
+        keys         = new Object[MAX_ENTRY_COUNT][];
+        keySizes     = new int[MAX_ENTRY_COUNT];
+
+        if (!isLeaf) {
+            childPositions = new long[MAX_ENTRY_COUNT];
+        }
+    }
+
+    public void read(RowInputInterface in) {
+
+        setPos(in.getFilePosition());
+        setLeaf((in.readInt() & FLAG_LEAF) != 0);
+
+        count    = in.readInt();
+        prevPage = in.readLong();
+        nextPage = in.readLong();
+        dataSize = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (!isLeaf) {
+                childPositions[i] = in.readLong();
+            }
+
+            rowPositions[i] = in.readLong();
+
+            if (in.readByte() != 0) {
+                keys[i]     = in.readData(index.colTypes);
+                keySizes[i] = index.getKeySize(keys[i]);
+            }
+
+            dataSize += getEntrySize(i);
+        }
+
+        setChanged(false);
+    }
+
+    public int getDefaultCapacity() {
+        return MAX_ENTRY_COUNT;
+    }
+
+    public int getRealSize(RowOutputInterface out) {
+        return SIZE_IN_BYTE;
+    }
+
+    public void write(RowOutputInterface out) {
+        write(out, null);
+    }
+
+    /**
+     * With a non-null lookup, the positions of rows and pages are
+     * translated for a new data file.
+     */
+    public void write(RowOutputInterface out, LongLookup lookup) {
+
+        out.setStorageSize(SIZE_IN_BYTE);
+        out.writeInt(isLeaf ? FLAG_LEAF
+                            : 0);
+        out.writeInt(count);
+        out.writeLong(getTranslatePointer(prevPage, lookup));
+        out.writeLong(getTranslatePointer(nextPage, lookup));
+
+        for (int i = 0; i < count; i++) {
+            if (!isLeaf) {
+                out.writeLong(getTranslatePointer(childPositions[i],
+                                                  lookup));
+            }
+
+            out.writeLong(getTranslatePointer(rowPositions[i], lookup));
+
+            if (keys[i] == null) {
+                out.writeByte(0);
+            } else {
+                out.writeByte(1);
+                out.writeData(keys[i].length, index.colTypes, keys[i],
+                              null, null);
+            }
+        }
+
+        out.writeEnd();
+    }
+
+    private static long getTranslatePointer(long pointer, LongLookup lookup) {
+
+        if (pointer == NodeAVL.NO_POS || lookup == null) {
+            return pointer;
+        }
+
+        return lookup.lookup(pointer);
+    }
+
+    /**
+     * Returns the position of the row for a leaf entry, or the position of
+     * the first row in the subtree for a branch entry.
+     */
+    long getRowPos(int i) {
+        return rowPositions[i];
+    }
+
+    long getChildPos(int i) {
+        return childPositions[i];
+    }
+
+    /**
+     * Returns the key of the entry, or null if the page has no key for the
+     * entry.
+     */
+    Object[] getKey(int i) {
+        return keys[i];
+    }
+
+    int getKeySize(int i) {
+        return keySizes[i];
+    }
+
+    int getEntrySize(int i) {
+        return (isLeaf ? LEAF_ENTRY_SIZE
+                       : BRANCH_ENTRY_SIZE) + keySizes[i];
+    }
+
+    /**
+     * Returns true if an entry with a key of the given size fits in the
+     * page.
+     */
+    boolean hasRoom(int keySize) {
+        return dataSize + (isLeaf ? LEAF_ENTRY_SIZE
+                                  : BRANCH_ENTRY_SIZE) + keySize <= DATA_SIZE;
+    }
+
+    /**
+     * Sets the row and key of entry i. The key is not stored if it does not
+     * fit in the page.
+     */
+    void setEntry(int i, long rowPos, Object[] key, int keySize) {
+
+        dataSize -= keySizes[i];
+
+        if (dataSize + keySize > DATA_SIZE) {
+            key     = null;
+            keySize = 0;
+        }
+
+        rowPositions[i] = rowPos;
+        keys[i]         = key;
+        keySizes[i]     = keySize;
+        dataSize        += keySize;
+
+        setChanged(true);
+    }
+
+    /**
+     * Inserts an entry at index i. For a branch page, childPos is the
+     * position of the child page. The caller checks there is room for the
+     * entry.
+     */
+    void insertEntry(int i, long childPos, long rowPos, Object[] key,
+                     int keySize) {
+
+        int move = count - i;
+
+        System.arraycopy(rowPositions, i, rowPositions, i + 1, move);
+        System.arraycopy(keys, i, keys, i + 1, move);
+        System.arraycopy(keySizes, i, keySizes, i + 1, move);
+
+        if (!isLeaf) {
+            System.arraycopy(childPositions, i, childPositions, i + 1, move);
+
+            childPositions[i] = childPos;
+        }
+
+        rowPositions[i] = rowPos;
+        keys[i]         = key;
+        keySizes[i]     = keySize;
+
+        count++;
+
+        dataSize += getEntrySize(i);
+
+        setChanged(true);
+    }
+
+    void removeEntry(int i) {
+
+        int move = count - i - 1;
+
+        dataSize -= getEntrySize(i);
+
+        System.arraycopy(rowPositions, i + 1, rowPositions, i, move);
+        System.arraycopy(keys, i + 1, keys, i, move);
+        System.arraycopy(keySizes, i + 1, keySizes, i, move);
+
+        if (!isLeaf) {
+            System.arraycopy(childPositions, i + 1, childPositions, i, move);
+        }
+
+        count--;
+        keys[count] = null;
+
+        setChanged(true);
+    }
+
+    /**
+     * Returns the index of the first entry to move to a new page when the
+     * page is split, so that each page has about half the data.
+     */
+    int getSplitIndex() {
+
+        int half = dataSize / 2;
+        int size = 0;
+        int i    = 0;
+
+        while (i < count - 1) {
+            size += getEntrySize(i);
+
+            i++;
+
+            if (size >= half) {
+                break;
+            }
+        }
+
+        return i;
+    }
+
+    /**
+     * Moves the entries from index i to the end to the empty page other.
+     */
+    void moveEntries(int i, NodeBTree other) {
+
+        int move = count - i;
+
+        System.arraycopy(rowPositions, i, other.rowPositions, 0, move);
+        System.arraycopy(keys, i, other.keys, 0, move);
+        System.arraycopy(keySizes, i, other.keySizes, 0, move);
+
+        if (!isLeaf) {
+            System.arraycopy(childPositions, i, other.childPositions, 0,
+                             move);
+        }
+
+        other.count = move;
+
+        for (int j = 0; j < move; j++) {
+            other.dataSize += other.getEntrySize(j);
+        }
+
+        dataSize -= other.dataSize;
+        count    = i;
+
+        for (int j = i; j < i + move; j++) {
+            keys[j] = null;
+        }
+
+        setChanged(true);
+        other.setChanged(true);
+    }
+}
@@ -54,10 +54,13 @@ public class HashMap extends BaseHashMap {
               BaseHashMap.objectKeyOrValue, false);
     }
 
+    public void setComparator(ObjectComparator comparator) {
+        super.setComparator(comparator);
+    }
+
     public Object get(Object key) {
 
-        int hash   = key.hashCode();
-        int lookup = getLookup(key, hash);
+        int lookup = getLookup(key, getHashCode(key));
 
         if (lookup != -1) {
             return objectValueTable[lookup];
@@ -151,7 +154,8 @@ public class HashMap extends BaseHashMap {
 
         public Object get(Object key) {
 
-            int lookup = HashMap.this.getLookup(key, key.hashCode());
+            int lookup = HashMap.this.getLookup(key,
+                HashMap.this.getHashCode(key));
 
             if (lookup < 0) {
                 return null;
@@ -64,7 +64,7 @@ public class HashMappedList extends HashMap {
 
     public Object remove(Object key) {
 
-        int lookup = getLookup(key, key.hashCode());
+        int lookup = getLookup(key, getHashCode(key));
 
         if (lookup < 0) {
             return null;
@@ -86,7 +86,7 @@ public class HashMappedList extends HashMap {
 
     public boolean add(Object key, Object value) {
 
-        int lookup = getLookup(key, key.hashCode());
+        int lookup = getLookup(key, getHashCode(key));
 
         if (lookup >= 0) {
             return false;
@@ -120,7 +120,7 @@ public class HashMappedList extends HashMap {
             throw new IndexOutOfBoundsException();
         }
 
-        int lookup = getLookup(key, key.hashCode());
+        int lookup = getLookup(key, getHashCode(key));
 
         if (lookup >= 0) {
             return false;
@@ -197,7 +197,7 @@ public class HashMappedList extends HashMap {
     }
 
     public int getIndex(Object key) {
-        return getLookup(key, key.hashCode());
+        return getLookup(key, getHashCode(key));
     }
 
     public Object[] toValuesArray(Object[] a) {
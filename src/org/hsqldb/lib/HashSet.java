@@ -89,15 +89,7 @@ public class HashSet extends BaseHashMap implements Set {
 
     public Object get(Object key) {
 
-        int hashCode;
-
-        if (comparator == null) {
-            hashCode = key.hashCode();
-        } else {
-            hashCode = comparator.hashCode(key);
-        }
-
-        int lookup = getLookup(key, hashCode);
+        int lookup = getLookup(key, getHashCode(key));
 
         if (lookup < 0) {
             return null;
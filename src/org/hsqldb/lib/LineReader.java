@@ -44,15 +44,21 @@ import java.nio.charset.Charset;
  * as an end-of_line marker.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.5.0
+ * @version 2.5.1
  * @since 2.0.1
  */
 public class LineReader {
 
+    static final int bufferSize = 8192;
+
+    //
     boolean                   finished = false;
     boolean                   wasCR    = false;
     boolean                   wasEOL   = false;
     HsqlByteArrayOutputStream baOS     = new HsqlByteArrayOutputStream(1024);
+    byte[]                    buffer   = new byte[bufferSize];
+    int                       bufferPosition;
+    int                       bufferLimit;
 
     //
     final InputStream stream;
@@ -70,41 +76,59 @@ public class LineReader {
         }
 
         while (true) {
-            int c = stream.read();
+            if (bufferPosition == bufferLimit) {
+                bufferPosition = 0;
+                bufferLimit    = stream.read(buffer, 0, buffer.length);
 
-            if (c == -1) {
-                finished = true;
+                if (bufferLimit == -1) {
+                    bufferLimit = 0;
+                    finished    = true;
 
-                if (baOS.size() == 0) {
-                    return null;
+                    if (baOS.size() == 0) {
+                        return null;
+                    }
+
+                    break;
                 }
 
-                break;
+                continue;
+            }
+
+            int c = buffer[bufferPosition];
+
+            if (c == '\n' && wasCR) {
+                bufferPosition++;
+
+                wasCR = false;
+
+                continue;
             }
 
-            switch (c) {
+            wasCR = false;
+
+            // copy the bytes up to the end of line in one go
+            int start = bufferPosition;
 
-                case '\r' : {
-                    wasCR = true;
+            while (bufferPosition < bufferLimit) {
+                c = buffer[bufferPosition];
 
+                if (c == '\r' || c == '\n') {
                     break;
                 }
-                case '\n' : {
-                    if (wasCR) {
-                        wasCR = false;
 
-                        continue;
-                    } else {
-                        break;
-                    }
-                }
-                default : {
-                    baOS.write(c);
+                bufferPosition++;
+            }
 
-                    wasCR = false;
+            baOS.write(buffer, start, bufferPosition - start);
 
-                    continue;
-                }
+            if (bufferPosition == bufferLimit) {
+                continue;
+            }
+
+            bufferPosition++;
+
+            if (c == '\r') {
+                wasCR = true;
             }
 
             break;
@@ -62,7 +62,7 @@ public class MultiValueHashMap extends BaseHashMap {
 
     public Iterator get(Object key) {
 
-        int hash = key.hashCode();
+        int hash = getHashCode(key);
 
         return super.getValuesIterator(key, hash);
     }
@@ -89,7 +89,7 @@ public class MultiValueHashMap extends BaseHashMap {
 
     public int valueCount(Object key) {
 
-        int hash = key.hashCode();
+        int hash = getHashCode(key);
 
         return super.valueCount(key, hash);
     }
@@ -122,7 +122,7 @@ public class OrderedHashSet extends HashSet implements HsqlList, Set {
     }
 
     public int getIndex(Object key) {
-        return getLookup(key, key.hashCode());
+        return getLookup(key, getHashCode(key));
     }
 
     public int getLargestIndex(OrderedHashSet other) {
@@ -204,6 +204,25 @@ public class BaseHashMap {
         }
     }
 
+    /**
+     * Returns the hash code of an Object key. All the lookups, additions and
+     * removals of Object keys use this method, so that the hash code agrees
+     * with the comparator when one is set.
+     */
+    protected int getHashCode(Object key) {
+        return comparator == null ? key.hashCode()
+                                  : comparator.hashCode(key);
+    }
+
+    /**
+     * Returns true if the two Object keys are equal, using the comparator
+     * when one is set.
+     */
+    protected boolean equalsKey(Object key, Object tableKey) {
+        return comparator == null ? key.equals(tableKey)
+                                  : comparator.compare(key, tableKey) == 0;
+    }
+
     protected int getLookup(Object key, int hash) {
 
         int    lookup = hashIndex.getLookup(hash);
@@ -212,14 +231,8 @@ public class BaseHashMap {
         for (; lookup >= 0; lookup = hashIndex.getNextLookup(lookup)) {
             tempKey = objectKeyTable[lookup];
 
-            if (comparator == null) {
-                if (key.equals(tempKey)) {
-                    break;
-                }
-            } else {
-                if (comparator.compare(key, tempKey) == 0) {
-                    break;
-                }
+            if (equalsKey(key, tempKey)) {
+                break;
             }
         }
 
@@ -304,7 +317,7 @@ public class BaseHashMap {
                 break;
             }
 
-            if (BaseHashMap.this.objectKeyTable[lookup].equals(key)) {
+            if (equalsKey(key, BaseHashMap.this.objectKeyTable[lookup])) {
                 count++;
             }
         }
@@ -328,11 +341,7 @@ public class BaseHashMap {
                 return null;
             }
 
-            if (comparator == null) {
-                hash = objectKey.hashCode();
-            } else {
-                hash = comparator.hashCode(objectKey);
-            }
+            hash = getHashCode(objectKey);
         }
 
         int    index       = hashIndex.getHashIndex(hash);
@@ -344,15 +353,8 @@ public class BaseHashMap {
                 lastLookup = lookup,
                 lookup = hashIndex.getNextLookup(lookup)) {
             if (isObjectKey) {
-                if (comparator == null) {
-                    if (objectKeyTable[lookup].equals(objectKey)) {
-                        break;
-                    }
-                } else {
-                    if (comparator.compare(objectKeyTable[lookup], objectKey)
-                            == 0) {
-                        break;
-                    }
+                if (equalsKey(objectKey, objectKeyTable[lookup])) {
+                    break;
                 }
             } else if (isIntKey) {
                 if (longKey == intKeyTable[lookup]) {
@@ -494,11 +496,7 @@ public class BaseHashMap {
                 return null;
             }
 
-            if (comparator == null) {
-                hash = objectKey.hashCode();
-            } else {
-                hash = comparator.hashCode(objectKey);
-            }
+            hash = getHashCode(objectKey);
         }
 
         int     index       = hashIndex.getHashIndex(hash);
@@ -511,17 +509,8 @@ public class BaseHashMap {
                 lastLookup = lookup,
                 lookup = hashIndex.getNextLookup(lookup)) {
             if (isObjectKey) {
-                if (comparator == null) {
-                    if (objectKeyTable[lookup].equals(objectKey)) {}
-                    else {
-                        continue;
-                    }
-                } else {
-                    if (comparator.compare(objectKeyTable[lookup], objectKey)
-                            == 0) {}
-                    else {
-                        continue;
-                    }
+                if (!equalsKey(objectKey, objectKeyTable[lookup])) {
+                    continue;
                 }
 
                 if (removeKey) {
@@ -536,7 +525,8 @@ public class BaseHashMap {
                         lookup                  = hashIndex.hashTable[index];
 
                         if (lookup < 0
-                                || !objectKeyTable[lookup].equals(objectKey)) {
+                                || !equalsKey(objectKey,
+                                              objectKeyTable[lookup])) {
                             return returnValue;
                         }
                     }
@@ -803,7 +793,7 @@ public class BaseHashMap {
             return null;
         }
 
-        int    hash        = objectKey.hashCode();
+        int    hash        = getHashCode(objectKey);
         int    index       = hashIndex.getHashIndex(hash);
         int    lookup      = hashIndex.hashTable[index];
         int    lastLookup  = -1;
@@ -812,7 +802,7 @@ public class BaseHashMap {
         for (; lookup >= 0;
                 lastLookup = lookup,
                 lookup = hashIndex.getNextLookup(lookup)) {
-            if (objectKeyTable[lookup].equals(objectKey)) {
+            if (equalsKey(objectKey, objectKeyTable[lookup])) {
                 returnValue            = objectKeyTable[lookup];
                 objectKeyTable[lookup] = null;
 
@@ -1324,9 +1314,19 @@ public class BaseHashMap {
             return;
         }
 
-        int limit = hashIndex.getNewNodePointer();
+        accessCount.set(rescaleAccessCount());
+    }
+
+    /**
+     * Divides the access counts by four and returns the new maximum, without
+     * setting accessCount. Used directly when accessCount is shared with
+     * other maps.
+     */
+    protected int rescaleAccessCount() {
+
+        int limit     = hashIndex.getNewNodePointer();
+        int accessMax = 0;
 
-        accessMax = 0;
         accessMin = Integer.MAX_VALUE;
 
         for (int i = 0; i < limit; i++) {
@@ -1350,7 +1350,7 @@ public class BaseHashMap {
             accessMin = accessMax;
         }
 
-        accessCount.set(accessMax);
+        return accessMax;
     }
 
     protected int capacity() {
@@ -1379,7 +1379,7 @@ public class BaseHashMap {
             return false;
         }
 
-        int lookup = getLookup(key, key.hashCode());
+        int lookup = getLookup(key, getHashCode(key));
 
         return lookup == -1 ? false
                             : true;
@@ -1479,8 +1479,8 @@ public class BaseHashMap {
                 lookup = BaseHashMap.this.hashIndex.getNextLookup(lookup);
 
                 if (lookup == -1
-                        || BaseHashMap.this.objectKeyTable[lookup].equals(
-                            key)) {
+                        || equalsKey(key,
+                                     BaseHashMap.this.objectKeyTable[lookup])) {
                     break;
                 }
             }
@@ -44,10 +44,14 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.lib.ArraySort;
 import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.lib.Iterator;
 import org.hsqldb.lib.LongKeyHashMap;
+import org.hsqldb.lib.ObjectComparator;
 import org.hsqldb.result.ResultMetaData;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.rowio.RowOutputInterface;
+import org.hsqldb.types.Type;
 
 /**
  * Implementation of RowSetNavigator for result sets.
@@ -81,8 +85,15 @@ implements Comparator<Object[]> {
     Index idIndex;
 
     //
-    TreeMap<Object[], Integer> rowMap;
-    LongKeyHashMap             idMap;
+    HashMap        rowMap;
+    LongKeyHashMap idMap;
+
+    // replaces rowMap when the groups reach the memory row count
+    TreeMap<Object[], Integer> rowTreeMap;
+    int                        maxHashGroups;
+
+    // rows kept for ORDER BY with LIMIT
+    int topRowCount;
 
     RowSetNavigatorData(Session session) {
         this.session = session;
@@ -99,8 +110,11 @@ implements Comparator<Object[]> {
         orderIndex         = select.orderIndex;
 
         if (select.isGrouped) {
-            mainIndex = select.groupIndex;
-            rowMap    = new TreeMap<Object[], Integer>(this);
+            mainIndex     = select.groupIndex;
+            groupIndex    = select.groupIndex;
+            maxHashGroups = session.getResultMemoryRowCount();
+
+            resetRowMap();
         }
 
         if (select.idIndex != null) {
@@ -139,6 +153,8 @@ implements Comparator<Object[]> {
 
     public void sortOrder() {
 
+        topRowCount = 0;
+
         if (orderIndex != null) {
             mainIndex = orderIndex;
 
@@ -160,12 +176,24 @@ implements Comparator<Object[]> {
 
     public void add(Object[] data) {
 
+        if (topRowCount > 0) {
+            addTopRow(data);
+
+            return;
+        }
+
         ensureCapacity();
 
         dataTable[size] = data;
 
-        if (rowMap != null) {
-            rowMap.put(data, size);
+        if (rowTreeMap != null) {
+            rowTreeMap.put(data, Integer.valueOf(size));
+        } else if (rowMap != null) {
+            rowMap.put(data, Integer.valueOf(size));
+
+            if (rowMap.size() == maxHashGroups) {
+                moveRowMapToTree();
+            }
         }
 
         if (idMap != null) {
@@ -177,9 +205,89 @@ implements Comparator<Object[]> {
         size++;
     }
 
+    /**
+     * Limits the rows to the first count rows in the ORDER BY order, for a
+     * query with LIMIT. Until sortOrder() is called, the rows are held in a
+     * heap with the last row in the order at the top. A new row that comes
+     * before the top row replaces it. A new row that is equal to the top row
+     * is not kept.
+     */
+    public void setTopRowCount(int count) {
+        topRowCount = count;
+    }
+
+    private void addTopRow(Object[] data) {
+
+        if (size < topRowCount) {
+            ensureCapacity();
+
+            dataTable[size] = data;
+
+            size++;
+
+            int pos = size - 1;
+
+            while (pos > 0) {
+                int parent = (pos - 1) >> 1;
+
+                if (compareOrder(dataTable[pos], dataTable[parent]) <= 0) {
+                    break;
+                }
+
+                swapRows(pos, parent);
+
+                pos = parent;
+            }
+
+            return;
+        }
+
+        if (compareOrder(data, dataTable[0]) >= 0) {
+            return;
+        }
+
+        dataTable[0] = data;
+
+        int pos = 0;
+
+        while (true) {
+            int child = 2 * pos + 1;
+
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size
+                    && compareOrder(dataTable[child + 1], dataTable[child])
+                       > 0) {
+                child++;
+            }
+
+            if (compareOrder(dataTable[child], dataTable[pos]) <= 0) {
+                break;
+            }
+
+            swapRows(pos, child);
+
+            pos = child;
+        }
+    }
+
+    private int compareOrder(Object[] a, Object[] b) {
+        return orderIndex.compareRow((Session) session, a, b);
+    }
+
+    private void swapRows(int i, int j) {
+
+        Object[] data = dataTable[i];
+
+        dataTable[i] = dataTable[j];
+        dataTable[j] = data;
+    }
+
     public void setPosition(Object[] data) {
 
-        Integer mapPos = rowMap.get(data);
+        Integer mapPos = getRowMapPosition(data);
 
         if (mapPos == null) {
             return;
@@ -263,8 +371,49 @@ implements Comparator<Object[]> {
         reset();
     }
 
+    /**
+     * Groups are looked up in a hash map on the grouping columns. The
+     * rows are added to the result in the order the groups are found.
+     */
     public void resetRowMap() {
-        rowMap = new TreeMap(this);
+
+        rowMap     = new HashMap();
+        rowTreeMap = null;
+
+        rowMap.setComparator(new GroupComparator());
+    }
+
+    /**
+     * When the groups reach hsqldb.result_max_memory_rows, they are moved to
+     * a TreeMap ordered by the group index, as used before the hash map. A
+     * grouped result without aggregates is then moved to a disk based
+     * navigator. An aggregated result cannot be stored on disk, as the
+     * aggregate states are not serializable, and stays in memory. The
+     * TreeMap grows one entry at a time, while the arrays of the hash map
+     * double in size and are copied when they grow.
+     */
+    private void moveRowMapToTree() {
+
+        rowTreeMap = new TreeMap<Object[], Integer>(new GroupComparator());
+
+        Iterator it = rowMap.keySet().iterator();
+
+        while (it.hasNext()) {
+            Object[] key = (Object[]) it.next();
+
+            rowTreeMap.put(key, (Integer) rowMap.get(key));
+        }
+
+        rowMap = null;
+    }
+
+    private Integer getRowMapPosition(Object[] data) {
+
+        if (rowTreeMap == null) {
+            return (Integer) rowMap.get(data);
+        }
+
+        return rowTreeMap.get(data);
     }
 
     public boolean absolute(int position) {
@@ -624,7 +773,7 @@ implements Comparator<Object[]> {
             return simpleAggregateData;
         }
 
-        Integer position = rowMap.get(data);
+        Integer position = getRowMapPosition(data);
 
         if (position == null) {
             return null;
@@ -640,7 +789,7 @@ implements Comparator<Object[]> {
      */
     public Object[] getGroupDataAndPosition(Object[] data) {
 
-        Integer mapPos = rowMap.get(data);
+        Integer mapPos = getRowMapPosition(data);
 
         if (mapPos == null) {
             return null;
@@ -754,4 +903,34 @@ implements Comparator<Object[]> {
     public int compare(Object[] a, Object[] b) {
         return mainIndex.compareRow((Session) session, a, b);
     }
+
+    /**
+     * Compares and hashes the grouping columns of result rows.
+     */
+    class GroupComparator implements ObjectComparator {
+
+        final int[]  columns = groupIndex.getColumns();
+        final Type[] types   = groupIndex.getColumnTypes();
+
+        public int compare(Object a, Object b) {
+            return groupIndex.compareRow((Session) session, (Object[]) a,
+                                         (Object[]) b);
+        }
+
+        public int hashCode(Object a) {
+
+            Object[] data = (Object[]) a;
+            int      hash = 0;
+
+            for (int i = 0; i < columns.length; i++) {
+                hash = 31 * hash + types[i].hashCode(data[columns[i]]);
+            }
+
+            return hash;
+        }
+
+        public long longKey(Object a) {
+            return 0;
+        }
+    }
 }
@@ -80,6 +80,11 @@ public class RowSetNavigatorDataTable extends RowSetNavigatorData {
         groupIndex        = select.groupIndex;
         idIndex           = select.idIndex;
         tempRowData       = new Object[1];
+
+        // no index lookup while the rows are added
+        if (!select.isAggregated && !select.isGrouped) {
+            store.setSortedIndexing(true);
+        }
     }
 
     public RowSetNavigatorDataTable(Session session,
@@ -106,6 +111,8 @@ public class RowSetNavigatorDataTable extends RowSetNavigatorData {
         table.store        = store;
         mainIndex          = queryExpression.mainIndex;
         fullIndex          = queryExpression.fullIndex;
+
+        store.setSortedIndexing(true);
     }
 
     public RowSetNavigatorDataTable(Session session, Table table) {
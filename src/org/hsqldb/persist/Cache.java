@@ -45,8 +45,8 @@ import org.hsqldb.map.BaseHashMap;
 /**
  * New implementation of row caching for CACHED tables.<p>
  *
- * Manages memory for the cache map and its contents based on least recently
- * used clearup.<p>
+ * Manages memory for the cache map and its contents based on the
+ * CachePolicy of the DataFileCache, least recently used by default.<p>
  * Also provides services for selecting rows to be saved and passing them
  * to DataFileCache.<p>
  *
@@ -63,10 +63,14 @@ public class Cache extends BaseHashMap {
     private final CachedObjectComparator       rowComparator;
     private final BaseHashMap.BaseHashIterator objectIterator;
     private final boolean                      updateAccess;
+    private final CachePolicy                  policy;
+    private final boolean                      trackAdmission;
+    private final boolean                      sharedAccessCount;
 
     //
     private CachedObject[] rowTable;
     private long           cacheBytesLength;
+    private long           removeCount;
 
     // for testing
     StopWatch saveAllTimer = new StopWatch(false);
@@ -74,29 +78,60 @@ public class Cache extends BaseHashMap {
     int       saveRowCount = 0;
 
     Cache(DataFileCache dfc) {
+        this(dfc, dfc.capacity(), dfc.bytesCapacity(), null);
+    }
 
-        super(dfc.capacity(), BaseHashMap.objectKeyOrValue,
+    /**
+     * Used for the segments of a segmented cache, each with a share of the
+     * row and byte capacity of the DataFileCache. The segments share the
+     * access counter, so the access counts of rows in different segments
+     * are comparable. The DataFileCache resets the shared counter.
+     */
+    Cache(DataFileCache dfc, int capacity, long bytesCapacity,
+          AtomicInteger segmentAccessCount) {
+
+        super(capacity, BaseHashMap.objectKeyOrValue,
               BaseHashMap.noKeyOrValue, true);
 
-        maxCapacity      = dfc.capacity();
-        dataFileCache    = dfc;
-        capacity         = dfc.capacity();
-        bytesCapacity    = dfc.bytesCapacity();
-        rowComparator    = new CachedObjectComparator();
-        rowTable         = new CachedObject[capacity];
-        cacheBytesLength = 0;
-        objectIterator   = new BaseHashIterator(true);
-        updateAccess     = dfc instanceof TextCache;
-        comparator       = rowComparator;
+        maxCapacity        = capacity;
+        dataFileCache      = dfc;
+        this.capacity      = capacity;
+        this.bytesCapacity = bytesCapacity;
+        rowComparator      = new CachedObjectComparator();
+        rowTable           = new CachedObject[capacity];
+        cacheBytesLength   = 0;
+        objectIterator     = new BaseHashIterator(true);
+        updateAccess       = dfc instanceof TextCache;
+        comparator         = rowComparator;
         reserveCount = dfc instanceof TextCache
                        || dfc instanceof DataFileCacheSession ? 0
                                                               : 8;
+        sharedAccessCount = segmentAccessCount != null;
+
+        if (sharedAccessCount) {
+            accessCount = segmentAccessCount;
+        }
+
+        // the window of the policy counts accesses to all the segments
+        policy = dfc.cachePolicy == CachePolicy.SLRU
+                 ? new CachePolicySLRU(this, dfc.capacity())
+                 : new CachePolicyLRU(this);
+        trackAdmission = policy.isAdmissionTracked();
     }
 
     long getTotalCachedBlockSize() {
         return cacheBytesLength;
     }
 
+    /**
+     * Returns the number of times objects have been removed from this cache.
+     * Used by a segmented DataFileCache to detect evictions that took place
+     * while a row was read from the file outside the segment lock.
+     */
+    long getRemoveCount() {
+        return removeCount;
+    }
+
     /**
      * Returns a row if in memory cache.
      */
@@ -108,7 +143,11 @@ public class Cache extends BaseHashMap {
             return null;
         }
 
-        accessTable[lookup] = accessCount.incrementAndGet();
+        int count = accessCount.incrementAndGet();
+
+        accessTable[lookup] = count;
+
+        policy.accessed(lookup, count);
 
         CachedObject object = (CachedObject) objectKeyTable[lookup];
 
@@ -208,6 +247,10 @@ public class Cache extends BaseHashMap {
                                          + row.getStorageSize(), null);
         }
 
+        if (trackAdmission) {
+            policy.added(getObjectLookup(row.getPos()));
+        }
+
         row.setInMemory(true);
 
         cacheBytesLength += row.getStorageSize();
@@ -228,6 +271,8 @@ public class Cache extends BaseHashMap {
 
         r.setInMemory(false);
 
+        removeCount++;
+
         return r;
     }
 
@@ -246,6 +291,8 @@ public class Cache extends BaseHashMap {
                 objectIterator.remove();
 
                 cacheBytesLength -= o.getStorageSize();
+
+                removeCount++;
             }
         }
     }
@@ -263,6 +310,8 @@ public class Cache extends BaseHashMap {
                 objectIterator.remove();
 
                 cacheBytesLength -= o.getStorageSize();
+
+                removeCount++;
             }
         }
     }
@@ -305,11 +354,26 @@ public class Cache extends BaseHashMap {
         }
     }
 
+    /**
+     * Divides the access counts of a segment by four and returns the new
+     * maximum. Called by the DataFileCache for each segment when the shared
+     * access counter is reset.
+     */
+    int rescaleSegmentAccessCount() {
+
+        int accessMax = rescaleAccessCount();
+
+        updateObjectAccessCounts();
+        policy.resetAccessCount();
+
+        return accessMax;
+    }
+
     /**
      * Reduces the number of rows held in this Cache object. <p>
      *
      * Cleanup is done by checking the accessCount of the Rows and removing
-     * the rows with the lowest access count.
+     * the rows selected by the CachePolicy.
      *
      * Index operations require that some rows remain
      * in the cache. This is ensured by prior calling keepInMemory().
@@ -319,16 +383,19 @@ public class Cache extends BaseHashMap {
 
         updateAccessCounts();
 
-        if (accessCount.get() > ACCESS_MAX || accessCount.get() < 0) {
+        if (!sharedAccessCount
+                && (accessCount.get() > ACCESS_MAX
+                    || accessCount.get() < 0)) {
             resetAccessCount();
             updateObjectAccessCounts();
+            policy.resetAccessCount();
         }
 
-        int savecount    = 0;
-        int removeCount  = size() / 2;
-        int accessTarget = all ? accessCount.get() + 1
-                               : getAccessCountCeiling(removeCount,
-                                   removeCount / 8);
+        int savecount = 0;
+
+        policy.startCleanUp(all);
+
+        int keepAccessCount = policy.getKeepAccessCount();
 
         objectIterator.reset();
 
@@ -337,7 +404,8 @@ public class Cache extends BaseHashMap {
 
             synchronized (row) {
                 int     currentAccessCount = objectIterator.getAccessCount();
-                boolean oldRow             = currentAccessCount < accessTarget;
+                boolean oldRow = policy.isOld(objectIterator.getLookup(),
+                                              currentAccessCount);
                 boolean newRow = row.isNew()
                                  && row.getStorageSize()
                                     >= DataFileCache.initIOBufferSize;
@@ -349,12 +417,14 @@ public class Cache extends BaseHashMap {
 
                 if (oldRow) {
                     if (row.isKeepInMemory()) {
-                        objectIterator.setAccessCount(accessTarget);
+                        objectIterator.setAccessCount(keepAccessCount);
                     } else {
                         row.setInMemory(false);
                         objectIterator.remove();
 
                         cacheBytesLength -= row.getStorageSize();
+
+                        removeCount++;
                     }
                 }
             }
@@ -367,10 +437,55 @@ public class Cache extends BaseHashMap {
         }
 
         saveRows(savecount);
-        setAccessCountFloor(accessTarget);
+        setAccessCountFloor(policy.getAccessFloor());
         accessCount.incrementAndGet();
     }
 
+    /**
+     * Writes out up to count changed rows from the least recently used half
+     * of the rows. Used by the background flusher of the DataFileCache.
+     */
+    int saveOldRows(int count) {
+
+        int accessTarget = getAccessCountCeiling(size() / 2, size() / 16);
+
+        return saveChangedRows(count, accessTarget);
+    }
+
+    /**
+     * Writes out up to count changed rows regardless of use. Used before a
+     * fuzzy checkpoint.
+     */
+    int saveChangedRows(int count) {
+        return saveChangedRows(count, Integer.MAX_VALUE);
+    }
+
+    private int saveChangedRows(int count, int accessTarget) {
+
+        int savecount = 0;
+
+        if (count > rowTable.length) {
+            count = rowTable.length;
+        }
+
+        objectIterator.reset();
+
+        for (; savecount < count && objectIterator.hasNext(); ) {
+            CachedObject row = (CachedObject) objectIterator.next();
+
+            synchronized (row) {
+                if (objectIterator.getAccessCount() < accessTarget
+                        && row.hasChanged() && !row.isKeepInMemory()) {
+                    rowTable[savecount++] = row;
+                }
+            }
+        }
+
+        saveRows(savecount);
+
+        return savecount;
+    }
+
     void clearUnchanged() {
 
         objectIterator.reset();
@@ -384,6 +499,8 @@ public class Cache extends BaseHashMap {
                     objectIterator.remove();
 
                     cacheBytesLength -= row.getStorageSize();
+
+                    removeCount++;
                 }
             }
         }
@@ -458,6 +575,8 @@ public class Cache extends BaseHashMap {
         super.clear();
 
         cacheBytesLength = 0;
+
+        removeCount++;
     }
 
     public Iterator getIterator() {
@@ -471,6 +590,18 @@ public class Cache extends BaseHashMap {
         return accessCount;
     }
 
+    int[] getAccessTable() {
+        return accessTable;
+    }
+
+    int getSlotLimit() {
+        return hashIndex.getNewNodePointer();
+    }
+
+    int getAccessCeiling(int count, int margin) {
+        return getAccessCountCeiling(count, margin);
+    }
+
     static final class CachedObjectComparator implements ObjectComparator {
 
         static final int COMPARE_LAST_ACCESS = 0;
@@ -0,0 +1,93 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+/**
+ * Eviction policy of a Cache.<p>
+ *
+ * The policy decides which rows are removed from memory when the Cache
+ * reaches its row count or byte size limit. It works with the slot (lookup)
+ * of each row in the Cache and the last access count stored by the Cache for
+ * the slot.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public interface CachePolicy {
+
+    int LRU  = 0;
+    int SLRU = 1;
+
+    /**
+     * Returns true if the policy must be informed of each row added to
+     * the Cache.
+     */
+    boolean isAdmissionTracked();
+
+    /**
+     * A row has been added to the slot.
+     */
+    void added(int lookup);
+
+    /**
+     * The row in the slot has been accessed and given the access count.
+     */
+    void accessed(int lookup, int accessCount);
+
+    /**
+     * Selects the rows to remove in the next scan of the Cache. If all is
+     * true, all the rows are selected.
+     */
+    void startCleanUp(boolean all);
+
+    /**
+     * Returns true if the row in the slot is selected for removal. Called once
+     * for each row during the scan.
+     */
+    boolean isOld(int lookup, int accessCount);
+
+    /**
+     * Returns the access count given to selected rows that must remain in
+     * memory.
+     */
+    int getKeepAccessCount();
+
+    /**
+     * Returns the lowest access count of the rows remaining after the scan.
+     */
+    int getAccessFloor();
+
+    /**
+     * The access counts of the Cache have been scaled down.
+     */
+    void resetAccessCount();
+}
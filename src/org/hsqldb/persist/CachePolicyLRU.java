@@ -0,0 +1,80 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+/**
+ * Least recently used policy. Each clean up removes about half the rows,
+ * those with the lowest access count.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class CachePolicyLRU implements CachePolicy {
+
+    private final Cache cache;
+    private int         accessTarget;
+
+    CachePolicyLRU(Cache cache) {
+        this.cache = cache;
+    }
+
+    public boolean isAdmissionTracked() {
+        return false;
+    }
+
+    public void added(int lookup) {}
+
+    public void accessed(int lookup, int accessCount) {}
+
+    public void startCleanUp(boolean all) {
+
+        int removeCount = cache.size() / 2;
+
+        accessTarget = all ? cache.getAccessCount().get() + 1
+                           : cache.getAccessCeiling(removeCount,
+                                                    removeCount / 8);
+    }
+
+    public boolean isOld(int lookup, int accessCount) {
+        return accessCount < accessTarget;
+    }
+
+    public int getKeepAccessCount() {
+        return accessTarget;
+    }
+
+    public int getAccessFloor() {
+        return accessTarget;
+    }
+
+    public void resetAccessCount() {}
+}
@@ -0,0 +1,251 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.lib.ArrayCounter;
+
+/**
+ * Segmented least recently used policy, resistant to large scans.<p>
+ *
+ * A row read into the cache is probationary. It becomes protected if it is
+ * accessed again after a correlation window of cache accesses has passed since
+ * it was read. The rows accessed by a single scan of a table are read and
+ * used within the window and remain probationary.<p>
+ *
+ * Each clean up removes a small fraction of the rows, the least recently
+ * used probationary rows first. Protected rows are removed only when there
+ * are not enough probationary rows. When the protected rows exceed their
+ * share of the cache, the least recently used ones are returned to
+ * probation.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class CachePolicySLRU implements CachePolicy {
+
+    static final int removeDivisor    = 4;
+    static final int protectedPercent = 75;
+    static final int minWindow        = 64;
+
+    //
+    private final Cache cache;
+    private final int   window;
+
+    // access count when the row was added, or 0 when the row is protected
+    private int[] admitTable;
+    private int[] probationTable;
+    private int[] protectedTable;
+
+    //
+    private int probationTarget;
+    private int protectedTarget;
+    private int demoteTarget;
+    private int accessLimit;
+
+    CachePolicySLRU(Cache cache, int capacity) {
+
+        this.cache = cache;
+        window     = Math.max(minWindow, capacity / 32);
+        admitTable = new int[cache.getAccessTable().length];
+    }
+
+    public boolean isAdmissionTracked() {
+        return true;
+    }
+
+    public void added(int lookup) {
+
+        if (lookup < 0) {
+            return;
+        }
+
+        checkTables();
+
+        int access = cache.getAccessTable()[lookup];
+
+        admitTable[lookup] = access == 0 ? 1
+                                         : access;
+    }
+
+    public void accessed(int lookup, int accessCount) {
+
+        int[] table = admitTable;
+
+        if (lookup >= table.length) {
+            return;
+        }
+
+        int admit = table[lookup];
+
+        if (admit != 0 && accessCount - admit > window) {
+            table[lookup] = 0;
+        }
+    }
+
+    public void startCleanUp(boolean all) {
+
+        accessLimit = cache.getAccessCount().get() + 1;
+
+        if (all) {
+            probationTarget = accessLimit;
+            protectedTarget = accessLimit;
+            demoteTarget    = 0;
+
+            return;
+        }
+
+        checkTables();
+
+        if (probationTable == null
+                || probationTable.length != admitTable.length) {
+            probationTable = new int[admitTable.length];
+            protectedTable = new int[admitTable.length];
+        }
+
+        int[] accessTable    = cache.getAccessTable();
+        int   limit          = cache.getSlotLimit();
+        int   probationCount = 0;
+        int   protectedCount = 0;
+        int   accessMin      = accessLimit;
+
+        for (int i = 0; i < limit; i++) {
+            int access = accessTable[i];
+
+            probationTable[i] = 0;
+            protectedTable[i] = 0;
+
+            if (access == 0) {
+                continue;
+            }
+
+            if (access < accessMin) {
+                accessMin = access;
+            }
+
+            if (admitTable[i] == 0) {
+                protectedTable[i] = access;
+
+                protectedCount++;
+            } else {
+                probationTable[i] = access;
+
+                probationCount++;
+            }
+        }
+
+        int removeCount = (probationCount + protectedCount) / removeDivisor;
+
+        if (removeCount == 0) {
+            removeCount = 1;
+        }
+
+        int probationRemove = Math.min(removeCount, probationCount);
+        int protectedRemove = Math.min(removeCount - probationRemove,
+                                       protectedCount);
+        int protectedMax = (probationCount + protectedCount - removeCount)
+                           * protectedPercent / 100;
+        int protectedExcess = protectedCount - protectedRemove - protectedMax;
+
+        probationTarget = getTarget(probationTable, limit, probationRemove,
+                                    accessMin);
+        protectedTarget = getTarget(protectedTable, limit, protectedRemove,
+                                    accessMin);
+        demoteTarget = protectedExcess > 0
+                       ? getTarget(protectedTable, limit,
+                                   protectedRemove + protectedExcess,
+                                   accessMin)
+                       : 0;
+    }
+
+    public boolean isOld(int lookup, int accessCount) {
+
+        if (admitTable[lookup] != 0) {
+            return accessCount < probationTarget;
+        }
+
+        if (accessCount < protectedTarget) {
+            return true;
+        }
+
+        if (accessCount < demoteTarget) {
+            admitTable[lookup] = accessLimit;
+        }
+
+        return false;
+    }
+
+    public int getKeepAccessCount() {
+        return Math.max(probationTarget, protectedTarget);
+    }
+
+    /**
+     * The lowest access count is found in each clean up.
+     */
+    public int getAccessFloor() {
+        return 0;
+    }
+
+    public void resetAccessCount() {
+
+        for (int i = 0; i < admitTable.length; i++) {
+            int admit = admitTable[i];
+
+            if (admit != 0) {
+                admitTable[i] = (admit >>> 2) + 1;
+            }
+        }
+    }
+
+    private int getTarget(int[] table, int limit, int count, int start) {
+
+        if (count == 0) {
+            return 0;
+        }
+
+        return ArrayCounter.rank(table, limit, count, start, accessLimit,
+                                 count / 8);
+    }
+
+    private void checkTables() {
+
+        int length = cache.getAccessTable().length;
+
+        if (admitTable.length != length) {
+            int[] newTable = new int[length];
+
+            System.arraycopy(admitTable, 0, newTable, 0,
+                             Math.min(length, admitTable.length));
+
+            admitTable = newTable;
+        }
+    }
+}
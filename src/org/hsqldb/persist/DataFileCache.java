@@ -31,13 +31,21 @@
 
 package org.hsqldb.persist;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.hsqldb.Database;
+import org.hsqldb.DatabaseManager;
 import org.hsqldb.HsqlException;
 import org.hsqldb.Session;
 import org.hsqldb.error.Error;
@@ -45,6 +53,7 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileArchiver;
 import org.hsqldb.lib.FileUtil;
+import org.hsqldb.lib.HsqlTimer;
 import org.hsqldb.lib.IntIndex;
 import org.hsqldb.map.BitMap;
 import org.hsqldb.rowio.RowInputBinary180;
@@ -87,6 +96,10 @@ public class DataFileCache {
     public DataSpaceManager  spaceManager;
     static final int         initIOBufferSize = 4096;
     private static final int diskBlockSize    = 4096;
+    static final int         minSegmentRows   = 1024;
+    static final int         flushInterval    = 200;
+    static final int         flushBatchRows   = 4096;
+    static final int         sequentialReads  = 2;
 
     //
     protected String   dataFileName;
@@ -132,6 +145,34 @@ public class DataFileCache {
     protected long                  maxCacheBytes;    // number of bytes
     protected Cache                 cache;
 
+    // segmented cache - the first segment is also referenced by cache
+    protected int                 cacheSegmentCount;
+    protected Cache[]             cacheSegments;
+    protected ReadWriteLock[]     segmentLocks;
+    private int                   segmentShift;
+    private AtomicInteger         segmentAccessCount;
+    protected int                 cachePolicy;
+
+    // row buffers and file channel for reading missed rows of a segmented
+    // cache without the fileLock, the channel is null when not available
+    private ConcurrentLinkedQueue<RowInputInterface> segmentRowIn;
+    private RandomAccessFile                         readFile;
+    private volatile FileChannel                     readChannel;
+
+    // background writer of changed rows
+    private CacheFlusher flusher;
+
+    // read-ahead of neighbouring rows, guarded by the lock for file reads
+    protected int  readAheadSize;
+    private byte[] readAheadBuffer;
+    private long   readAheadOffset;
+    private int    readAheadLength;
+    private long   lastReadEnd;
+    private int    sequentialCount;
+
+    // second tier of the cache for row images, outside the heap
+    protected OffHeapCache offHeapCache;
+
     //
     private RAShadowFile shadowFile;
 
@@ -140,11 +181,16 @@ public class DataFileCache {
     Lock          readLock  = lock.readLock();
     Lock          writeLock = lock.writeLock();
 
+    /**
+     * guards dataFile, rowOut and the shadow file when the cache is
+     * segmented and rows are read or saved under the shared readLock
+     */
+    Lock fileLock = new ReentrantLock();
+
     public DataFileCache(Database db, String baseFileName) {
 
         initParams(db, baseFileName, false);
-
-        cache = new Cache(this);
+        initCache();
     }
 
     /**
@@ -153,8 +199,7 @@ public class DataFileCache {
     public DataFileCache(Database db, String baseFileName, boolean defrag) {
 
         initParams(db, baseFileName, true);
-
-        cache = new Cache(this);
+        initCache();
 
         try {
             dataFile = new RAFileSimple(database.logger, dataFileName, "rw");
@@ -200,15 +245,122 @@ public class DataFileCache {
         maxCacheBytes = database.logger.getCacheSize();
         maxDataFileSize = (long) Integer.MAX_VALUE * dataFileScale
                           * database.logger.getDataFileFactor();
+        cacheSegmentCount = database.logger.propCacheSegments;
+        cachePolicy       = database.logger.propCachePolicy;
+        readAheadSize     = database.logger.propCacheReadAhead * 1024;
+
+        // encrypted rows are decoded with a shared Crypto instance
+        if (database.logger.getCrypto() != null) {
+            cacheSegmentCount = 1;
+        }
+
+        // images of encrypted rows are not kept in the off-heap tier
+        if (database.logger.propCacheOffHeapSize > 0 && !defrag
+                && database.logger.getCrypto() == null) {
+            offHeapCache = new OffHeapCache(
+                database.logger.propCacheOffHeapSize * 1024L);
+        }
 
         if (defrag) {
-            this.dataFileName   = dataFileName + Logger.newFileExtension;
-            this.backupFileName = backupFileName + Logger.newFileExtension;
-            this.maxCacheRows   = 1024;
-            this.maxCacheBytes  = 1024 * 4096;
+            this.dataFileName      = dataFileName + Logger.newFileExtension;
+            this.backupFileName    = backupFileName + Logger.newFileExtension;
+            this.maxCacheRows      = 1024;
+            this.maxCacheBytes     = 1024 * 4096;
+            this.cacheSegmentCount = 1;
+            this.cachePolicy       = CachePolicy.LRU;
+            this.readAheadSize     = 0;
+        }
+    }
+
+    /**
+     * Creates the single Cache, or the Cache segments when
+     * hsqldb.cache_segments is larger than 1. Each segment has its own lock
+     * and a share of the row and byte capacity. A segment is never smaller
+     * than minSegmentRows.
+     */
+    private void initCache() {
+
+        int count = cacheSegmentCount;
+
+        while (count > 1 && maxCacheRows / count < minSegmentRows) {
+            count /= 2;
+        }
+
+        if (count <= 1) {
+            cache = new Cache(this);
+
+            return;
+        }
+
+        cacheSegments      = new Cache[count];
+        segmentLocks       = new ReadWriteLock[count];
+        segmentShift       = 32 - Integer.numberOfTrailingZeros(count);
+        segmentAccessCount = new AtomicInteger();
+
+        for (int i = 0; i < count; i++) {
+            cacheSegments[i] = new Cache(this, maxCacheRows / count,
+                                         maxCacheBytes / count,
+                                         segmentAccessCount);
+            segmentLocks[i] = new ReentrantReadWriteLock();
+        }
+
+        cache = cacheSegments[0];
+    }
+
+    /**
+     * Rescales the access counts of all the segments when the shared counter
+     * nears its limit. The segments do not reset the shared counter
+     * themselves, as each holds only its own lock. The writeLock excludes
+     * all segment operations. Not done when the thread already holds the
+     * readLock, as the lock cannot be upgraded, but a later call does it.
+     */
+    private void checkSegmentAccessCount() {
+
+        int count = segmentAccessCount.get();
+
+        if (count <= Cache.ACCESS_MAX && count >= 0) {
+            return;
+        }
+
+        if (((ReentrantReadWriteLock) lock).getReadHoldCount() > 0) {
+            return;
+        }
+
+        writeLock.lock();
+
+        try {
+            count = segmentAccessCount.get();
+
+            if (count <= Cache.ACCESS_MAX && count >= 0) {
+                return;
+            }
+
+            int accessMax = 0;
+
+            for (int i = 0; i < cacheSegments.length; i++) {
+                int max = cacheSegments[i].rescaleSegmentAccessCount();
+
+                if (max > accessMax) {
+                    accessMax = max;
+                }
+            }
+
+            segmentAccessCount.set(accessMax);
+        } finally {
+            writeLock.unlock();
         }
     }
 
+    /**
+     * Spreads neighbouring file positions over different segments.
+     */
+    final int getSegmentIndex(long pos) {
+
+        int hash = (int) (pos ^ (pos >>> 32)) * 0x9E3779B9;
+
+        return hash >>> segmentShift;
+    }
+
     /**
      * Opens the *.data file for this cache, setting the variables that
      * allow access to the particular database version of the *.data file.
@@ -217,6 +369,8 @@ public class DataFileCache {
 
         fileFreePosition = initialFreePos;
 
+        clearOffHeap();
+
         logInfoEvent("dataFileCache open start");
 
         try {
@@ -379,6 +533,7 @@ public class DataFileCache {
                 spaceManager = new DataSpaceManagerSimple(this, false);
             }
 
+            setFlushRate(database.logger.propCacheFlushRate);
             logInfoEvent("dataFileCache open end");
         } catch (HsqlException e) {
             throw e;
@@ -626,6 +781,7 @@ public class DataFileCache {
      */
     public void release() {
 
+        setFlushRate(0);
         writeLock.lock();
 
         try {
@@ -640,9 +796,12 @@ public class DataFileCache {
             }
 
             dataFile.close();
+            closeReadChannel();
             logDetailEvent("dataFileCache file closed");
 
             dataFile = null;
+
+            clearOffHeap();
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.release", t);
         } finally {
@@ -656,6 +815,7 @@ public class DataFileCache {
      */
     public void close() {
 
+        setFlushRate(0);
         writeLock.lock();
 
         try {
@@ -665,10 +825,13 @@ public class DataFileCache {
 
             reset();
             dataFile.close();
+            closeReadChannel();
             logDetailEvent("dataFileCache file close end");
 
             dataFile = null;
 
+            clearOffHeap();
+
             boolean empty = fileFreePosition == initialFreePos;
 
             if (empty) {
@@ -694,12 +857,41 @@ public class DataFileCache {
         writeLock.lock();
 
         try {
-            cache.clear();
+            clearSegments();
         } finally {
             writeLock.unlock();
         }
     }
 
+    /**
+     * Called with the writeLock held, which excludes all segment operations.
+     */
+    private void clearSegments() {
+
+        if (cacheSegments == null) {
+            cache.clear();
+
+            return;
+        }
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            cacheSegments[i].clear();
+        }
+    }
+
+    private void saveAllSegments() {
+
+        if (cacheSegments == null) {
+            cache.saveAll();
+
+            return;
+        }
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            cacheSegments[i].saveAll();
+        }
+    }
+
     public void adjustStoreCount(int adjust) {
 
         writeLock.lock();
@@ -737,7 +929,7 @@ public class DataFileCache {
 
             logInfoEvent("dataFileCache commit start");
             spaceManager.reset();
-            cache.saveAll();
+            saveAllSegments();
 
             // set empty
             long lostSize = spaceManager.getLostBlocksSize();
@@ -793,6 +985,8 @@ public class DataFileCache {
 
     protected void initBuffers() {
 
+        readAheadLength = 0;
+
         if (rowOut == null) {
             if (is180) {
                 rowOut = new RowOutputBinary180(initIOBufferSize,
@@ -805,12 +999,61 @@ public class DataFileCache {
         }
 
         if (rowIn == null) {
-            if (is180) {
-                rowIn = new RowInputBinary180(new byte[initIOBufferSize]);
-            } else {
-                rowIn = new RowInputBinaryDecode(database.logger.getCrypto(),
-                                                 new byte[initIOBufferSize]);
-            }
+            rowIn = newRowInput();
+        }
+
+        if (cacheSegments != null) {
+            segmentRowIn = new ConcurrentLinkedQueue<RowInputInterface>();
+
+            openReadChannel();
+        }
+    }
+
+    /**
+     * Opens a separate read-only handle on the *.data file for reading
+     * missed rows of a segmented cache with positional reads. Only used
+     * for a plain file in the file system. The handle sees all writes as
+     * they are made through the RandomAccessFile or the mapped buffers of
+     * dataFile.
+     */
+    private void openReadChannel() {
+
+        closeReadChannel();
+
+        if (database.isFilesInJar() || fa != FileUtil.getFileUtil()) {
+            return;
+        }
+
+        try {
+            readFile    = new RandomAccessFile(dataFileName, "r");
+            readChannel = readFile.getChannel();
+        } catch (Throwable t) {
+            logInfoEvent("dataFileCache read channel not available "
+                         + t.toString());
+            closeReadChannel();
+        }
+    }
+
+    private void closeReadChannel() {
+
+        readChannel = null;
+
+        if (readFile != null) {
+            try {
+                readFile.close();
+            } catch (Throwable t) {}
+
+            readFile = null;
+        }
+    }
+
+    private RowInputInterface newRowInput() {
+
+        if (is180) {
+            return new RowInputBinary180(new byte[initIOBufferSize]);
+        } else {
+            return new RowInputBinaryDecode(database.logger.getCrypto(),
+                                            new byte[initIOBufferSize]);
         }
     }
 
@@ -819,13 +1062,13 @@ public class DataFileCache {
         writeLock.lock();
 
         try {
-            cache.saveAll();
+            saveAllSegments();
 
             DataFileDefrag dfd = new DataFileDefrag(database, this);
 
             dfd.process(session);
             close();
-            cache.clear();
+            clearSegments();
 
             if (!database.logger.propIncrementBackup) {
                 backupNewDataFile(true);
@@ -876,6 +1119,12 @@ public class DataFileCache {
 
     public void add(CachedObject object, boolean keep) {
 
+        if (cacheSegments != null) {
+            addSegmented(object, keep);
+
+            return;
+        }
+
         writeLock.lock();
 
         try {
@@ -895,9 +1144,46 @@ public class DataFileCache {
         }
     }
 
+    private void addSegmented(CachedObject object, boolean keep) {
+
+        int  segment     = getSegmentIndex(object.getPos());
+        Lock segmentLock = segmentLocks[segment].writeLock();
+
+        checkSegmentAccessCount();
+        readLock.lock();
+        segmentLock.lock();
+
+        try {
+            cacheModified = true;
+
+            cacheSegments[segment].put(object);
+
+            if (keep) {
+                object.keepInMemory(true);
+            }
+
+            if (object.getStorageSize() > initIOBufferSize) {
+                fileLock.lock();
+
+                try {
+                    rowOut.reset(object.getStorageSize());
+                } finally {
+                    fileLock.unlock();
+                }
+            }
+        } finally {
+            segmentLock.unlock();
+            readLock.unlock();
+        }
+    }
+
     public CachedObject get(CachedObject object, PersistentStore store,
                             boolean keep) {
 
+        if (cacheSegments != null) {
+            return getSegmented(object, object.getPos(), -1, store, keep);
+        }
+
         readLock.lock();
 
         long pos;
@@ -942,6 +1228,10 @@ public class DataFileCache {
             return null;
         }
 
+        if (cacheSegments != null) {
+            return getSegmented(null, pos, size, store, keep);
+        }
+
         readLock.lock();
 
         try {
@@ -969,6 +1259,10 @@ public class DataFileCache {
             return null;
         }
 
+        if (cacheSegments != null) {
+            return getSegmented(null, pos, -1, store, keep);
+        }
+
         readLock.lock();
 
         try {
@@ -988,6 +1282,250 @@ public class DataFileCache {
         return getFromFile(pos, store, keep);
     }
 
+    /**
+     * Segmented version of get(). Holds the shared readLock. A hit needs
+     * only the read lock of the segment for pos, so hits do not exclude
+     * each other.<p>
+     *
+     * A miss releases the segment lock before reading the row from the
+     * file. The row is then put in the segment under its write lock, unless
+     * another thread has put it there in the meantime.<p>
+     *
+     * When size is -1 the size is read from the file.
+     */
+    private CachedObject getSegmented(CachedObject object, long pos,
+                                      int size, PersistentStore store,
+                                      boolean keep) {
+
+        if (pos < 0) {
+            return null;
+        }
+
+        int  segment     = getSegmentIndex(pos);
+        Lock segmentLock = segmentLocks[segment].readLock();
+        long removeCount;
+
+        checkSegmentAccessCount();
+        readLock.lock();
+
+        try {
+            segmentLock.lock();
+
+            try {
+                if (object == null || !object.isInMemory()) {
+                    object = cacheSegments[segment].get(pos);
+                }
+
+                if (object != null) {
+                    if (keep) {
+                        object.keepInMemory(true);
+                    }
+
+                    return object;
+                }
+
+                removeCount = cacheSegments[segment].getRemoveCount();
+            } finally {
+                segmentLock.unlock();
+            }
+
+            return getFromFileSegmented(segment, pos, size, store, keep,
+                                        removeCount);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Reads a missed row into a pooled buffer without holding the segment
+     * lock. Rows are saved to the file when they are removed from a segment,
+     * under the write lock of the segment. If any row has been removed from
+     * the segment since the miss, the image may predate the save of the row
+     * and is read again under the write lock.
+     */
+    private CachedObject getFromFileSegmented(int segment, long pos,
+            int size, PersistentStore store, boolean keep, long removeCount) {
+
+        Cache             segmentCache = cacheSegments[segment];
+        Lock              segmentLock  = segmentLocks[segment].writeLock();
+        RowInputInterface in           = segmentRowIn.poll();
+        CachedObject      object;
+
+        if (in == null) {
+            in = newRowInput();
+        }
+
+        try {
+            object = readSegmentObject(segment, in, pos, size, store);
+
+            segmentLock.lock();
+
+            try {
+                CachedObject existing = segmentCache.get(pos);
+
+                if (existing == null) {
+                    if (segmentCache.getRemoveCount() != removeCount) {
+                        object = readSegmentObject(segment, in, pos, size,
+                                                   store);
+                    }
+
+                    if (size < 0) {
+                        segmentCache.put(object);
+                    } else {
+                        segmentCache.putUsingReserve(object);
+                    }
+                } else {
+                    object = existing;
+                }
+
+                if (keep) {
+                    object.keepInMemory(true);
+                }
+            } finally {
+                segmentLock.unlock();
+            }
+        } catch (HsqlException e) {
+            logSevereEvent(dataFileName + " getFromFile failed " + pos, e);
+
+            throw e;
+        }
+
+        segmentRowIn.offer(in);
+
+        return object;
+    }
+
+    private CachedObject readSegmentObject(int segment, RowInputInterface in,
+                                           long pos, int size,
+                                           PersistentStore store) {
+
+        for (int j = 0; ; j++) {
+            try {
+                readSegmentObject(in, pos, size);
+
+                CachedObject object = store.get(in);
+
+                if (object == null) {
+                    throw Error.error(ErrorCode.DATA_FILE_ERROR);
+                }
+
+                return object;
+            } catch (OutOfMemoryError err) {
+                Lock segmentLock = segmentLocks[segment].writeLock();
+
+                segmentLock.lock();
+
+                try {
+                    cacheSegments[segment].clearUnchanged();
+                } finally {
+                    segmentLock.unlock();
+                }
+
+                if (j > 0) {
+                    logInfoEvent(dataFileName + " getFromFile out of mem "
+                                 + pos);
+
+                    HsqlException ex = Error.error(ErrorCode.OUT_OF_MEMORY,
+                                                   err);
+
+                    ex.info = in;
+
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a row image with a positional read on the read channel, which
+     * needs no lock. The fileLock is used when there is no channel, or when
+     * read-ahead is on, as the read-ahead buffer is guarded by the fileLock.
+     */
+    private void readSegmentObject(RowInputInterface in, long pos, int size) {
+
+        FileChannel channel = readChannel;
+
+        if (channel != null && (size >= 0 || readAheadSize == 0)) {
+            try {
+                if (size >= 0) {
+                    in.resetBlock(pos, size);
+                    readFully(channel, in.getBuffer(), 0, size,
+                              pos * dataFileScale);
+
+                    return;
+                }
+
+                if (offHeapCache != null && offHeapCache.get(pos, in)) {
+                    return;
+                }
+
+                readFully(channel, in.getBuffer(), 0, 4, pos * dataFileScale);
+
+                int rowSize = ByteBuffer.wrap(in.getBuffer(), 0, 4).getInt();
+
+                in.resetRow(pos, rowSize);
+                readFully(channel, in.getBuffer(), 4, rowSize - 4,
+                          pos * dataFileScale + 4);
+                putOffHeap(pos, in);
+
+                return;
+            } catch (ClosedChannelException e) {
+
+                // closed by an interrupt of a reading thread
+                fileLock.lock();
+
+                try {
+                    if (readChannel == channel && dataFile != null) {
+                        openReadChannel();
+                    }
+                } finally {
+                    fileLock.unlock();
+                }
+            } catch (Throwable t) {
+                logSevereEvent("DataFileCache.readObject", t, pos);
+
+                HsqlException ex = Error.error(ErrorCode.DATA_FILE_ERROR, t);
+
+                if (in.getFilePosition() != pos) {
+                    in.resetRow(pos, 0);
+                }
+
+                ex.info = in;
+
+                throw ex;
+            }
+        }
+
+        fileLock.lock();
+
+        try {
+            if (size < 0) {
+                readObject(in, pos);
+            } else {
+                readObject(in, pos, size);
+            }
+        } finally {
+            fileLock.unlock();
+        }
+    }
+
+    private static void readFully(FileChannel channel, byte[] buffer,
+                                  int offset, int length,
+                                  long position) throws IOException {
+
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+
+        while (byteBuffer.hasRemaining()) {
+            int count = channel.read(byteBuffer,
+                                     position + byteBuffer.position()
+                                     - offset);
+
+            if (count < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
     private CachedObject getFromFile(long pos, PersistentStore store,
                                      boolean keep) {
 
@@ -1143,41 +1681,263 @@ public class DataFileCache {
     }
 
     private void readObject(long pos) {
+        readObject(rowIn, pos);
+    }
+
+    private void readObject(RowInputInterface in, long pos) {
 
         try {
+            if (offHeapCache != null && offHeapCache.get(pos, in)) {
+                return;
+            }
+
+            if (readAheadSize > 0 && readAhead(in, pos)) {
+                putOffHeap(pos, in);
+
+                return;
+            }
+
             dataFile.seek(pos * dataFileScale);
 
             int size = dataFile.readInt();
 
-            rowIn.resetRow(pos, size);
-            dataFile.read(rowIn.getBuffer(), 4, size - 4);
+            in.resetRow(pos, size);
+            dataFile.read(in.getBuffer(), 4, size - 4);
+
+            lastReadEnd = pos * dataFileScale + size;
+
+            putOffHeap(pos, in);
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.readObject", t, pos);
 
             HsqlException ex = Error.error(ErrorCode.DATA_FILE_ERROR, t);
 
-            if (rowIn.getFilePosition() != pos) {
-                rowIn.resetRow(pos, 0);
+            if (in.getFilePosition() != pos) {
+                in.resetRow(pos, 0);
             }
 
-            ex.info = rowIn;
+            ex.info = in;
 
             throw ex;
         }
     }
 
+    private void putOffHeap(long pos, RowInputInterface in) {
+
+        if (offHeapCache != null) {
+            offHeapCache.put(pos, in.getSize(), in.getBuffer(), in.getSize());
+        }
+    }
+
+    private void clearOffHeap() {
+
+        if (offHeapCache != null) {
+            offHeapCache.clear();
+        }
+    }
+
+    /**
+     * Sets the size of the off-heap tier of the cache in kilobytes, 0
+     * removes the tier. The row images in an existing tier are discarded.
+     */
+    public void setOffHeapSize(int kb) {
+
+        writeLock.lock();
+
+        try {
+            if (kb == 0 || database.logger.getCrypto() != null) {
+                offHeapCache = null;
+            } else {
+                offHeapCache = new OffHeapCache(kb * 1024L);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public OffHeapCache getOffHeapCache() {
+        return offHeapCache;
+    }
+
+    /**
+     * Reads the row at pos from the read-ahead buffer if the reads are
+     * sequential, or clustered near each other. The buffer is filled
+     * with a single large read from the file starting at the row.
+     * Returns false if the row has not been read.
+     */
+    private boolean readAhead(RowInputInterface in,
+                              long pos) throws IOException {
+
+        long offset = pos * dataFileScale;
+
+        if (offset >= lastReadEnd && offset - lastReadEnd < readAheadSize) {
+            if (sequentialCount < sequentialReads) {
+                sequentialCount++;
+            }
+        } else if (!isInReadAhead(offset, 4)) {
+            sequentialCount = 0;
+        }
+
+        if (!isInReadAhead(offset, 4)) {
+            if (sequentialCount < sequentialReads) {
+                return false;
+            }
+
+            fillReadAhead(offset);
+
+            if (!isInReadAhead(offset, 4)) {
+                return false;
+            }
+        }
+
+        int size = getReadAheadInt(offset);
+
+        if (size <= 4) {
+            return false;
+        }
+
+        if (!isInReadAhead(offset, size)) {
+            if (size > readAheadSize) {
+                return false;
+            }
+
+            fillReadAhead(offset);
+
+            if (!isInReadAhead(offset, size)) {
+                return false;
+            }
+        }
+
+        in.resetRow(pos, size);
+        System.arraycopy(readAheadBuffer,
+                         (int) (offset - readAheadOffset) + 4,
+                         in.getBuffer(), 4, size - 4);
+
+        lastReadEnd = offset + size;
+
+        return true;
+    }
+
+    private void fillReadAhead(long offset) throws IOException {
+
+        if (readAheadBuffer == null) {
+            readAheadBuffer = new byte[readAheadSize];
+        }
+
+        long limit  = Math.min(fileFreePosition, dataFile.length());
+        int  length = (int) Math.min(readAheadSize, limit - offset);
+
+        readAheadLength = 0;
+
+        if (length <= 0) {
+            return;
+        }
+
+        dataFile.seek(offset);
+        dataFile.read(readAheadBuffer, 0, length);
+
+        readAheadOffset = offset;
+        readAheadLength = length;
+    }
+
+    private boolean isInReadAhead(long offset, int length) {
+        return offset >= readAheadOffset
+               && offset + length <= readAheadOffset + readAheadLength;
+    }
+
+    private int getReadAheadInt(long offset) {
+
+        int i = (int) (offset - readAheadOffset);
+
+        return ((readAheadBuffer[i] & 0xff) << 24)
+               | ((readAheadBuffer[i + 1] & 0xff) << 16)
+               | ((readAheadBuffer[i + 2] & 0xff) << 8)
+               | (readAheadBuffer[i + 3] & 0xff);
+    }
+
+    /**
+     * Discards the read-ahead buffer if it covers any part of the
+     * file area that is written.
+     */
+    private void invalidateReadAhead(long offset, int length) {
+
+        if (offset < readAheadOffset + readAheadLength
+                && offset + length > readAheadOffset) {
+            readAheadLength = 0;
+        }
+    }
+
+    /**
+     * Sets the size of the read-ahead buffer in kilobytes, 0 disables
+     * read-ahead.
+     */
+    public void setReadAhead(int kb) {
+
+        writeLock.lock();
+
+        try {
+            readAheadSize   = kb * 1024;
+            readAheadBuffer = null;
+            readAheadLength = 0;
+            sequentialCount = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Used for range scans to start the read-ahead with the next row that
+     * is read from the file.
+     */
+    public void startReadAhead() {
+
+        if (cacheSegments == null) {
+            writeLock.lock();
+
+            try {
+                if (readAheadSize > 0) {
+                    sequentialCount = sequentialReads;
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } else {
+            readLock.lock();
+
+            try {
+
+                // readAheadSize is changed only under the writeLock
+                if (readAheadSize > 0) {
+                    fileLock.lock();
+
+                    try {
+                        sequentialCount = sequentialReads;
+                    } finally {
+                        fileLock.unlock();
+                    }
+                }
+            } finally {
+                readLock.unlock();
+            }
+        }
+    }
+
     protected void readObject(long pos, int size) {
+        readObject(rowIn, pos, size);
+    }
+
+    private void readObject(RowInputInterface in, long pos, int size) {
 
         try {
-            rowIn.resetBlock(pos, size);
+            in.resetBlock(pos, size);
             dataFile.seek(pos * dataFileScale);
-            dataFile.read(rowIn.getBuffer(), 0, size);
+            dataFile.read(in.getBuffer(), 0, size);
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.readObject", t, pos);
 
             HsqlException ex = Error.error(ErrorCode.DATA_FILE_ERROR, t);
 
-            ex.info = rowIn;
+            ex.info = in;
 
             throw ex;
         }
@@ -1190,7 +1950,13 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
-            cache.releaseRange(startPos, limitPos);
+            if (cacheSegments == null) {
+                cache.releaseRange(startPos, limitPos);
+            } else {
+                for (int i = 0; i < cacheSegments.length; i++) {
+                    cacheSegments[i].releaseRange(startPos, limitPos);
+                }
+            }
         } finally {
             writeLock.unlock();
         }
@@ -1203,7 +1969,13 @@ public class DataFileCache {
         try {
             cacheModified = true;
 
-            cache.releaseRange(list, fileBlockItemCount);
+            if (cacheSegments == null) {
+                cache.releaseRange(list, fileBlockItemCount);
+            } else {
+                for (int i = 0; i < cacheSegments.length; i++) {
+                    cacheSegments[i].releaseRange(list, fileBlockItemCount);
+                }
+            }
         } finally {
             writeLock.unlock();
         }
@@ -1211,6 +1983,23 @@ public class DataFileCache {
 
     public CachedObject release(long pos) {
 
+        if (cacheSegments != null) {
+            int  segment     = getSegmentIndex(pos);
+            Lock segmentLock = segmentLocks[segment].writeLock();
+
+            readLock.lock();
+            segmentLock.lock();
+
+            try {
+                cacheModified = true;
+
+                return cacheSegments[segment].release(pos);
+            } finally {
+                segmentLock.unlock();
+                readLock.unlock();
+            }
+        }
+
         writeLock.lock();
 
         try {
@@ -1228,27 +2017,135 @@ public class DataFileCache {
             return;
         }
 
-        int  pageCount   = copyShadow(rows, offset, count);
-        long startTime   = cache.saveAllTimer.elapsedTime();
-        long storageSize = 0;
+        // segments evict under their own lock
+        fileLock.lock();
+
+        try {
+            int  pageCount   = copyShadow(rows, offset, count);
+            long startTime   = cache.saveAllTimer.elapsedTime();
+            long storageSize = 0;
 
-        cache.saveAllTimer.start();
+            cache.saveAllTimer.start();
 
-        if (pageCount > 0) {
-            setFileModified();
+            if (pageCount > 0) {
+                setFileModified();
+            }
+
+            for (int i = offset; i < offset + count; i++) {
+                CachedObject r = rows[i];
+
+                saveRowNoLock(r);
+
+                rows[i]     = null;
+                storageSize += r.getStorageSize();
+            }
+
+            cache.saveAllTimer.stop();
+            cache.logSaveRowsEvent(count, storageSize, startTime);
+        } finally {
+            fileLock.unlock();
         }
+    }
+
+    /**
+     * Starts, restarts or stops (with 0) the background writing of changed
+     * rows at the given number of rows per second.
+     */
+    public synchronized void setFlushRate(int rate) {
 
-        for (int i = offset; i < offset + count; i++) {
-            CachedObject r = rows[i];
+        if (flusher != null) {
+            flusher.stop();
 
-            saveRowNoLock(r);
+            flusher = null;
+        }
+
+        if (rate > 0 && !cacheReadonly) {
+            flusher = new CacheFlusher(rate);
 
-            rows[i]     = null;
-            storageSize += r.getStorageSize();
+            flusher.start();
         }
+    }
 
-        cache.saveAllTimer.stop();
-        cache.logSaveRowsEvent(count, storageSize, startTime);
+    /**
+     * Writes out up to count of the least recently used changed rows.
+     * Returns the number of rows written.
+     */
+    int flushOldRows(int count) {
+        return flushRows(count, true);
+    }
+
+    /**
+     * Writes out all the rows that have changed, in batches that hold the
+     * cache locks only while each batch is written. Used before an automatic
+     * fuzzy checkpoint, while other sessions continue. Returns the number of
+     * rows written. Rows that are changed meanwhile are left for the
+     * checkpoint.
+     */
+    public int flushChangedRows() {
+
+        int limit = getCachedObjectCount();
+        int total = 0;
+
+        while (total < limit) {
+            int count = flushRows(flushBatchRows, false);
+
+            if (count == 0) {
+                break;
+            }
+
+            total += count;
+        }
+
+        return total;
+    }
+
+    private int flushRows(int count, boolean oldOnly) {
+
+        if (cacheSegments == null) {
+            writeLock.lock();
+
+            try {
+                if (dataFile == null) {
+                    return 0;
+                }
+
+                return oldOnly ? cache.saveOldRows(count)
+                               : cache.saveChangedRows(count);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        int segmentCount = (count + cacheSegments.length - 1)
+                           / cacheSegments.length;
+        int saveCount = 0;
+
+        readLock.lock();
+
+        try {
+            if (dataFile == null) {
+                return 0;
+            }
+
+            for (int i = 0; i < cacheSegments.length; i++) {
+                Lock segmentLock = segmentLocks[i].writeLock();
+
+                segmentLock.lock();
+
+                try {
+                    saveCount += oldOnly
+                                 ? cacheSegments[i].saveOldRows(segmentCount)
+                                 : cacheSegments[i].saveChangedRows(
+                                     segmentCount);
+                } finally {
+                    segmentLock.unlock();
+                }
+            }
+        } finally {
+            readLock.unlock();
+        }
+
+        return saveCount;
     }
 
     /**
@@ -1257,20 +2154,32 @@ public class DataFileCache {
      */
     public void saveRow(CachedObject row) {
 
-        writeLock.lock();
+        Lock rowLock = cacheSegments == null ? writeLock
+                                             : readLock;
+
+        rowLock.lock();
+        fileLock.lock();
 
         try {
             copyShadow(row);
             setFileModified();
             saveRowNoLock(row);
         } finally {
-            writeLock.unlock();
+            fileLock.unlock();
+            rowLock.unlock();
         }
     }
 
     public void saveRowOutput(long pos) {
 
         try {
+            invalidateReadAhead(pos * dataFileScale,
+                                rowOut.getOutputStream().size());
+
+            if (offHeapCache != null) {
+                offHeapCache.remove(pos);
+            }
+
             dataFile.seek(pos * dataFileScale);
             dataFile.write(rowOut.getOutputStream().getBuffer(), 0,
                            rowOut.getOutputStream().size());
@@ -1286,9 +2195,28 @@ public class DataFileCache {
         try {
             rowOut.reset();
             row.write(rowOut);
+            invalidateReadAhead(row.getPos() * dataFileScale,
+                                rowOut.getOutputStream().size());
             dataFile.seek(row.getPos() * dataFileScale);
             dataFile.write(rowOut.getOutputStream().getBuffer(), 0,
                            rowOut.getOutputStream().size());
+
+            if (offHeapCache != null && row.isBlock()) {
+
+                // block images have no size prefix and are not kept off-heap
+                offHeapCache.remove(row.getPos());
+            } else if (offHeapCache != null) {
+                byte[] buffer = rowOut.getOutputStream().getBuffer();
+                int    size   = ((buffer[0] & 0xff) << 24)
+                                | ((buffer[1] & 0xff) << 16)
+                                | ((buffer[2] & 0xff) << 8)
+                                | (buffer[3] & 0xff);
+
+                // when only the nodes are written the image is updated
+                offHeapCache.put(row.getPos(), size, buffer,
+                                 rowOut.getOutputStream().size());
+            }
+
             row.setChanged(false);
         } catch (Throwable t) {
             logSevereEvent("DataFileCache.saveRowNoLock", t, row.getPos());
@@ -1527,7 +2455,18 @@ public class DataFileCache {
     }
 
     public long getTotalCachedBlockSize() {
-        return cache.getTotalCachedBlockSize();
+
+        if (cacheSegments == null) {
+            return cache.getTotalCachedBlockSize();
+        }
+
+        long total = 0;
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            total += cacheSegments[i].getTotalCachedBlockSize();
+        }
+
+        return total;
     }
 
     public long getLostBlockSize() {
@@ -1539,7 +2478,18 @@ public class DataFileCache {
     }
 
     public int getCachedObjectCount() {
-        return cache.size();
+
+        if (cacheSegments == null) {
+            return cache.size();
+        }
+
+        int total = 0;
+
+        for (int i = 0; i < cacheSegments.length; i++) {
+            total += cacheSegments[i].size();
+        }
+
+        return total;
     }
 
     public String getFileName() {
@@ -1622,8 +2572,17 @@ public class DataFileCache {
         return shadowFile;
     }
 
+    /**
+     * Returns the access counter of the cache. When the cache is segmented,
+     * the counter is shared by all the segments.
+     */
     public AtomicInteger getAccessCount() {
-        return cache.getAccessCount();
+
+        if (cacheSegments == null) {
+            return cache.getAccessCount();
+        }
+
+        return segmentAccessCount;
     }
 
     private void logSevereEvent(String message, Throwable t, long position) {
@@ -1659,4 +2618,44 @@ public class DataFileCache {
             database.logger.logDetailEvent(message);
         }
     }
+
+    /**
+     * Writes out some of the least recently used changed rows at regular
+     * intervals, so that sessions seldom wait for rows to be saved when the
+     * cache is full and checkpoints have fewer rows to save.
+     */
+    class CacheFlusher implements Runnable {
+
+        private Object    timerTask;
+        private final int rowCount;
+
+        CacheFlusher(int rate) {
+
+            int count = (int) ((long) rate * flushInterval / 1000);
+
+            rowCount = count == 0 ? 1
+                                  : count;
+        }
+
+        public void run() {
+
+            try {
+                flushOldRows(rowCount);
+            } catch (Throwable e) {
+                database.logger.logSevereEvent("CacheFlusher failed", e);
+            }
+        }
+
+        void start() {
+            timerTask = DatabaseManager.getTimer().schedulePeriodicallyAfter(
+                flushInterval, flushInterval, this, false);
+        }
+
+        void stop() {
+
+            HsqlTimer.cancel(timerTask);
+
+            timerTask = null;
+        }
+    }
 }
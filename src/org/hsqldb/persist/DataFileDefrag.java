@@ -188,7 +188,7 @@ final class DataFileDefrag {
         pointerLookup.clear();
         database.logger.logDetailEvent("lookup begins " + table.getName().name
                                        + " " + stopw.elapsedTime());
-        store.moveDataToSpace(dataFileOut, pointerLookup);
+        long rowCount = store.moveDataToSpace(dataFileOut, pointerLookup);
 
         for (int i = 0; i < table.getIndexCount(); i++) {
             if (rootsArray[i] == -1) {
@@ -207,11 +207,10 @@ final class DataFileDefrag {
         // log any discrepency in row count
         long count = store.elementCount();
 
-        if (count != pointerLookup.size()) {
+        if (count != rowCount) {
             database.logger.logSevereEvent("discrepency in row count "
                                            + table.getName().name + " "
-                                           + count + " "
-                                           + pointerLookup.size(), null);
+                                           + count + " " + rowCount, null);
         }
 
         database.logger.logDetailEvent("table written "
@@ -223,6 +223,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "hsqldb.tx_conflict_rollback";
     public static final String hsqldb_tx_interrupt_rollback =
         "hsqldb.tx_interrupt_rollback";
+    public static final String hsqldb_tx_row_locks = "hsqldb.tx_row_locks";
+    public static final String hsqldb_optimistic_read =
+        "hsqldb.optimistic_read";
     public static final String hsqldb_applog         = "hsqldb.applog";
     public static final String hsqldb_sqllog         = "hsqldb.sqllog";
     public static final String hsqldb_lob_file_scale = "hsqldb.lob_file_scale";
@@ -234,6 +237,15 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         "hsqldb.cache_free_count";
     public static final String hsqldb_cache_rows = "hsqldb.cache_rows";
     public static final String hsqldb_cache_size = "hsqldb.cache_size";
+    public static final String hsqldb_cache_segments =
+        "hsqldb.cache_segments";
+    public static final String hsqldb_cache_policy = "hsqldb.cache_policy";
+    public static final String hsqldb_cache_flush_rate =
+        "hsqldb.cache_flush_rate";
+    public static final String hsqldb_cache_read_ahead =
+        "hsqldb.cache_read_ahead";
+    public static final String hsqldb_cache_offheap_size =
+        "hsqldb.cache_offheap_size";
     public static final String hsqldb_default_table_type =
         "hsqldb.default_table_type";
     public static final String hsqldb_defrag_limit   = "hsqldb.defrag_limit";
@@ -241,12 +253,17 @@ public class HsqlDatabaseProperties extends HsqlProperties {
     public static final String hsqldb_lock_file      = "hsqldb.lock_file";
     public static final String hsqldb_log_data       = "hsqldb.log_data";
     public static final String hsqldb_log_size       = "hsqldb.log_size";
+    public static final String hsqldb_log_format     = "hsqldb.log_format";
+    public static final String hsqldb_checkpoint_fuzzy =
+        "hsqldb.checkpoint_fuzzy";
     public static final String hsqldb_nio_data_file  = "hsqldb.nio_data_file";
     public static final String hsqldb_nio_max_size   = "hsqldb.nio_max_size";
     public static final String hsqldb_script_format  = "hsqldb.script_format";
     public static final String hsqldb_temp_directory = "hsqldb.temp_directory";
     public static final String hsqldb_result_max_memory_rows =
         "hsqldb.result_max_memory_rows";
+    public static final String hsqldb_parallel_degree =
+        "hsqldb.parallel_degree";
     public static final String hsqldb_write_delay = "hsqldb.write_delay";
     public static final String hsqldb_write_delay_millis =
         "hsqldb.write_delay_millis";
@@ -396,6 +413,12 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_tx_interrupt_rollback,
                    HsqlProperties.getMeta(hsqldb_tx_interrupt_rollback,
                                           SQL_PROPERTY, false));
+        dbMeta.put(hsqldb_tx_row_locks,
+                   HsqlProperties.getMeta(hsqldb_tx_row_locks, SQL_PROPERTY,
+                                          false));
+        dbMeta.put(hsqldb_optimistic_read,
+                   HsqlProperties.getMeta(hsqldb_optimistic_read,
+                                          SQL_PROPERTY, false));
         dbMeta.put(jdbc_translate_tti_types,
                    HsqlProperties.getMeta(jdbc_translate_tti_types,
                                           SQL_PROPERTY, true));
@@ -408,6 +431,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
         dbMeta.put(hsqldb_log_data,
                    HsqlProperties.getMeta(hsqldb_log_data, SQL_PROPERTY,
                                           true));
+        dbMeta.put(hsqldb_checkpoint_fuzzy,
+                   HsqlProperties.getMeta(hsqldb_checkpoint_fuzzy,
+                                          SQL_PROPERTY, false));
         dbMeta.put(hsqldb_nio_data_file,
                    HsqlProperties.getMeta(hsqldb_nio_data_file, SQL_PROPERTY,
                                           true));
@@ -524,6 +550,11 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                                           0, new int[] {
             0, 1, 3
         }));
+        dbMeta.put(hsqldb_log_format,
+                   HsqlProperties.getMeta(hsqldb_log_format, SQL_PROPERTY,
+                                          0, new int[] {
+            0, 1
+        }));
         dbMeta.put(hsqldb_lob_file_scale,
                    HsqlProperties.getMeta(hsqldb_lob_file_scale, SQL_PROPERTY,
                                           32, new int[] {
@@ -540,6 +571,24 @@ public class HsqlDatabaseProperties extends HsqlProperties {
             1, 8, 16, 32, 64, 128, 256, 512, 1024
         }));
 
+        dbMeta.put(hsqldb_cache_segments,
+                   HsqlProperties.getMeta(hsqldb_cache_segments,
+                                          SQL_PROPERTY, 1, new int[] {
+            1, 2, 4, 8, 16, 32, 64
+        }));
+        dbMeta.put(hsqldb_cache_policy,
+                   HsqlProperties.getMeta(hsqldb_cache_policy, SQL_PROPERTY,
+                                          "LRU"));
+        dbMeta.put(hsqldb_cache_flush_rate,
+                   HsqlProperties.getMeta(hsqldb_cache_flush_rate,
+                                          SQL_PROPERTY, 0, 0, 1000000));
+        dbMeta.put(hsqldb_cache_read_ahead,
+                   HsqlProperties.getMeta(hsqldb_cache_read_ahead,
+                                          SQL_PROPERTY, 0, 0, 4096));
+        dbMeta.put(hsqldb_cache_offheap_size,
+                   HsqlProperties.getMeta(hsqldb_cache_offheap_size,
+                                          SQL_PROPERTY, 0, 0, 16777216));
+
         // integral defaults for user defined props - ranges
         dbMeta.put(hsqldb_log_size,
                    HsqlProperties.getMeta(hsqldb_log_size, SQL_PROPERTY, 50,
@@ -563,6 +612,9 @@ public class HsqlDatabaseProperties extends HsqlProperties {
                    HsqlProperties.getMeta(hsqldb_result_max_memory_rows,
                                           SQL_PROPERTY, 0, 0,
                                           4 * 1024 * 1024));
+        dbMeta.put(hsqldb_parallel_degree,
+                   HsqlProperties.getMeta(hsqldb_parallel_degree,
+                                          SQL_PROPERTY, 1, 1, 64));
         dbMeta.put(hsqldb_nio_max_size,
                    HsqlProperties.getMeta(hsqldb_nio_max_size, SQL_PROPERTY,
                                           256, 64, 262144));
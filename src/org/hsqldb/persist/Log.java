@@ -46,9 +46,11 @@ import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.scriptio.ScriptReaderBase;
+import org.hsqldb.scriptio.ScriptReaderBinaryLog;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.scriptio.ScriptWriterBase;
+import org.hsqldb.scriptio.ScriptWriterBinaryLog;
 import org.hsqldb.scriptio.ScriptWriterEncode;
 import org.hsqldb.scriptio.ScriptWriterText;
 
@@ -615,6 +617,11 @@ public class Log {
 
         dbLogWriter.writeCommitStatement(session);
 
+        if (writeDelay == 0) {
+            session.logSyncWriter   = dbLogWriter;
+            session.logSyncPosition = dbLogWriter.size();
+        }
+
         if (maxLogSize > 0 && dbLogWriter.size() > maxLogSize) {
             database.logger.setCheckpointRequired();
         }
@@ -653,8 +660,23 @@ public class Log {
 
         try {
             if (crypto == null) {
-                dbLogWriter = new ScriptWriterText(database, logFileName,
-                                                   false, false, false);
+                int format = ScriptReaderBinaryLog.getLogFormat(database,
+                    logFileName);
+                boolean isNew =
+                    format == ScriptReaderBinaryLog.LOG_FORMAT_NONE;
+
+                // an existing log is appended in its own format
+                if (isNew) {
+                    format = database.logger.getLogFormat();
+                }
+
+                if (format == ScriptReaderBinaryLog.LOG_FORMAT_BINARY) {
+                    dbLogWriter = new ScriptWriterBinaryLog(database,
+                            logFileName, isNew);
+                } else {
+                    dbLogWriter = new ScriptWriterText(database, logFileName,
+                                                       false, false, false);
+                }
             } else {
                 dbLogWriter = new ScriptWriterEncode(database, logFileName,
                                                      crypto);
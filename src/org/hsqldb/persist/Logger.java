@@ -58,6 +58,8 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVL;
 import org.hsqldb.index.IndexAVLMemory;
+import org.hsqldb.index.IndexBTree;
+import org.hsqldb.index.IndexHash;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.FileAccess;
 import org.hsqldb.lib.FileUtil;
@@ -112,6 +114,11 @@ public class Logger implements EventLogInterface {
     int             propMinReuse      = 0;
     private int     propCacheMaxRows;
     private long    propCacheMaxSize;
+    int             propCacheSegments = 1;
+    int             propCachePolicy   = CachePolicy.LRU;
+    int             propCacheFlushRate;
+    int             propCacheReadAhead;
+    int             propCacheOffHeapSize;
     int             propCacheDefragLimit;
     private int     propDataFileScale;
     String          propTextSourceDefault = "";
@@ -127,6 +134,8 @@ public class Logger implements EventLogInterface {
     int             propLobBlockSize = 32 * 1024;
     boolean         propCompressLobs;
     int             propScriptFormat = 0;
+    int             propLogFormat    = 0;
+    boolean         propCheckpointFuzzy;
     boolean         propLargeData;
     int             propFileSpaceValue;
     long            propFileTimestamp;
@@ -403,6 +412,8 @@ public class Logger implements EventLogInterface {
 
         propScriptFormat = database.databaseProperties.getIntegerProperty(
             HsqlDatabaseProperties.hsqldb_script_format);
+        propLogFormat = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_log_format);
 
         boolean version18 = database.databaseProperties.isVersion18();
 
@@ -489,6 +500,13 @@ public class Logger implements EventLogInterface {
         database.txInterruptRollback =
             database.databaseProperties.isPropertyTrue(
                 HsqlDatabaseProperties.hsqldb_tx_interrupt_rollback);
+        database.txRowLocks = database.databaseProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_tx_row_locks);
+        database.optimisticRead = database.databaseProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_optimistic_read);
+        database.setParallelDegree(
+            database.databaseProperties.getIntegerProperty(
+                HsqlDatabaseProperties.hsqldb_parallel_degree));
         database.sqlRestrictExec = database.databaseProperties.isPropertyTrue(
             HsqlDatabaseProperties.sql_restrict_exec);
         database.sqlEnforceNames = database.databaseProperties.isPropertyTrue(
@@ -575,6 +593,23 @@ public class Logger implements EventLogInterface {
         propCacheMaxSize =
             database.databaseProperties.getIntegerProperty(
                 HsqlDatabaseProperties.hsqldb_cache_size) * 1024L;
+        propCacheSegments = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_segments);
+
+        String cachePolicy = database.databaseProperties.getStringProperty(
+            HsqlDatabaseProperties.hsqldb_cache_policy);
+
+        if (Tokens.T_SLRU.equalsIgnoreCase(cachePolicy)) {
+            propCachePolicy = CachePolicy.SLRU;
+        }
+
+        propCacheFlushRate = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_flush_rate);
+        propCacheReadAhead = database.databaseProperties.getIntegerProperty(
+            HsqlDatabaseProperties.hsqldb_cache_read_ahead);
+        propCacheOffHeapSize =
+            database.databaseProperties.getIntegerProperty(
+                HsqlDatabaseProperties.hsqldb_cache_offheap_size);
 
         setLobFileScaleNoCheck(
             database.databaseProperties.getIntegerProperty(
@@ -608,6 +643,8 @@ public class Logger implements EventLogInterface {
             HsqlDatabaseProperties.hsqldb_log_size);
         propLogData = database.databaseProperties.isPropertyTrue(
             HsqlDatabaseProperties.hsqldb_log_data);
+        propCheckpointFuzzy = database.databaseProperties.isPropertyTrue(
+            HsqlDatabaseProperties.hsqldb_checkpoint_fuzzy);
         propGC = database.databaseProperties.getIntegerProperty(
             HsqlDatabaseProperties.runtime_gc_interval);
         propRefIntegrity = database.databaseProperties.isPropertyTrue(
@@ -965,6 +1002,25 @@ public class Logger implements EventLogInterface {
         }
     }
 
+    /**
+     * Used after transaction commit, outside the transaction locks. With
+     * WRITE_DELAY 0, waits until the log file has been synced up to the
+     * commit statement of the session. Sessions that commit at the same
+     * time share a single sync.
+     */
+    public void syncCommit(Session session) {
+
+        ScriptWriterBase writer = session.logSyncWriter;
+
+        if (writer == null) {
+            return;
+        }
+
+        session.logSyncWriter = null;
+
+        writer.syncTo(session.logSyncPosition);
+    }
+
     public synchronized void synchLog() {
 
         if (loggingEnabled) {
@@ -1062,6 +1118,44 @@ public class Logger implements EventLogInterface {
                                       stateCheckpointRequired);
     }
 
+    /**
+     *  Sets the format of the log file, 0 for text (default), 1 for binary.
+     *  The new format is used when the log file is next opened after a
+     *  CHECKPOINT.
+     *
+     * @param  format The type
+     */
+    public synchronized void setLogFormat(int format) {
+        propLogFormat = format;
+    }
+
+    public int getLogFormat() {
+        return propLogFormat;
+    }
+
+    public void setCheckpointFuzzy(boolean mode) {
+        propCheckpointFuzzy = mode;
+    }
+
+    /**
+     * Called by the automatic checkpoint before it waits for exclusive
+     * access to the database. With fuzzy checkpoints, the changed rows of
+     * CACHED tables are written out first while other sessions continue,
+     * so the checkpoint has few rows left to write while they wait.
+     */
+    public void prepareCheckpoint() {
+
+        if (!propCheckpointFuzzy || !hasCache()) {
+            return;
+        }
+
+        logInfoEvent("fuzzy checkpoint flush start");
+
+        int count = getCache().flushChangedRows();
+
+        logInfoEvent("fuzzy checkpoint flush end - rows: " + count);
+    }
+
     /**
      *  Sets the log write delay mode to number of seconds. By default
      *  executed commands written to the log are committed fully at most
@@ -1134,6 +1228,41 @@ public class Logger implements EventLogInterface {
         return propCacheMaxSize;
     }
 
+    public void setCacheSegments(int value) {
+        propCacheSegments = value;
+    }
+
+    public void setCachePolicy(int value) {
+        propCachePolicy = value;
+    }
+
+    public void setCacheFlushRate(int value) {
+
+        propCacheFlushRate = value;
+
+        if (hasCache()) {
+            getCache().setFlushRate(value);
+        }
+    }
+
+    public void setCacheReadAhead(int value) {
+
+        propCacheReadAhead = value;
+
+        if (hasCache()) {
+            getCache().setReadAhead(value);
+        }
+    }
+
+    public void setCacheOffHeapSize(int value) {
+
+        propCacheOffHeapSize = value;
+
+        if (hasCache()) {
+            getCache().setOffHeapSize(value);
+        }
+    }
+
     public void setCacheMinReuseSize(int value) {
         this.propMinReuse = ArrayUtil.getTwoPowerFloor(value);
     }
@@ -1415,6 +1544,36 @@ public class Logger implements EventLogInterface {
                           boolean[] nullsLast, Type[] colTypes, boolean pk,
                           boolean unique, boolean constraint,
                           boolean forward) {
+        return newIndex(name, id, table, columns, descending, nullsLast,
+                        colTypes, pk, unique, constraint, forward,
+                        Index.STRUCTURE_AVL);
+    }
+
+    /**
+     * A B+tree structure is used only for non-unique indexes of CACHED
+     * tables and a hash structure only for indexes of MEMORY tables.
+     * Otherwise an AVL index is returned.
+     */
+    public Index newIndex(HsqlName name, long id, TableBase table,
+                          int[] columns, boolean[] descending,
+                          boolean[] nullsLast, Type[] colTypes, boolean pk,
+                          boolean unique, boolean constraint,
+                          boolean forward, int structure) {
+
+        if (structure == Index.STRUCTURE_BTREE
+                && table.getTableType() == TableBase.CACHED_TABLE && !pk
+                && !unique) {
+            return new IndexBTree(name, id, table, columns, descending,
+                                  nullsLast, colTypes, pk, unique,
+                                  constraint, forward);
+        }
+
+        if (structure == Index.STRUCTURE_HASH
+                && table.getTableType() == TableBase.MEMORY_TABLE) {
+            return new IndexHash(name, id, table, columns, descending,
+                                 nullsLast, colTypes, pk, unique, constraint,
+                                 forward);
+        }
 
         switch (table.getTableType()) {
 
@@ -1514,6 +1673,27 @@ public class Logger implements EventLogInterface {
             return String.valueOf(propCacheMaxSize / 1024);
         }
 
+        if (HsqlDatabaseProperties.hsqldb_cache_segments.equals(name)) {
+            return String.valueOf(propCacheSegments);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_cache_policy.equals(name)) {
+            return propCachePolicy == CachePolicy.SLRU ? Tokens.T_SLRU
+                                                       : Tokens.T_LRU;
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_cache_flush_rate.equals(name)) {
+            return String.valueOf(propCacheFlushRate);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_cache_read_ahead.equals(name)) {
+            return String.valueOf(propCacheReadAhead);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_cache_offheap_size.equals(name)) {
+            return String.valueOf(propCacheOffHeapSize);
+        }
+
         if (HsqlDatabaseProperties.hsqldb_default_table_type.equals(name)) {
             return database.schemaManager.getDefaultTableType()
                    == TableBase.CACHED_TABLE ? Tokens.T_CACHED
@@ -1550,6 +1730,10 @@ public class Logger implements EventLogInterface {
             return String.valueOf(propLogData);
         }
 
+        if (HsqlDatabaseProperties.hsqldb_checkpoint_fuzzy.equals(name)) {
+            return String.valueOf(propCheckpointFuzzy);
+        }
+
         if (HsqlDatabaseProperties.hsqldb_log_size.equals(name)) {
             return String.valueOf(propLogSize);
         }
@@ -1562,6 +1746,11 @@ public class Logger implements EventLogInterface {
             return String.valueOf(propNioMaxSize / (1024 * 1024));
         }
 
+        if (HsqlDatabaseProperties.hsqldb_log_format.equals(name)) {
+            return propLogFormat == 0 ? Tokens.T_TEXT.toLowerCase()
+                                      : Tokens.T_BINARY.toLowerCase();
+        }
+
         if (HsqlDatabaseProperties.hsqldb_script_format.equals(name)) {
             return ScriptWriterBase.LIST_SCRIPT_FORMATS[propScriptFormat]
                 .toLowerCase();
@@ -1579,11 +1768,23 @@ public class Logger implements EventLogInterface {
             return String.valueOf(database.txInterruptRollback);
         }
 
+        if (HsqlDatabaseProperties.hsqldb_tx_row_locks.equals(name)) {
+            return String.valueOf(database.txRowLocks);
+        }
+
+        if (HsqlDatabaseProperties.hsqldb_optimistic_read.equals(name)) {
+            return String.valueOf(database.optimisticRead);
+        }
+
         if (HsqlDatabaseProperties.hsqldb_result_max_memory_rows.equals(
                 name)) {
             return String.valueOf(database.getResultMaxMemoryRows());
         }
 
+        if (HsqlDatabaseProperties.hsqldb_parallel_degree.equals(name)) {
+            return String.valueOf(database.getParallelDegree());
+        }
+
         if (HsqlDatabaseProperties.hsqldb_write_delay.equals(name)) {
             return String.valueOf(propWriteDelay != 0);
         }
@@ -1767,6 +1968,15 @@ public class Logger implements EventLogInterface {
         sb.append(database.getResultMaxMemoryRows());
         list.add(sb.toString());
         sb.setLength(0);
+
+        if (database.getParallelDegree() > 1) {
+            sb.append("SET DATABASE ").append(Tokens.T_DEFAULT).append(' ');
+            sb.append(Tokens.T_PARALLEL).append(' ').append(Tokens.T_DEGREE);
+            sb.append(' ').append(database.getParallelDegree());
+            list.add(sb.toString());
+            sb.setLength(0);
+        }
+
         sb.append("SET DATABASE ").append(Tokens.T_EVENT).append(' ');
         sb.append(Tokens.T_LOG).append(' ').append(Tokens.T_LEVEL);
         sb.append(' ').append(propEventLogLevel);
@@ -1840,6 +2050,15 @@ public class Logger implements EventLogInterface {
             sb.setLength(0);
         }
 
+        if (database.txRowLocks) {
+            sb.append("SET DATABASE ").append(Tokens.T_TRANSACTION);
+            sb.append(' ').append(Tokens.T_ROW).append(' ');
+            sb.append(Tokens.T_LOCKS).append(' ');
+            sb.append(Tokens.T_TRUE);
+            list.add(sb.toString());
+            sb.setLength(0);
+        }
+
         sb.append("SET DATABASE ").append(Tokens.T_TEXT).append(' ');
         sb.append(Tokens.T_TABLE).append(' ').append(Tokens.T_DEFAULTS);
         sb.append(' ').append('\'');
@@ -2122,6 +2341,47 @@ public class Logger implements EventLogInterface {
         sb.append(propCacheMaxRows);
         list.add(sb.toString());
 
+        if (propCacheSegments > 1) {
+            sb.setLength(0);
+            sb.append("SET FILES ").append(Tokens.T_CACHE);
+            sb.append(' ').append(Tokens.T_SEGMENTS).append(' ');
+            sb.append(propCacheSegments);
+            list.add(sb.toString());
+        }
+
+        if (propCachePolicy != CachePolicy.LRU) {
+            sb.setLength(0);
+            sb.append("SET FILES ").append(Tokens.T_CACHE);
+            sb.append(' ').append(Tokens.T_POLICY).append(' ');
+            sb.append(Tokens.T_SLRU);
+            list.add(sb.toString());
+        }
+
+        if (propCacheFlushRate > 0) {
+            sb.setLength(0);
+            sb.append("SET FILES ").append(Tokens.T_CACHE);
+            sb.append(' ').append(Tokens.T_FLUSH).append(' ');
+            sb.append(propCacheFlushRate);
+            list.add(sb.toString());
+        }
+
+        if (propCacheReadAhead > 0) {
+            sb.setLength(0);
+            sb.append("SET FILES ").append(Tokens.T_CACHE);
+            sb.append(' ').append(Tokens.T_READ).append(' ');
+            sb.append(Tokens.T_AHEAD).append(' ');
+            sb.append(propCacheReadAhead);
+            list.add(sb.toString());
+        }
+
+        if (propCacheOffHeapSize > 0) {
+            sb.setLength(0);
+            sb.append("SET FILES ").append(Tokens.T_CACHE);
+            sb.append(' ').append(Tokens.T_OFFHEAP).append(' ');
+            sb.append(propCacheOffHeapSize);
+            list.add(sb.toString());
+        }
+
         {
             int fileScale = propDataFileScale;
 
@@ -2175,6 +2435,20 @@ public class Logger implements EventLogInterface {
         list.add(sb.toString());
         sb.setLength(0);
 
+        if (propLogFormat != 0) {
+            sb.append("SET FILES ").append(Tokens.T_LOG).append(' ');
+            sb.append(Tokens.T_FORMAT).append(' ').append(Tokens.T_BINARY);
+            list.add(sb.toString());
+            sb.setLength(0);
+        }
+
+        if (propCheckpointFuzzy) {
+            sb.append("SET FILES ").append(Tokens.T_CHECKPOINT).append(' ');
+            sb.append(Tokens.T_FUZZY).append(' ').append(Tokens.T_TRUE);
+            list.add(sb.toString());
+            sb.setLength(0);
+        }
+
         if (propFileTimestamp != 0) {
             sb.append("SET FILES ").append(Tokens.T_CHECK).append(' ');
             sb.append(propFileTimestamp);
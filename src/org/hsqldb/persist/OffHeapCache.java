@@ -0,0 +1,250 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import java.nio.ByteBuffer;
+
+import org.hsqldb.lib.Iterator;
+import org.hsqldb.lib.LongKeyLongValueHashMap;
+import org.hsqldb.rowio.RowInputInterface;
+
+/**
+ * Second tier of the row cache of a DataFileCache, held in direct memory
+ * outside the Java heap.<p>
+ *
+ * Holds copies of the file images of rows, as read from or written to the
+ * .data file, so that rows that are no longer in the Cache can be read
+ * again without file access. The images are stored one after the other in
+ * fixed size chunks used as a circular buffer. When the buffer is full, the
+ * oldest images are overwritten.<p>
+ *
+ * Each image is stored after a header with its file position, the size
+ * read from the file and the number of stored bytes. An image is valid only
+ * if it has not been overwritten since it was stored.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class OffHeapCache {
+
+    static final int maxChunkSize = 64 * 1024 * 1024;
+    static final int headerSize   = 16;
+
+    //
+    private final ByteBuffer[] chunks;
+    private final int          chunkSize;
+    private final long         capacity;
+
+    // file position -> offset of the image in the circular buffer
+    private final LongKeyLongValueHashMap positionMap;
+    private long                          writeOffset;
+    private int                           purgeLimit;
+
+    //
+    private long hitCount;
+    private long missCount;
+
+    OffHeapCache(long bytes) {
+
+        int count = (int) ((bytes + maxChunkSize - 1) / maxChunkSize);
+
+        chunkSize   = count == 1 ? (int) bytes
+                                 : maxChunkSize;
+        chunks      = new ByteBuffer[count];
+        capacity    = (long) chunkSize * count;
+        positionMap = new LongKeyLongValueHashMap();
+        purgeLimit  = 1024;
+    }
+
+    /**
+     * Reads the image of the row at pos into in. Returns false if there is
+     * no valid image.
+     */
+    synchronized boolean get(long pos, RowInputInterface in) {
+
+        long offset = positionMap.get(pos, -1);
+
+        if (offset < 0 || !isValid(offset)) {
+            if (offset >= 0) {
+                positionMap.remove(pos);
+            }
+
+            missCount++;
+
+            return false;
+        }
+
+        ByteBuffer chunk  = getChunk(offset);
+        int        index  = (int) (offset % chunkSize);
+        int        size   = chunk.getInt(index + 8);
+        int        length = chunk.getInt(index + 12);
+
+        in.resetRow(pos, size);
+        chunk.position(index + headerSize);
+        chunk.get(in.getBuffer(), 4, length - 4);
+
+        hitCount++;
+
+        return true;
+    }
+
+    /**
+     * Stores the image of the row at pos. The first length bytes of buffer
+     * are the bytes written to the file and size is the size of the row in
+     * the file. If the image is not complete, an existing image for pos is
+     * updated with the bytes.
+     */
+    synchronized void put(long pos, int size, byte[] buffer, int length) {
+
+        if (length < size) {
+            update(pos, size, buffer, length);
+
+            return;
+        }
+
+        length = size;
+
+        int storeLength = headerSize + length - 4;
+
+        if (size <= 4 || storeLength > chunkSize) {
+            positionMap.remove(pos);
+
+            return;
+        }
+
+        int index = (int) (writeOffset % chunkSize);
+
+        if (index + storeLength > chunkSize) {
+            writeOffset += chunkSize - index;
+            index       = 0;
+        }
+
+        ByteBuffer chunk = getChunk(writeOffset);
+
+        chunk.putLong(index, pos);
+        chunk.putInt(index + 8, size);
+        chunk.putInt(index + 12, length);
+        chunk.position(index + headerSize);
+        chunk.put(buffer, 4, length - 4);
+        positionMap.put(pos, writeOffset);
+
+        writeOffset += storeLength;
+
+        if (positionMap.size() > purgeLimit) {
+            purge();
+        }
+    }
+
+    private void update(long pos, int size, byte[] buffer, int length) {
+
+        long offset = positionMap.get(pos, -1);
+
+        if (offset < 0) {
+            return;
+        }
+
+        ByteBuffer chunk = getChunk(offset);
+        int        index = (int) (offset % chunkSize);
+
+        if (!isValid(offset) || chunk.getInt(index + 8) != size
+                || length < 4) {
+            positionMap.remove(pos);
+
+            return;
+        }
+
+        chunk.position(index + headerSize);
+        chunk.put(buffer, 4, length - 4);
+    }
+
+    synchronized void remove(long pos) {
+        positionMap.remove(pos);
+    }
+
+    synchronized void clear() {
+
+        positionMap.clear();
+
+        writeOffset = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getStoredBytes() {
+        return Math.min(writeOffset, capacity);
+    }
+
+    private boolean isValid(long offset) {
+        return offset >= writeOffset - capacity;
+    }
+
+    private ByteBuffer getChunk(long offset) {
+
+        int        i     = (int) ((offset % capacity) / chunkSize);
+        ByteBuffer chunk = chunks[i];
+
+        if (chunk == null) {
+            chunk     = ByteBuffer.allocateDirect(chunkSize);
+            chunks[i] = chunk;
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Removes the positions of overwritten images from the map.
+     */
+    private void purge() {
+
+        Iterator it = positionMap.keySet().iterator();
+
+        while (it.hasNext()) {
+            long pos = it.nextLong();
+
+            if (!isValid(positionMap.get(pos, -1))) {
+                it.remove();
+            }
+        }
+
+        purgeLimit = Math.max(1024, positionMap.size() * 2);
+    }
+}
@@ -0,0 +1,97 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.persist;
+
+import org.hsqldb.Session;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.index.IndexBTree;
+import org.hsqldb.index.NodeBTree;
+import org.hsqldb.rowio.RowInputInterface;
+
+/**
+ * Store for the pages of a B+tree index. Each index has its own store, as
+ * the keys in the pages are read with the column types of the index.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class PageStoreBTree extends SimpleStore {
+
+    final IndexBTree index;
+
+    public PageStoreBTree(DataFileCache cache,
+                          TableSpaceManager tableSpaceManager,
+                          IndexBTree index) {
+
+        this.cache        = cache;
+        this.spaceManager = tableSpaceManager;
+        this.index        = index;
+    }
+
+    public CachedObject get(CachedObject object, boolean keep) {
+        return cache.get(object.getPos(), NodeBTree.SIZE_IN_BYTE, this, keep);
+    }
+
+    public CachedObject get(long i, boolean keep) {
+        return cache.get(i, NodeBTree.SIZE_IN_BYTE, this, keep);
+    }
+
+    public void add(Session session, CachedObject object, boolean tx) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "PageStoreBTree");
+    }
+
+    public void add(CachedObject object, boolean keep) {
+
+        object.setStorageSize(NodeBTree.SIZE_IN_BYTE);
+
+        long pos = spaceManager.getFilePosition(NodeBTree.SIZE_IN_BYTE,
+            true);
+
+        object.setPos(pos);
+        cache.add(object, keep);
+    }
+
+    public CachedObject get(RowInputInterface in) {
+
+        CachedObject object = new NodeBTree(index);
+
+        object.read(in);
+        object.setStorageSize(NodeBTree.SIZE_IN_BYTE);
+
+        return object;
+    }
+
+    public CachedObject getNewInstance(int size) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "PageStoreBTree");
+    }
+}
@@ -65,6 +65,9 @@ public interface PersistentStore {
 
     void setMemory(boolean mode);
 
+    /** index rows on disk in bulk when the indexes are first used */
+    void setSortedIndexing(boolean mode);
+
     /** get object with keep, ensuring future gets will return the same instance of the object */
     CachedObject get(long key, boolean keep);
 
@@ -169,4 +172,10 @@ public interface PersistentStore {
     void writeLock();
 
     void writeUnlock();
+
+    /** returns a stamp for a read without the lock, or -1 if not possible */
+    long tryOptimisticRead();
+
+    /** checks there has been no write since the stamp was returned */
+    boolean validateRead(long stamp);
 }
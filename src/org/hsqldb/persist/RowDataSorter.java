@@ -0,0 +1,332 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.persist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hsqldb.Database;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.FileAccess;
+import org.hsqldb.lib.HsqlArrayHeap;
+import org.hsqldb.lib.HsqlArrayList;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * Sorts arrays of row data with an external merge sort.<p>
+ *
+ * Up to maxMemoryRows arrays are kept in memory. When more are added, the
+ * arrays in memory are sorted and written as a run to a file in the temp
+ * directory of the database. After all the arrays have been added, sort()
+ * is called and next() returns the arrays in order, merging the runs and
+ * the arrays still in memory. With no temp directory, all the arrays are
+ * kept in memory.<p>
+ *
+ * The data is written in the binary format used for cached table rows and
+ * must not contain LOB values. close() deletes the files.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class RowDataSorter {
+
+    static final int           bufferSize   = 1 << 16;
+    static final AtomicInteger runSequence  = new AtomicInteger();
+    static final Object[][]    emptyRows    = new Object[0][];
+
+    //
+    final Database             database;
+    final Type[]               types;
+    final Comparator<Object[]> comparator;
+    final int                  maxMemoryRows;
+    final String               path;
+
+    //
+    Object[][]      rows = emptyRows;
+    int             rowCount;
+    long            size;
+    HsqlArrayList   runs = new HsqlArrayList();
+    HsqlArrayHeap   heap;
+    RowOutputBinary rowOut;
+
+    public RowDataSorter(Database database, Type[] types,
+                         Comparator<Object[]> comparator,
+                         int maxMemoryRows) {
+
+        this.database      = database;
+        this.types         = types;
+        this.comparator    = comparator;
+        this.maxMemoryRows = maxMemoryRows;
+        this.path          = database.logger.getTempDirectoryPath();
+    }
+
+    public void add(Object[] data) {
+
+        if (rowCount == rows.length) {
+            if (rowCount >= maxMemoryRows && path != null) {
+                writeRun();
+            } else {
+                int newSize = rowCount == 0 ? 256
+                                            : rowCount * 2;
+
+                if (path != null && newSize > maxMemoryRows) {
+                    newSize = Math.max(maxMemoryRows, rowCount + 1);
+                }
+
+                rows = (Object[][]) ArrayUtil.resizeArray(rows, newSize);
+            }
+        }
+
+        rows[rowCount++] = data;
+
+        size++;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Called after the last add() and before the first next().
+     */
+    public void sort() {
+
+        // merge sort uses fewer comparisons on partly ordered rows
+        Arrays.sort(rows, 0, rowCount, comparator);
+
+        heap = new HsqlArrayHeap(runs.size() + 1, new Comparator<Object>() {
+
+            public int compare(Object a, Object b) {
+                return comparator.compare(((Run) a).current,
+                                          ((Run) b).current);
+            }
+        });
+
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = (Run) runs.get(i);
+
+            run.open();
+
+            if (run.next()) {
+                heap.add(run);
+            }
+        }
+
+        Run run = new Run(null, rowCount);
+
+        if (run.next()) {
+            heap.add(run);
+        }
+    }
+
+    /**
+     * Returns the next array in sort order, or null after the last.
+     */
+    public Object[] next() {
+
+        Run run = (Run) heap.remove();
+
+        if (run == null) {
+            return null;
+        }
+
+        Object[] data = run.current;
+
+        if (run.next()) {
+            heap.add(run);
+        } else {
+            run.close();
+        }
+
+        return data;
+    }
+
+    public void close() {
+
+        FileAccess fa = database.logger.getFileAccess();
+
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = (Run) runs.get(i);
+
+            run.close();
+            fa.removeElement(run.fileName);
+        }
+
+        runs.clear();
+
+        rows     = emptyRows;
+        rowCount = 0;
+    }
+
+    private void writeRun() {
+
+        Arrays.sort(rows, 0, rowCount, comparator);
+
+        FileAccess fa = database.logger.getFileAccess();
+        String fileName = path + "/sort_"
+                          + Integer.toString(runSequence.incrementAndGet())
+                          + ".tmp";
+        Run          run = new Run(fileName, rowCount);
+        OutputStream out = null;
+
+        runs.add(run);
+
+        if (rowOut == null) {
+            rowOut = new RowOutputBinary(256, 1);
+        }
+
+        try {
+            fa.createParentDirs(fileName);
+
+            out = fa.openOutputStreamElement(fileName, false);
+
+            DataOutputStream dataOut =
+                new DataOutputStream(new BufferedOutputStream(out,
+                    bufferSize));
+
+            for (int i = 0; i < rowCount; i++) {
+                rowOut.reset();
+                rowOut.writeData(types.length, types, rows[i], null, null);
+                dataOut.writeInt(rowOut.size());
+                dataOut.write(rowOut.getBuffer(), 0, rowOut.size());
+
+                rows[i] = null;
+            }
+
+            dataOut.close();
+
+            out = null;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+        } finally {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {}
+        }
+
+        rowCount = 0;
+    }
+
+    /**
+     * A sorted run, in a file or in the rows array when fileName is null.
+     */
+    class Run {
+
+        final String    fileName;
+        final int       count;
+        int             position;
+        Object[]        current;
+        DataInputStream dataIn;
+        RowInputBinary  rowIn;
+
+        Run(String fileName, int count) {
+            this.fileName = fileName;
+            this.count    = count;
+        }
+
+        void open() {
+
+            try {
+                InputStream in =
+                    database.logger.getFileAccess().openInputStreamElement(
+                        fileName);
+
+                dataIn = new DataInputStream(new BufferedInputStream(in,
+                        bufferSize));
+                rowIn = new RowInputBinary(256);
+            } catch (IOException e) {
+                throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+            }
+        }
+
+        boolean next() {
+
+            if (position == count) {
+                current = null;
+
+                return false;
+            }
+
+            if (fileName == null) {
+                current = rows[position];
+
+                rows[position++] = null;
+
+                return true;
+            }
+
+            try {
+                int length = dataIn.readInt();
+
+                // the buffer of rowIn starts with the size of the row
+                rowIn.resetRow(0, RowOutputBinary.INT_STORE_SIZE + length);
+                dataIn.readFully(rowIn.getBuffer(),
+                                 RowOutputBinary.INT_STORE_SIZE, length);
+
+                current = rowIn.readData(types);
+
+                position++;
+
+                return true;
+            } catch (IOException e) {
+                throw Error.error(e, ErrorCode.FILE_IO_ERROR, fileName);
+            }
+        }
+
+        void close() {
+
+            if (dataIn != null) {
+                try {
+                    dataIn.close();
+                } catch (IOException e) {}
+
+                dataIn = null;
+            }
+        }
+    }
+}
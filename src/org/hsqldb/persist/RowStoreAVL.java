@@ -41,6 +41,7 @@ import org.hsqldb.HsqlException;
 import org.hsqldb.OpTypes;
 import org.hsqldb.Row;
 import org.hsqldb.RowAVL;
+import org.hsqldb.RowAVLDisk;
 import org.hsqldb.RowAction;
 import org.hsqldb.Session;
 import org.hsqldb.Table;
@@ -50,10 +51,14 @@ import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
 import org.hsqldb.index.IndexAVL;
 import org.hsqldb.index.IndexAVLCheck.IndexAVLProbe;
+import org.hsqldb.index.IndexBTree;
+import org.hsqldb.index.IndexStatistics;
 import org.hsqldb.index.IndexStats;
 import org.hsqldb.index.NodeAVL;
+import org.hsqldb.index.NodeAVLDisk;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.LongKeyHashMap;
+import org.hsqldb.lib.LongKeyIntValueHashMap;
 import org.hsqldb.navigator.RowIterator;
 import org.hsqldb.rowio.RowInputInterface;
 import org.hsqldb.types.LobData;
@@ -93,6 +98,9 @@ public abstract class RowStoreAVL implements PersistentStore {
     //
     PersistentStore[] subStores = PersistentStore.emptyArray;
 
+    // rows in memory for each sort when an index is built from sorted keys
+    static final int sortMemoryRows = 1 << 18;
+
     public boolean isRowStore() {
         return true;
     }
@@ -117,6 +125,8 @@ public abstract class RowStoreAVL implements PersistentStore {
 
     public void setMemory(boolean mode) {}
 
+    public void setSortedIndexing(boolean mode) {}
+
     public abstract CachedObject get(long key, boolean keep);
 
     public abstract CachedObject get(CachedObject object, boolean keep);
@@ -343,6 +353,91 @@ public abstract class RowStoreAVL implements PersistentStore {
         }
     }
 
+    /**
+     * Adds new rows of a MEMORY table, which are not in any index, to the
+     * empty indexes of the store. Each index is built from the sorted rows
+     * instead of inserting the rows one by one. Returns false, with the
+     * indexes left empty, if an index does not support the build or if a
+     * unique index would be violated.
+     */
+    public boolean indexRows(Session session, Row[] rows, int count) {
+
+        if (!isMemory() || !canIndexRowsInBulk()) {
+            return false;
+        }
+
+        Row[][] rowsByIndex = new Row[indexList.length][];
+
+        ArrayUtil.fillArray(rowsByIndex, rows);
+
+        return indexRows(session, rowsByIndex, count);
+    }
+
+    /**
+     * As above, with an array of the same rows for each index. An array can
+     * be in the order of its index, which avoids most of the sorting.
+     */
+    boolean indexRows(Session session, Row[][] rowsByIndex, int count) {
+
+        writeLock();
+
+        try {
+            for (int i = 0; i < indexList.length; i++) {
+                IndexAVL index = (IndexAVL) indexList[i];
+
+                if (!index.insertRows(session, this, rowsByIndex[i], count)) {
+                    for (int j = 0; j < i; j++) {
+                        setAccessor(indexList[j], null);
+
+                        for (int k = 0; k < count; k++) {
+                            ((RowAVL) rowsByIndex[j][k]).getNode(j).delete();
+                        }
+                    }
+
+                    return false;
+                }
+            }
+
+            elementCount.set(count);
+
+            baseElementCount = count;
+            searchCost       = null;
+        } finally {
+            writeUnlock();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns true if the store is empty and all the indexes can be built
+     * from sorted rows.
+     */
+    boolean canIndexRowsInBulk() {
+
+        if (elementCount.get() != 0 || subStores.length != 0
+                || table.isSystemVersioned) {
+            return false;
+        }
+
+        for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].getStructure() != Index.STRUCTURE_AVL
+                    || accessorList[i] != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the object used by moveData() to index the new rows after the
+     * last row is added, or null if each row is indexed when it is added.
+     */
+    RowIndexer getRowIndexer(Session session, PersistentStore other) {
+        return null;
+    }
+
     public RowIterator rowIterator() {
 
         Index index = indexList[0];
@@ -456,6 +551,12 @@ public abstract class RowStoreAVL implements PersistentStore {
             return 1;
         }
 
+        IndexStatistics statistics = index.getStatistics();
+
+        if (statistics != null) {
+            return statistics.getRowsPerKey(count, elementCount.get());
+        }
+
         int position = index.getPosition();
 
         synchronized (this) {
@@ -541,6 +642,8 @@ public abstract class RowStoreAVL implements PersistentStore {
     public final void moveData(Session session, PersistentStore other,
                                int[] colIndex, int adjust) {
 
+        RowIndexer indexer = getRowIndexer(session, other);
+
         try {
             Table       table = (Table) this.table;
             RowIterator it    = other.rowIterator();
@@ -583,7 +686,15 @@ public abstract class RowStoreAVL implements PersistentStore {
                 // get object without RowAction
                 Row newrow = (Row) getNewCachedObject(session, data, false);
 
-                indexRow(session, newrow);
+                if (indexer == null) {
+                    indexRow(session, newrow);
+                } else {
+                    indexer.add(row, newrow);
+                }
+            }
+
+            if (indexer != null) {
+                indexer.finish();
             }
 
             if (table.isTemp()) {
@@ -632,6 +743,10 @@ public abstract class RowStoreAVL implements PersistentStore {
             }
         } catch (OutOfMemoryError e) {
             throw Error.error(ErrorCode.OUT_OF_MEMORY);
+        } finally {
+            if (indexer != null) {
+                indexer.close();
+            }
         }
     }
 
@@ -650,6 +765,13 @@ public abstract class RowStoreAVL implements PersistentStore {
                 it = useIndex.firstRow(this);
             }
 
+            if (index.getStructure() == Index.STRUCTURE_AVL
+                    && !table.isSystemVersioned) {
+                reindexInBulk(session, (IndexAVL) index, it);
+
+                return;
+            }
+
             setAccessor(index, null);
 
             while (it.next()) {
@@ -663,11 +785,67 @@ public abstract class RowStoreAVL implements PersistentStore {
         }
     }
 
+    /**
+     * Rebuilds the index from the sorted rows.
+     */
+    void reindexInBulk(Session session, IndexAVL index, RowIterator it) {
+
+        int   position = index.getPosition();
+        Row[] rows     = new Row[64];
+        int   count    = 0;
+
+        while (it.next()) {
+            if (count == rows.length) {
+                rows = (Row[]) ArrayUtil.resizeArray(rows, count * 2);
+            }
+
+            rows[count++] = it.getCurrentRow();
+        }
+
+        setAccessor(index, null);
+
+        for (int i = 0; i < count; i++) {
+            ((RowAVL) rows[i]).getNode(position).delete();
+        }
+
+        if (!index.insertRows(session, this, rows, count)) {
+            for (int i = 0; i < count; i++) {
+                index.insert(session, this, rows[i]);
+            }
+        }
+    }
+
+    /**
+     * Sets the links of the index nodes in the order of the rows, so that
+     * each row is read and written once.
+     */
+    void setNodeLinks(RowDataSorter links) {
+
+        links.sort();
+
+        for (Object[] link = links.next(); link != null; link = links.next()) {
+            long       pos = ((Long) link[0]).longValue();
+            RowAVLDisk row = (RowAVLDisk) get(pos, true);
+
+            ((NodeAVLDisk) row.getNode(((Integer) link[1]).intValue()))
+                .setLinks(link);
+            row.setNodesChanged();
+            row.keepInMemory(false);
+        }
+    }
+
     public IndexStats[] checkIndexes(Session session, int mode) {
 
         IndexStats[] indexStats = new IndexStats[accessorList.length];
 
         for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].getStructure() == Index.STRUCTURE_BTREE) {
+                indexStats[i] =
+                    ((IndexBTree) indexList[i]).checkIndex(session, this);
+
+                continue;
+            }
+
             IndexAVL index = (IndexAVL) indexList[i];
             NodeAVL  node  = (NodeAVL) accessorList[i];
             IndexAVLProbe probe = new IndexAVLProbe(session, this, index,
@@ -691,6 +869,14 @@ public abstract class RowStoreAVL implements PersistentStore {
 
     public void writeUnlock() {}
 
+    public long tryOptimisticRead() {
+        return -1;
+    }
+
+    public boolean validateRead(long stamp) {
+        return false;
+    }
+
     void dropIndexFromRows(Index primaryIndex, Index oldIndex) {
 
         RowIterator it       = primaryIndex.firstRow(this);
@@ -721,6 +907,13 @@ public abstract class RowStoreAVL implements PersistentStore {
             RowIterator   it       = primaryIndex.firstRow(this);
             int           rowCount = 0;
             HsqlException error    = null;
+            Row[]         rows     = null;
+
+            // the index is built from the sorted rows
+            if (newIndex.getStructure() == Index.STRUCTURE_AVL
+                    && !table.isSystemVersioned) {
+                rows = new Row[64];
+            }
 
             try {
                 while (it.next()) {
@@ -731,11 +924,30 @@ public abstract class RowStoreAVL implements PersistentStore {
                     // count before inserting
                     rowCount++;
 
-                    newIndex.insert(session, this, row);
+                    if (rows == null) {
+                        newIndex.insert(session, this, row);
+                    } else {
+                        if (rowCount > rows.length) {
+                            rows = (Row[]) ArrayUtil.resizeArray(rows,
+                                                                 rows.length
+                                                                 * 2);
+                        }
+
+                        rows[rowCount - 1] = row;
+                    }
                 }
 
                 it.release();
 
+                // with a unique index violation, insert each row to report it
+                if (rows != null
+                        && !((IndexAVL) newIndex).insertRows(session, this,
+                            rows, rowCount)) {
+                    for (int i = 0; i < rowCount; i++) {
+                        newIndex.insert(session, this, rows[i]);
+                    }
+                }
+
                 return true;
             } catch (OutOfMemoryError e) {
                 error = Error.error(ErrorCode.OUT_OF_MEMORY);
@@ -781,4 +993,204 @@ public abstract class RowStoreAVL implements PersistentStore {
 
         idx.unlinkNodes(this, root);
     }
+
+    /**
+     * Indexes the rows added to a new store by moveData().
+     */
+    abstract class RowIndexer {
+
+        final Session session;
+        long          rowCount;
+
+        RowIndexer(Session session) {
+            this.session = session;
+        }
+
+        abstract void add(Row oldRow, Row row);
+
+        abstract void finish();
+
+        void close() {}
+    }
+
+    /**
+     * Keeps the rows in an array and builds each index from the sorted rows.
+     * When the old table has an index in the same order, the rows are put in
+     * that order by following the old index. With a unique index violation,
+     * the rows are indexed one by one to report it.
+     */
+    class RowArrayIndexer extends RowIndexer {
+
+        final PersistentStore  other;
+        final Index[]          oldIndexes;
+        Row[]                  rows = new Row[64];
+        LongKeyIntValueHashMap positions;
+
+        RowArrayIndexer(Session session, PersistentStore other) {
+
+            super(session);
+
+            Index[] otherIndexes = other.getAccessorKeys();
+
+            this.other      = other;
+            this.oldIndexes = new Index[indexList.length];
+
+            for (int i = 0; i < indexList.length; i++) {
+                for (int j = 0; j < otherIndexes.length; j++) {
+                    if (otherIndexes[j].getStructure() == Index.STRUCTURE_AVL
+                            && otherIndexes[j].getName().equals(
+                                indexList[i].getName())
+                            && ((IndexAVL) indexList[i]).isSameOrder(
+                                (IndexAVL) otherIndexes[j])) {
+                        oldIndexes[i] = otherIndexes[j];
+
+                        break;
+                    }
+                }
+
+                if (oldIndexes[i] != null && positions == null) {
+                    positions = new LongKeyIntValueHashMap();
+                }
+            }
+        }
+
+        void add(Row oldRow, Row row) {
+
+            if (rowCount == rows.length) {
+                rows = (Row[]) ArrayUtil.resizeArray(rows, rows.length * 2);
+            }
+
+            if (positions != null) {
+                positions.put(oldRow.getPos(), (int) rowCount);
+            }
+
+            rows[(int) rowCount++] = row;
+        }
+
+        void finish() {
+
+            Row[][] rowsByIndex = new Row[indexList.length][];
+
+            for (int i = 0; i < indexList.length; i++) {
+                rowsByIndex[i] = oldIndexes[i] == null ? rows
+                                                       : getRowsInOrder(
+                                                           oldIndexes[i]);
+            }
+
+            if (!canIndexRowsInBulk()
+                    || !indexRows(session, rowsByIndex, (int) rowCount)) {
+                for (int i = 0; i < rowCount; i++) {
+                    indexRow(session, rows[i]);
+                }
+            }
+        }
+
+        private Row[] getRowsInOrder(Index oldIndex) {
+
+            Row[]       ordered = new Row[(int) rowCount];
+            int         count   = 0;
+            RowIterator it      = oldIndex.firstRow(other);
+
+            while (it.next()) {
+                int i = positions.get(it.getCurrentRow().getPos(), -1);
+
+                if (i < 0 || count == ordered.length) {
+                    return rows;
+                }
+
+                ordered[count++] = rows[i];
+            }
+
+            return count == ordered.length ? ordered
+                                           : rows;
+        }
+    }
+
+    /**
+     * Sorts the keys of the rows for each index with an external sort and
+     * builds each index from the sorted keys. The rows are not read while
+     * the trees are built. The links of all the indexes are then set with
+     * one pass over the rows in the order of their positions.
+     */
+    class SortedKeyIndexer extends RowIndexer {
+
+        RowDataSorter[] sorters;
+        RowDataSorter   links;
+
+        SortedKeyIndexer(Session session) {
+
+            super(session);
+
+            int maxRows = Math.max(sortMemoryRows / indexList.length, 1024);
+
+            sorters = new RowDataSorter[indexList.length];
+
+            for (int i = 0; i < indexList.length; i++) {
+                IndexAVL index = (IndexAVL) indexList[i];
+
+                sorters[i] = new RowDataSorter(database,
+                                               index.getSortKeyTypes(),
+                                               index.getSortKeyComparator(
+                                                   session), maxRows);
+            }
+
+            links = new RowDataSorter(database, NodeAVLDisk.linkTypes,
+                                      NodeAVLDisk.linkComparator,
+                                      sortMemoryRows);
+        }
+
+        void add(Row oldRow, Row row) {
+
+            for (int i = 0; i < indexList.length; i++) {
+                sorters[i].add(((IndexAVL) indexList[i]).getSortKey(row));
+            }
+
+            rowCount++;
+        }
+
+        void finish() {
+
+            long[] roots = new long[indexList.length];
+
+            writeLock();
+
+            try {
+                for (int i = 0; i < indexList.length; i++) {
+                    IndexAVL index = (IndexAVL) indexList[i];
+
+                    sorters[i].sort();
+
+                    roots[i] = index.linkSorted(session,
+                                                RowStoreAVL.this,
+                                                sorters[i], links);
+
+                    sorters[i].close();
+                }
+
+                setNodeLinks(links);
+
+                for (int i = 0; i < indexList.length; i++) {
+                    if (roots[i] >= 0) {
+                        setAccessor(indexList[i], roots[i]);
+                    }
+                }
+
+                elementCount.set(rowCount);
+
+                baseElementCount = rowCount;
+                searchCost       = null;
+            } finally {
+                writeUnlock();
+            }
+        }
+
+        void close() {
+
+            for (int i = 0; i < sorters.length; i++) {
+                sorters[i].close();
+            }
+
+            links.close();
+        }
+    }
 }
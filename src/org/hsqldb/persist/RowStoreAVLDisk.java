@@ -47,10 +47,14 @@ import org.hsqldb.TransactionManager;
 import org.hsqldb.error.Error;
 import org.hsqldb.error.ErrorCode;
 import org.hsqldb.index.Index;
+import org.hsqldb.index.IndexAVL;
+import org.hsqldb.index.IndexBTree;
 import org.hsqldb.index.NodeAVL;
 import org.hsqldb.index.NodeAVLDisk;
+import org.hsqldb.index.NodeBTree;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.lib.DoubleIntIndex;
+import org.hsqldb.lib.LongDeque;
 import org.hsqldb.lib.LongKeyHashMap;
 import org.hsqldb.lib.LongLookup;
 import org.hsqldb.navigator.RowIterator;
@@ -69,6 +73,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
     DataFileCache      cache;
     RowOutputInterface rowOut;
     boolean            largeData;
+    PageStoreBTree[]   pageStores;
 
     public RowStoreAVLDisk(DataFileCache cache, Table table) {
 
@@ -123,7 +128,7 @@ public class RowStoreAVLDisk extends RowStoreAVL {
 
         int size = object.getRealSize(rowOut);
 
-        size += indexList.length * NodeAVLDisk.SIZE_IN_BYTE;
+        size += getNodesSize();
         size = rowOut.getStorageSize(size);
 
         object.setStorageSize(size);
@@ -230,6 +235,46 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         }
     }
 
+    RowIndexer getRowIndexer(Session session, PersistentStore other) {
+        return canIndexRowsInBulk() ? new SortedKeyIndexer(session)
+                                    : null;
+    }
+
+    /**
+     * Rebuilds the index from the sorted keys of the rows.
+     */
+    void reindexInBulk(Session session, IndexAVL index, RowIterator it) {
+
+        RowDataSorter keys = new RowDataSorter(database,
+                                               index.getSortKeyTypes(),
+                                               index.getSortKeyComparator(
+                                                   session), sortMemoryRows);
+        RowDataSorter links = new RowDataSorter(database,
+            NodeAVLDisk.linkTypes, NodeAVLDisk.linkComparator,
+            sortMemoryRows);
+
+        try {
+            while (it.next()) {
+                keys.add(index.getSortKey(it.getCurrentRow()));
+            }
+
+            keys.sort();
+
+            long root = index.linkSorted(session, this, keys, links);
+
+            keys.close();
+            setNodeLinks(links);
+            setAccessor(index, null);
+
+            if (root >= 0) {
+                setAccessor(index, root);
+            }
+        } finally {
+            keys.close();
+            links.close();
+        }
+    }
+
     public void removeAll() {
 
         elementCount.set(0);
@@ -413,12 +458,37 @@ public class RowStoreAVLDisk extends RowStoreAVL {
 
         cache.adjustStoreCount(-1);
 
-        cache = null;
+        cache      = null;
+        pageStores = null;
 
         elementCount.set(0);
         ArrayUtil.fillArray(accessorList, null);
     }
 
+    /**
+     * Returns the store for the pages of a B+tree index. The pages are
+     * allocated in the table space of the table.
+     */
+    public PersistentStore getAccessorStore(Index index) {
+
+        PageStoreBTree[] stores = pageStores;
+
+        if (stores == null || stores.length != indexList.length) {
+            stores     = new PageStoreBTree[indexList.length];
+            pageStores = stores;
+        }
+
+        PageStoreBTree store = stores[index.getPosition()];
+
+        if (store == null || store.index != index
+                || store.spaceManager != tableSpace) {
+            store = new PageStoreBTree(cache, tableSpace, (IndexBTree) index);
+            stores[index.getPosition()] = store;
+        }
+
+        return store;
+    }
+
     public CachedObject getAccessor(Index key) {
 
         int position = key.getPosition();
@@ -427,6 +497,11 @@ public class RowStoreAVLDisk extends RowStoreAVL {
             throw Error.runtimeError(ErrorCode.U_S0500, "RowStoreAVLDisk");
         }
 
+        // the root page of a B+tree index is used only for its position
+        if (key.getStructure() == Index.STRUCTURE_BTREE) {
+            return accessorList[position];
+        }
+
         NodeAVL node = (NodeAVL) accessorList[position];
 
         if (node == null) {
@@ -443,6 +518,12 @@ public class RowStoreAVLDisk extends RowStoreAVL {
 
     public void setAccessor(Index key, long accessor) {
 
+        if (key.getStructure() == Index.STRUCTURE_BTREE) {
+            setAccessor(key, getAccessorStore(key).get(accessor, false));
+
+            return;
+        }
+
         CachedObject object = get(accessor, false);
 
         if (object != null) {
@@ -488,6 +569,8 @@ public class RowStoreAVLDisk extends RowStoreAVL {
         writeLock();
 
         try {
+            LongDeque pages = getIndexPagePositions();
+
             moveDataToSpace(cache, pointerLookup);
 
             CachedObject[] newAccessorList =
@@ -496,7 +579,19 @@ public class RowStoreAVLDisk extends RowStoreAVL {
             for (int i = 0; i < accessorList.length; i++) {
                 long pos = pointerLookup.lookup(accessorList[i].getPos());
 
-                newAccessorList[i] = cache.get(pos, this, false);
+                if (indexList[i].getStructure() == Index.STRUCTURE_BTREE) {
+                    newAccessorList[i] =
+                        getAccessorStore(indexList[i]).get(pos, false);
+                } else {
+                    newAccessorList[i] = cache.get(pos, this, false);
+                }
+            }
+
+            for (int i = 0; i < pages.size(); i++) {
+                long pos = pages.get(i);
+
+                cache.release(pos);
+                tableSpace.release(pos, NodeBTree.SIZE_IN_BYTE);
             }
 
             // using the old index
@@ -520,18 +615,32 @@ public class RowStoreAVLDisk extends RowStoreAVL {
                                        + table.getName().name);
     }
 
-    public void moveDataToSpace(DataFileCache targetCache,
+    /**
+     * Writes the rows and the pages of B+tree indexes to the target cache.
+     * The pointerLookup is filled with the old and new positions of each
+     * object. Returns the count of rows.
+     */
+    public long moveDataToSpace(DataFileCache targetCache,
                                 LongLookup pointerLookup) {
 
         int spaceId = table.getSpaceID();
         TableSpaceManager targetSpace =
             targetCache.spaceManager.getTableSpace(spaceId);
-        RowIterator it = indexList[0].firstRow(this);
+        RowIterator it       = indexList[0].firstRow(this);
+        long        rowCount = 0;
 
         while (it.next()) {
             CachedObject row = it.getCurrentRow();
 
             pointerLookup.addUnsorted(row.getPos(), row.getStorageSize());
+
+            rowCount++;
+        }
+
+        LongDeque pages = getIndexPagePositions();
+
+        for (int i = 0; i < pages.size(); i++) {
+            pointerLookup.addUnsorted(pages.get(i), NodeBTree.SIZE_IN_BYTE);
         }
 
         pointerLookup.sort();
@@ -554,6 +663,61 @@ public class RowStoreAVLDisk extends RowStoreAVL {
             row.write(targetCache.rowOut, pointerLookup);
             targetCache.saveRowOutput(newPos);
         }
+
+        for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].getStructure() != Index.STRUCTURE_BTREE) {
+                continue;
+            }
+
+            PersistentStore pageStore = getAccessorStore(indexList[i]);
+
+            pages.clear();
+            ((IndexBTree) indexList[i]).getPagePositions(this, pages);
+
+            for (int j = 0; j < pages.size(); j++) {
+                CachedObject page   = pageStore.get(pages.get(j), false);
+                long         newPos = pointerLookup.lookup(page.getPos());
+
+                targetCache.rowOut.reset();
+                page.write(targetCache.rowOut, pointerLookup);
+                targetCache.saveRowOutput(newPos);
+            }
+        }
+
+        return rowCount;
+    }
+
+    /**
+     * Returns the positions of the pages of all B+tree indexes.
+     */
+    LongDeque getIndexPagePositions() {
+
+        LongDeque pages = new LongDeque();
+
+        for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].getStructure() == Index.STRUCTURE_BTREE) {
+                ((IndexBTree) indexList[i]).getPagePositions(this, pages);
+            }
+        }
+
+        return pages;
+    }
+
+    /**
+     * Returns the size of the AVL nodes stored in each row. B+tree indexes
+     * have no node in the rows.
+     */
+    int getNodesSize() {
+
+        int size = 0;
+
+        for (int i = 0; i < indexList.length; i++) {
+            if (indexList[i].getStructure() != Index.STRUCTURE_BTREE) {
+                size += NodeAVLDisk.SIZE_IN_BYTE;
+            }
+        }
+
+        return size;
     }
 
     long getStorageSizeEstimate() {
@@ -49,6 +49,7 @@ import org.hsqldb.index.NodeAVLDisk;
 import org.hsqldb.lib.ArrayUtil;
 import org.hsqldb.navigator.RowIterator;
 import org.hsqldb.rowio.RowInputInterface;
+import org.hsqldb.types.Type;
 
 /*
  * Implementation of PersistentStore for result sets.
@@ -64,11 +65,14 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
     private boolean   useDisk;
     boolean           isCached;
     long              rowIdSequence = 0;
+    boolean           isSortedIndexing;
+    RowIndexer        indexer;
 
     public RowStoreAVLHybrid(Session session, TableBase table,
                              boolean diskBased) {
 
         this.table             = table;
+        this.database          = table.database;
         this.maxMemoryRowCount = session.getResultMemoryRowCount();
         this.useDisk           = diskBased;
 
@@ -102,6 +106,17 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
         useDisk = !mode;
     }
 
+    /**
+     * With sorted indexing, the rows added after the change to disk are not
+     * inserted into the indexes one by one. The keys of the rows are sorted
+     * with an external sort and the indexes are built from the sorted keys
+     * when an index is first used. This replaces the random reads and writes
+     * of the index nodes on disk with sequential ones.
+     */
+    public void setSortedIndexing(boolean mode) {
+        isSortedIndexing = mode;
+    }
+
     public CachedObject get(long i, boolean keep) {
 
         try {
@@ -199,6 +214,13 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
 
     public void indexRow(Session session, Row row) {
 
+        if (indexer != null) {
+            indexer.add(null, row);
+            elementCount.incrementAndGet();
+
+            return;
+        }
+
         try {
             row = (Row) get(row, true);
 
@@ -210,6 +232,8 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
 
     public void removeAll() {
 
+        closeIndexer();
+
         if (!isCached) {
             destroy();
         }
@@ -297,6 +321,8 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
 
     public void release() {
 
+        closeIndexer();
+
         if (isCached) {
             cache.adjustStoreCount(-1);
 
@@ -312,6 +338,10 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
 
     public CachedObject getAccessor(Index key) {
 
+        if (indexer != null) {
+            finishIndexer();
+        }
+
         int     position = key.getPosition();
         NodeAVL node     = (NodeAVL) accessorList[position];
 
@@ -328,6 +358,17 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
         return node;
     }
 
+    public void setAccessor(Index key, long accessor) {
+
+        CachedObject object = get(accessor, false);
+
+        if (object != null) {
+            object = ((RowAVL) object).getNode(key.getPosition());
+        }
+
+        setAccessor(key, object);
+    }
+
     public synchronized void resetAccessorKeys(Session session, Index[] keys) {
 
         if (indexList.length == 0 || accessorList[0] == null) {
@@ -367,6 +408,8 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
         cache.adjustStoreCount(1);
 
         if (elementCount.get() == 0) {
+            setIndexer(session);
+
             return;
         }
 
@@ -377,6 +420,7 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
         ArrayUtil.fillArray(accessorList, null);
         ArrayUtil.fillArray(nullsList, false);
         elementCount.set(0);
+        setIndexer(session);
 
         while (iterator.next()) {
             Row row = iterator.getCurrentRow();
@@ -388,4 +432,46 @@ public class RowStoreAVLHybrid extends RowStoreAVL {
 
         idx.unlinkNodes(this, root);
     }
+
+    private void setIndexer(Session session) {
+
+        if (!isSortedIndexing || !canIndexRowsInBulk()) {
+            return;
+        }
+
+        // the sort keys cannot contain LOB values
+        for (int i = 0; i < indexList.length; i++) {
+            Type[] types = indexList[i].getColumnTypes();
+
+            for (int j = 0; j < types.length; j++) {
+                if (types[j].isLobType()) {
+                    return;
+                }
+            }
+        }
+
+        indexer = new SortedKeyIndexer(session);
+    }
+
+    private void finishIndexer() {
+
+        RowIndexer current = indexer;
+
+        indexer = null;
+
+        try {
+            current.finish();
+        } finally {
+            current.close();
+        }
+    }
+
+    private void closeIndexer() {
+
+        if (indexer != null) {
+            indexer.close();
+
+            indexer = null;
+        }
+    }
 }
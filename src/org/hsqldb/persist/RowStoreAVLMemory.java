@@ -56,6 +56,18 @@ public class RowStoreAVLMemory extends RowStoreAVL {
 
     AtomicInteger rowIdSequence = new AtomicInteger();
 
+//#ifdef JAVA8
+
+    /**
+     * Write locked while a writer holds the write lock. Readers of the
+     * indexes use its optimistic read stamps to traverse the AVL trees
+     * without taking the read lock.
+     */
+    private final java.util.concurrent.locks.StampedLock versionLock =
+        new java.util.concurrent.locks.StampedLock();
+    private long writeStamp;
+
+//#endif JAVA8
     public RowStoreAVLMemory(Table table) {
 
         this.database     = table.database;
@@ -98,6 +110,11 @@ public class RowStoreAVLMemory extends RowStoreAVL {
         return row;
     }
 
+    RowIndexer getRowIndexer(Session session, PersistentStore other) {
+        return canIndexRowsInBulk() ? new RowArrayIndexer(session, other)
+                                    : null;
+    }
+
     public void removeAll() {
 
         destroy();
@@ -209,10 +226,58 @@ public class RowStoreAVLMemory extends RowStoreAVL {
     }
 
     public void writeLock() {
+
         writeLock.lock();
+
+//#ifdef JAVA8
+        if (((ReentrantReadWriteLock) lock).getWriteHoldCount() == 1) {
+            writeStamp = versionLock.writeLock();
+        }
+
+//#endif JAVA8
     }
 
     public void writeUnlock() {
+
+//#ifdef JAVA8
+        if (((ReentrantReadWriteLock) lock).getWriteHoldCount() == 1) {
+            versionLock.unlockWrite(writeStamp);
+        }
+
+//#endif JAVA8
         writeLock.unlock();
     }
+
+    public long tryOptimisticRead() {
+
+        if (!database.optimisticRead) {
+            return -1;
+        }
+
+//#ifdef JAVA8
+        long stamp = versionLock.tryOptimisticRead();
+
+        return stamp == 0 ? -1
+                          : stamp;
+
+//#else
+/*
+        return -1;
+*/
+
+//#endif JAVA8
+    }
+
+    public boolean validateRead(long stamp) {
+
+//#ifdef JAVA8
+        return versionLock.validate(stamp);
+
+//#else
+/*
+        return false;
+*/
+
+//#endif JAVA8
+    }
 }
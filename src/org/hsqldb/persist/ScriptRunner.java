@@ -32,6 +32,8 @@
 package org.hsqldb.persist;
 
 import java.io.EOFException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.hsqldb.ColumnSchema;
 import org.hsqldb.Database;
@@ -50,6 +52,7 @@ import org.hsqldb.lib.IntKeyHashMap;
 import org.hsqldb.map.ValuePool;
 import org.hsqldb.result.Result;
 import org.hsqldb.scriptio.ScriptReaderBase;
+import org.hsqldb.scriptio.ScriptReaderBinaryLog;
 import org.hsqldb.scriptio.ScriptReaderDecode;
 import org.hsqldb.scriptio.ScriptReaderText;
 import org.hsqldb.scriptio.StatementLineTypes;
@@ -60,9 +63,11 @@ import org.hsqldb.types.Type;
  *
  * If there is an error, processing stops at that line and the message is
  * logged to the application log. If memory runs out, an exception is thrown.
+ * The log is read and parsed in a separate thread while the statements are
+ * executed.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- * @version 2.5.0
+ * @version 2.5.1
  * @since 1.7.2
  */
 public class ScriptRunner {
@@ -78,11 +83,14 @@ public class ScriptRunner {
         ScriptReaderBase scr;
 
         try {
-            if (crypto == null) {
-                scr = new ScriptReaderText(database, logFilename, false);
-            } else {
+            if (crypto != null) {
                 scr = new ScriptReaderDecode(database, logFilename, crypto,
                                              true);
+            } else if (ScriptReaderBinaryLog.getLogFormat(database,
+                    logFilename) == ScriptReaderBinaryLog.LOG_FORMAT_BINARY) {
+                scr = new ScriptReaderBinaryLog(database, logFilename);
+            } else {
+                scr = new ScriptReaderText(database, logFilename, false);
             }
         } catch (Throwable e) {
 
@@ -105,11 +113,8 @@ public class ScriptRunner {
     private static void runScript(Database database, ScriptReaderBase scr,
                                   boolean fullReplay) {
 
-        IntKeyHashMap sessionMap = new IntKeyHashMap();
-        Session       current    = null;
-        int           currentId  = 0;
-        String        statement;
-        int           statementType;
+        LogReader reader = new LogReader(database, scr);
+        long      lineNumber = 0;
         Statement dummy = new StatementDML(StatementTypes.UPDATE_CURSOR,
                                            StatementTypes.X_SQL_DATA_CHANGE,
                                            null);
@@ -119,136 +124,36 @@ public class ScriptRunner {
 
         dummy.setCompileTimestamp(Long.MAX_VALUE);
         database.setReferentialIntegrity(false);
+        reader.start();
 
         try {
-            while (scr.readLoggedStatement(current)) {
-                int sessionId = scr.getSessionNumber();
+            while (true) {
+                LogBatch batch = reader.getBatch();
 
-                if (current == null || currentId != sessionId) {
-                    currentId = sessionId;
-                    current   = (Session) sessionMap.get(currentId);
+                for (int i = 0; i < batch.count; i++) {
+                    LogRecord record = batch.records[i];
 
-                    if (current == null) {
+                    lineNumber = record.lineNumber;
 
-                        // note the sessionId does not match the sessionId of
-                        // new session
-                        current =
-                            database.getSessionManager().newSessionForLog(
-                                database);
+                    executeRecord(database, record, dummy);
 
-                        sessionMap.put(currentId, current);
+                    if (record.isBarrier) {
+                        reader.resume();
                     }
                 }
 
-                Result result = null;
-
-                statementType = scr.getStatementType();
-
-                switch (statementType) {
-
-                    case StatementLineTypes.SET_FILES_CHECK_STATEMENT :
-                        result = null;
-
-                    // fall through
-                    case StatementLineTypes.ANY_STATEMENT :
-                        statement = scr.getLoggedStatement();
-
-                        Statement cs;
-
-                        try {
-                            cs = current.compileStatement(statement);
-
-                            if (database.getProperties().isVersion18()) {
-
-                                // convert BIT columns in .log to BOOLEAN
-                                if (cs.getType()
-                                        == StatementTypes.CREATE_TABLE) {
-                                    Table table =
-                                        (Table) ((StatementSchema) cs)
-                                            .getArguments()[0];
-
-                                    for (int i = 0; i < table.getColumnCount();
-                                            i++) {
-                                        ColumnSchema column =
-                                            table.getColumn(i);
-
-                                        if (column.getDataType().isBitType()) {
-                                            column.setType(Type.SQL_BOOLEAN);
-                                        }
-                                    }
-                                }
-                            }
-
-                            result = current.executeCompiledStatement(cs,
-                                    ValuePool.emptyObjectArray, 0);
-                        } catch (Throwable e) {
-                            result = Result.newErrorResult(e);
-                        }
-
-                        if (result != null && result.isError()) {
-                            if (result.getException() != null) {
-                                throw result.getException();
-                            }
-
-                            throw Error.error(result);
-                        }
-                        break;
-
-                    case StatementLineTypes.COMMIT_STATEMENT :
-                        current.commit(false);
-                        break;
-
-                    case StatementLineTypes.INSERT_STATEMENT : {
-                        current.sessionContext.currentStatement = dummy;
-
-                        current.beginAction(dummy);
-
-                        Object[] data = scr.getData();
-
-                        scr.getCurrentTable().insertNoCheckFromLog(current,
-                                data);
-                        current.endAction(Result.updateOneResult);
-
-                        break;
-                    }
-                    case StatementLineTypes.DELETE_STATEMENT : {
-                        current.sessionContext.currentStatement = dummy;
-
-                        current.beginAction(dummy);
+                if (batch.error != null) {
+                    lineNumber = batch.lineNumber;
 
-                        Table           table = scr.getCurrentTable();
-                        PersistentStore store = table.getRowStore(current);
-                        Object[]        data  = scr.getData();
-                        Row row = table.getDeleteRowFromLog(current, data);
-
-                        if (row != null) {
-                            current.addDeleteAction(table, store, row, null);
-                        }
-
-                        current.endAction(Result.updateOneResult);
-
-                        break;
+                    if (batch.error instanceof RuntimeException) {
+                        throw (RuntimeException) batch.error;
                     }
-                    case StatementLineTypes.SET_SCHEMA_STATEMENT : {
-                        HsqlName name =
-                            database.schemaManager.findSchemaHsqlName(
-                                scr.getCurrentSchema());
-
-                        current.setCurrentSchemaHsqlName(name);
 
-                        break;
-                    }
-                    case StatementLineTypes.SESSION_ID : {
-                        break;
-                    }
-                    default :
-                        throw Error.error(ErrorCode.ERROR_IN_LOG_FILE);
+                    throw (java.lang.Error) batch.error;
                 }
 
-                if (current.isClosed()) {
-                    current = null;
-
-                    sessionMap.remove(currentId);
+                if (batch.isLast) {
+                    break;
                 }
             }
         } catch (HsqlException e) {
@@ -258,8 +163,7 @@ public class ScriptRunner {
 
             // stop processing on bad log line
             String error = "statement error processing log - " + action + " "
-                           + scr.getFileNamePath() + " line: "
-                           + scr.getLineNumber();
+                           + scr.getFileNamePath() + " line: " + lineNumber;
 
             database.logger.logSevereEvent(error, e);
 
@@ -268,7 +172,7 @@ public class ScriptRunner {
             }
         } catch (OutOfMemoryError e) {
             String error = "out of memory processing log - " + databaseFile
-                           + " line: " + scr.getLineNumber();
+                           + " line: " + lineNumber;
 
             // catch out-of-memory errors and terminate
             database.logger.logSevereEvent(error, e);
@@ -279,13 +183,12 @@ public class ScriptRunner {
                 Error.error(t, ErrorCode.ERROR_IN_LOG_FILE,
                             ErrorCode.M_DatabaseScriptReader_read,
                             new String[] {
-                scr.getLineNumber() + " " + databaseFile, t.getMessage()
+                lineNumber + " " + databaseFile, t.getMessage()
             });
 
             // stop processing on bad script line
             String error = "statement error processing log - " + action
-                           + scr.getFileNamePath() + " line: "
-                           + scr.getLineNumber();
+                           + scr.getFileNamePath() + " line: " + lineNumber;
 
             database.logger.logSevereEvent(error, e);
 
@@ -293,12 +196,330 @@ public class ScriptRunner {
                 throw e;
             }
         } finally {
-            if (scr != null) {
-                scr.close();
-            }
-
+            reader.stop();
+            scr.close();
             database.getSessionManager().closeAllSessions();
             database.setReferentialIntegrity(true);
         }
     }
+
+    private static void executeRecord(Database database, LogRecord record,
+                                      Statement dummy) {
+
+        Session current = record.session;
+        Result  result  = null;
+
+        switch (record.type) {
+
+            case StatementLineTypes.SET_FILES_CHECK_STATEMENT :
+            case StatementLineTypes.ANY_STATEMENT :
+                Statement cs;
+
+                try {
+                    cs = current.compileStatement(record.statement);
+
+                    if (database.getProperties().isVersion18()) {
+
+                        // convert BIT columns in .log to BOOLEAN
+                        if (cs.getType() == StatementTypes.CREATE_TABLE) {
+                            Table table =
+                                (Table) ((StatementSchema) cs)
+                                    .getArguments()[0];
+
+                            for (int i = 0; i < table.getColumnCount(); i++) {
+                                ColumnSchema column = table.getColumn(i);
+
+                                if (column.getDataType().isBitType()) {
+                                    column.setType(Type.SQL_BOOLEAN);
+                                }
+                            }
+                        }
+                    }
+
+                    result = current.executeCompiledStatement(cs,
+                            ValuePool.emptyObjectArray, 0);
+                } catch (Throwable e) {
+                    result = Result.newErrorResult(e);
+                }
+
+                if (result != null && result.isError()) {
+                    if (result.getException() != null) {
+                        throw result.getException();
+                    }
+
+                    throw Error.error(result);
+                }
+                break;
+
+            case StatementLineTypes.COMMIT_STATEMENT :
+                current.commit(false);
+                break;
+
+            case StatementLineTypes.INSERT_STATEMENT : {
+                current.sessionContext.currentStatement = dummy;
+
+                current.beginAction(dummy);
+                record.table.insertNoCheckFromLog(current, record.data);
+                current.endAction(Result.updateOneResult);
+
+                break;
+            }
+            case StatementLineTypes.DELETE_STATEMENT : {
+                current.sessionContext.currentStatement = dummy;
+
+                current.beginAction(dummy);
+
+                Table           table = record.table;
+                PersistentStore store = table.getRowStore(current);
+                Row row = table.getDeleteRowFromLog(current, record.data);
+
+                if (row != null) {
+                    current.addDeleteAction(table, store, row, null);
+                }
+
+                current.endAction(Result.updateOneResult);
+
+                break;
+            }
+            case StatementLineTypes.SET_SCHEMA_STATEMENT : {
+                HsqlName name =
+                    database.schemaManager.findSchemaHsqlName(record.schema);
+
+                current.setCurrentSchemaHsqlName(name);
+
+                break;
+            }
+            default :
+                throw Error.error(ErrorCode.ERROR_IN_LOG_FILE);
+        }
+    }
+
+    /**
+     * A statement or row change read from the log.
+     */
+    static class LogRecord {
+
+        int      type;
+        Session  session;
+        String   statement;
+        Table    table;
+        Object[] data;
+        String   schema;
+        long     lineNumber;
+        boolean  isBarrier;
+    }
+
+    /**
+     * A batch of records passed from the reader thread to the thread that
+     * executes them. The last batch has isLast set, or an error that
+     * stopped the reading.
+     */
+    static class LogBatch {
+
+        final LogRecord[] records = new LogRecord[LogReader.batchSize];
+        int               count;
+        boolean           isLast;
+        Throwable         error;
+        long              lineNumber;
+    }
+
+    /**
+     * Reads and parses the log in a separate thread while the rows are
+     * inserted and deleted by the thread that opens the database.<p>
+     *
+     * Rows are parsed with the current table definitions and the current
+     * schema of each session. Any other statement is therefore a barrier:
+     * reading pauses until the statement has been executed.
+     */
+    static class LogReader implements Runnable {
+
+        static final int batchSize  = 256;
+        static final int queueSize  = 8;
+        static final int waitMillis = 100;
+
+        //
+        final Database         database;
+        final ScriptReaderBase scr;
+        final ArrayBlockingQueue<LogBatch> batches =
+            new ArrayBlockingQueue<LogBatch>(queueSize);
+        final ArrayBlockingQueue<Object> barrier =
+            new ArrayBlockingQueue<Object>(1);
+        volatile boolean stopped;
+        Thread           thread;
+
+        LogReader(Database database, ScriptReaderBase scr) {
+            this.database = database;
+            this.scr      = scr;
+        }
+
+        void start() {
+
+            thread = new Thread(this, "HSQLDB Log Reader");
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() {
+
+            stopped = true;
+
+            boolean interrupted = false;
+
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        LogBatch getBatch() {
+
+            boolean interrupted = false;
+
+            try {
+                while (true) {
+                    try {
+                        return batches.take();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        void resume() {
+            barrier.offer(Boolean.TRUE);
+        }
+
+        public void run() {
+
+            IntKeyHashMap sessionMap = new IntKeyHashMap();
+            Session       current    = null;
+            int           currentId  = 0;
+            LogBatch      batch      = new LogBatch();
+
+            try {
+                while (scr.readLoggedStatement(current)) {
+                    int sessionId = scr.getSessionNumber();
+
+                    if (current == null || currentId != sessionId) {
+                        currentId = sessionId;
+                        current   = (Session) sessionMap.get(currentId);
+
+                        if (current == null) {
+
+                            // note the sessionId does not match the sessionId
+                            // of new session
+                            current =
+                                database.getSessionManager().newSessionForLog(
+                                    database);
+
+                            sessionMap.put(currentId, current);
+                        }
+                    }
+
+                    int type = scr.getStatementType();
+
+                    if (type == StatementLineTypes.SESSION_ID) {
+                        continue;
+                    }
+
+                    LogRecord record = new LogRecord();
+
+                    record.type       = type;
+                    record.session    = current;
+                    record.lineNumber = scr.getLineNumber();
+
+                    switch (type) {
+
+                        case StatementLineTypes.INSERT_STATEMENT :
+                        case StatementLineTypes.DELETE_STATEMENT :
+                            record.table = scr.getCurrentTable();
+                            record.data  = scr.getData();
+                            break;
+
+                        case StatementLineTypes.COMMIT_STATEMENT :
+                            break;
+
+                        case StatementLineTypes.SET_SCHEMA_STATEMENT :
+                            record.schema    = scr.getCurrentSchema();
+                            record.isBarrier = true;
+                            break;
+
+                        default :
+                            record.statement = scr.getLoggedStatement();
+                            record.isBarrier = true;
+                    }
+
+                    batch.records[batch.count++] = record;
+
+                    if (record.isBarrier) {
+                        if (!putBatch(batch) || !waitBarrier()) {
+                            return;
+                        }
+
+                        batch = new LogBatch();
+
+                        if (current.isClosed()) {
+                            current = null;
+
+                            sessionMap.remove(currentId);
+                        }
+                    } else if (batch.count == batchSize) {
+                        if (!putBatch(batch)) {
+                            return;
+                        }
+
+                        batch = new LogBatch();
+                    }
+                }
+
+                batch.isLast = true;
+            } catch (Throwable t) {
+                batch.error      = t;
+                batch.lineNumber = scr.getLineNumber();
+            }
+
+            putBatch(batch);
+        }
+
+        private boolean putBatch(LogBatch batch) {
+
+            try {
+                while (!stopped) {
+                    if (batches.offer(batch, waitMillis,
+                                      TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {}
+
+            return false;
+        }
+
+        private boolean waitBarrier() {
+
+            try {
+                while (!stopped) {
+                    if (barrier.poll(waitMillis, TimeUnit.MILLISECONDS)
+                            != null) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {}
+
+            return false;
+        }
+    }
 }
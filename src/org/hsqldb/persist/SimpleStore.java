@@ -157,6 +157,8 @@ public abstract class SimpleStore implements PersistentStore {
 
     public void setMemory(boolean mode) {}
 
+    public void setSortedIndexing(boolean mode) {}
+
     public void delete(Session session, Row row) {}
 
     public RowAction addDeleteActionToRow(Session session, Row row,
@@ -195,6 +197,14 @@ public abstract class SimpleStore implements PersistentStore {
 
     public void writeUnlock() {}
 
+    public long tryOptimisticRead() {
+        return -1;
+    }
+
+    public boolean validateRead(long stamp) {
+        return false;
+    }
+
     public TableBase getTable() {
         return null;
     }
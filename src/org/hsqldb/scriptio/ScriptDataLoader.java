@@ -0,0 +1,376 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.scriptio;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.hsqldb.Database;
+import org.hsqldb.HsqlException;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.lib.ArrayUtil;
+import org.hsqldb.lib.HashMap;
+import org.hsqldb.persist.PersistentStore;
+import org.hsqldb.persist.RowStoreAVL;
+import org.hsqldb.rowio.RowInputTextLog;
+import org.hsqldb.types.Type;
+
+/**
+ * Parses and inserts the rows of the tables in the .script file in worker
+ * threads, while the thread that reads the file continues with the next
+ * lines.<p>
+ *
+ * All the lines of a table are processed in order by one worker. The rows
+ * of a MEMORY table are collected and the indexes are built from the sorted
+ * rows after the last row of the table. If a unique index would be
+ * violated, the rows are then inserted one by one to find the line with the
+ * error.<p>
+ *
+ * The first error stops the processing. It is thrown in the reading thread
+ * by the next call.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class ScriptDataLoader {
+
+    static final int      batchSize  = 1024;
+    static final int      queueSize  = 16;
+    static final String[] endOfTable = new String[0];
+
+    //
+    final Database         database;
+    final ScriptReaderText reader;
+    final ExecutorService  executor;
+    final HashMap          tableLoaders = new HashMap();
+    TableLoader            current;
+    volatile HsqlException error;
+
+    ScriptDataLoader(Database database, ScriptReaderText reader) {
+
+        int threads = Runtime.getRuntime().availableProcessors() - 1;
+
+        this.database = database;
+        this.reader   = reader;
+        this.executor = Executors.newFixedThreadPool(Math.max(threads, 1),
+                new ThreadFactory() {
+
+            public Thread newThread(Runnable r) {
+
+                Thread thread = new Thread(r, "HSQLDB Script Loader");
+
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts a table. The rows of the table are in the lines that follow
+     * until the next call to this method or to finish().
+     */
+    void startTable(Table table, PersistentStore store, long lineNumber) {
+
+        endTable();
+        checkError();
+
+        TableLoader loader = (TableLoader) tableLoaders.get(table);
+
+        // rows of a table in a second section are added after the first
+        if (loader != null) {
+            loader.await();
+            checkError();
+        }
+
+        current = new TableLoader(table, store, lineNumber);
+
+        tableLoaders.put(table, current);
+        executor.execute(current);
+    }
+
+    void addLine(String line) {
+
+        if (error != null) {
+            throw error;
+        }
+
+        current.add(line);
+    }
+
+    /**
+     * Waits until all the tables have been processed, then throws the
+     * first error, if any.
+     */
+    void finish() {
+
+        close();
+        checkError();
+    }
+
+    /**
+     * Ends the current table and waits for the workers to end.
+     */
+    void close() {
+
+        endTable();
+        executor.shutdown();
+
+        boolean interrupted = false;
+
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void endTable() {
+
+        if (current != null) {
+            current.end();
+
+            current = null;
+        }
+    }
+
+    private void checkError() {
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private synchronized void setError(Throwable t, long lineNumber) {
+
+        if (error == null) {
+            error = reader.getError(t, lineNumber);
+        }
+    }
+
+    private class TableLoader implements Runnable {
+
+        final Table                        table;
+        final PersistentStore              store;
+        final long                         startLine;
+        final ArrayBlockingQueue<String[]> queue;
+        final CountDownLatch               done = new CountDownLatch(1);
+        final Session                      session;
+        final RowInputTextLog              rowIn;
+        final Type[]                       colTypes;
+        final boolean                      isMemory;
+        String[]                           batch = new String[batchSize];
+        int                                batchCount;
+        Row[]                              rows;
+        int                                rowCount;
+        long                               lineNumber;
+
+        TableLoader(Table table, PersistentStore store, long lineNumber) {
+
+            this.table      = table;
+            this.store      = store;
+            this.startLine  = lineNumber;
+            this.lineNumber = lineNumber;
+            queue           = new ArrayBlockingQueue<String[]>(queueSize);
+            session = database.sessionManager.getSysSessionForScript(database);
+            rowIn           = new RowInputTextLog();
+            colTypes        = table.getColumnTypes();
+            isMemory        = store.isMemory();
+
+            if (isMemory) {
+                rows = new Row[batchSize];
+            }
+        }
+
+        void add(String line) {
+
+            batch[batchCount++] = line;
+
+            if (batchCount == batchSize) {
+                put(batch);
+
+                batch      = new String[batchSize];
+                batchCount = 0;
+            }
+        }
+
+        void end() {
+
+            if (batchCount > 0) {
+                put(batch);
+            }
+
+            put(endOfTable);
+        }
+
+        void await() {
+
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    done.await();
+
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void put(String[] lines) {
+
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    queue.put(lines);
+
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private String[] take() {
+
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {}
+            }
+        }
+
+        public void run() {
+
+            try {
+
+                // the batches are taken after an error to release the reader
+                while (true) {
+                    String[] lines = take();
+
+                    if (lines == endOfTable) {
+                        break;
+                    }
+
+                    if (error == null) {
+                        insertLines(lines);
+                    }
+                }
+
+                if (error == null && isMemory) {
+                    indexRows();
+                }
+            } finally {
+                rows = null;
+
+                done.countDown();
+            }
+        }
+
+        private void insertLines(String[] lines) {
+
+            try {
+                for (int i = 0; i < lines.length; i++) {
+                    String line = lines[i];
+
+                    if (line == null) {
+                        break;
+                    }
+
+                    rowIn.setSource(session, line);
+
+                    Object[] data = rowIn.readData(colTypes);
+
+                    if (isMemory) {
+                        table.systemUpdateIdentityValue(data);
+
+                        if (rowCount == rows.length) {
+                            rows = (Row[]) ArrayUtil.resizeArray(rows,
+                                                                 rowCount * 2);
+                        }
+
+                        rows[rowCount++] =
+                            (Row) store.getNewCachedObject(session, data,
+                                                           false);
+                    } else {
+                        table.insertFromScript(session, store, data);
+                    }
+
+                    lineNumber++;
+                }
+            } catch (Throwable t) {
+                setError(t, lineNumber);
+            }
+        }
+
+        private void indexRows() {
+
+            if (((RowStoreAVL) store).indexRows(session, rows, rowCount)) {
+                return;
+            }
+
+            int i = 0;
+
+            try {
+                for (; i < rowCount; i++) {
+                    store.indexRow(session, rows[i]);
+                }
+            } catch (Throwable t) {
+                setError(t, startLine + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.scriptio;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+import org.hsqldb.Database;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.IntKeyHashMap;
+import org.hsqldb.lib.java.JavaSystem;
+import org.hsqldb.rowio.RowInputBinary;
+import org.hsqldb.rowio.RowOutputBinary;
+import org.hsqldb.types.Type;
+
+/**
+ * Reads the .log file written by ScriptWriterBinaryLog.<p>
+ *
+ * Reading stops at the end of the file, or at the first record that is
+ * incomplete or has a wrong checksum. Such a record is the result of a
+ * crash while the record was being written and is not part of a committed
+ * transaction.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class ScriptReaderBinaryLog extends ScriptReaderBase {
+
+    public static final int LOG_FORMAT_NONE   = -1;
+    public static final int LOG_FORMAT_TEXT   = 0;
+    public static final int LOG_FORMAT_BINARY = 1;
+
+    //
+    InputStream     inputStream;
+    DataInputStream dataInput;
+    RowInputBinary  rowIn;
+    CRC32           crc    = new CRC32();
+    IntKeyHashMap   tables = new IntKeyHashMap();
+
+    public ScriptReaderBinaryLog(Database db,
+                                 String fileName) throws IOException {
+
+        super(db, fileName);
+
+        try {
+            inputStream =
+                db.logger.getFileAccess().openInputStreamElement(fileName);
+            dataInput = new DataInputStream(
+                new BufferedInputStream(inputStream, 1 << 14));
+            rowIn = new RowInputBinary(256);
+
+            int magic   = dataInput.readInt();
+            int version = dataInput.readInt();
+
+            if (magic != ScriptWriterBinaryLog.LOG_MAGIC
+                    || version != ScriptWriterBinaryLog.LOG_VERSION) {
+                throw Error.error(ErrorCode.ERROR_IN_LOG_FILE, fileName);
+            }
+        } catch (Throwable t) {
+            close();
+
+            throw JavaSystem.toIOException(t);
+        }
+    }
+
+    /**
+     * Returns the format of an existing log file, or LOG_FORMAT_NONE if the
+     * file does not exist or is empty.
+     */
+    public static int getLogFormat(Database db, String fileName) {
+
+        if (!db.logger.getFileAccess().isStreamElement(fileName)) {
+            return LOG_FORMAT_NONE;
+        }
+
+        InputStream in = null;
+
+        try {
+            in = db.logger.getFileAccess().openInputStreamElement(fileName);
+
+            DataInputStream dataIn = new DataInputStream(in);
+
+            return dataIn.readInt() == ScriptWriterBinaryLog.LOG_MAGIC
+                   ? LOG_FORMAT_BINARY
+                   : LOG_FORMAT_TEXT;
+        } catch (EOFException e) {
+            return LOG_FORMAT_NONE;
+        } catch (IOException e) {
+            return LOG_FORMAT_TEXT;
+        } finally {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {}
+        }
+    }
+
+    public void readAll(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    protected void readDDL(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    protected void readExistingData(Session session) {
+        throw Error.runtimeError(ErrorCode.U_S0500, "ScriptReaderBinaryLog");
+    }
+
+    public boolean readLoggedStatement(Session session) {
+
+        while (true) {
+            if (!readRecord()) {
+                return false;
+            }
+
+            int type = rowIn.readByte();
+
+            sessionNumber = rowIn.readInt();
+            rowData       = null;
+            currentTable  = null;
+            statement     = null;
+
+            switch (type) {
+
+                case ScriptWriterBinaryLog.TABLE_RECORD : {
+                    int    tableId = rowIn.readInt();
+                    String schema  = rowIn.readString();
+                    String name    = rowIn.readString();
+                    Table table = database.schemaManager.getUserTable(name,
+                        schema);
+
+                    tables.put(tableId, table);
+
+                    continue;
+                }
+                case ScriptWriterBinaryLog.SEQUENCE_RECORD : {
+                    statementType = StatementLineTypes.ANY_STATEMENT;
+                    statement     = rowIn.readString();
+
+                    return true;
+                }
+                case StatementLineTypes.ANY_STATEMENT : {
+
+                    // the statement may alter or drop a table
+                    tables.clear();
+
+                    statementType = StatementLineTypes.ANY_STATEMENT;
+                    statement     = rowIn.readString();
+
+                    return true;
+                }
+                case StatementLineTypes.COMMIT_STATEMENT : {
+                    statementType = StatementLineTypes.COMMIT_STATEMENT;
+
+                    return true;
+                }
+                case StatementLineTypes.SET_SCHEMA_STATEMENT : {
+                    statementType = StatementLineTypes.SET_SCHEMA_STATEMENT;
+                    currentSchema = rowIn.readString();
+
+                    return true;
+                }
+                case StatementLineTypes.INSERT_STATEMENT : {
+                    statementType = StatementLineTypes.INSERT_STATEMENT;
+                    currentTable  = getTable(rowIn.readInt());
+                    rowData = rowIn.readData(currentTable.getColumnTypes());
+
+                    return true;
+                }
+                case StatementLineTypes.DELETE_STATEMENT : {
+                    statementType = StatementLineTypes.DELETE_STATEMENT;
+                    currentTable  = getTable(rowIn.readInt());
+
+                    Type[] colTypes = currentTable.hasPrimaryKey()
+                                      ? currentTable.getPrimaryKeyTypes()
+                                      : currentTable.getColumnTypes();
+
+                    rowData = rowIn.readData(colTypes);
+
+                    return true;
+                }
+                default :
+                    throw Error.error(ErrorCode.ERROR_IN_LOG_FILE);
+            }
+        }
+    }
+
+    /**
+     * Reads the next record into rowIn and checks its checksum.
+     */
+    private boolean readRecord() {
+
+        int length;
+
+        try {
+            length = dataInput.readInt();
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        }
+
+        lineCount++;
+
+        if (length < ScriptWriterBinaryLog.RECORD_HEADER_SIZE
+                - RowOutputBinary.INT_STORE_SIZE) {
+            logIncompleteRecord();
+
+            return false;
+        }
+
+        int size = RowOutputBinary.INT_STORE_SIZE + length
+                   + RowOutputBinary.INT_STORE_SIZE;
+
+        rowIn.resetRow(0, size);
+
+        byte[] buffer = rowIn.getBuffer();
+
+        try {
+            dataInput.readFully(buffer, RowOutputBinary.INT_STORE_SIZE,
+                                length + RowOutputBinary.INT_STORE_SIZE);
+        } catch (EOFException e) {
+            logIncompleteRecord();
+
+            return false;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        }
+
+        crc.reset();
+        crc.update(buffer, RowOutputBinary.INT_STORE_SIZE, length);
+
+        int offset   = RowOutputBinary.INT_STORE_SIZE + length;
+        int checksum = ((buffer[offset] & 0xff) << 24)
+                       | ((buffer[offset + 1] & 0xff) << 16)
+                       | ((buffer[offset + 2] & 0xff) << 8)
+                       | (buffer[offset + 3] & 0xff);
+
+        if (checksum != (int) crc.getValue()) {
+            logIncompleteRecord();
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private Table getTable(int tableId) {
+
+        Table table = (Table) tables.get(tableId);
+
+        if (table == null) {
+            throw Error.error(ErrorCode.ERROR_IN_LOG_FILE);
+        }
+
+        return table;
+    }
+
+    private void logIncompleteRecord() {
+        database.logger.logWarningEvent("incomplete log record ignored - "
+                                        + fileNamePath + " record: "
+                                        + lineCount, null);
+    }
+
+    public void close() {
+
+        try {
+            if (dataInput != null) {
+                dataInput.close();
+            }
+        } catch (Exception e) {}
+
+        try {
+            if (inputStream != null) {
+                inputStream.close();
+            }
+        } catch (Exception e) {}
+    }
+}
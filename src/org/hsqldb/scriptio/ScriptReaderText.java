@@ -60,7 +60,7 @@ import org.hsqldb.types.Type;
  * corresponds to ScriptWriterText.
  *
  * @author Fred Toussi (fredt@users dot sourceforge.net)
- *  @version 2.5.0
+ *  @version 2.5.1
  *  @since 1.7.2
  */
 public class ScriptReaderText extends ScriptReaderBase {
@@ -114,6 +114,13 @@ public class ScriptReaderText extends ScriptReaderBase {
 
         readDDL(session);
 
+        if (database.recoveryMode == 0
+                && !database.databaseProperties.isVersion18()) {
+            readExistingDataParallel(session);
+
+            return;
+        }
+
         inserter = new RowInsertSimple(session, errorLogger, insertErrorMode);
 
         readExistingData(session);
@@ -242,23 +249,81 @@ public class ScriptReaderText extends ScriptReaderBase {
         }
     }
 
-    public boolean readLoggedStatement(Session session) {
+    /**
+     * Reads the data of the tables when the database is opened. Each line is
+     * parsed and inserted by a ScriptDataLoader worker for the table, while
+     * this thread reads the next lines.
+     */
+    void readExistingDataParallel(Session session) {
 
-        if (!sessionChanged) {
-            try {
-                rawStatement = dataStreamIn.readLine();
-            } catch (EOFException e) {
-                return false;
-            } catch (IOException e) {
-                throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        ScriptDataLoader loader    = new ScriptDataLoader(database, this);
+        String           tablename = null;
+
+        try {
+            for (;;) {
+                if (isInsert) {
+                    isInsert = false;
+                } else if (!readStatementLine()) {
+                    break;
+                }
+
+                rowIn.setSource(session, statement);
+
+                switch (rowIn.getStatementType()) {
+
+                    case StatementLineTypes.SET_SCHEMA_STATEMENT : {
+                        currentSchema = rowIn.getSchemaName();
+
+                        session.setSchema(currentSchema);
+
+                        tablename = null;
+
+                        break;
+                    }
+                    case StatementLineTypes.INSERT_STATEMENT : {
+                        if (!rowIn.getTableName().equals(tablename)) {
+                            tablename = rowIn.getTableName();
+
+                            String schema =
+                                session.getSchemaName(currentSchema);
+
+                            currentTable =
+                                database.schemaManager.getUserTable(tablename,
+                                    schema);
+                            currentStore =
+                                database.persistentStoreCollection.getStore(
+                                    currentTable);
+
+                            loader.startTable(currentTable, currentStore,
+                                              lineCount);
+                        }
+
+                        loader.addLine(statement);
+
+                        break;
+                    }
+                    default : {
+                        throw Error.error(ErrorCode.GENERAL_ERROR, statement);
+                    }
+                }
             }
 
-            lineCount++;
+            loader.finish();
+        } catch (Throwable t) {
+            loader.close();
 
-            //        System.out.println(lineCount);
-            statement = StringConverter.unicodeStringToString(rawStatement);
+            // an error in a worker is for an earlier line
+            HsqlException e = loader.error == null ? getError(t, lineCount)
+                                                   : loader.error;
 
-            if (statement == null) {
+            handleError(e);
+        }
+    }
+
+    public boolean readLoggedStatement(Session session) {
+
+        if (!sessionChanged) {
+            if (!readStatementLine()) {
                 return false;
             }
         }
@@ -268,6 +333,27 @@ public class ScriptReaderText extends ScriptReaderBase {
         return true;
     }
 
+    /**
+     * Reads the next line into statement without processing it.
+     */
+    boolean readStatementLine() {
+
+        try {
+            rawStatement = dataStreamIn.readLine();
+        } catch (EOFException e) {
+            return false;
+        } catch (IOException e) {
+            throw Error.error(e, ErrorCode.FILE_IO_ERROR, null);
+        }
+
+        lineCount++;
+
+        //        System.out.println(lineCount);
+        statement = StringConverter.unicodeStringToString(rawStatement);
+
+        return statement != null;
+    }
+
     void processStatement(Session session) {
 
         if (statement.startsWith("/*C")) {
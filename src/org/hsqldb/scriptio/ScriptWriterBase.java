@@ -116,6 +116,11 @@ public abstract class ScriptWriterBase implements Runnable {
     long             lineCount;
     volatile boolean needsSync;
     private int      syncCount;
+
+    // group commit
+    private final Object syncLock = new Object();
+    private volatile long syncPosition;
+    private boolean       syncInProgress;
     static final int INSERT             = 0;
     static final int INSERT_WITH_SCHEMA = 1;
 
@@ -213,10 +218,14 @@ public abstract class ScriptWriterBase implements Runnable {
 
         synchronized (fileStreamOut) {
             try {
+                long position = byteCount;
+
                 fileStreamOut.flush();
                 outDescriptor.sync();
 
                 syncCount++;
+
+                syncPosition = position;
 /*
                 System.out.println(
                     this.outFile + " FD.sync done at "
@@ -229,6 +238,105 @@ public abstract class ScriptWriterBase implements Runnable {
         }
     }
 
+    /**
+     * Used for group commit. Returns when the file has been synced at least
+     * up to the given position. The first thread to arrive flushes and syncs
+     * everything written so far, while it holds the file open for further
+     * writes. Threads that arrive during the sync wait and one of them
+     * then syncs all the records that were written in the meantime with a
+     * single call.
+     */
+    public void syncTo(long position) {
+
+        boolean interrupted = false;
+
+        synchronized (syncLock) {
+            while (true) {
+                if (isClosed || syncPosition >= position) {
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+
+                    return;
+                }
+
+                if (!syncInProgress) {
+                    syncInProgress = true;
+
+                    break;
+                }
+
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        try {
+            syncGroup();
+        } finally {
+            synchronized (syncLock) {
+                syncInProgress = false;
+
+                syncLock.notifyAll();
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Flushes the buffer while holding the stream, then syncs the file
+     * without holding it, so other sessions can write while the sync is in
+     * progress.
+     */
+    private void syncGroup() {
+
+        long                position;
+        FileAccess.FileSync descriptor;
+
+        synchronized (fileStreamOut) {
+            if (isClosed) {
+                return;
+            }
+
+            position   = byteCount;
+            descriptor = outDescriptor;
+
+            try {
+                fileStreamOut.flush();
+            } catch (IOException e) {
+                database.logger.logWarningEvent("ScriptWriter synch error: ",
+                                                e);
+
+                return;
+            }
+        }
+
+        try {
+            descriptor.sync();
+
+            syncCount++;
+        } catch (IOException e) {
+
+            // close() syncs the file before closing it
+            if (!isClosed) {
+                database.logger.logWarningEvent("ScriptWriter synch error: ",
+                                                e);
+            }
+        }
+
+        synchronized (fileStreamOut) {
+            if (position > syncPosition) {
+                syncPosition = position;
+            }
+        }
+    }
+
     public void close() {
 
         stop();
@@ -0,0 +1,257 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+
+
+package org.hsqldb.scriptio;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+import org.hsqldb.Database;
+import org.hsqldb.NumberSequence;
+import org.hsqldb.Row;
+import org.hsqldb.Session;
+import org.hsqldb.Table;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.IntValueHashMap;
+import org.hsqldb.rowio.RowOutputBinary;
+
+/**
+ * Writes the .log file in binary format.<p>
+ *
+ * The file starts with a header consisting of LOG_MAGIC and LOG_VERSION.
+ * Each record consists of the length of the record, the record type, the
+ * session id and the record data, followed by a CRC32 checksum of the type,
+ * session id and data. The row data of INSERT and DELETE records is written
+ * with RowOutputBinary, the same as rows of cached tables.<p>
+ *
+ * A table is identified in the row records by an id. The first record for
+ * each table defines the id with the schema and table name. The ids are
+ * defined again after each logged statement, as the statement may change
+ * or drop the table.<p>
+ *
+ * ScriptReaderBinaryLog reads the records written by this class.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class ScriptWriterBinaryLog extends ScriptWriterBase {
+
+    public static final int LOG_MAGIC   = 0x48534C47;    // HSLG
+    public static final int LOG_VERSION = 1;
+
+    // record types in addition to StatementLineTypes
+    static final int TABLE_RECORD    = 16;
+    static final int SEQUENCE_RECORD = 17;
+
+    // length, type and session id
+    static final int RECORD_HEADER_SIZE = 9;
+
+    //
+    RowOutputBinary rowOut;
+    CRC32           crc      = new CRC32();
+    IntValueHashMap tableIds = new IntValueHashMap();
+    int             tableIdCount;
+
+    public ScriptWriterBinaryLog(Database db, String file,
+                                 boolean writeHeader) {
+
+        super(db, file, false, false, false);
+
+        if (writeHeader) {
+            rowOut.reset();
+            rowOut.writeInt(LOG_MAGIC);
+            rowOut.writeInt(LOG_VERSION);
+            writeRowOutToFile();
+        }
+    }
+
+    protected void initBuffers() {
+        rowOut = new RowOutputBinary(256, 1);
+    }
+
+    protected void writeDataTerm() {}
+
+    protected void writeSessionIdAndSchema(Session session) {
+
+        if (session == null) {
+            return;
+        }
+
+        if (schemaToLog != session.loggedSchema) {
+            startRecord(StatementLineTypes.SET_SCHEMA_STATEMENT, session);
+            rowOut.writeString(schemaToLog.name);
+            endRecord();
+
+            session.loggedSchema = schemaToLog;
+        }
+    }
+
+    public void writeLogStatement(Session session, String s) {
+
+        if (session != null) {
+            schemaToLog = session.currentSchema;
+
+            writeSessionIdAndSchema(session);
+        }
+
+        // the statement may alter or drop a table
+        tableIds.clear();
+
+        startRecord(StatementLineTypes.ANY_STATEMENT, session);
+        rowOut.writeString(s);
+        endRecord();
+
+        needsSync = true;
+    }
+
+    public void writeRow(Session session, Row row, Table table) {
+
+        int tableId = getTableId(session, table);
+
+        startRecord(StatementLineTypes.INSERT_STATEMENT, session);
+        rowOut.writeInt(tableId);
+        rowOut.writeData(row, table.getColumnTypes());
+        endRecord();
+    }
+
+    public void writeOtherStatement(Session session, String s) {
+
+        writeLogStatement(session, s);
+
+        if (writeDelay == 0) {
+            sync();
+        }
+    }
+
+    public void writeInsertStatement(Session session, Row row, Table table) {
+        writeRow(session, row, table);
+    }
+
+    public void writeDeleteStatement(Session session, Table table,
+                                     Object[] data) {
+
+        int tableId = getTableId(session, table);
+
+        startRecord(StatementLineTypes.DELETE_STATEMENT, session);
+        rowOut.writeInt(tableId);
+        rowOut.writeData(table.getColumnCount(), table.getColumnTypes(), data,
+                         null, table.getPrimaryKey());
+        endRecord();
+    }
+
+    public void writeSequenceStatement(Session session, NumberSequence seq) {
+
+        StringBuilder sb = new StringBuilder(64);
+
+        sb.append("ALTER SEQUENCE ");
+        sb.append(seq.getSchemaName().statementName);
+        sb.append('.').append(seq.getName().statementName);
+        sb.append(" RESTART WITH ").append(seq.peek());
+        startRecord(SEQUENCE_RECORD, session);
+        rowOut.writeString(sb.toString());
+        endRecord();
+
+        needsSync = true;
+    }
+
+    public void writeCommitStatement(Session session) {
+
+        startRecord(StatementLineTypes.COMMIT_STATEMENT, session);
+        endRecord();
+
+        needsSync = true;
+
+        // with write delay 0, the session calls syncTo() after commit
+    }
+
+    private int getTableId(Session session, Table table) {
+
+        int tableId = tableIds.get(table, -1);
+
+        if (tableId == -1) {
+            tableId = tableIdCount++;
+
+            tableIds.put(table, tableId);
+            startRecord(TABLE_RECORD, session);
+            rowOut.writeInt(tableId);
+            rowOut.writeString(table.getSchemaName().name);
+            rowOut.writeString(table.getName().name);
+            endRecord();
+        }
+
+        return tableId;
+    }
+
+    private void startRecord(int type, Session session) {
+
+        rowOut.reset();
+
+        // length is set in endRecord()
+        rowOut.writeInt(0);
+        rowOut.writeByte(type);
+        rowOut.writeInt(session == null ? 0
+                                        : (int) session.getId());
+    }
+
+    private void endRecord() {
+
+        int length = rowOut.size() - RowOutputBinary.INT_STORE_SIZE;
+
+        rowOut.writeIntData(length, 0);
+        crc.reset();
+        crc.update(rowOut.getBuffer(), RowOutputBinary.INT_STORE_SIZE,
+                   length);
+        rowOut.writeInt((int) crc.getValue());
+        writeRowOutToFile();
+    }
+
+    void writeRowOutToFile() {
+
+        if (fileStreamOut == null) {
+            return;
+        }
+
+        synchronized (fileStreamOut) {
+            try {
+                fileStreamOut.write(rowOut.getBuffer(), 0, rowOut.size());
+
+                byteCount += rowOut.size();
+
+                lineCount++;
+            } catch (IOException io) {
+                throw Error.error(ErrorCode.FILE_IO_ERROR, outFile);
+            }
+        }
+    }
+}
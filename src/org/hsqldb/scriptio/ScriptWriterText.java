@@ -276,9 +276,7 @@ public class ScriptWriterText extends ScriptWriterBase {
 
         needsSync = true;
 
-        if (writeDelay == 0) {
-            sync();
-        }
+        // with write delay 0, the session calls syncTo() after commit
     }
 
     protected void finishStream() {
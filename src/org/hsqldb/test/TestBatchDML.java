@@ -0,0 +1,258 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests batches of prepared INSERT, UPDATE and DELETE statements, which are
+ * executed as a single action with the locks taken once.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestBatchDML extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testbatchdml/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testbatchdml/test;hsqldb.tx_row_locks=true";
+    static final int    rowCount = 1000;
+
+    Connection conn;
+    Statement  stmt;
+
+    public TestBatchDML(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("SET FILES WRITE DELAY 0");
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " P INT, FOREIGN KEY (P) REFERENCES T (ID))");
+        stmt.execute("CREATE TABLE L (ID INT GENERATED BY DEFAULT AS"
+                     + " IDENTITY PRIMARY KEY, N INT)");
+        stmt.execute("CREATE TRIGGER T_INSERT AFTER INSERT ON T FOR EACH ROW"
+                     + " INSERT INTO L (N) VALUES (1)");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (Exception e) {}
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testInsertUpdateDelete() throws Exception {
+
+        int[] counts = insertRows(0, rowCount);
+
+        assertEquals(rowCount, counts.length);
+
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(1, counts[i]);
+        }
+
+        assertEquals(rowCount + "," + rowCount, getString(
+            "SELECT COUNT(*), (SELECT COUNT(*) FROM L) FROM T"));
+
+        // later rows see the changes made by earlier rows
+        PreparedStatement ps =
+            conn.prepareStatement("UPDATE T SET V = V + 1 WHERE ID = ?");
+
+        ps.setInt(1, 10);
+        ps.addBatch();
+        ps.setInt(1, 10);
+        ps.addBatch();
+        ps.setInt(1, -1);
+        ps.addBatch();
+
+        counts = ps.executeBatch();
+
+        assertEquals(3, counts.length);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(0, counts[2]);
+        assertEquals("12", getString("SELECT V FROM T WHERE ID = 10"));
+
+        ps = conn.prepareStatement("DELETE FROM T WHERE ID = ?");
+
+        for (int i = rowCount - 1; i >= rowCount / 2; i--) {
+            ps.setInt(1, i);
+            ps.addBatch();
+        }
+
+        counts = ps.executeBatch();
+
+        assertEquals(rowCount / 2, counts.length);
+        assertEquals(rowCount / 2 + "," + (rowCount / 2 - 1),
+                     getString("SELECT COUNT(*), MAX(ID) FROM T"));
+
+        // the committed rows are recovered from the log
+        stmt.execute("SHUTDOWN IMMEDIATELY");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals(rowCount / 2 + "," + (rowCount / 2 - 1) + ",12",
+                     getString("SELECT COUNT(*), MAX(ID),"
+                               + " (SELECT V FROM T WHERE ID = 10) FROM T"));
+    }
+
+    public void testGeneratedKeys() throws Exception {
+
+        PreparedStatement ps = conn.prepareStatement(
+            "INSERT INTO L (N) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+
+        for (int i = 0; i < 10; i++) {
+            ps.setInt(1, i);
+            ps.addBatch();
+        }
+
+        ps.executeBatch();
+
+        ResultSet rs    = ps.getGeneratedKeys();
+        int       count = 0;
+
+        while (rs.next()) {
+            assertEquals(count, rs.getInt(1));
+
+            count++;
+        }
+
+        assertEquals(10, count);
+    }
+
+    public void testFailureAutoCommit() throws Exception {
+
+        insertRows(0, 10);
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO T VALUES (?, ?, ?)");
+
+        for (int i = 10; i < 20; i++) {
+            ps.setInt(1, i == 15 ? 5
+                                 : i);
+            ps.setInt(2, i);
+            ps.setInt(3, i - 1);
+            ps.addBatch();
+        }
+
+        try {
+            ps.executeBatch();
+            fail("duplicate key");
+        } catch (BatchUpdateException e) {
+            assertEquals(5, e.getUpdateCounts().length);
+        }
+
+        // the rows before the failed row are committed
+        conn.rollback();
+        assertEquals("15,14,15",
+                     getString("SELECT COUNT(*), MAX(ID),"
+                               + " (SELECT COUNT(*) FROM L) FROM T"));
+    }
+
+    public void testFailure() throws Exception {
+
+        conn.setAutoCommit(false);
+        insertRows(0, 10);
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO T VALUES (?, ?, ?)");
+
+        for (int i = 10; i < 20; i++) {
+            ps.setInt(1, i);
+            ps.setInt(2, i);
+
+            // the parent row does not exist
+            ps.setInt(3, i == 13 ? 100
+                                 : i - 1);
+            ps.addBatch();
+        }
+
+        try {
+            ps.executeBatch();
+            fail("foreign key");
+        } catch (BatchUpdateException e) {
+            assertEquals(3, e.getUpdateCounts().length);
+        }
+
+        assertEquals("13,13", getString(
+            "SELECT COUNT(*), (SELECT COUNT(*) FROM L) FROM T"));
+        conn.rollback();
+        assertEquals("0,0", getString(
+            "SELECT COUNT(*), (SELECT COUNT(*) FROM L) FROM T"));
+        conn.setAutoCommit(true);
+    }
+
+    /**
+     * Inserts rows that reference the row inserted before them.
+     */
+    int[] insertRows(int start, int end) throws Exception {
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO T VALUES (?, ?, ?)");
+
+        for (int i = start; i < end; i++) {
+            ps.setInt(1, i);
+            ps.setInt(2, i);
+
+            if (i == 0) {
+                ps.setNull(3, java.sql.Types.INTEGER);
+            } else {
+                ps.setInt(3, i - 1);
+            }
+
+            ps.addBatch();
+        }
+
+        return ps.executeBatch();
+    }
+
+    String getString(String sql) throws Exception {
+        return TestBinaryLog.getString(stmt, sql);
+    }
+}
@@ -0,0 +1,227 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests the binary format of the .log file. The database is closed with
+ * SHUTDOWN IMMEDIATELY so that it is opened again from the .log file,
+ * which is damaged in some of the tests.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestBinaryLog extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testbinarylog/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testbinarylog/test;hsqldb.log_format=1";
+    static final int    rowCount = 100;
+
+    // the results are compared before and after the .log file is replayed
+    static final String[] queries = new String[] {
+        "SELECT COUNT(*), COUNT(V), SUM(D), SUM(E), MAX(V) FROM M",
+        "SELECT COUNT(*), COUNT(DISTINCT V), SUM(ID), MIN(ID) FROM C",
+        "SELECT COUNT(*) FROM C WHERE ID = 1",
+    };
+
+    public TestBinaryLog(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testReplay() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        assertEquals("binary", TestCacheSegments.getProperty(stmt,
+                "hsqldb.log_format"));
+        stmt.execute("SET FILES WRITE DELAY 0");
+        stmt.execute("CREATE MEMORY TABLE M (ID INT PRIMARY KEY,"
+                     + " V VARCHAR(20), D DECIMAL(10, 2))");
+        stmt.execute("CREATE CACHED TABLE C (ID INT, V VARCHAR(20))");
+        stmt.execute("INSERT INTO M SELECT C1, 'm' || C1, C1 / 4.0 FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, 1000, 1))");
+        stmt.execute("INSERT INTO C SELECT C1, 'c' || C1 FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, 1000, 1))");
+        stmt.execute("UPDATE M SET V = NULL WHERE MOD(ID, 3) = 0");
+        stmt.execute("DELETE FROM C WHERE MOD(ID, 4) = 0");
+        stmt.execute("ALTER TABLE M ADD COLUMN E INT DEFAULT 7");
+        stmt.execute("UPDATE M SET E = ID WHERE ID > 900");
+        stmt.execute("INSERT INTO C VALUES (1, 'c1')");
+        stmt.execute("DELETE FROM C WHERE ID = 2");
+
+        String[] expected = new String[queries.length];
+
+        for (int i = 0; i < queries.length; i++) {
+            expected[i] = getString(stmt, queries[i]);
+        }
+
+        stmt.execute("SHUTDOWN IMMEDIATELY");
+        assertTrue(new File(filepath + "test.log").length() > 0);
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals(expected[i], getString(stmt, queries[i]));
+        }
+
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * A record that fails its checksum ends the replay. The transactions
+     * before it are recovered.
+     */
+    public void testCorruptedRecord() throws Exception {
+
+        File file = writeLog();
+        long pos  = file.length() / 2;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+        raf.seek(pos);
+
+        int b = raf.read();
+
+        raf.seek(pos);
+        raf.write(b ^ 0x5a);
+        raf.close();
+        checkRecoveredPrefix();
+    }
+
+    /**
+     * A record that was only partly written ends the replay.
+     */
+    public void testTruncatedRecord() throws Exception {
+
+        File             file = writeLog();
+        RandomAccessFile raf  = new RandomAccessFile(file, "rw");
+
+        raf.setLength(file.length() * 9 / 10);
+        raf.close();
+        checkRecoveredPrefix();
+    }
+
+    /**
+     * Commits one row per transaction and returns the .log file.
+     */
+    File writeLog() throws SQLException {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("SET FILES WRITE DELAY 0");
+        stmt.execute("CREATE TABLE T (ID INT PRIMARY KEY, V VARCHAR(20))");
+        stmt.execute("CHECKPOINT");
+
+        for (int i = 1; i <= rowCount; i++) {
+            stmt.execute("INSERT INTO T VALUES (" + i + ", 'v" + i + "')");
+        }
+
+        stmt.execute("SHUTDOWN IMMEDIATELY");
+
+        return new File(filepath + "test.log");
+    }
+
+    /**
+     * Checks that the database opens with the rows of the transactions
+     * before the damaged record only.
+     */
+    void checkRecoveredPrefix() throws SQLException {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+        ResultSet  rs   = stmt.executeQuery(
+            "SELECT COUNT(*), MAX(ID), COUNT(DISTINCT V) FROM T");
+
+        rs.next();
+
+        int count = rs.getInt(1);
+        assertTrue(count > 0);
+        assertTrue(count < rowCount);
+        assertEquals(count, rs.getInt(2));
+        assertEquals(count, rs.getInt(3));
+        rs.close();
+
+        // the database can be changed and opened again
+        stmt.execute("INSERT INTO T VALUES (" + (rowCount + 1) + ", 'x')");
+        stmt.execute("SHUTDOWN IMMEDIATELY");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals(String.valueOf(count + 1),
+                     getString(stmt, "SELECT COUNT(*) FROM T"));
+        stmt.execute("SHUTDOWN");
+    }
+
+    static String getString(Statement stmt,
+                            String sql) throws SQLException {
+
+        ResultSet     rs = stmt.executeQuery(sql);
+        StringBuilder sb = new StringBuilder();
+
+        rs.next();
+
+        for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+
+            sb.append(rs.getString(i));
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
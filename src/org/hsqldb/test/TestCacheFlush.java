@@ -0,0 +1,168 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests the background writing of changed rows of CACHED tables. The rows
+ * written are detected in the .data file, which is extended with zeros
+ * when rows are inserted and written only when rows are saved.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestCacheFlush extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testflush/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testflush/test";
+    static final int    rowCount = 10000;
+
+    public TestCacheFlush(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testNoFlush() throws Exception {
+        assertEquals(0, insertAndCount(0));
+    }
+
+    public void testFlush() throws Exception {
+        assertTrue(insertAndCount(100000) > 0);
+    }
+
+    public void testRateIsPersisted() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("SET FILES CACHE FLUSH 5000");
+        stmt.execute("SHUTDOWN");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals("5000",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.cache_flush_rate"));
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * Inserts rows that fit in the cache, then returns the number of bytes
+     * of rows in the .data file after the flusher has had time to run.
+     */
+    int insertAndCount(int rate) throws Exception {
+
+        Connection conn = DriverManager.getConnection(url
+            + ";hsqldb.cache_flush_rate=" + rate, user, password);
+        Statement stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " PAD VARCHAR(200))");
+        stmt.execute("CHECKPOINT");
+
+        int start = getDataFileLength();
+
+        stmt.execute("INSERT INTO T SELECT C1, 0, REPEAT('x', 200) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+
+        int count = 0;
+
+        for (int i = 0; i < 20 && count == 0; i++) {
+            Thread.sleep(100);
+
+            count = countWrittenBytes(start);
+        }
+
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(rowCount, rs.getInt(1));
+        stmt.execute("SHUTDOWN");
+
+        return count;
+    }
+
+    int getDataFileLength() {
+        return (int) new File(filepath + "test.data").length();
+    }
+
+    int countWrittenBytes(int start) throws IOException {
+
+        InputStream in    = new FileInputStream(filepath + "test.data");
+        byte[]      bytes = new byte[4096];
+        int         count = 0;
+        int         pos   = 0;
+
+        try {
+            while (true) {
+                int length = in.read(bytes);
+
+                if (length < 0) {
+                    break;
+                }
+
+                for (int i = 0; i < length; i++) {
+                    if (pos + i >= start && bytes[i] != 0) {
+                        count++;
+                    }
+                }
+
+                pos += length;
+            }
+        } finally {
+            in.close();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,170 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests the cache eviction policies. The rows that are not found in the
+ * memory cache are counted with the off-heap tier, which is looked up for
+ * each of them.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestCachePolicy extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testpolicy/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testpolicy/test";
+    static final String properties =
+        ";hsqldb.cache_rows=4096;hsqldb.cache_size=100000"
+        + ";hsqldb.cache_offheap_size=65536";
+    static final int rowCount = 40000;
+    static final int hotCount = 200;
+
+    public TestCachePolicy(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void tearDown() {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    /**
+     * A frequently used set of rows stays in the cache after a scan of the
+     * whole table with SLRU, but not with LRU.
+     */
+    public void testScanResistance() throws Exception {
+
+        long lruMisses  = getMissesAfterScan("LRU");
+        long slruMisses = getMissesAfterScan("SLRU");
+
+        assertTrue("LRU " + lruMisses + " SLRU " + slruMisses,
+                   slruMisses * 4 < lruMisses);
+    }
+
+    public void testPolicyIsPersisted() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+
+        Connection conn = DriverManager.getConnection(url + properties,
+            user, password);
+        Statement stmt = conn.createStatement();
+
+        assertEquals("LRU", TestCacheSegments.getProperty(stmt,
+                "hsqldb.cache_policy"));
+        stmt.execute("SET FILES CACHE POLICY SLRU");
+        stmt.execute("SHUTDOWN");
+
+        conn = DriverManager.getConnection(url, user, password);
+        stmt = conn.createStatement();
+
+        assertEquals("SLRU", TestCacheSegments.getProperty(stmt,
+                "hsqldb.cache_policy"));
+        stmt.execute("SHUTDOWN");
+    }
+
+    long getMissesAfterScan(String policy) throws SQLException {
+
+        TestUtil.deleteDatabase(filepath + "test");
+
+        Connection conn = DriverManager.getConnection(url + properties
+            + ";hsqldb.cache_policy=" + policy, user, password);
+        Statement stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " PAD VARCHAR(200))");
+        stmt.execute("INSERT INTO T SELECT C1, 0, REPEAT('x', 200) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+        stmt.execute("CHECKPOINT");
+
+        PreparedStatement ps =
+            conn.prepareStatement("SELECT V FROM T WHERE ID = ?");
+
+        for (int i = 0; i < 10; i++) {
+            readHotRows(ps);
+        }
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT COUNT(*) FROM T WHERE PAD <> 'y'");
+
+        rs.next();
+        assertEquals(rowCount, rs.getInt(1));
+        rs.close();
+
+        long misses = getMisses(stmt);
+
+        readHotRows(ps);
+
+        misses = getMisses(stmt) - misses;
+
+        stmt.execute("SHUTDOWN");
+
+        return misses;
+    }
+
+    static void readHotRows(PreparedStatement ps) throws SQLException {
+
+        for (int i = 1; i <= hotCount; i++) {
+            ps.setInt(1, i * (rowCount / hotCount - 9));
+
+            ResultSet rs = ps.executeQuery();
+
+            assertTrue(rs.next());
+            rs.close();
+        }
+    }
+
+    static long getMisses(Statement stmt) throws SQLException {
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT SUM(OFFHEAP_HITS + OFFHEAP_MISSES)"
+            + " FROM INFORMATION_SCHEMA.SYSTEM_CACHEINFO");
+
+        rs.next();
+
+        long count = rs.getLong(1);
+
+        rs.close();
+
+        return count;
+    }
+}
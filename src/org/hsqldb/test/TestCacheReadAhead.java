@@ -0,0 +1,164 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests range scans of a CACHED table that is larger than the cache with
+ * read-ahead, while rows that are in the read-ahead buffer are updated and
+ * written to the .data file.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestCacheReadAhead extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testreadahead/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testreadahead/test";
+    static final String properties =
+        ";hsqldb.cache_rows=4096;hsqldb.cache_size=300"
+        + ";hsqldb.cache_read_ahead=64";
+    static final int rowCount = 20000;
+
+    public TestCacheReadAhead(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testScansAfterUpdates() throws Exception {
+        runScans(properties);
+    }
+
+    public void testScansAfterUpdatesSegmented() throws Exception {
+        runScans(properties + ";hsqldb.cache_segments=4");
+    }
+
+    public void testSizeIsPersisted() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("SET FILES CACHE READ AHEAD 128");
+        stmt.execute("SHUTDOWN");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals("128",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.cache_read_ahead"));
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * Each round updates every seventh row, then checks all the rows with a
+     * scan of the table and with range scans of the primary key.
+     */
+    void runScans(String props) throws SQLException {
+
+        Connection conn = DriverManager.getConnection(url + props, user,
+            password);
+        Statement stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " PAD VARCHAR(200))");
+        stmt.execute("INSERT INTO T SELECT C1, 0, REPEAT('x', 200) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+        stmt.execute("CHECKPOINT");
+
+        for (int round = 0; round < 7; round++) {
+            stmt.execute("UPDATE T SET V = V + ID WHERE MOD(ID, 7) = "
+                         + round);
+
+            ResultSet rs = stmt.executeQuery("SELECT SUM(V) FROM T");
+
+            rs.next();
+            assertEquals(getSum(1, rowCount, round), rs.getLong(1));
+            rs.close();
+
+            for (int start = 1; start < rowCount; start += 3001) {
+                rs = stmt.executeQuery("SELECT ID, V FROM T WHERE ID >= "
+                                       + start + " AND ID < "
+                                       + (start + 1000) + " ORDER BY ID");
+
+                int id = start;
+
+                while (rs.next()) {
+                    assertEquals(id, rs.getInt(1));
+                    assertEquals(id % 7 <= round ? id
+                                                 : 0, rs.getInt(2));
+
+                    id++;
+                }
+
+                assertEquals(start + 1000, id);
+                rs.close();
+            }
+        }
+
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * Returns the sum of V for the rows between first and last after the
+     * given round.
+     */
+    static long getSum(int first, int last, int round) {
+
+        long sum = 0;
+
+        for (int id = first; id <= last; id++) {
+            if (id % 7 <= round) {
+                sum += id;
+            }
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,338 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.locks.Lock;
+
+import org.hsqldb.Session;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.hsqldb.persist.DataFileCache;
+
+/**
+ * Tests a CACHED table with a segmented row cache that is much smaller than
+ * the table, with sessions that read and update rows in parallel.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestCacheSegments extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testsegments/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testsegments/test;hsqldb.cache_segments=4"
+                              + ";hsqldb.cache_rows=4096"
+                              + ";hsqldb.cache_size=1000";
+    static final int rowCount    = 20000;
+    static final int threadCount = 4;
+    static final int updateCount = 5000;
+
+    volatile Throwable failure;
+
+    public TestCacheSegments(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " PAD VARCHAR(200))");
+        stmt.execute("INSERT INTO T SELECT C1, 0, REPEAT('x', 200) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+        conn.close();
+    }
+
+    protected void tearDown() {
+
+        try {
+            newConnection().createStatement().execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testSegmentCount() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        assertEquals("4", getProperty(stmt, "hsqldb.cache_segments"));
+        stmt.execute("SET FILES CACHE SEGMENTS 8");
+        stmt.execute("SHUTDOWN");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals("8", getProperty(stmt, "hsqldb.cache_segments"));
+        assertEquals(rowCount, getCount(stmt));
+        stmt.execute("SET FILES CACHE SEGMENTS 1");
+        conn.close();
+    }
+
+    /**
+     * Each thread updates the rows of its own share of the table, so that
+     * each row is updated a known number of times.
+     */
+    public void testParallelUpdates() throws Exception {
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Updater(i);
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+
+        if (failure != null) {
+            failure.printStackTrace();
+        }
+
+        assertNull(failure);
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        assertEquals(threadCount * updateCount, getSum(stmt));
+        assertEquals(rowCount, getCount(stmt));
+        stmt.execute("SHUTDOWN");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals(threadCount * updateCount, getSum(stmt));
+        assertEquals(rowCount, getCount(stmt));
+        conn.close();
+    }
+
+    /**
+     * Rows that are not in the cache are read from the file without the
+     * lock that serializes the writes to the file. While the test thread
+     * holds that lock, several threads read the whole table from a cold
+     * cache in parallel.
+     */
+    public void testParallelMisses() throws Exception {
+
+        Connection conn = newConnection();
+
+        conn.createStatement().execute("SHUTDOWN");
+
+        conn = newConnection();
+
+        Session session = (Session) ((JDBCConnection) conn).getSession();
+        DataFileCache cache    = session.getDatabase().logger.getCache();
+        java.lang.reflect.Field field =
+            DataFileCache.class.getDeclaredField("fileLock");
+
+        field.setAccessible(true);
+
+        Lock     fileLock = (Lock) field.get(cache);
+        Reader[] threads  = new Reader[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Reader(i);
+        }
+
+        fileLock.lock();
+
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                threads[i].start();
+            }
+
+            for (int i = 0; i < threadCount; i++) {
+                threads[i].join(30000);
+                assertFalse(threads[i].isAlive());
+            }
+        } finally {
+            fileLock.unlock();
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+
+        if (failure != null) {
+            failure.printStackTrace();
+        }
+
+        assertNull(failure);
+
+        for (int i = 0; i < threadCount; i++) {
+            assertEquals(rowCount / threadCount, threads[i].count);
+        }
+
+        conn.close();
+    }
+
+    static String getProperty(Statement stmt,
+                              String name) throws SQLException {
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT PROPERTY_VALUE FROM INFORMATION_SCHEMA.SYSTEM_PROPERTIES"
+            + " WHERE PROPERTY_NAME = '" + name + "'");
+
+        rs.next();
+
+        String value = rs.getString(1);
+
+        rs.close();
+
+        return value;
+    }
+
+    static int getSum(Statement stmt) throws SQLException {
+
+        ResultSet rs = stmt.executeQuery("SELECT SUM(V) FROM T");
+
+        rs.next();
+
+        int sum = rs.getInt(1);
+
+        rs.close();
+
+        return sum;
+    }
+
+    static int getCount(Statement stmt) throws SQLException {
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT COUNT(*) FROM T WHERE PAD = REPEAT('x', 200)");
+
+        rs.next();
+
+        int count = rs.getInt(1);
+
+        rs.close();
+
+        return count;
+    }
+
+    class Updater extends Thread {
+
+        final int part;
+
+        Updater(int part) {
+            this.part = part;
+        }
+
+        public void run() {
+
+            try {
+                Connection conn = newConnection();
+                PreparedStatement update = conn.prepareStatement(
+                    "UPDATE T SET V = V + 1 WHERE ID = ?");
+                PreparedStatement select = conn.prepareStatement(
+                    "SELECT V FROM T WHERE ID = ?");
+                int random = part + 1;
+
+                for (int i = 0; i < updateCount; i++) {
+                    random = random * 1103515245 + 12345;
+
+                    int id = ((random >>> 8) % (rowCount / threadCount))
+                             * threadCount + part + 1;
+
+                    select.setInt(1, id);
+
+                    ResultSet rs = select.executeQuery();
+
+                    if (!rs.next()) {
+                        throw new RuntimeException("missing row " + id);
+                    }
+
+                    rs.close();
+                    update.setInt(1, id);
+
+                    if (update.executeUpdate() != 1) {
+                        throw new RuntimeException("row not updated " + id);
+                    }
+                }
+
+                conn.close();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+
+    class Reader extends Thread {
+
+        final int part;
+        int       count;
+
+        Reader(int part) {
+            this.part = part;
+        }
+
+        public void run() {
+
+            try {
+                Connection conn = newConnection();
+                PreparedStatement select = conn.prepareStatement(
+                    "SELECT COUNT(*) FROM T WHERE ID > ? AND ID <= ?"
+                    + " AND PAD = REPEAT('x', 200)");
+                int size = rowCount / threadCount;
+
+                select.setInt(1, part * size);
+                select.setInt(2, (part + 1) * size);
+
+                ResultSet rs = select.executeQuery();
+
+                rs.next();
+
+                count = rs.getInt(1);
+
+                rs.close();
+                conn.close();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+}
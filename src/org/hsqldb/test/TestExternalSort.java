@@ -0,0 +1,164 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests ORDER BY, DISTINCT and set operations with results larger than the
+ * result memory rows, which are sorted on disk. The results are compared
+ * with those of the same queries sorted in memory.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestExternalSort extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testexternalsort/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testexternalsort/test";
+    static final int    rowCount = 20000;
+    static final String[] queries = new String[] {
+        "SELECT * FROM T ORDER BY A, ID",
+        "SELECT ID, S FROM T ORDER BY S DESC, ID DESC",
+        "SELECT * FROM T ORDER BY N NULLS FIRST, ID",
+        "SELECT * FROM T WHERE A < 500 ORDER BY N DESC NULLS LAST, A, ID",
+        "SELECT DISTINCT A, N FROM T ORDER BY A, N",
+        "SELECT A FROM T UNION SELECT N FROM T ORDER BY 1",
+        "SELECT A, S FROM T EXCEPT SELECT A, S FROM T WHERE MOD(ID, 3) = 0"
+        + " ORDER BY 1, 2",
+        "SELECT A, S FROM T UNION ALL SELECT N, S FROM T ORDER BY 1, 2",
+        "SELECT * FROM T ORDER BY A, ID LIMIT 100 OFFSET 15000",
+    };
+
+    Connection conn;
+    Statement  stmt;
+
+    public TestExternalSort(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, A INT,"
+                     + " N INT, S VARCHAR(20))");
+        stmt.execute("INSERT INTO T SELECT C1, MOD(C1 * 7919, 1009),"
+                     + " CASE WHEN MOD(C1, 7) = 0 THEN NULL ELSE MOD(C1, 97)"
+                     + " END, 's' || MOD(C1 * 31, 2003) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testQueries() throws Exception {
+
+        String[] expected = new String[queries.length];
+
+        for (int i = 0; i < queries.length; i++) {
+            expected[i] = getResult(queries[i]);
+        }
+
+        stmt.execute("SET SESSION RESULT MEMORY ROWS 1000");
+
+        for (int i = 0; i < queries.length; i++) {
+            assertEquals(queries[i], expected[i], getResult(queries[i]));
+        }
+    }
+
+    /**
+     * Sorts more keys than are sorted in memory, so that sorted runs are
+     * written to the temp directory and merged.
+     */
+    public void testSortedRuns() throws Exception {
+
+        stmt.execute("SET SESSION RESULT MEMORY ROWS 1000");
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT C1, MOD(C1 * 7919, 300007) FROM"
+            + " UNNEST(SEQUENCE_ARRAY(1, 300000, 1)) ORDER BY 2 DESC, 1");
+        int  count = 0;
+        int  last  = Integer.MAX_VALUE;
+        long sum   = 0;
+
+        while (rs.next()) {
+            int value = rs.getInt(2);
+
+            assertTrue(value <= last);
+
+            last = value;
+            sum  += rs.getInt(1);
+
+            count++;
+        }
+
+        rs.close();
+        assertEquals(300000, count);
+        assertEquals(300000L * 300001 / 2, sum);
+    }
+
+    String getResult(String sql) throws SQLException {
+
+        ResultSet     rs      = stmt.executeQuery(sql);
+        StringBuilder sb      = new StringBuilder();
+        int           columns = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+
+            sb.append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,205 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests automatic fuzzy checkpoints of a CACHED table while other sessions
+ * keep updating rows. The small log size triggers several checkpoints
+ * during the updates. Every committed update must be recovered after
+ * SHUTDOWN IMMEDIATELY.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestFuzzyCheckpoint extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testfuzzycheckpoint/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testfuzzycheckpoint/test;"
+                              + "hsqldb.checkpoint_fuzzy=true;"
+                              + "hsqldb.log_size=1";
+    static final int    threadCount = 4;
+    static final int    rowCount    = 2000;
+    static final int    updateCount = 5000;
+
+    volatile Throwable failure;
+
+    public TestFuzzyCheckpoint(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testPropertyIsPersisted() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        assertEquals("true",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.checkpoint_fuzzy"));
+        stmt.execute("SET FILES CHECKPOINT FUZZY FALSE");
+        stmt.execute("SHUTDOWN");
+
+        conn = DriverManager.getConnection(TestDirectorySettings.fileBaseURL
+                                           + "testfuzzycheckpoint/test",
+                                           user, password);
+        stmt = conn.createStatement();
+
+        assertEquals("false",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.checkpoint_fuzzy"));
+        stmt.execute("SET FILES CHECKPOINT FUZZY TRUE");
+        stmt.execute("SHUTDOWN");
+
+        conn = DriverManager.getConnection(TestDirectorySettings.fileBaseURL
+                                           + "testfuzzycheckpoint/test",
+                                           user, password);
+        stmt = conn.createStatement();
+
+        assertEquals("true",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.checkpoint_fuzzy"));
+        stmt.execute("SHUTDOWN");
+    }
+
+    public void testUpdatesAreRecovered() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " PAD VARCHAR(200))");
+        stmt.execute("INSERT INTO T SELECT C1, 0, REPEAT('x', 200) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(0, "
+                     + (threadCount * rowCount - 1) + ", 1))");
+        stmt.execute("CHECKPOINT");
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Updater(i);
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+
+        if (failure != null) {
+            failure.printStackTrace();
+        }
+
+        assertNull(failure);
+
+        // the log has been reset by the automatic checkpoints
+        assertTrue(new File(filepath + "test.log").length()
+                   < 3 * 1024 * 1024);
+        checkUpdates(stmt);
+        stmt.execute("SHUTDOWN IMMEDIATELY");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        checkUpdates(stmt);
+        stmt.execute("SHUTDOWN");
+    }
+
+    void checkUpdates(Statement stmt) throws Exception {
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT ID / " + rowCount + ", SUM(V), COUNT(*) FROM T"
+            + " GROUP BY ID / " + rowCount);
+        int groups = 0;
+
+        while (rs.next()) {
+            assertEquals(updateCount, rs.getInt(2));
+            assertEquals(rowCount, rs.getInt(3));
+
+            groups++;
+        }
+
+        rs.close();
+        assertEquals(threadCount, groups);
+    }
+
+    /**
+     * Each thread updates the rows in its own range of ids.
+     */
+    class Updater extends Thread {
+
+        final int thread;
+
+        Updater(int thread) {
+            this.thread = thread;
+        }
+
+        public void run() {
+
+            try {
+                Connection conn = newConnection();
+                PreparedStatement update = conn.prepareStatement(
+                    "UPDATE T SET V = V + 1 WHERE ID = ?");
+
+                for (int i = 0; i < updateCount; i++) {
+                    update.setInt(1, thread * rowCount
+                                  + (i * 7) % rowCount);
+                    update.executeUpdate();
+                }
+
+                conn.close();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Tests sessions that commit concurrently with WRITE DELAY 0, when the
+ * commits are synced together. Every committed transaction must be
+ * recovered from the .log file after SHUTDOWN IMMEDIATELY.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestGroupCommit extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testgroupcommit/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testgroupcommit/test;hsqldb.tx=mvcc";
+    static final int    threadCount = 8;
+    static final int    commitCount = 200;
+
+    volatile Throwable failure;
+
+    public TestGroupCommit(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testCommitsAreRecovered() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("SET FILES WRITE DELAY 0");
+        stmt.execute("CREATE TABLE T (ID INT PRIMARY KEY, THREAD INT)");
+        stmt.execute("CREATE TABLE C (THREAD INT PRIMARY KEY, N INT)");
+        stmt.execute("INSERT INTO C SELECT C1, 0 FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(0, " + (threadCount - 1)
+                     + ", 1))");
+        stmt.execute("CHECKPOINT");
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Committer(i);
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].start();
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+        }
+
+        if (failure != null) {
+            failure.printStackTrace();
+        }
+
+        assertNull(failure);
+        stmt.execute("SHUTDOWN IMMEDIATELY");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(threadCount * commitCount, rs.getInt(1));
+        rs.close();
+
+        rs = stmt.executeQuery(
+            "SELECT C.THREAD, C.N, (SELECT COUNT(*) FROM T"
+            + " WHERE T.THREAD = C.THREAD) FROM C");
+
+        while (rs.next()) {
+            assertEquals(commitCount, rs.getInt(2));
+            assertEquals(commitCount, rs.getInt(3));
+        }
+
+        rs.close();
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * Each transaction inserts a row and updates the count of the thread.
+     */
+    class Committer extends Thread {
+
+        final int thread;
+
+        Committer(int thread) {
+            this.thread = thread;
+        }
+
+        public void run() {
+
+            try {
+                Connection conn = newConnection();
+
+                conn.setAutoCommit(false);
+
+                PreparedStatement insert =
+                    conn.prepareStatement("INSERT INTO T VALUES (?, ?)");
+                PreparedStatement update = conn.prepareStatement(
+                    "UPDATE C SET N = N + 1 WHERE THREAD = ?");
+
+                for (int i = 0; i < commitCount; i++) {
+                    insert.setInt(1, thread * commitCount + i);
+                    insert.setInt(2, thread);
+                    insert.executeUpdate();
+                    update.setInt(1, thread);
+                    update.executeUpdate();
+                    conn.commit();
+                }
+
+                conn.close();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+}
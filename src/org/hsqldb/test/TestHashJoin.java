@@ -0,0 +1,198 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests joins on columns without an index, which use a hash join of the
+ * inner range, with the hash table held in memory or in a session table.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestHashJoin extends TestBase {
+
+    Connection conn;
+    Statement  stmt;
+
+    public TestHashJoin(String name) {
+        super(name, "jdbc:hsqldb:mem:hashjoin", false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("CREATE TABLE A (ID INT PRIMARY KEY, K INT,"
+                     + " S VARCHAR(10))");
+        stmt.execute("CREATE TABLE B (ID INT PRIMARY KEY, K INT,"
+                     + " S VARCHAR(10), D DECIMAL(10, 1))");
+        stmt.execute("INSERT INTO A SELECT C1, MOD(C1, 100), 'k' ||"
+                     + " MOD(C1, 7) FROM UNNEST(SEQUENCE_ARRAY(1, 1000, 1))");
+        stmt.execute("INSERT INTO B SELECT C1, MOD(C1, 50), 'k' ||"
+                     + " MOD(C1, 5) || ' ', MOD(C1, 50) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, 500, 1))");
+        stmt.execute("INSERT INTO A VALUES (1001, NULL, NULL)");
+        stmt.execute("INSERT INTO B VALUES (501, NULL, NULL, NULL)");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    public void testPlan() throws SQLException {
+
+        String plan = getPlan("SELECT * FROM A JOIN B ON A.K = B.K");
+
+        assertTrue(plan, plan.indexOf("access=HASH JOIN") >= 0);
+
+        plan = getPlan("SELECT * FROM A JOIN B ON A.ID = B.ID");
+
+        assertTrue(plan, plan.indexOf("access=HASH JOIN") < 0);
+    }
+
+    public void testInnerJoin() throws SQLException {
+        checkJoins();
+    }
+
+    /**
+     * The hash table is moved to a session table when it holds more rows
+     * than the result memory rows setting.
+     */
+    public void testInnerJoinInSessionTable() throws SQLException {
+
+        stmt.execute("SET SESSION RESULT MEMORY ROWS 100");
+        checkJoins();
+    }
+
+    void checkJoins() throws SQLException {
+
+        long count = 0;
+        long sum   = 0;
+
+        for (int a = 1; a <= 1000; a++) {
+            for (int b = 1; b <= 500; b++) {
+                if (a % 100 == b % 50) {
+                    count++;
+
+                    sum += a + b;
+                }
+            }
+        }
+
+        assertEquals(count + "," + sum,
+                     getString("SELECT COUNT(*), SUM(A.ID + B.ID) FROM A"
+                               + " JOIN B ON A.K = B.K"));
+
+        // a condition on the key of each table
+        assertEquals(count + "," + sum,
+                     getString("SELECT COUNT(*), SUM(A.ID + B.ID) FROM A"
+                               + " JOIN B ON A.K = B.K AND A.S IS NOT NULL"
+                               + " AND B.S IS NOT NULL"));
+
+        // DECIMAL values equal to INT keys
+        assertEquals(count + "," + sum,
+                     getString("SELECT COUNT(*), SUM(A.ID + B.ID) FROM A"
+                               + " JOIN B ON A.K = B.D"));
+
+        // unmatched rows of the outer range are kept in a LEFT join
+        assertEquals((count + 50 * 10 + 1) + "",
+                     getString("SELECT COUNT(*) FROM A LEFT JOIN B"
+                               + " ON A.K = B.K"));
+
+        count = 0;
+        sum   = 0;
+
+        for (int a = 1; a <= 1000; a++) {
+            for (int b = 1; b <= 500; b++) {
+                if (a % 100 == b % 50 && a % 7 == b % 5 && a < b) {
+                    count++;
+
+                    sum += a + b;
+                }
+            }
+        }
+
+        // two hash conditions, trailing spaces are not significant in
+        // VARCHAR comparison, and a further condition
+        assertEquals(count + "," + sum,
+                     getString("SELECT COUNT(*), SUM(A.ID + B.ID) FROM A"
+                               + " JOIN B ON A.K = B.K AND A.S = B.S"
+                               + " AND A.ID < B.ID"));
+    }
+
+    String getPlan(String sql) throws SQLException {
+
+        ResultSet     rs = stmt.executeQuery("EXPLAIN PLAN FOR " + sql);
+        StringBuilder sb = new StringBuilder();
+
+        while (rs.next()) {
+            sb.append(rs.getString(1)).append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+
+    String getString(String sql) throws SQLException {
+
+        ResultSet     rs = stmt.executeQuery(sql);
+        StringBuilder sb = new StringBuilder();
+
+        rs.next();
+
+        for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+            if (i > 1) {
+                sb.append(',');
+            }
+
+            sb.append(rs.getString(i));
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,214 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Tests the replay of a text .log file written by two sessions with
+ * interleaved transactions on several tables, with DDL statements and
+ * long lines between the row changes. The database is closed with SHUTDOWN
+ * IMMEDIATELY and the query results are compared after the replay.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestLogReplay extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testlogreplay/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testlogreplay/test;hsqldb.tx=mvcc";
+    static final int    tableCount = 8;
+    static final int    rowCount   = 500;
+
+    // the results are compared before and after the .log file is replayed
+    static final String[] queries = new String[] {
+        "SELECT COUNT(*), SUM(V), SUM(ID * V) FROM S.A",
+        "SELECT COUNT(*), SUM(V), SUM(CHAR_LENGTH(L)), MAX(L) FROM S.L",
+        "SELECT COUNT(*), SUM(V), SUM(N) FROM PUBLIC.N",
+        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'N'",
+    };
+
+    public TestLogReplay(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testInterleavedSessions() throws Exception {
+
+        Connection conn1 = newConnection();
+        Connection conn2 = newConnection();
+        Statement  stmt1 = conn1.createStatement();
+        Statement  stmt2 = conn2.createStatement();
+
+        stmt1.execute("SET FILES WRITE DELAY 0");
+        stmt1.execute("CREATE SCHEMA S");
+
+        for (int i = 0; i < tableCount; i++) {
+            stmt1.execute("CREATE " + (i % 2 == 0 ? "MEMORY"
+                                                  : "CACHED") + " TABLE T"
+                                                      + i
+                                                      + " (ID INT PRIMARY KEY,"
+                                                      + " V INT)");
+        }
+
+        stmt1.execute("CREATE CACHED TABLE S.A (ID INT PRIMARY KEY, V INT)");
+        stmt1.execute("CREATE TABLE S.L (ID INT PRIMARY KEY, V INT,"
+                      + " L VARCHAR(100000))");
+        stmt1.execute("CREATE TABLE PUBLIC.N (ID INT PRIMARY KEY, V INT)");
+        conn1.setAutoCommit(false);
+        conn2.setAutoCommit(false);
+        stmt2.execute("SET SCHEMA S");
+
+        PreparedStatement insert1 = conn1.prepareStatement(
+            "INSERT INTO S.A VALUES (?, ?)");
+        PreparedStatement insert2 =
+            conn2.prepareStatement("INSERT INTO L VALUES (?, ?, ?)");
+
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < tableCount; j++) {
+                Statement stmt = (i + j) % 2 == 0 ? stmt1
+                                                  : stmt2;
+
+                stmt.execute("INSERT INTO PUBLIC.T" + j + " VALUES (" + i
+                             + ", " + (i * j) + ")");
+            }
+
+            insert1.setInt(1, i);
+            insert1.setInt(2, i % 10);
+            insert1.executeUpdate();
+
+            // lines longer than the buffer of the log reader
+            insert2.setInt(1, i);
+            insert2.setInt(2, i % 10);
+            insert2.setString(3, repeat((char) ('a' + i % 26), i * 20)
+                                 + "é'\\");
+            insert2.executeUpdate();
+
+            if (i % 3 == 0) {
+                stmt1.execute("UPDATE S.A SET V = V + 1 WHERE ID = "
+                              + (i / 2));
+                stmt2.execute("DELETE FROM S.L WHERE ID = " + (i / 3));
+            }
+
+            if (i % 5 == 0) {
+                conn1.commit();
+            }
+
+            if (i % 7 == 0) {
+                conn2.commit();
+            }
+
+            if (i == rowCount / 2) {
+                conn1.commit();
+                conn2.commit();
+                stmt1.execute("ALTER TABLE PUBLIC.N ADD COLUMN N INT"
+                              + " DEFAULT 3");
+                stmt2.execute("SET SCHEMA PUBLIC");
+                conn1.commit();
+            }
+
+            stmt2.execute(i > rowCount / 2
+                          ? "INSERT INTO N VALUES (" + i + ", " + i + ", "
+                            + (i % 4) + ")"
+                          : "INSERT INTO S.L VALUES (" + (i + rowCount)
+                            + ", 1, 'x')");
+        }
+
+        conn1.commit();
+        conn2.commit();
+
+        // rolled back changes are not replayed
+        stmt1.execute("DELETE FROM T1 WHERE ID < 100");
+        stmt1.execute("INSERT INTO S.A VALUES (-1, 1)");
+        conn1.rollback();
+
+        String[] expected = getResults(stmt1);
+
+        // uncommitted changes at shutdown are not replayed
+        stmt2.execute("DELETE FROM T2 WHERE ID < 100");
+        stmt2.execute("UPDATE S.A SET V = 0");
+        stmt1.execute("SHUTDOWN IMMEDIATELY");
+
+        conn1 = newConnection();
+        stmt1 = conn1.createStatement();
+
+        String[] actual = getResults(stmt1);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+
+        stmt1.execute("SHUTDOWN");
+    }
+
+    String[] getResults(Statement stmt) throws Exception {
+
+        String[] results = new String[queries.length + tableCount];
+
+        for (int i = 0; i < queries.length; i++) {
+            results[i] = TestBinaryLog.getString(stmt, queries[i]);
+        }
+
+        for (int i = 0; i < tableCount; i++) {
+            results[queries.length + i] = TestBinaryLog.getString(stmt,
+                    "SELECT COUNT(*), SUM(V), SUM(ID * V) FROM PUBLIC.T"
+                    + i);
+        }
+
+        return results;
+    }
+
+    static String repeat(char c, int count) {
+
+        StringBuilder sb = new StringBuilder(count);
+
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+
+        return sb.toString();
+    }
+}
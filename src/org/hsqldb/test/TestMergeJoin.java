@@ -0,0 +1,221 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests joins of an inner range on the columns of an outer range that is
+ * read in index order, which use a merge join of the inner index. The
+ * results are compared with the same joins written with an expression on
+ * the outer column, which look up each outer row from the root of the
+ * inner index.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestMergeJoin extends TestBase {
+
+    // the first join of each pair is a merge join
+    static final String[][] queries = new String[][] {
+        {
+            "SELECT COUNT(*), SUM(A.ID + B.V) FROM A JOIN B ON A.ID = B.ID",
+            "SELECT COUNT(*), SUM(A.ID + B.V) FROM A JOIN B ON B.ID = A.ID + 0"
+        }, {
+            "SELECT COUNT(*), SUM(A.ID * C.ID) FROM A JOIN C ON C.A_ID = A.ID",
+            "SELECT COUNT(*), SUM(A.ID * C.ID) FROM A JOIN C"
+            + " ON C.A_ID = A.ID + 0"
+        }, {
+            "SELECT COUNT(*), COUNT(B.ID), SUM(B.V) FROM A LEFT JOIN B"
+            + " ON A.ID = B.ID",
+            "SELECT COUNT(*), COUNT(B.ID), SUM(B.V) FROM A LEFT JOIN B"
+            + " ON B.ID = A.ID + 0"
+        }, {
+            "SELECT COUNT(*), SUM(C.ID) FROM A JOIN C ON C.A_ID = A.ID"
+            + " WHERE A.ID BETWEEN 1000 AND 3000 AND C.V < 5",
+            "SELECT COUNT(*), SUM(C.ID) FROM A JOIN C ON C.A_ID = A.ID + 0"
+            + " WHERE A.ID BETWEEN 1000 AND 3000 AND C.V < 5"
+        }, {
+            "SELECT A.ID, C.ID FROM A JOIN C ON C.A_ID = A.ID"
+            + " WHERE A.ID > 9900",
+            "SELECT A.ID, C.ID FROM A JOIN C ON C.A_ID = A.ID + 0"
+            + " WHERE A.ID > 9900"
+        },
+    };
+
+    Connection conn;
+    Statement  stmt;
+
+    public TestMergeJoin(String name) {
+        super(name, "jdbc:hsqldb:mem:mergejoin;hsqldb.tx=mvcc", false,
+              false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("CREATE TABLE A (ID INT PRIMARY KEY, V INT)");
+        stmt.execute("CREATE TABLE B (ID INT PRIMARY KEY, V INT)");
+        stmt.execute("CREATE TABLE C (ID INT PRIMARY KEY, A_ID INT"
+                     + " REFERENCES A, V INT)");
+        stmt.execute("INSERT INTO A SELECT C1, MOD(C1, 10) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, 10000, 1))");
+        stmt.execute("INSERT INTO B SELECT C1 * 2, MOD(C1, 10) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, 8000, 1))");
+
+        // parents with no children, one child or runs of children
+        stmt.execute("INSERT INTO C SELECT C1, MOD(C1 * 7, 10000) + 1,"
+                     + " MOD(C1, 10) FROM UNNEST(SEQUENCE_ARRAY(1, 6000, 1))"
+                     + " WHERE MOD(C1, 5) <> 0");
+        stmt.execute("INSERT INTO C SELECT C1 + 6000, 5000 + MOD(C1, 20), 1"
+                     + " FROM UNNEST(SEQUENCE_ARRAY(1, 1000, 1))");
+        stmt.execute("DELETE FROM A WHERE MOD(ID, 3) = 0 AND ID NOT IN"
+                     + " (SELECT A_ID FROM C)");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    public void testPlan() throws SQLException {
+
+        for (int i = 0; i < queries.length; i++) {
+            String plan = getPlan(queries[i][0]);
+
+            assertTrue(plan, plan.indexOf("access=MERGE JOIN") >= 0);
+
+            plan = getPlan(queries[i][1]);
+
+            assertTrue(plan, plan.indexOf("access=MERGE JOIN") < 0);
+        }
+
+        // the outer range is not read in the order of the join column
+        String plan = getPlan("SELECT * FROM A JOIN B ON A.V = B.ID");
+
+        assertTrue(plan, plan.indexOf("access=MERGE JOIN") < 0);
+
+        // the outer range is too small
+        plan = getPlan("SELECT * FROM (SELECT * FROM A WHERE ID < 10) X"
+                       + " JOIN B ON X.ID = B.ID");
+
+        assertTrue(plan, plan.indexOf("access=MERGE JOIN") < 0);
+    }
+
+    public void testJoins() throws SQLException {
+        checkJoins(stmt);
+    }
+
+    public void testChangedRows() throws SQLException {
+
+        PreparedStatement ps = conn.prepareStatement(queries[1][0]);
+        String            expected;
+
+        expected = getString(ps.executeQuery());
+
+        assertEquals(getString(stmt.executeQuery(queries[1][1])), expected);
+
+        // uncommitted changes of another session are not visible
+        Connection conn2 = newConnection();
+        Statement  stmt2 = conn2.createStatement();
+
+        conn2.setAutoCommit(false);
+        stmt2.execute("DELETE FROM C WHERE MOD(A_ID, 4) = 0");
+        stmt2.execute("DELETE FROM B WHERE MOD(ID, 3) = 0");
+        checkJoins(stmt);
+        assertEquals(expected, getString(ps.executeQuery()));
+
+        // the session sees its own changes
+        checkJoins(stmt2);
+        conn2.commit();
+        checkJoins(stmt);
+        assertFalse(expected.equals(getString(ps.executeQuery())));
+        stmt.execute("DELETE FROM C WHERE MOD(A_ID, 7) = 1");
+        stmt.execute("INSERT INTO C VALUES (9001, 17, 0), (9002, 17, 0)");
+        checkJoins(stmt);
+        conn2.close();
+    }
+
+    void checkJoins(Statement stmt) throws SQLException {
+
+        for (int i = 0; i < queries.length; i++) {
+            String expected = getString(stmt.executeQuery(queries[i][1]));
+
+            assertEquals(queries[i][0], expected,
+                         getString(stmt.executeQuery(queries[i][0])));
+        }
+    }
+
+    String getPlan(String sql) throws SQLException {
+
+        ResultSet     rs = stmt.executeQuery("EXPLAIN PLAN FOR " + sql);
+        StringBuilder sb = new StringBuilder();
+
+        while (rs.next()) {
+            sb.append(rs.getString(1)).append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+
+    String getString(ResultSet rs) throws SQLException {
+
+        StringBuilder sb      = new StringBuilder();
+        int           columns = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+
+            sb.append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,174 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests the off-heap tier of the row cache with a CACHED table that is
+ * larger than the memory cache but fits in the off-heap tier.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestOffHeapCache extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testoffheap/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testoffheap/test";
+    static final String properties =
+        ";hsqldb.cache_rows=4096;hsqldb.cache_size=300"
+        + ";hsqldb.cache_offheap_size=16384";
+    static final int rowCount = 20000;
+
+    public TestOffHeapCache(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testUpdatesAndHits() throws Exception {
+        runUpdates(properties);
+    }
+
+    public void testUpdatesAndHitsSegmented() throws Exception {
+        runUpdates(properties + ";hsqldb.cache_segments=4");
+    }
+
+    public void testSizeIsPersisted() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY)");
+        stmt.execute("SET FILES CACHE OFFHEAP 1024");
+        stmt.execute("SHUTDOWN");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        assertEquals("1024",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.cache_offheap_size"));
+
+        // the .data file is opened when the table is first used
+        stmt.execute("SELECT COUNT(*) FROM T");
+        assertEquals(1024 * 1024, getCacheInfo(stmt, "OFFHEAP_MAX_BYTES"));
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * Each round updates every fifth row and checks all the rows. The rows
+     * that are not in the memory cache are found in the off-heap tier,
+     * which must not return the images of rows from before the update.
+     */
+    void runUpdates(String props) throws SQLException {
+
+        Connection conn = DriverManager.getConnection(url + props, user,
+            password);
+        Statement stmt = conn.createStatement();
+
+        stmt.execute("CREATE CACHED TABLE T (ID INT PRIMARY KEY, V INT,"
+                     + " PAD VARCHAR(200))");
+        stmt.execute("INSERT INTO T SELECT C1, 0, REPEAT('x', 200) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+        stmt.execute("CHECKPOINT");
+
+        for (int round = 0; round < 5; round++) {
+            stmt.execute("UPDATE T SET V = V + 1 WHERE MOD(ID, 5) <= "
+                         + round);
+
+            for (int i = 0; i < 2; i++) {
+                ResultSet rs = stmt.executeQuery(
+                    "SELECT ID, V FROM T ORDER BY ID");
+                int id = 1;
+
+                while (rs.next()) {
+                    assertEquals(id, rs.getInt(1));
+                    assertEquals(getValue(id, round), rs.getInt(2));
+
+                    id++;
+                }
+
+                assertEquals(rowCount + 1, id);
+                rs.close();
+            }
+        }
+
+        assertTrue(getCacheInfo(stmt, "OFFHEAP_HITS") > 0);
+        assertTrue(getCacheInfo(stmt, "OFFHEAP_BYTES") > 0);
+        stmt.execute("SHUTDOWN");
+    }
+
+    /**
+     * Returns V of the row after the given round. Rows with MOD(ID, 5) = m
+     * are updated in the rounds from m onwards.
+     */
+    static int getValue(int id, int round) {
+
+        int mod = id % 5;
+
+        return mod <= round ? round - mod + 1
+                            : 0;
+    }
+
+    static long getCacheInfo(Statement stmt,
+                             String column) throws SQLException {
+
+        ResultSet rs = stmt.executeQuery("SELECT SUM(" + column
+                                         + ") FROM"
+                                         + " INFORMATION_SCHEMA"
+                                         + ".SYSTEM_CACHEINFO");
+
+        rs.next();
+
+        long value = rs.getLong(1);
+
+        rs.close();
+
+        return value;
+    }
+}
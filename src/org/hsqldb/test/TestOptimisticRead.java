@@ -0,0 +1,276 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.hsqldb.Session;
+import org.hsqldb.jdbc.JDBCConnection;
+
+/**
+ * Tests reads of MEMORY table indexes without the read lock while other
+ * threads insert, update and delete rows of the same table.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestOptimisticRead extends TestBase {
+
+    static final int rowCount    = 20000;
+    static final int readerCount = 3;
+    static final int writerCount = 2;
+    static final int runMillis   = 4000;
+
+    Connection         conn;
+    volatile boolean   stopped;
+    volatile Throwable failure;
+
+    public TestOptimisticRead(String name) {
+        super(name, "jdbc:hsqldb:mem:optread;hsqldb.tx=mvcc", false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        url  = url + ";hsqldb.optimistic_read=true";
+        conn = newConnection();
+
+        Statement st = conn.createStatement();
+
+        st.execute("DROP TABLE T IF EXISTS");
+        st.execute("CREATE MEMORY TABLE T (ID INT PRIMARY KEY, V INT, G INT)");
+        st.execute("CREATE INDEX IDX_T_G ON T (G)");
+
+        PreparedStatement ps =
+            conn.prepareStatement("INSERT INTO T VALUES (?, ?, ?)");
+
+        for (int i = 0; i < rowCount; i++) {
+            ps.setInt(1, i);
+            ps.setInt(2, i);
+            ps.setInt(3, i % 100);
+            ps.addBatch();
+
+            if (i % 1000 == 999) {
+                ps.executeBatch();
+            }
+        }
+
+        ps.close();
+        st.close();
+    }
+
+    protected void tearDown() {
+
+        try {
+            conn.createStatement().execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    public void testPropertyIsSet() {
+
+        Session session = (Session) ((JDBCConnection) conn).getSession();
+
+        assertTrue(session.getDatabase().optimisticRead);
+    }
+
+    public void testReadersWithWriters() throws Exception {
+
+        Thread[] threads = new Thread[readerCount + writerCount];
+
+        for (int i = 0; i < threads.length; i++) {
+            Runnable r = i < writerCount ? (Runnable) new Writer(i)
+                                         : (Runnable) new Reader(i);
+
+            threads[i] = new Thread(r);
+
+            threads[i].start();
+        }
+
+        Thread.sleep(runMillis);
+
+        stopped = true;
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        if (failure != null) {
+            failure.printStackTrace();
+        }
+
+        assertNull(failure);
+        assertEquals(sumOfRows(), queryLong(conn, "SELECT SUM(V) FROM T"));
+    }
+
+    static long sumOfRows() {
+        return (long) rowCount * (rowCount - 1) / 2;
+    }
+
+    static long queryLong(Connection c, String sql) throws SQLException {
+
+        Statement st = c.createStatement();
+        ResultSet rs = st.executeQuery(sql);
+
+        rs.next();
+
+        long value = rs.getLong(1);
+
+        st.close();
+
+        return value;
+    }
+
+    void setFailure(Throwable t) {
+
+        if (failure == null) {
+            failure = t;
+        }
+
+        stopped = true;
+    }
+
+    /**
+     * Moves value between two rows and inserts and deletes extra rows,
+     * which rebalances the trees of both indexes.
+     */
+    class Writer implements Runnable {
+
+        final int id;
+
+        Writer(int id) {
+            this.id = id;
+        }
+
+        public void run() {
+
+            try {
+                Connection c = newConnection();
+
+                c.setAutoCommit(false);
+
+                PreparedStatement update =
+                    c.prepareStatement("UPDATE T SET V = V + ? WHERE ID = ?");
+                PreparedStatement insert =
+                    c.prepareStatement("INSERT INTO T VALUES (?, 0, ?)");
+                PreparedStatement delete = c.prepareStatement(
+                    "DELETE FROM T WHERE ID >= ? AND ID < ?");
+                Random random = new Random(id);
+                int    base   = rowCount + id * 10000000;
+                int    next   = base;
+
+                while (!stopped) {
+                    update.setInt(1, -1);
+                    update.setInt(2, random.nextInt(rowCount));
+                    update.executeUpdate();
+                    update.setInt(1, 1);
+                    update.setInt(2, random.nextInt(rowCount));
+                    update.executeUpdate();
+                    insert.setInt(1, next++);
+                    insert.setInt(2, random.nextInt(100));
+                    insert.executeUpdate();
+                    c.commit();
+
+                    if (next - base == 500) {
+                        delete.setInt(1, base);
+                        delete.setInt(2, next);
+                        delete.executeUpdate();
+                        c.commit();
+
+                        base = next;
+                    }
+                }
+
+                c.close();
+            } catch (Throwable t) {
+                setFailure(t);
+            }
+        }
+    }
+
+    /**
+     * Checks lookups, range scans and full scans against values that stay
+     * the same while the writers run.
+     */
+    class Reader implements Runnable {
+
+        final int id;
+
+        Reader(int id) {
+            this.id = id;
+        }
+
+        public void run() {
+
+            try {
+                Connection c = newConnection();
+                PreparedStatement lookup =
+                    c.prepareStatement("SELECT ID FROM T WHERE ID = ?");
+                Random random = new Random(id);
+
+                while (!stopped) {
+                    int key = random.nextInt(rowCount);
+
+                    lookup.setInt(1, key);
+
+                    ResultSet rs = lookup.executeQuery();
+
+                    assertTrue("row " + key, rs.next());
+                    assertEquals(key, rs.getInt(1));
+                    rs.close();
+                    assertEquals(rowCount,
+                                 queryLong(c,
+                                           "SELECT COUNT(*) FROM T WHERE ID < "
+                                           + rowCount));
+                    assertEquals(rowCount / 100,
+                                 queryLong(c,
+                                           "SELECT COUNT(*) FROM T WHERE G = "
+                                           + key % 100 + " AND ID < "
+                                           + rowCount));
+                    assertEquals(sumOfRows(),
+                                 queryLong(c, "SELECT SUM(V) FROM T"));
+                }
+
+                c.close();
+            } catch (Throwable t) {
+                setFailure(t);
+            }
+        }
+    }
+}
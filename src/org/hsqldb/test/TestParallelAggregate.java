@@ -0,0 +1,247 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests aggregated queries on a large MEMORY table with SET SESSION
+ * PARALLEL DEGREE. The results must be the same as with a single thread.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestParallelAggregate extends TestBase {
+
+    // above the minimum table size for a parallel scan
+    static final int rowCount = 100000;
+    static final String[] queries = new String[] {
+        "SELECT COUNT(*), COUNT(N), SUM(ID), SUM(N), AVG(D), MIN(S), MAX(S)"
+        + " FROM T",
+        "SELECT COUNT(*), SUM(D), MAX(D) FROM T WHERE N > 10 AND ID < 90000",
+        "SELECT G, COUNT(*), SUM(N), AVG(N), MIN(D), MAX(S) FROM T"
+        + " GROUP BY G",
+        "SELECT S, COUNT(N), SUM(CAST(N AS BIGINT) * 2 + 1) FROM T"
+        + " WHERE D IS NOT NULL GROUP BY S",
+        "SELECT CASE WHEN N < 50 THEN 'low' ELSE 'high' END, COUNT(*),"
+        + " SUM(D) FROM T GROUP BY CASE WHEN N < 50 THEN 'low' ELSE 'high'"
+        + " END",
+        "SELECT G, SUM(N) FROM T GROUP BY G HAVING SUM(N) > 27000",
+        "SELECT COUNT(*), SUM(N), MIN(N) FROM T WHERE N < 0",
+        "SELECT G, COUNT(*) FROM T WHERE N < 0 GROUP BY G",
+    };
+
+    Connection conn;
+    Statement  stmt;
+
+    public TestParallelAggregate(String name) {
+        super(name, "jdbc:hsqldb:mem:parallelaggregate", false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("CREATE MEMORY TABLE T (ID INT PRIMARY KEY, G INT,"
+                     + " N INT, D DECIMAL(10, 2), S VARCHAR(10))");
+        stmt.execute("INSERT INTO T SELECT C1, MOD(C1, 37), CASE WHEN"
+                     + " MOD(C1, 13) = 0 THEN NULL ELSE MOD(C1, 100) END,"
+                     + " CASE WHEN MOD(C1, 17) = 0 THEN NULL ELSE C1 / 7.0"
+                     + " END, 's' || MOD(C1, 11) FROM"
+                     + " UNNEST(SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    public void testQueries() throws Exception {
+
+        String[] expected = new String[queries.length];
+
+        for (int i = 0; i < queries.length; i++) {
+            expected[i] = getResult(queries[i]);
+        }
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 4");
+
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < queries.length; i++) {
+                assertEquals(queries[i], expected[i], getResult(queries[i]));
+            }
+        }
+
+        assertTrue(hasWorkerThreads());
+    }
+
+    public void testParameters() throws Exception {
+
+        PreparedStatement ps = conn.prepareStatement(
+            "SELECT G, COUNT(*), SUM(N + ?) FROM T WHERE N > ? GROUP BY G");
+        String expected;
+
+        ps.setInt(1, 3);
+        ps.setInt(2, 20);
+
+        expected = getResult(ps.executeQuery());
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 3");
+        assertEquals(expected, getResult(ps.executeQuery()));
+    }
+
+    public void testUncommittedRows() throws Exception {
+
+        conn.setAutoCommit(false);
+        stmt.execute("DELETE FROM T WHERE ID <= 1000");
+        stmt.execute("UPDATE T SET N = 1000 WHERE ID > 99000");
+
+        String expected = getResult(queries[0]);
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 4");
+        assertEquals(expected, getResult(queries[0]));
+        conn.rollback();
+        conn.setAutoCommit(true);
+    }
+
+    public void testDeletedRangeRows() throws Exception {
+
+        // the rows at the top of the index are deleted by another session
+        stmt.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+
+        Connection conn2 = newConnection();
+        Statement  stmt2 = conn2.createStatement();
+
+        conn2.setAutoCommit(false);
+        stmt2.execute("DELETE FROM T WHERE MOD(ID, 4) <> 1");
+        stmt2.execute("INSERT INTO T VALUES (100001, 1, 1, 1, 's1')");
+
+        String expected = getResult(queries[0]);
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 4");
+        assertEquals(expected, getResult(queries[0]));
+        conn2.rollback();
+        conn2.close();
+
+        // the rows are deleted by the session
+        conn.setAutoCommit(false);
+        stmt.execute("SET SESSION PARALLEL DEGREE 1");
+        stmt.execute("DELETE FROM T WHERE MOD(ID, 2) = 0");
+
+        expected = getResult(queries[1]);
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 3");
+        assertEquals(expected, getResult(queries[1]));
+        conn.rollback();
+        conn.setAutoCommit(true);
+    }
+
+    public void testError() throws Exception {
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 4");
+
+        try {
+            getResult("SELECT SUM(ID / (N - 50)) FROM T");
+            fail("division by zero");
+        } catch (SQLException e) {}
+
+        // the workers can be used again
+        assertEquals("100000,\n", getResult("SELECT COUNT(*) FROM T"));
+    }
+
+    public void testDefaultDegree() throws Exception {
+
+        stmt.execute("SET DATABASE DEFAULT PARALLEL DEGREE 2");
+        assertEquals("2",
+                     TestCacheSegments.getProperty(stmt,
+                         "hsqldb.parallel_degree"));
+
+        Connection conn2 = newConnection();
+        Statement  stmt2 = conn2.createStatement();
+        String     expected;
+
+        stmt.execute("SET SESSION PARALLEL DEGREE 1");
+
+        expected = getResult(queries[2]);
+
+        assertEquals(expected,
+                     getResult(stmt2.executeQuery(queries[2])));
+        conn2.close();
+    }
+
+    String getResult(String sql) throws SQLException {
+        return getResult(stmt.executeQuery(sql));
+    }
+
+    String getResult(ResultSet rs) throws SQLException {
+
+        StringBuilder sb      = new StringBuilder();
+        int           columns = rs.getMetaData().getColumnCount();
+
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                sb.append(rs.getString(i)).append(',');
+            }
+
+            sb.append('\n');
+        }
+
+        rs.close();
+
+        return sb.toString();
+    }
+
+    static boolean hasWorkerThreads() {
+
+        Thread[] threads = new Thread[Thread.activeCount() * 2];
+        int      count   = Thread.enumerate(threads);
+
+        for (int i = 0; i < count; i++) {
+            if ("HSQLDB Parallel Scan".equals(threads[i].getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,293 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests the primary key row locks of LOCKS transaction control. A session
+ * that changes a row blocks other sessions that change the same row, but
+ * not those that change other rows of the table.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestRowLocks extends TestBase {
+
+    static final int waitMillis = 500;
+
+    Connection conn1;
+    Connection conn2;
+    Statement  stmt1;
+    Statement  stmt2;
+
+    public TestRowLocks(String name) {
+        super(name, "jdbc:hsqldb:mem:rowlocks;hsqldb.tx_row_locks=true",
+              false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        conn1 = newConnection();
+        conn2 = newConnection();
+        stmt1 = conn1.createStatement();
+        stmt2 = conn2.createStatement();
+
+        stmt1.execute("CREATE TABLE T (ID INT PRIMARY KEY, V INT)");
+        stmt1.execute("INSERT INTO T SELECT C1, 0 FROM"
+                      + " UNNEST(SEQUENCE_ARRAY(1, 10, 1))");
+        conn1.setAutoCommit(false);
+        conn2.setAutoCommit(false);
+    }
+
+    protected void tearDown() {
+
+        try {
+            conn1.rollback();
+            conn2.rollback();
+            stmt1.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    public void testProperty() throws Exception {
+
+        assertEquals("true",
+                     TestCacheSegments.getProperty(stmt1,
+                         "hsqldb.tx_row_locks"));
+        stmt1.execute("SET DATABASE TRANSACTION ROW LOCKS FALSE");
+        assertEquals("false",
+                     TestCacheSegments.getProperty(stmt1,
+                         "hsqldb.tx_row_locks"));
+    }
+
+    public void testDifferentRows() throws Exception {
+
+        stmt1.execute("UPDATE T SET V = 1 WHERE ID = 1");
+
+        Executor update = execute(conn2, "UPDATE T SET V = 2 WHERE ID = 2");
+        Executor delete = execute(conn2, "DELETE FROM T WHERE ID = 3");
+
+        assertFinished(update);
+        assertFinished(delete);
+
+        Executor insert = execute(conn2, "INSERT INTO T VALUES (11, 11)");
+
+        assertFinished(insert);
+        conn2.commit();
+        conn1.commit();
+        assertEquals("10,14,63", getResult());
+    }
+
+    public void testDifferentRowsMVLocks() throws Exception {
+
+        conn1.commit();
+        conn2.commit();
+        stmt1.execute("SET DATABASE TRANSACTION CONTROL MVLOCKS");
+        stmt1.execute("UPDATE T SET V = 1 WHERE ID = 1");
+
+        Executor update = execute(conn2, "UPDATE T SET V = 2 WHERE ID = 2");
+
+        assertFinished(update);
+
+        update = execute(conn2, "UPDATE T SET V = 3 WHERE ID = 1");
+
+        assertBlocked(update);
+        conn1.commit();
+        assertFinished(update);
+        conn2.commit();
+        assertEquals("10,5,55", getResult());
+    }
+
+    public void testSameRow() throws Exception {
+
+        stmt1.execute("UPDATE T SET V = V + 1 WHERE ID = 1");
+
+        Executor update = execute(conn2,
+                                  "UPDATE T SET V = V + 1 WHERE ID = 1");
+
+        assertBlocked(update);
+        conn1.commit();
+        assertFinished(update);
+        conn2.commit();
+        assertEquals("10,2,55", getResult());
+    }
+
+    public void testSameInsertedRow() throws Exception {
+
+        stmt1.execute("INSERT INTO T VALUES (11, 1)");
+
+        Executor insert = execute(conn2, "INSERT INTO T VALUES (11, 2)");
+
+        assertBlocked(insert);
+        conn1.commit();
+        insert.join(waitMillis * 10);
+        assertFalse(insert.isAlive());
+
+        // the key inserted by the first session is a duplicate
+        assertNotNull(insert.failure);
+        conn2.commit();
+        assertEquals("11,1,66", getResult());
+    }
+
+    public void testDeletedRow() throws Exception {
+
+        stmt1.execute("DELETE FROM T WHERE ID = 1");
+
+        Executor update = execute(conn2, "UPDATE T SET V = 5 WHERE ID = 1");
+
+        assertBlocked(update);
+        conn1.rollback();
+        assertFinished(update);
+        conn2.commit();
+        assertEquals("10,5,55", getResult());
+    }
+
+    public void testTableLock() throws Exception {
+
+        stmt1.execute("UPDATE T SET V = 1 WHERE ID = 1");
+
+        // the statements do not select a single row by its primary key
+        Executor update = execute(conn2, "UPDATE T SET V = 2 WHERE V = 0");
+        Executor select = execute(conn2, "SELECT COUNT(*) FROM T");
+
+        assertBlocked(update);
+        conn1.commit();
+        assertFinished(update);
+        assertFinished(select);
+        conn2.commit();
+        assertEquals("10,19,55", getResult());
+    }
+
+    public void testRowLocksOff() throws Exception {
+
+        stmt1.execute("SET DATABASE TRANSACTION ROW LOCKS FALSE");
+        conn1.commit();
+        stmt1.execute("UPDATE T SET V = 1 WHERE ID = 1");
+
+        Executor update = execute(conn2, "UPDATE T SET V = 2 WHERE ID = 2");
+
+        assertBlocked(update);
+        conn1.commit();
+        assertFinished(update);
+        conn2.commit();
+        assertEquals("10,3,55", getResult());
+    }
+
+    public void testDeadlock() throws Exception {
+
+        stmt1.execute("UPDATE T SET V = 1 WHERE ID = 1");
+        stmt2.execute("UPDATE T SET V = 2 WHERE ID = 2");
+
+        Executor update = execute(conn1, "UPDATE T SET V = 1 WHERE ID = 2");
+
+        assertBlocked(update);
+
+        // the session that would complete the cycle is rolled back
+        try {
+            stmt2.execute("UPDATE T SET V = 2 WHERE ID = 1");
+            fail("deadlock");
+        } catch (SQLException e) {}
+
+        conn2.rollback();
+        assertFinished(update);
+        conn1.commit();
+        assertEquals("10,2,55", getResult());
+    }
+
+    String getResult() throws SQLException {
+
+        Statement stmt = newConnection().createStatement();
+        ResultSet rs   = stmt.executeQuery("SELECT COUNT(*), SUM(V), SUM(ID)"
+                                           + " FROM T");
+
+        rs.next();
+
+        String result = rs.getInt(1) + "," + rs.getInt(2) + ","
+                        + rs.getInt(3);
+
+        stmt.getConnection().close();
+
+        return result;
+    }
+
+    Executor execute(Connection conn, String sql) {
+
+        Executor executor = new Executor(conn, sql);
+
+        executor.start();
+
+        return executor;
+    }
+
+    void assertBlocked(Executor executor) throws InterruptedException {
+        executor.join(waitMillis);
+        assertTrue(executor.sql, executor.isAlive());
+    }
+
+    void assertFinished(Executor executor) throws InterruptedException {
+
+        executor.join(waitMillis * 10);
+        assertFalse(executor.sql, executor.isAlive());
+
+        if (executor.failure != null) {
+            throw new RuntimeException(executor.failure);
+        }
+    }
+
+    static class Executor extends Thread {
+
+        final Connection   conn;
+        final String       sql;
+        volatile Throwable failure;
+
+        Executor(Connection conn, String sql) {
+            this.conn = conn;
+            this.sql  = sql;
+        }
+
+        public void run() {
+
+            try {
+                conn.createStatement().execute(sql);
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.io.FileWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests the loading of MEMORY tables from the .script file, when the rows
+ * of each table are inserted by a worker thread and the indexes are built
+ * from sorted rows. The results of queries that use each index are compared
+ * with the same queries without an index.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestScriptLoad extends TestBase {
+
+    static final String filepath = TestDirectorySettings.fileBase
+                                   + "testscriptload/";
+    static final String url = TestDirectorySettings.fileBaseURL
+                              + "testscriptload/test";
+    static final int    tableCount = 6;
+    static final int    rowCount   = 5000;
+
+    public TestScriptLoad(String name) {
+        super(name, url, false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        TestUtil.deleteDatabase(filepath + "test");
+        super.setUp();
+    }
+
+    protected void tearDown() {
+        TestUtil.deleteDatabase(filepath + "test");
+        super.tearDown();
+    }
+
+    public void testLoad() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        createTables(stmt);
+
+        String[] expected = getResults(stmt);
+
+        stmt.execute("SHUTDOWN");
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        String[] actual = getResults(stmt);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i]);
+        }
+
+        for (int i = 0; i < tableCount; i++) {
+            checkIndexes(stmt, "T" + i);
+        }
+
+        // the constraints are enforced by the loaded indexes
+        try {
+            stmt.execute("INSERT INTO T2 VALUES (" + rowCount
+                         + ", 1, 'u7', 1)");
+            fail("unique constraint");
+        } catch (SQLException e) {}
+
+        try {
+            stmt.execute("INSERT INTO T3 VALUES (" + rowCount
+                         + ", 1, 'x', " + (rowCount * 2) + ")");
+            fail("foreign key constraint");
+        } catch (SQLException e) {}
+
+        try {
+            stmt.execute("DELETE FROM T2 WHERE ID = 10");
+            fail("foreign key constraint");
+        } catch (SQLException e) {}
+
+        stmt.execute("INSERT INTO T3 VALUES (" + rowCount + ", 1, 'x', 10)");
+        stmt.execute("DELETE FROM T1 WHERE MOD(ID, 2) = 0");
+        checkIndexes(stmt, "T1");
+        stmt.execute("SHUTDOWN");
+    }
+
+    public void testUniqueViolation() throws Exception {
+
+        Connection conn = newConnection();
+        Statement  stmt = conn.createStatement();
+
+        createTables(stmt);
+        stmt.execute("SHUTDOWN");
+
+        Writer writer = new FileWriter(filepath + "test.script", true);
+
+        writer.write("INSERT INTO T5 VALUES(" + rowCount + ",1,'u7',1)\n");
+        writer.close();
+
+        try {
+            newConnection();
+            fail("duplicate row in .script file");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().indexOf("line:") > 0);
+        }
+    }
+
+    /**
+     * Creates MEMORY tables with a primary key, a unique constraint, a
+     * non-unique index on a column with duplicates and NULL values and a
+     * foreign key. The rows are inserted in an order that is different from
+     * each index.
+     */
+    void createTables(Statement stmt) throws Exception {
+
+        for (int i = 0; i < tableCount; i++) {
+            String name = "T" + i;
+
+            stmt.execute("CREATE MEMORY TABLE " + name
+                         + " (ID INT PRIMARY KEY, V INT, U VARCHAR(20),"
+                         + " R INT, UNIQUE (U))");
+            stmt.execute("CREATE INDEX " + name + "_V ON " + name + " (V)");
+            stmt.execute("CREATE INDEX " + name + "_VR ON " + name
+                         + " (V DESC, R)");
+
+            if (i > 0 && i % 2 == 1) {
+                stmt.execute("ALTER TABLE " + name + " ADD FOREIGN KEY (R)"
+                             + " REFERENCES T" + (i - 1) + " (ID)");
+            }
+
+            // rows are inserted in an order other than the primary key
+            stmt.execute(
+                "INSERT INTO " + name + " SELECT MOD(C1 * 7919, "
+                + rowCount + "), CASEWHEN(MOD(C1, 11) = 0, NULL,"
+                + " MOD(C1, 97)), 'u' || (" + rowCount + " - C1), MOD(C1, "
+                + rowCount / 2 + ") FROM UNNEST(SEQUENCE_ARRAY(1, "
+                + rowCount + ", 1))");
+        }
+    }
+
+    String[] getResults(Statement stmt) throws Exception {
+
+        String[] results = new String[tableCount];
+
+        for (int i = 0; i < tableCount; i++) {
+            results[i] = TestBinaryLog.getString(stmt,
+                    "SELECT COUNT(*), SUM(ID), SUM(V), COUNT(V), MAX(U),"
+                    + " SUM(R) FROM T" + i);
+        }
+
+        return results;
+    }
+
+    void checkIndexes(Statement stmt, String name) throws Exception {
+
+        String[][] conditions = new String[][] {
+            {
+                "ID BETWEEN 100 AND 2000", "ID + 0 BETWEEN 100 AND 2000"
+            }, {
+                "V = 5", "V + 0 = 5"
+            }, {
+                "V IS NULL", "V + 0 IS NULL"
+            }, {
+                "V > 50 AND R < 300", "V + 0 > 50 AND R + 0 < 300"
+            }, {
+                "U > 'u3'", "U || '' > 'u3'"
+            },
+        };
+
+        for (int i = 0; i < conditions.length; i++) {
+            String indexed = TestBinaryLog.getString(stmt,
+                "SELECT COUNT(*), SUM(ID), SUM(R) FROM " + name + " WHERE "
+                + conditions[i][0]);
+            String scanned = TestBinaryLog.getString(stmt,
+                "SELECT COUNT(*), SUM(ID), SUM(R) FROM " + name + " WHERE "
+                + conditions[i][1]);
+
+            assertEquals(scanned, indexed);
+        }
+    }
+}
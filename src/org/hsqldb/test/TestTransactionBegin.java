@@ -0,0 +1,228 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests sessions that begin transactions concurrently with commits by other
+ * sessions, with MVCC and MVLOCKS transaction control. Each reader
+ * transaction must see the same total in all its reads, and no transaction
+ * must be left live when the sessions are done.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestTransactionBegin extends TestBase {
+
+    static final int  accountCount = 100;
+    static final int  balance      = 1000;
+    static final long runMillis    = 3000;
+
+    Connection conn;
+    Statement  stmt;
+    volatile Throwable failure;
+    volatile boolean   stop;
+
+    public TestTransactionBegin(String name) {
+        super(name, "jdbc:hsqldb:mem:txbegin", false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("DROP TABLE A IF EXISTS");
+        stmt.execute("CREATE MEMORY TABLE A (ID INT PRIMARY KEY, B INT)");
+        stmt.execute("INSERT INTO A SELECT C1, " + balance
+                     + " FROM UNNEST(SEQUENCE_ARRAY(1, " + accountCount
+                     + ", 1))");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    public void testBeginWithCommitsMVCC() throws Exception {
+        runTest("MVCC");
+    }
+
+    public void testBeginWithCommitsMVLOCKS() throws Exception {
+        runTest("MVLOCKS");
+    }
+
+    void runTest(String mode) throws Exception {
+
+        stmt.execute("SET DATABASE TRANSACTION CONTROL " + mode);
+
+        Thread[] threads = new Thread[] {
+            new Writer(1), new Writer(2), new Reader(), new Reader(),
+            new Reader(), new Reader()
+        };
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+        }
+
+        Thread.sleep(runMillis);
+
+        stop = true;
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        if (failure != null) {
+            failure.printStackTrace();
+        }
+
+        assertNull(failure);
+        assertEquals(accountCount * balance, getTotal(stmt));
+
+        // no live transaction is left, so deleted rows are removed at commit
+        stmt.execute("DELETE FROM A WHERE ID <= " + accountCount / 2);
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT CARDINALITY FROM INFORMATION_SCHEMA.SYSTEM_TABLESTATS"
+            + " WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'A'");
+
+        rs.next();
+        assertEquals(accountCount / 2, rs.getLong(1));
+        rs.close();
+    }
+
+    static int getTotal(Statement statement) throws SQLException {
+
+        ResultSet rs = statement.executeQuery("SELECT SUM(B) FROM A");
+
+        rs.next();
+
+        int total = rs.getInt(1);
+
+        rs.close();
+
+        return total;
+    }
+
+    /**
+     * Moves amounts between accounts, one transfer per transaction.
+     */
+    class Writer extends Thread {
+
+        final int seed;
+
+        Writer(int seed) {
+            this.seed = seed;
+        }
+
+        public void run() {
+
+            try {
+                Connection c = newConnection();
+
+                c.setAutoCommit(false);
+
+                Statement s      = c.createStatement();
+                int       random = seed;
+
+                while (!stop) {
+                    random = random * 1103515245 + 12345;
+
+                    int from = ((random >>> 8) % accountCount) + 1;
+                    int to   = from % accountCount + 1;
+
+                    try {
+                        s.execute("UPDATE A SET B = B - 1 WHERE ID = "
+                                  + from);
+                        s.execute("UPDATE A SET B = B + 1 WHERE ID = " + to);
+                        c.commit();
+                    } catch (SQLException e) {
+
+                        // a conflict with the other writer
+                        c.rollback();
+                    }
+                }
+
+                c.close();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+
+    /**
+     * Begins many short transactions, each reading the total twice.
+     */
+    class Reader extends Thread {
+
+        public void run() {
+
+            try {
+                Connection c = newConnection();
+
+                c.setAutoCommit(false);
+                c.setTransactionIsolation(
+                    Connection.TRANSACTION_REPEATABLE_READ);
+
+                Statement s = c.createStatement();
+
+                while (!stop) {
+                    int first  = getTotal(s);
+                    int second = getTotal(s);
+
+                    c.commit();
+
+                    if (first != accountCount * balance
+                            || second != first) {
+                        throw new RuntimeException("total " + first + " "
+                                                   + second);
+                    }
+                }
+
+                c.close();
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.hsqldb.test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Tests the removal of deleted rows of MVCC transactions by the background
+ * collector, after the commit, or after the older live transactions have
+ * ended.
+ *
+ * @version 2.5.1
+ * @since 2.5.1
+ */
+public class TestTransactionCollector extends TestBase {
+
+    static final int rowCount = 1000;
+
+    Connection conn;
+    Statement  stmt;
+
+    public TestTransactionCollector(String name) {
+        super(name, "jdbc:hsqldb:mem:collector;hsqldb.tx=mvcc", false, false);
+    }
+
+    protected void setUp() throws Exception {
+
+        super.setUp();
+
+        conn = newConnection();
+        stmt = conn.createStatement();
+
+        stmt.execute("DROP TABLE T IF EXISTS");
+        stmt.execute("CREATE MEMORY TABLE T (ID INT PRIMARY KEY, V INT)");
+        stmt.execute("INSERT INTO T SELECT C1, C1 FROM UNNEST("
+                     + "SEQUENCE_ARRAY(1, " + rowCount + ", 1))");
+    }
+
+    protected void tearDown() {
+
+        try {
+            stmt.execute("SHUTDOWN");
+        } catch (SQLException e) {}
+
+        super.tearDown();
+    }
+
+    /**
+     * Returns the count of rows in the table store, including deleted rows
+     * that have not been removed.
+     */
+    long storedRowCount() throws SQLException {
+
+        ResultSet rs = stmt.executeQuery(
+            "SELECT CARDINALITY FROM INFORMATION_SCHEMA.SYSTEM_TABLESTATS"
+            + " WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'T'");
+
+        rs.next();
+
+        long count = rs.getLong(1);
+
+        rs.close();
+
+        return count;
+    }
+
+    /**
+     * Waits for the collector to bring the count of rows in the table store
+     * to the given count, and returns the last count.
+     */
+    long waitForStoredRowCount(long expected) throws Exception {
+
+        long count = storedRowCount();
+
+        for (int i = 0; i < 100 && count != expected; i++) {
+            Thread.sleep(50);
+
+            count = storedRowCount();
+        }
+
+        return count;
+    }
+
+    public void testDeleteWithoutLiveTransaction() throws Exception {
+
+        assertEquals(rowCount, storedRowCount());
+        stmt.execute("DELETE FROM T WHERE ID <= " + rowCount / 2);
+        assertEquals(rowCount / 2, waitForStoredRowCount(rowCount / 2));
+    }
+
+    /**
+     * Commits more transactions than can be queued while an older
+     * transaction is live, then checks the rows once it has ended.
+     */
+    public void testManyCommitsWithLiveTransaction() throws Exception {
+
+        Connection reader = newConnection();
+
+        reader.setAutoCommit(false);
+        reader.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+
+        Statement readStmt = reader.createStatement();
+        ResultSet rs = readStmt.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(rowCount, rs.getInt(1));
+
+        for (int i = 1; i <= rowCount; i++) {
+            stmt.execute("UPDATE T SET V = V + 1 WHERE ID = " + i);
+            stmt.execute("UPDATE T SET V = V + 1 WHERE ID = " + i);
+        }
+
+        rs = readStmt.executeQuery("SELECT SUM(V) FROM T");
+
+        rs.next();
+        assertEquals(rowCount * (rowCount + 1) / 2, rs.getLong(1));
+        reader.commit();
+        assertEquals(rowCount, waitForStoredRowCount(rowCount));
+        reader.close();
+
+        rs = stmt.executeQuery("SELECT SUM(V) FROM T");
+
+        rs.next();
+        assertEquals(rowCount * (rowCount + 1) / 2 + 2 * rowCount,
+                     rs.getLong(1));
+    }
+
+    public void testDeleteWithLiveTransaction() throws Exception {
+
+        Connection reader = newConnection();
+
+        reader.setAutoCommit(false);
+
+        Statement readStmt = reader.createStatement();
+        ResultSet rs = readStmt.executeQuery("SELECT COUNT(*) FROM T");
+
+        rs.next();
+        assertEquals(rowCount, rs.getInt(1));
+        stmt.execute("DELETE FROM T WHERE ID <= " + rowCount / 2);
+
+        // the rows are kept while the older transaction is live
+        assertEquals(rowCount, storedRowCount());
+        reader.commit();
+
+        assertEquals(rowCount / 2, waitForStoredRowCount(rowCount / 2));
+        reader.close();
+
+        rs = stmt.executeQuery("SELECT COUNT(*), MIN(ID) FROM T");
+
+        rs.next();
+        assertEquals(rowCount / 2, rs.getInt(1));
+        assertEquals(rowCount / 2 + 1, rs.getInt(2));
+    }
+}
@@ -359,6 +359,31 @@ public class BinaryType extends Type {
         throw Error.runtimeError(ErrorCode.U_S0500, "BinaryType");
     }
 
+    /**
+     * Trailing zero bytes are ignored for BINARY, as in compare.
+     */
+    public int hashCode(Object a) {
+
+        if (typeCode != Types.SQL_BINARY || !(a instanceof BinaryData)) {
+            return super.hashCode(a);
+        }
+
+        byte[] data = ((BinaryData) a).getBytes();
+        int    end  = data.length;
+
+        while (end > 0 && data[end - 1] == 0) {
+            end--;
+        }
+
+        int code = 0;
+
+        for (int i = 0; i < end && i < 32; i++) {
+            code = code * 31 + (0xff & data[i]);
+        }
+
+        return code;
+    }
+
     public Object convertToTypeLimits(SessionInterface session, Object a) {
         return castOrConvertToType(session, a, this, false);
     }
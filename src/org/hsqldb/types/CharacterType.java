@@ -352,6 +352,31 @@ public class CharacterType extends Type {
         return compare(session, a, b, OpTypes.EQUAL);
     }
 
+    /**
+     * Trailing spaces are ignored with PAD SPACE collations, as in compare.
+     */
+    public int hashCode(Object a) {
+
+        if (!(a instanceof String)) {
+            return super.hashCode(a);
+        }
+
+        String s   = (String) a;
+        int    end = s.length();
+
+        if (collation.isPadSpace()) {
+            while (end > 0 && s.charAt(end - 1) == ' ') {
+                end--;
+            }
+
+            if (end < s.length()) {
+                s = s.substring(0, end);
+            }
+        }
+
+        return collation.hashCode(s);
+    }
+
     public int compare(Session session, Object a, Object b, int opType) {
 
         if (a == b) {
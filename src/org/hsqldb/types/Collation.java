@@ -413,6 +413,13 @@ public class Collation implements SchemaObject {
         return isUpperCaseCompare;
     }
 
+    /**
+     * returns true if a Collator for a language is used for comparison
+     */
+    public boolean isLocaleCollation() {
+        return collator != null;
+    }
+
     public boolean isCaseSensitive() {
 
         // add support for case-sensitive language collations
@@ -449,6 +456,35 @@ public class Collation implements SchemaObject {
                                  : 1);
     }
 
+    /**
+     * returns a hash code that is the same for strings that compare equal
+     */
+    public int hashCode(String s) {
+
+        if (collator == null) {
+            if (isUnicodeSimple) {
+                return s.hashCode();
+            }
+
+            int hash = 0;
+
+            for (int i = 0; i < s.length(); i++) {
+                char c = Character.toLowerCase(
+                    Character.toUpperCase(s.charAt(i)));
+
+                hash = 31 * hash + c;
+            }
+
+            return hash;
+        }
+
+        if (isUpperCaseCompare) {
+            s = toUpperCase(s);
+        }
+
+        return collator.getCollationKey(s).hashCode();
+    }
+
     public String toUpperCase(String s) {
         return s.toUpperCase(locale);
     }
@@ -765,6 +765,45 @@ public final class NumberType extends Type {
         }
     }
 
+    /**
+     * Integral values of different Java classes and DECIMAL values that
+     * differ only in scale have the same hash code, as they compare equal.
+     */
+    public int hashCode(Object a) {
+
+        if (a == null) {
+            return 0;
+        }
+
+        switch (typeCode) {
+
+            case Types.TINYINT :
+            case Types.SQL_SMALLINT :
+            case Types.SQL_INTEGER :
+            case Types.SQL_BIGINT : {
+                if (a instanceof Integer || a instanceof Long) {
+                    long value = ((Number) a).longValue();
+
+                    return (int) (value ^ (value >>> 32));
+                }
+
+                return a.hashCode();
+            }
+            case Types.SQL_NUMERIC :
+            case Types.SQL_DECIMAL : {
+                BigDecimal value = (BigDecimal) a;
+
+                if (value.signum() == 0) {
+                    return 0;
+                }
+
+                return value.stripTrailingZeros().hashCode();
+            }
+            default :
+                return a.hashCode();
+        }
+    }
+
     /** @todo - review usage to see if range enforcement / java type conversion is necessary */
     public Object convertToTypeLimits(SessionInterface session, Object a) {
 
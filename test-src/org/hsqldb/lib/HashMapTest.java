@@ -0,0 +1,123 @@
+/* Copyright (c) 2001-2019, The HSQL Development Group
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * Neither the name of the HSQL Development Group nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL HSQL DEVELOPMENT GROUP, HSQLDB.ORG,
+ * OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.hsqldb.lib;
+
+import org.hsqldb.testbase.BaseTestCase;
+import org.hsqldb.testbase.ForSubject;
+import org.hsqldb.testbase.OfMethod;
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+@ForSubject(HashMap.class)
+public class HashMapTest extends BaseTestCase {
+
+    /**
+     * Compares strings ignoring case, with a hash code that agrees. The hash
+     * code differs from String.hashCode() in the low bits, so a lookup that
+     * uses the wrong hash code misses the bucket.
+     */
+    static class IgnoreCaseComparator implements ObjectComparator {
+
+        public int compare(Object a, Object b) {
+            return ((String) a).compareToIgnoreCase((String) b);
+        }
+
+        public int hashCode(Object a) {
+            return Integer.reverse(((String) a).toUpperCase().hashCode());
+        }
+
+        public long longKey(Object a) {
+            return 0;
+        }
+    }
+
+    public HashMapTest(String name) {
+        super(name);
+    }
+
+    @OfMethod({"setComparator(org.hsqldb.lib.ObjectComparator)",
+               "get(java.lang.Object)", "containsKey(java.lang.Object)",
+               "remove(java.lang.Object)"})
+    public void testMapWithComparator() {
+
+        HashMap map = new HashMap();
+
+        map.setComparator(new IgnoreCaseComparator());
+
+        for (int i = 0; i < 100; i++) {
+            map.put("key" + i, Integer.valueOf(i));
+        }
+
+        map.put("KEY7", Integer.valueOf(-7));
+        assertEquals(100, map.size());
+        assertEquals(Integer.valueOf(-7), map.get("Key7"));
+        assertTrue(map.containsKey("KEY50"));
+        assertTrue(map.keySet().contains("kEy50"));
+        assertEquals("key50", map.keySet().get("KEY50"));
+        assertEquals(Integer.valueOf(50), map.remove("Key50"));
+        assertFalse(map.containsKey("key50"));
+        assertNull(map.get("KEY50"));
+        assertNull(map.remove("kEY50"));
+        assertEquals(99, map.size());
+
+        for (int i = 0; i < 100; i++) {
+            map.remove("Key" + i);
+        }
+
+        assertTrue(map.isEmpty());
+    }
+
+    @OfMethod({"setComparator(org.hsqldb.lib.ObjectComparator)",
+               "contains(java.lang.Object)", "remove(java.lang.Object)"})
+    public void testSetWithComparator() {
+
+        HashSet set = new HashSet();
+
+        set.setComparator(new IgnoreCaseComparator());
+        assertTrue(set.add("abc"));
+        assertFalse(set.add("ABC"));
+        assertTrue(set.contains("aBc"));
+        assertEquals("abc", set.get("ABC"));
+        assertTrue(set.remove("aBC"));
+        assertFalse(set.contains("abc"));
+        assertTrue(set.isEmpty());
+    }
+
+    public static Test suite() {
+
+        TestSuite suite = new TestSuite(HashMapTest.class);
+
+        return suite;
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}